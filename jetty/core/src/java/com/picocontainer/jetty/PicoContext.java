@@ -15,6 +15,8 @@ import java.util.EventListener;
 import javax.servlet.DispatcherType;
 import javax.servlet.Filter;
 import javax.servlet.Servlet;
+import javax.servlet.http.HttpSessionAttributeListener;
+import javax.servlet.http.HttpSessionListener;
 
 import org.eclipse.jetty.server.handler.ErrorHandler;
 import org.eclipse.jetty.servlet.DefaultServlet;
@@ -84,8 +86,15 @@ public class PicoContext {
         return addListener(instance);
     }
 
+    /**
+     * Session listeners are also added to the session handler, as only a webapp context passes them on to it.
+     */
     public EventListener addListener(final EventListener listener) {
         context.addEventListener(listener);
+        if ((listener instanceof HttpSessionListener || listener instanceof HttpSessionAttributeListener)
+                && context.getSessionHandler() != null) {
+            context.getSessionHandler().addEventListener(listener);
+        }
         return listener;
     }
 
@@ -0,0 +1,31 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer;
+
+/**
+ * Interface for containers that can register a batch of components in one go.  Use
+ * {@link Registrations#addTo(MutablePicoContainer)} rather than calling it directly, as that also works for
+ * containers that do not implement it.
+ */
+public interface BatchRegistering {
+
+    /**
+     * Register many components at once.  The result is the same as calling <code>addComponent</code> for each
+     * of the registrations in turn, but the container's characteristics are read once for the whole batch, the
+     * adapters are built in a single pass (concurrently if the batch has an executor) and indexed together.
+     * Registration is all or nothing: if any adapter cannot be created, or a key is duplicated, none of the
+     * components are added.
+     *
+     * @param registrations the components to register.
+     * @return the container the components were added to.
+     * @throws PicoCompositionException if registration of any of the components fails.
+     */
+    MutablePicoContainer addComponents(Registrations registrations);
+
+}
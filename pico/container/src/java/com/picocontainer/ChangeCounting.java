@@ -0,0 +1,23 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer;
+
+/**
+ * Interface for containers that count the changes made to their component registrations, so that anything
+ * worked out from the registrations can be kept until they next change.
+ */
+public interface ChangeCounting {
+
+    /**
+     * @return a number that is different after every component added to or removed from the container, or
+     *         -1 if the changes are not counted, as for a view of a container that does not count them.
+     */
+    long getChangeCount();
+
+}
@@ -32,6 +32,8 @@ public final class Characteristics {
     private static final String _CACHE = "cache";
     private static final String _SYNCHRONIZING = "synchronizing";
     private static final String _LOCKING = "locking";
+    private static final String _THROTTLING = "throttling";
+    private static final String _DEEP_DIRTY_CHECK = "deep-dirty-check";
     private static final String _HIDE_IMPL = "hide-impl";
     private static final String _PROPERTY_APPLYING = "property-applying";
     private static final String _AUTOMATIC = "automatic";
@@ -121,6 +123,25 @@ public final class Characteristics {
      */
     public static final Properties NO_LOCK = immutable(_LOCKING, FALSE);
 
+    /**
+     * Limits the number of concurrent method calls on the component instance.
+     * @see com.picocontainer.behaviors.Throttling
+     */
+    public static final Properties THROTTLE = immutable(_THROTTLING, TRUE);
+
+    /**
+     * Turns off throttling of method calls.
+     * @see com.picocontainer.behaviors.Throttling
+     */
+    public static final Properties NO_THROTTLE = immutable(_THROTTLING, FALSE);
+
+    /**
+     * Compares the serialized form of a stored instance before and after each unit of work, so that changes to
+     * its fields count as changes to the store.
+     * @see com.picocontainer.behaviors.Storing#isCacheDirtyForThread()
+     */
+    public static final Properties DEEP_DIRTY_CHECK = immutable(_DEEP_DIRTY_CHECK, TRUE);
+
     /**
      * Synonym for {@link #CACHE CACHE}.
      * @see com.picocontainer.behaviors.Caching
@@ -23,6 +23,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Provider;
 
@@ -85,7 +90,7 @@ import com.picocontainer.parameters.MethodParameters;
  * @author Mauro Talevi
  */
 @SuppressWarnings("serial")
-public class DefaultPicoContainer implements MutablePicoContainer, Converting, ComponentMonitorStrategy, Serializable {
+public class DefaultPicoContainer implements MutablePicoContainer, BatchRegistering, ChangeCounting, Converting, ComponentMonitorStrategy, Serializable {
 
     private String name;
 
@@ -139,6 +144,8 @@ public class DefaultPicoContainer implements MutablePicoContainer, Converting, C
 
     protected final List<ComponentAdapter<?>> orderedComponentAdapters = new ArrayList<ComponentAdapter<?>>();
 
+    private final AtomicLong changeCount = new AtomicLong();
+
     private Converters converters;
 
     /**
@@ -520,9 +527,17 @@ public class DefaultPicoContainer implements MutablePicoContainer, Converting, C
         }
         getModifiableComponentAdapterList().add(componentAdapter);
         getComponentKeyToAdapterCache().put(key, componentAdapter);
+        changeCount.incrementAndGet();
         return this;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
     /**
      * {@inheritDoc}
      * This method can be used to override the ComponentAdapter created by the {@link ComponentFactory}
@@ -552,21 +567,21 @@ public class DefaultPicoContainer implements MutablePicoContainer, Converting, C
      */
     public MutablePicoContainer addAdapter(final ComponentAdapter<?> componentAdapter, final Properties properties) {
         Properties tmpProperties = (Properties) properties.clone();
-        removeGenericPropertiesThatWeDontCareAbout(tmpProperties);
-
+        return addAdapterInternal(applyBehaviors(componentAdapter, tmpProperties));
+    }
 
+    private ComponentAdapter<?> applyBehaviors(final ComponentAdapter<?> componentAdapter, final Properties tmpProperties) {
+        removeGenericPropertiesThatWeDontCareAbout(tmpProperties);
         if (AbstractBehavior.removePropertiesIfPresent(tmpProperties, Characteristics.NONE) == false && componentFactory instanceof Behavior) {
-            MutablePicoContainer container = addAdapterInternal(((Behavior) componentFactory).addComponentAdapter(
+            ComponentAdapter<?> adapter = ((Behavior) componentFactory).addComponentAdapter(
                     monitor,
                     lifecycle,
                     tmpProperties,
-                    componentAdapter));
+                    componentAdapter);
             throwIfPropertiesLeft(tmpProperties);
-            return container;
-        } else {
-            return addAdapterInternal(componentAdapter);
+            return adapter;
         }
-
+        return componentAdapter;
     }
 
 
@@ -579,6 +594,7 @@ public class DefaultPicoContainer implements MutablePicoContainer, Converting, C
         ComponentAdapter<T> adapter = (ComponentAdapter<T>) getComponentKeyToAdapterCache().remove(key);
         getModifiableComponentAdapterList().remove(adapter);
         getOrderedComponentAdapters().remove(adapter);
+        changeCount.incrementAndGet();
         return adapter;
     }
 
@@ -642,11 +658,38 @@ public class DefaultPicoContainer implements MutablePicoContainer, Converting, C
                                               final FieldParameters[] fieldParameters,
                                               final MethodParameters[] methodParameters) {
 
-    	Parameter[] tweakedParameters = (constructorParameters != null) ? constructorParameters.getParams() : null;
-
         if (key instanceof Generic) {
             key = Generic.get(((Generic) key).getType());
         }
+
+        if (implOrInstance instanceof Class) {
+            ComponentAdapter<?> adapter = createAdapter(key, (Class<?>) implOrInstance, (Properties) properties.clone(),
+                    constructorParameters, fieldParameters, methodParameters);
+            if (lifecycleState.isStarted()) {
+                addAdapterIfStartable(adapter);
+                potentiallyStartAdapter(adapter);
+            }
+            return addAdapterInternal(adapter);
+        } else {
+            ComponentAdapter<?> adapter =
+                    new InstanceAdapter<Object>(key, implOrInstance, lifecycle, monitor);
+            if (lifecycleState.isStarted()) {
+                addAdapterIfStartable(adapter);
+                potentiallyStartAdapter(adapter);
+            }
+            return addAdapter(adapter, properties);
+        }
+    }
+
+    private ComponentAdapter<?> createAdapter(final Object key,
+                                              final Class<?> impl,
+                                              final Properties tmpProperties,
+                                              final ConstructorParameters constructorParameters,
+                                              final FieldParameters[] fieldParameters,
+                                              final MethodParameters[] methodParameters) {
+
+    	Parameter[] tweakedParameters = (constructorParameters != null) ? constructorParameters.getParams() : null;
+
         if (tweakedParameters != null && tweakedParameters.length == 0) {
             tweakedParameters = null; // backwards compatibility!  solve this better later - Paul
         }
@@ -656,31 +699,110 @@ public class DefaultPicoContainer implements MutablePicoContainer, Converting, C
             tweakedParameters = new Parameter[0];
         }
 
+        ComponentAdapter<?> adapter = componentFactory.createComponentAdapter(monitor,
+                lifecycle,
+                tmpProperties,
+                key,
+                impl,
+                new ConstructorParameters(tweakedParameters), fieldParameters, methodParameters);
+        removeGenericPropertiesThatWeDontCareAbout(tmpProperties);
+        throwIfPropertiesLeft(tmpProperties);
+        return adapter;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The container's properties are cloned once into a snapshot, and each registration gets its own copy of
+     * that snapshot for its behaviors to consume.  Duplicate keys are checked for the whole batch before any
+     * adapter is indexed.
+     */
+    public MutablePicoContainer addComponents(final Registrations registrations) {
+        return addComponents(registrations, this.containerProperties);
+    }
 
+    private MutablePicoContainer addComponents(final Registrations registrations, final Properties properties) {
+        final Properties snapshot = (Properties) properties.clone();
+        final List<Registrations.Registration> batch = registrations.getRegistrations();
+        final ComponentAdapter<?>[] adapters = new ComponentAdapter<?>[batch.size()];
+        Executor executor = registrations.getExecutor();
 
-        if (implOrInstance instanceof Class) {
-            Properties tmpProperties = (Properties) properties.clone();
-            ComponentAdapter<?> adapter = componentFactory.createComponentAdapter(monitor,
-                    lifecycle,
-                    tmpProperties,
-                    key,
-                    (Class<?>) implOrInstance,
-                    new ConstructorParameters(tweakedParameters), fieldParameters, methodParameters);
-            removeGenericPropertiesThatWeDontCareAbout(tmpProperties);
-            throwIfPropertiesLeft(tmpProperties);
-            if (lifecycleState.isStarted()) {
-                addAdapterIfStartable(adapter);
-                potentiallyStartAdapter(adapter);
+        if (executor == null || adapters.length < 2) {
+            for (int i = 0; i < adapters.length; i++) {
+                adapters[i] = createAdapter(batch.get(i), snapshot);
             }
-            return addAdapterInternal(adapter);
         } else {
-            ComponentAdapter<?> adapter =
-                    new InstanceAdapter<Object>(key, implOrInstance, lifecycle, monitor);
-            if (lifecycleState.isStarted()) {
+            // the first one is built here, so that factories finish any lazy set-up before the others fan out
+            adapters[0] = createAdapter(batch.get(0), snapshot);
+            List<FutureTask<ComponentAdapter<?>>> tasks = new ArrayList<FutureTask<ComponentAdapter<?>>>(adapters.length - 1);
+            for (int i = 1; i < adapters.length; i++) {
+                final Registrations.Registration registration = batch.get(i);
+                FutureTask<ComponentAdapter<?>> task = new FutureTask<ComponentAdapter<?>>(new Callable<ComponentAdapter<?>>() {
+                    public ComponentAdapter<?> call() {
+                        return createAdapter(registration, snapshot);
+                    }
+                });
+                tasks.add(task);
+                executor.execute(task);
+            }
+            for (int i = 1; i < adapters.length; i++) {
+                adapters[i] = awaitAdapter(tasks.get(i - 1));
+            }
+        }
+
+        Set<Object> keys = new HashSet<Object>(adapters.length * 2);
+        for (ComponentAdapter<?> adapter : adapters) {
+            Object key = adapter.getComponentKey();
+            if (getComponentKeyToAdapterCache().containsKey(key) || !keys.add(key)) {
+                throw new PicoCompositionException("Duplicate Keys not allowed. Duplicate for '" + key + "'");
+            }
+        }
+
+        List<ComponentAdapter<?>> list = getModifiableComponentAdapterList();
+        if (list instanceof ArrayList) {
+            ((ArrayList<ComponentAdapter<?>>) list).ensureCapacity(list.size() + adapters.length);
+        }
+        boolean started = lifecycleState.isStarted();
+        for (ComponentAdapter<?> adapter : adapters) {
+            addAdapterInternal(adapter);
+            if (started) {
                 addAdapterIfStartable(adapter);
                 potentiallyStartAdapter(adapter);
             }
-            return addAdapter(adapter, properties);
+        }
+        return this;
+    }
+
+    private ComponentAdapter<?> createAdapter(final Registrations.Registration registration, final Properties snapshot) {
+        Object key = registration.getKey();
+        Object implOrInstance = registration.getImplOrInstance();
+        if (key == null) {
+            key = implOrInstance instanceof String || implOrInstance instanceof Class ? implOrInstance : implOrInstance.getClass();
+        } else if (key instanceof Generic) {
+            key = Generic.get(((Generic) key).getType());
+        }
+        Properties tmpProperties = (Properties) snapshot.clone();
+        if (implOrInstance instanceof Class) {
+            return createAdapter(key, (Class<?>) implOrInstance, tmpProperties,
+                    registration.getConstructorParams(), registration.getFieldParams(), registration.getMethodParams());
+        }
+        return applyBehaviors(new InstanceAdapter<Object>(key, implOrInstance, lifecycle, monitor), tmpProperties);
+    }
+
+    private static ComponentAdapter<?> awaitAdapter(final FutureTask<ComponentAdapter<?>> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PicoCompositionException("Interrupted while registering components", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new PicoCompositionException(cause);
         }
     }
 
@@ -1325,7 +1447,7 @@ public class DefaultPicoContainer implements MutablePicoContainer, Converting, C
     }
 
     @SuppressWarnings("synthetic-access")
-    private class AsPropertiesPicoContainer extends AbstractDelegatingMutablePicoContainer {
+    private class AsPropertiesPicoContainer extends AbstractDelegatingMutablePicoContainer implements BatchRegistering {
 
         private final Properties properties;
 
@@ -1381,6 +1503,10 @@ public class DefaultPicoContainer implements MutablePicoContainer, Converting, C
             return DefaultPicoContainer.this.addComponent(implOrInstance, properties);
         }
 
+        public MutablePicoContainer addComponents(final Registrations registrations) throws PicoCompositionException {
+            return DefaultPicoContainer.this.addComponents(registrations, properties);
+        }
+
         @Override
         public MutablePicoContainer addAdapter(final ComponentAdapter<?> componentAdapter) throws PicoCompositionException {
             return DefaultPicoContainer.this.addAdapter(componentAdapter, properties);
@@ -0,0 +1,175 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import com.picocontainer.parameters.ConstructorParameters;
+import com.picocontainer.parameters.FieldParameters;
+import com.picocontainer.parameters.MethodParameters;
+
+/**
+ * A batch of component registrations.  The <code>add</code> methods mirror the <code>addComponent</code>
+ * methods of the container:
+ * <pre>
+ * new Registrations()
+ *         .add(Apple.class)
+ *         .add(Orange.class, SevilleOrange.class)
+ *         .add("juicer", Juicer.class, new ComponentParameter(Orange.class))
+ *         .addTo(pico);
+ * </pre>
+ * Containers that are {@link BatchRegistering} register the batch in one go.  Others, including the delegating
+ * containers, which may work out keys or characteristics of their own for each component, get the
+ * registrations one at a time through their <code>addComponent</code> methods.
+ * <p>
+ * If an {@link Executor} is given with {@link #createdWith(Executor)}, a batch registering container builds the
+ * adapters concurrently on it, which requires the container's {@link ComponentFactory} chain to be thread safe.
+ * </p>
+ */
+public class Registrations {
+
+    private final List<Registration> registrations = new ArrayList<Registration>();
+    private Executor executor;
+
+    /**
+     * @see MutablePicoContainer#addComponent(Object)
+     */
+    public Registrations add(final Object implOrInstance) {
+        if (implOrInstance == null) {
+            throw new NullPointerException("implOrInstance");
+        }
+        return add(new Registration(null, implOrInstance, null, null, null));
+    }
+
+    /**
+     * @see MutablePicoContainer#addComponent(Object, Object, Parameter...)
+     */
+    public Registrations add(final Object key, final Object implOrInstance, final Parameter... constructorParameters) {
+        return add(key, implOrInstance, new ConstructorParameters(constructorParameters), null, null);
+    }
+
+    /**
+     * @see MutablePicoContainer#addComponent(Object, Object, ConstructorParameters, FieldParameters[], MethodParameters[])
+     */
+    public Registrations add(final Object key, final Object implOrInstance, final ConstructorParameters constructorParams,
+                             final FieldParameters[] fieldParams, final MethodParameters[] methodParams) {
+        if (key == null) {
+            throw new NullPointerException("key");
+        }
+        if (implOrInstance == null) {
+            throw new NullPointerException("implOrInstance");
+        }
+        return add(new Registration(key, implOrInstance, constructorParams, fieldParams, methodParams));
+    }
+
+    public Registrations add(final Registration registration) {
+        registrations.add(registration);
+        return this;
+    }
+
+    /**
+     * Lets the container build the adapters of this batch concurrently.
+     * @param executor runs the adapter creation, or null to build them on the registering thread.
+     * @return this batch.
+     */
+    public Registrations createdWith(final Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Registers the batch with the container, in one go if it is {@link BatchRegistering}, otherwise one at a
+     * time, in which case the registrations made before one that fails are kept.
+     * @return the container.
+     */
+    public MutablePicoContainer addTo(final MutablePicoContainer container) {
+        if (container instanceof BatchRegistering) {
+            return ((BatchRegistering) container).addComponents(this);
+        }
+        for (Registration registration : registrations) {
+            registration.addTo(container);
+        }
+        return container;
+    }
+
+    public List<Registration> getRegistrations() {
+        return Collections.unmodifiableList(registrations);
+    }
+
+    public int size() {
+        return registrations.size();
+    }
+
+    /**
+     * One entry of a batch, holding the arguments that would have been passed to <code>addComponent</code>.
+     */
+    public static final class Registration {
+        private final Object key;
+        private final Object implOrInstance;
+        private final ConstructorParameters constructorParams;
+        private final FieldParameters[] fieldParams;
+        private final MethodParameters[] methodParams;
+
+        public Registration(final Object key, final Object implOrInstance, final ConstructorParameters constructorParams,
+                            final FieldParameters[] fieldParams, final MethodParameters[] methodParams) {
+            this.key = key;
+            this.implOrInstance = implOrInstance;
+            this.constructorParams = constructorParams;
+            this.fieldParams = fieldParams;
+            this.methodParams = methodParams;
+        }
+
+        /**
+         * @return the key, or null if the container should derive it from the implementation, as
+         * {@link MutablePicoContainer#addComponent(Object)} does.
+         */
+        public Object getKey() {
+            return key;
+        }
+
+        public Object getImplOrInstance() {
+            return implOrInstance;
+        }
+
+        public ConstructorParameters getConstructorParams() {
+            return constructorParams;
+        }
+
+        public FieldParameters[] getFieldParams() {
+            return fieldParams;
+        }
+
+        public MethodParameters[] getMethodParams() {
+            return methodParams;
+        }
+
+        /**
+         * Registers this entry with the <code>addComponent</code> method it mirrors.
+         */
+        public void addTo(final MutablePicoContainer container) {
+            if (key == null) {
+                container.addComponent(implOrInstance);
+            } else {
+                container.addComponent(key, implOrInstance, constructorParams, fieldParams, methodParams);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return key + "=" + implOrInstance;
+        }
+    }
+}
@@ -195,7 +195,7 @@ public class AbstractBehavior implements ComponentFactory, Serializable, Behavio
         }
 
         @SuppressWarnings("unchecked")
-        public final <U extends ComponentAdapter> U findAdapterOfType(final Class<U> adapterType) {
+        public <U extends ComponentAdapter> U findAdapterOfType(final Class<U> adapterType) {
             if (adapterType.isAssignableFrom(this.getClass())) {
                 return (U) this;
             } else {
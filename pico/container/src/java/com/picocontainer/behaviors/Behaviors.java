@@ -46,6 +46,14 @@ public class Behaviors {
         return new Locking();
     }
 
+    public static Behavior throttling() {
+        return new Throttling();
+    }
+
+    public static Behavior fusing() {
+        return new Fusing();
+    }
+
     public static Behavior propertyApplying() {
         return new PropertyApplying();
     }
@@ -0,0 +1,124 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.behaviors;
+
+import java.lang.reflect.Type;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.picocontainer.ComponentAdapter;
+import com.picocontainer.ComponentMonitor;
+import com.picocontainer.LifecycleStrategy;
+import com.picocontainer.PicoCompositionException;
+import com.picocontainer.PicoContainer;
+import com.picocontainer.parameters.ConstructorParameters;
+import com.picocontainer.parameters.FieldParameters;
+import com.picocontainer.parameters.MethodParameters;
+
+/**
+ * This behavior factory goes outermost in a behavior chain and fuses the adapter stack built below it, at
+ * registration time, into a single {@link Fused} adapter.  The layers stay in place, so lifecycle, visitors and
+ * {@link ComponentAdapter#findAdapterOfType(Class)} see exactly the same chain, but the two costs a deep stack
+ * adds to each resolution go away:
+ * <ul>
+ * <li><code>findAdapterOfType</code> walks are remembered per type, so the lookups the container performs when
+ * resolving by type are a single map hit;</li>
+ * <li>when the chain caches its instance ({@link Caching.Cached}), possibly below {@link Locking.Locked} or
+ * {@link Synchronizing.Synchronized} guards, an already cached instance is returned without going through the
+ * layers or taking their locks.</li>
+ * </ul>
+ * Existing adapters may be fused with {@link #fuse(ComponentAdapter)}.
+ */
+@SuppressWarnings("serial")
+public class Fusing extends AbstractBehavior {
+
+    @Override
+	public <T> ComponentAdapter<T> createComponentAdapter(final ComponentMonitor monitor, final LifecycleStrategy lifecycle,
+                                                   final Properties componentProps, final Object key, final Class<T> impl, final ConstructorParameters constructorParams, final FieldParameters[] fieldParams, final MethodParameters[] methodParams) throws PicoCompositionException {
+        return fuse(super.createComponentAdapter(monitor, lifecycle, componentProps, key, impl, constructorParams, fieldParams, methodParams));
+    }
+
+    @Override
+	public <T> ComponentAdapter<T> addComponentAdapter(final ComponentMonitor monitor, final LifecycleStrategy lifecycle,
+                                                final Properties componentProps, final ComponentAdapter<T> adapter) {
+        return fuse(super.addComponentAdapter(monitor, lifecycle, componentProps, adapter));
+    }
+
+    /**
+     * Fuses an adapter chain.  Adapters that are already fused, or that have no behaviors on top of the
+     * injector, are returned as they are.
+     * @param adapter the outermost adapter of the chain.
+     * @return the fused adapter.
+     */
+    public static <T> ComponentAdapter<T> fuse(final ComponentAdapter<T> adapter) {
+        if (adapter instanceof Fused || !(adapter instanceof AbstractChangedBehavior)) {
+            return adapter;
+        }
+        return new Fused<T>(adapter);
+    }
+
+    /**
+     * The adapter a chain is fused into.  It delegates to the original outermost adapter and keeps the
+     * shortcuts described in {@link Fusing}.
+     */
+    @SuppressWarnings("serial")
+    public static class Fused<T> extends AbstractChangedBehavior<T> {
+
+        private static final Object NONE = new Object();
+
+        private final Caching.Cached<T> cached;
+        private final transient ConcurrentHashMap<Class<?>, Object> foundAdapters = new ConcurrentHashMap<Class<?>, Object>();
+        private transient volatile T resolved;
+
+        @SuppressWarnings("unchecked")
+        public Fused(final ComponentAdapter<T> delegate) {
+            super(delegate);
+            ComponentAdapter<T> layer = delegate;
+            while (layer instanceof Locking.Locked || layer instanceof Synchronizing.Synchronized) {
+                layer = layer.getDelegate();
+            }
+            this.cached = layer instanceof Caching.Cached ? (Caching.Cached<T>) layer : null;
+        }
+
+        @Override
+        public T getComponentInstance(final PicoContainer container, final Type into) throws PicoCompositionException {
+            if (cached != null) {
+                T instance = resolved;
+                if (instance != null && instance == cached.getStoredObject()) {
+                    return instance;
+                }
+                instance = delegate.getComponentInstance(container, into);
+                resolved = instance;
+                return instance;
+            }
+            return delegate.getComponentInstance(container, into);
+        }
+
+        @Override
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        public <U extends ComponentAdapter> U findAdapterOfType(final Class<U> adapterType) {
+            if (adapterType.isAssignableFrom(Fused.class)) {
+                return (U) this;
+            }
+            if (foundAdapters == null) {
+                return delegate.findAdapterOfType(adapterType);
+            }
+            Object found = foundAdapters.get(adapterType);
+            if (found == null) {
+                found = delegate.findAdapterOfType(adapterType);
+                foundAdapters.put(adapterType, found == null ? NONE : found);
+            }
+            return found == NONE ? null : (U) found;
+        }
+
+        public String getDescriptor() {
+            return "Fused";
+        }
+    }
+}
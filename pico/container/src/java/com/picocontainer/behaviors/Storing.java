@@ -10,13 +10,30 @@
 
 package com.picocontainer.behaviors;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Externalizable;
 import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.picocontainer.Characteristics;
 import com.picocontainer.ComponentAdapter;
@@ -26,35 +43,113 @@ import com.picocontainer.LifecycleStrategy;
 import com.picocontainer.ObjectReference;
 import com.picocontainer.PicoCompositionException;
 import com.picocontainer.PicoContainer;
+import com.picocontainer.lifecycle.LifecycleState;
 import com.picocontainer.parameters.ConstructorParameters;
 import com.picocontainer.parameters.FieldParameters;
 import com.picocontainer.parameters.MethodParameters;
-import com.picocontainer.references.ThreadLocalMapObjectReference;
+import com.picocontainer.references.ExplicitScopeContext;
+import com.picocontainer.references.ScopeContext;
+import com.picocontainer.references.ScopedMapObjectReference;
+import com.picocontainer.references.ThreadLocalScopeContext;
 
 /**
+ * Stores component instances in a map held per unit of work, which can be moved between threads with
+ * {@link #getCacheForThread()} and {@link #putCacheForThread(StoreWrapper)}.  The unit of work is the thread,
+ * unless another {@link ScopeContext} is given.
+ * <p>A store that has been put on a thread records whether instances were created, replaced or removed
+ * while it was there, or whether {@link #markCacheDirtyForThread()} was called, so that a store that lives in a
+ * replicated session need only be written back when it has changed.  Components registered with
+ * {@link Characteristics#DEEP_DIRTY_CHECK} also count as changed when their serialized form differs.</p>
+ * <p>A {@link StoreWrapper} serializes in a compact form: component keys that are classes or strings are written
+ * as indexes into a dictionary of those keys registered with this behavior, other keys are written themselves, and
+ * instances are written with their lifecycle flags only.</p>
+ * <p>With {@link #startedOnFirstUse(LifecycleState)} an instance that is created while its scope is started is
+ * started there and then.  Used with a container whose {@link LifecycleStrategy#isLazy(ComponentAdapter)} is true,
+ * only the instances a unit of work actually used are started, stopped and disposed, and they are stopped and
+ * disposed in the reverse of the order they were made in, whatever the order they were registered in.</p>
+ *
  * @author Paul Hammant
  */
 @SuppressWarnings("serial")
 public class Storing extends AbstractBehavior {
 
     @SuppressWarnings("rawtypes")
-	private StoreThreadLocal mapThreadLocalObjectReference = new StoreThreadLocal();
+	private ScopeContext storeContext;
+
+    private final Set<Object> deepCheckedKeys = Collections.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+
+    /**
+     * The behaviors that have registered keys, so that a store can be read before its dictionary was ever written.
+     */
+    private static final Map<Storing, Boolean> KEY_OWNERS = Collections.synchronizedMap(new WeakHashMap<Storing, Boolean>());
+
+    private final List<Object> dictionaryKeys = new CopyOnWriteArrayList<Object>();
+
+    private transient volatile KeyDictionary dictionary;
+
+    private LifecycleState lazyScope;
+
+    /**
+     * The adapters made since {@link #startedOnFirstUse(LifecycleState)}, which stop and dispose each other in
+     * the reverse of the order their instances were made in.
+     */
+    private final List<Stored<?>> lazilyStored = new CopyOnWriteArrayList<Stored<?>>();
+
+    /**
+     * Stores per thread.
+     */
+    public Storing() {
+        this(new StoreThreadLocal<Object>());
+    }
+
+    /**
+     * @param storeContext how the store of the current unit of work is found, for example a {@link StoreScope}
+     * for work that carries its scope from thread to thread.
+     */
+    public Storing(final ScopeContext<Map<Object, Object>> storeContext) {
+        this.storeContext = storeContext;
+    }
     
 	@Override
 	public void dispose() {
 		try {
 			super.dispose();
 		} finally {
-			if (mapThreadLocalObjectReference != null) {
-				mapThreadLocalObjectReference.remove();
-
+			if (storeContext != null && (!(storeContext instanceof ExplicitScopeContext) || ExplicitScopeContext.Scope.current() != null)) {
+				storeContext.remove();
 			}
 		}
 	}
 
-	protected <T> StoreThreadLocal<T> getThreadLocalStore() {
+    /**
+     * Starts stored instances as they are made, if the scope is started at the time, rather than leaving that to
+     * the start of the container.  Adapters made before this is called are not affected.
+     * @param scopeState the lifecycle state of the scope, as set on its container.
+     * @return this behavior.
+     */
+    public Storing startedOnFirstUse(final LifecycleState scopeState) {
+        this.lazyScope = scopeState;
+        return this;
+    }
+
+	@SuppressWarnings("unchecked")
+	protected <T> ScopeContext<Map<Object, T>> getStoreContext() {
 	
-		return mapThreadLocalObjectReference;
+		return storeContext;
+	}
+
+	/**
+	 * @deprecated the store need not be kept in a thread local any more, use {@link #getStoreContext()}.
+	 * @throws IllegalStateException if the store is kept in another kind of {@link ScopeContext}.
+	 */
+	@Deprecated
+	protected <T> StoreThreadLocal<T> getThreadLocalStore() {
+		ScopeContext<Map<Object, T>> context = getStoreContext();
+		if (!(context instanceof StoreThreadLocal)) {
+			throw new IllegalStateException("The store is kept in a " + context.getClass().getName()
+					+ " rather than a thread local, use getStoreContext()");
+		}
+		return (StoreThreadLocal<T>) context;
 	}
 	
     @Override
@@ -64,9 +159,13 @@ public class Storing extends AbstractBehavior {
             return super.createComponentAdapter(monitor, lifecycle, componentProps, key, impl, constructorParams, fieldParams, methodParams);
         }
         removePropertiesIfPresent(componentProps, Characteristics.CACHE);
-        ThreadLocalMapObjectReference threadLocalMapObjectReference = new ThreadLocalMapObjectReference(getThreadLocalStore(), key);
+        if (removePropertiesIfPresent(componentProps, Characteristics.DEEP_DIRTY_CHECK)) {
+            deepCheckedKeys.add(key);
+        }
+        addDictionaryKey(key);
+        ScopedMapObjectReference threadLocalMapObjectReference = new ScopedMapObjectReference(getStoreContext(), key);
 
-        return monitor.changedBehavior(new Stored<T>(
+        return monitor.changedBehavior(stored(
                 super.createComponentAdapter(monitor, lifecycle, componentProps, key, impl, constructorParams, fieldParams, methodParams), threadLocalMapObjectReference));
 
     }
@@ -78,35 +177,135 @@ public class Storing extends AbstractBehavior {
             return super.addComponentAdapter(monitor, lifecycle, componentProps, adapter);
         }
         removePropertiesIfPresent(componentProps, Characteristics.CACHE);
+        if (removePropertiesIfPresent(componentProps, Characteristics.DEEP_DIRTY_CHECK)) {
+            deepCheckedKeys.add(adapter.getComponentKey());
+        }
+        addDictionaryKey(adapter.getComponentKey());
+
+        return monitor.changedBehavior(stored(super.addComponentAdapter(monitor, lifecycle, componentProps, adapter),
+                          new ScopedMapObjectReference(getStoreContext(), adapter.getComponentKey())));
+    }
 
-        return monitor.changedBehavior(new Stored<T>(super.addComponentAdapter(monitor, lifecycle, componentProps, adapter),
-                          new ThreadLocalMapObjectReference(getThreadLocalStore(), adapter.getComponentKey())));
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private <T> Stored<T> stored(final ComponentAdapter<T> delegate, final ObjectReference reference) {
+        if (lazyScope == null) {
+            return new Stored<T>(delegate, reference);
+        }
+        Stored<T> stored = new Stored<T>(delegate, reference, lazyScope, lazilyStored);
+        lazilyStored.add(stored);
+        return stored;
     }
 
     public StoreWrapper getCacheForThread() {
         StoreWrapper wrappedMap = new StoreWrapper();
-        wrappedMap.wrapped = (Map)getThreadLocalStore().get();
+        wrappedMap.wrapped = (Map)getStoreContext().get();
+        wrappedMap.owner = this;
         return wrappedMap;
     }
 
+    /**
+     * Puts a store on this thread and starts tracking changes to it from here on, unless it is a store
+     * opened by {@link #openCacheForThread()}.
+     */
     public void putCacheForThread(final StoreWrapper wrappedMap) {
-    	getThreadLocalStore().set(wrappedMap.wrapped);
+        if (wrappedMap.wrapped instanceof UntrackedStore) {
+            // a unit of work moving between threads, its store is not tracked
+            getStoreContext().set(wrappedMap.wrapped);
+            return;
+        }
+        if (!(wrappedMap.wrapped instanceof TrackedStore)) {
+            // stores made before tracking existed, or by getCacheForThread()
+            wrappedMap.wrapped = new TrackedStore(wrappedMap.wrapped == null ? Collections.emptyMap() : wrappedMap.wrapped);
+        }
+        ((TrackedStore) wrappedMap.wrapped).track(deepCheckedKeys);
+        wrappedMap.owner = this;
+    	getStoreContext().set(wrappedMap.wrapped);
+    }
+
+    /**
+     * Puts back a store taken from this thread by {@link #getCacheForThread()}, as it was.  Unlike
+     * {@link #putCacheForThread(StoreWrapper)} it does not start tracking the store, nor make an invalidated
+     * store into one that can be stored into.
+     */
+    public void restoreCacheForThread(final StoreWrapper wrappedMap) {
+        getStoreContext().set(wrappedMap.wrapped == null ? Collections.emptyMap() : wrappedMap.wrapped);
+    }
+
+    /**
+     * Whether the store of this thread has changed since it was put on the thread.  A store that
+     * does not track changes is always considered dirty.
+     */
+    public boolean isCacheDirtyForThread() {
+        Object map = getStoreContext().get();
+        return !(map instanceof TrackedStore) || ((TrackedStore) map).isDirty();
+    }
+
+    /**
+     * Flags the store of this thread as changed, for changes that cannot otherwise be seen, like
+     * a field of a stored instance being set.
+     */
+    public void markCacheDirtyForThread() {
+        Object map = getStoreContext().get();
+        if (map instanceof TrackedStore) {
+            ((TrackedStore) map).dirty = true;
+        }
     }
 
     public StoreWrapper resetCacheForThread() {
-        Map map = new HashMap();
-        getThreadLocalStore().set(map);
+        Map map = new TrackedStore();
+        getStoreContext().set(map);
         StoreWrapper storeWrapper = new StoreWrapper();
         storeWrapper.wrapped = map;
+        storeWrapper.owner = this;
         return storeWrapper;
     }
 
     public void invalidateCacheForThread() {
-    	getThreadLocalStore().set(Collections.emptyMap());
+    	getStoreContext().set(Collections.emptyMap());
+    }
+
+    /**
+     * Opens a new, empty store for this thread, like {@link #resetCacheForThread()}, but one that does not
+     * track its changes, for units of work whose store is never written back, such as a request.
+     */
+    public void openCacheForThread() {
+        getStoreContext().set(new UntrackedStore());
+    }
+
+    private void addDictionaryKey(final Object key) {
+        if (key instanceof Class || key instanceof String) {
+            dictionaryKeys.add(key);
+            KEY_OWNERS.put(this, Boolean.TRUE);
+        }
+    }
+
+    private static KeyDictionary findDictionary(final long id) {
+        KeyDictionary dict = KeyDictionary.forId(id);
+        if (dict == null) {
+            synchronized (KEY_OWNERS) {
+                for (Storing storing : KEY_OWNERS.keySet()) {
+                    storing.getDictionary();
+                }
+            }
+            dict = KeyDictionary.forId(id);
+        }
+        return dict;
+    }
+
+    /**
+     * The dictionary of the keys registered so far, which is replaced as more keys are registered.
+     */
+    private KeyDictionary getDictionary() {
+        KeyDictionary dict = dictionary;
+        if (dict == null || dict.keys.size() != dictionaryKeys.size()) {
+            dict = KeyDictionary.register(new ArrayList<Object>(dictionaryKeys));
+            dictionary = dict;
+        }
+        return dict;
     }
 
     public int getCacheSize() {
-        return ((Map)getThreadLocalStore().get()).size();
+        return ((Map)getStoreContext().get()).size();
     }
     
     private void writeObject(final java.io.ObjectOutputStream stream)
@@ -118,10 +317,25 @@ public class Storing extends AbstractBehavior {
             throws IOException, ClassNotFoundException {
 
     	stream.defaultReadObject();
-    	mapThreadLocalObjectReference = new StoreThreadLocal();;
+    	if (storeContext == null) {
+    		storeContext = new StoreThreadLocal();
+    	}
+    	if (!dictionaryKeys.isEmpty()) {
+    		KEY_OWNERS.put(this, Boolean.TRUE);
+    	}
     }    
 
-    public static class StoreThreadLocal<T> extends ThreadLocal<Map<Object, T>> implements Serializable {
+    public static class StoreThreadLocal<T> extends ThreadLocalScopeContext<Map<Object, T>> {
+        @Override
+		protected Map<Object, T> initialValue() {
+            return new HashMap<Object, T>();
+        }
+    }
+
+    /**
+     * Keeps the store in the {@link ExplicitScopeContext.Scope} being run rather than in a thread local.
+     */
+    public static class StoreScope<T> extends ExplicitScopeContext<Map<Object, T>> {
         @Override
 		protected Map<Object, T> initialValue() {
             return new HashMap<Object, T>();
@@ -131,18 +345,319 @@ public class Storing extends AbstractBehavior {
     
     
 
+    /**
+     * A store that notes its own modification, and optionally that of the serialized form of some entries.
+     */
+    private static final class TrackedStore extends HashMap<Object, Object> {
+        private transient boolean dirty;
+        private transient Map<Object, byte[]> fingerprints;
+
+        private TrackedStore() {
+        }
+
+        private TrackedStore(final Map<?, ?> map) {
+            super(map);
+        }
+
+        private void track(final Set<Object> deepCheckedKeys) {
+            dirty = false;
+            fingerprints = null;
+            for (Object key : deepCheckedKeys) {
+                Object value = get(key);
+                if (value != null) {
+                    if (fingerprints == null) {
+                        fingerprints = new HashMap<Object, byte[]>();
+                    }
+                    fingerprints.put(key, fingerprint(value));
+                }
+            }
+        }
+
+        private boolean isDirty() {
+            if (!dirty && fingerprints != null) {
+                for (Map.Entry<Object, byte[]> entry : fingerprints.entrySet()) {
+                    Object value = get(entry.getKey());
+                    byte[] before = entry.getValue();
+                    if (value == null || before == null || !Arrays.equals(before, fingerprint(value))) {
+                        return true;
+                    }
+                }
+            }
+            return dirty;
+        }
+
+        /**
+         * @return the serialized form, or null if the value can't be serialized, which never compares as unchanged.
+         */
+        private static byte[] fingerprint(final Object value) {
+            try {
+                ByteArrayOutputStream baos = new ByteArrayOutputStream();
+                ObjectOutputStream oos = new ObjectOutputStream(baos);
+                oos.writeObject(value);
+                oos.close();
+                return baos.toByteArray();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public Object put(final Object key, final Object value) {
+            dirty = true;
+            return super.put(key, value);
+        }
+
+        @Override
+        public Object remove(final Object key) {
+            dirty = true;
+            return super.remove(key);
+        }
+
+        @Override
+        public void clear() {
+            dirty = true;
+            super.clear();
+        }
+    }
+
+    /**
+     * A store opened by {@link Storing#openCacheForThread()}, which does not record its changes.
+     */
+    private static final class UntrackedStore extends HashMap<Object, Object> {
+    }
+
+    /**
+     * Numbers component keys, so that serialized stores refer to them by index.  Dictionaries are registered
+     * under an id derived from their keys, so a store can be read back wherever the same components are
+     * registered, including by another node of a cluster.  Only class and string keys are numbered, as only
+     * their descriptions are the same in every JVM.  The registry holds dictionaries weakly: they are kept by
+     * the behaviors and stores that use them, so the dictionaries of undeployed webapps, and those replaced as
+     * more keys were registered, are not kept.
+     */
+    private static final class KeyDictionary {
+        private static final Map<Long, WeakReference<KeyDictionary>> REGISTERED = new HashMap<Long, WeakReference<KeyDictionary>>();
+
+        private final long id;
+        private final List<Object> keys;
+        private final Map<Object, Integer> indexes = new HashMap<Object, Integer>();
+
+        private KeyDictionary(final long id, final List<Object> keys) {
+            this.id = id;
+            this.keys = keys;
+            for (int i = 0; i < keys.size(); i++) {
+                indexes.put(keys.get(i), i);
+            }
+        }
+
+        private static KeyDictionary register(final List<Object> keys) {
+            // FNV-1a over a description of each key that is the same in every JVM
+            long id = 0xcbf29ce484222325L;
+            for (Object key : keys) {
+                String descriptor = key instanceof Class ? ((Class<?>) key).getName() : key.getClass().getName() + ":" + key;
+                for (int i = 0; i < descriptor.length(); i++) {
+                    id = (id ^ descriptor.charAt(i)) * 0x100000001b3L;
+                }
+                id = (id ^ ';') * 0x100000001b3L;
+            }
+            synchronized (REGISTERED) {
+                KeyDictionary registered = forId(id);
+                if (registered != null) {
+                    return registered;
+                }
+                for (Iterator<WeakReference<KeyDictionary>> it = REGISTERED.values().iterator(); it.hasNext();) {
+                    if (it.next().get() == null) {
+                        it.remove();
+                    }
+                }
+                KeyDictionary dict = new KeyDictionary(id, keys);
+                REGISTERED.put(id, new WeakReference<KeyDictionary>(dict));
+                return dict;
+            }
+        }
+
+        private static KeyDictionary forId(final long id) {
+            synchronized (REGISTERED) {
+                WeakReference<KeyDictionary> ref = REGISTERED.get(id);
+                return ref == null ? null : ref.get();
+            }
+        }
+
+        private int indexOf(final Object key) {
+            Integer index = indexes.get(key);
+            return index == null ? -1 : index;
+        }
+    }
+
+    /**
+     * Holds a store so that it can be moved between threads, or kept in a session.  It is written in a
+     * compact, versioned format, see {@link #writeTo(ObjectOutput)}, rather than by default serialization.
+     * Stores written by default serialization, before the compact format, are still read.
+     */
     public static class StoreWrapper implements Serializable {
+
+        /**
+         * The id computed for the default serialized form, so that stores in that form can still be read.
+         */
+        private static final long serialVersionUID = 4560079470500478967L;
+
+        private static final int FORMAT_VERSION = 1;
+
+        private static final int INSTANCE = 1;
+        private static final int STARTED = 2;
+        private static final int DISPOSED = 4;
+
         private Map wrapped;
+        private transient Storing owner;
+        private transient KeyDictionary dictionary;
+
+        /**
+         * @return a read-only view of the store.
+         */
+        public Map<Object, Object> asMap() {
+            return wrapped == null ? Collections.emptyMap() : Collections.unmodifiableMap(wrapped);
+        }
+
+        /**
+         * @return a wrapper of a shallow copy of the store, that can be put on another thread without
+         * sharing the change tracking of this one.  The stored instances, and whether they were started
+         * or disposed, are shared with this store.
+         */
+        public StoreWrapper copy() {
+            StoreWrapper copy = new StoreWrapper();
+            copy.wrapped = new HashMap<Object, Object>(asMap());
+            copy.owner = owner;
+            copy.dictionary = dictionary;
+            return copy;
+        }
+
+        /**
+         * Writes the store in the compact format.
+         */
+        public void writeTo(final ObjectOutput out) throws IOException {
+            KeyDictionary dict = owner != null ? owner.getDictionary() : dictionary;
+            Map<Object, Object> map = asMap();
+            out.writeByte(FORMAT_VERSION);
+            out.writeLong(dict == null ? 0 : dict.id);
+            out.writeInt(map.size());
+            for (Map.Entry<Object, Object> entry : map.entrySet()) {
+                int index = dict == null ? -1 : dict.indexOf(entry.getKey());
+                out.writeInt(index);
+                if (index == -1) {
+                    out.writeObject(entry.getKey());
+                }
+                Object value = entry.getValue();
+                if (value instanceof Stored.Instance) {
+                    Stored.Instance<?> inst = (Stored.Instance<?>) value;
+                    out.writeByte(INSTANCE | (inst.started ? STARTED : 0) | (inst.disposed ? DISPOSED : 0));
+                    out.writeObject(inst.instance);
+                } else {
+                    out.writeByte(0);
+                    out.writeObject(value);
+                }
+            }
+        }
+
+        /**
+         * Reads a store written by {@link #writeTo(ObjectOutput)} into this wrapper.
+         */
+        @SuppressWarnings("unchecked")
+        public void readFrom(final ObjectInput in) throws IOException, ClassNotFoundException {
+            int version = in.readUnsignedByte();
+            if (version > FORMAT_VERSION) {
+                throw new InvalidObjectException("store written in format " + version + ", only " + FORMAT_VERSION + " and earlier can be read");
+            }
+            long id = in.readLong();
+            dictionary = findDictionary(id);
+            int size = in.readInt();
+            TrackedStore map = new TrackedStore();
+            for (int i = 0; i < size; i++) {
+                int index = in.readInt();
+                Object key;
+                if (index == -1) {
+                    key = in.readObject();
+                } else if (dictionary == null || index >= dictionary.keys.size()) {
+                    throw new InvalidObjectException("store refers to component keys that are not registered here");
+                } else {
+                    key = dictionary.keys.get(index);
+                }
+                int flags = in.readUnsignedByte();
+                Object value;
+                if ((flags & INSTANCE) != 0) {
+                    Stored.Instance<Object> inst = new Stored.Instance<Object>();
+                    inst.started = (flags & STARTED) != 0;
+                    inst.disposed = (flags & DISPOSED) != 0;
+                    inst.instance = in.readObject();
+                    value = inst;
+                } else {
+                    value = in.readObject();
+                }
+                map.put(key, value);
+            }
+            wrapped = map;
+        }
+
+        private Object writeReplace() {
+            return new CompactForm(this);
+        }
+
+        /**
+         * What a {@link StoreWrapper} is serialized as.
+         */
+        private static final class CompactForm implements Externalizable {
+            private StoreWrapper store;
+
+            public CompactForm() {
+            }
+
+            private CompactForm(final StoreWrapper store) {
+                this.store = store;
+            }
+
+            public void writeExternal(final ObjectOutput out) throws IOException {
+                store.writeTo(out);
+            }
+
+            public void readExternal(final ObjectInput in) throws IOException, ClassNotFoundException {
+                store = new StoreWrapper();
+                store.readFrom(in);
+            }
+
+            private Object readResolve() {
+                return store;
+            }
+        }
     }
 
     public static class Stored<T> extends AbstractChangedBehavior<T> {
 
+        private static final AtomicLong MADE = new AtomicLong();
+
         private final ObjectReference<Instance<T>> instanceReference;
         private final ComponentLifecycle lifecycleDelegate;
+        private final LifecycleState lazyScope;
+        private final List<Stored<?>> lazySiblings;
 
         public Stored(final ComponentAdapter<T> delegate, final ObjectReference<Instance<T>> reference) {
+            this(delegate, reference, null);
+        }
+
+        /**
+         * @param lazyScope if not null, an instance made while this state is started is started straight away.
+         */
+        public Stored(final ComponentAdapter<T> delegate, final ObjectReference<Instance<T>> reference, final LifecycleState lazyScope) {
+            this(delegate, reference, lazyScope, null);
+        }
+
+        /**
+         * @param lazySiblings the adapters, this one among them, whose instances are stopped and disposed in the
+         * reverse of the order they were made in, or null to leave the order to the container.
+         */
+        Stored(final ComponentAdapter<T> delegate, final ObjectReference<Instance<T>> reference, final LifecycleState lazyScope,
+               final List<Stored<?>> lazySiblings) {
             super(delegate);
             instanceReference = reference;
+            this.lazyScope = lazyScope;
+            this.lazySiblings = lazySiblings;
             this.lifecycleDelegate = hasLifecycle(delegate)
                     ? new RealComponentLifecycle<T>() : new NoComponentLifecycle<T>();
         }
@@ -202,11 +717,27 @@ public class Storing extends AbstractBehavior {
             T instance = instanceReference.get().instance;
             if (instance == null) {
                 instance = super.getComponentInstance(container, into);
-                instanceReference.get().instance = instance;
+                Instance<T> inst = instanceReference.get();
+                inst.instance = instance;
+                if (lazySiblings != null) {
+                    inst.made = MADE.incrementAndGet();
+                }
+                if (lazyScope != null && lifecycleDelegate.componentHasLifecycle() && !inst.started && lazyScope.isStarted()) {
+                    start(instance);
+                    inst.started = true;
+                }
+                restoreInstance();
             }
             return instance;
         }
 
+        /**
+         * Sets the changed holder of the instance again, which is how the store learns of the change.
+         */
+        private void restoreInstance() {
+            instanceReference.set(instanceReference.get());
+        }
+
         public String getDescriptor() {
             return "Stored" + getLifecycleDescriptor();
         }
@@ -247,6 +778,7 @@ public class Storing extends AbstractBehavior {
                 // Lazily make the component if applicable
                 Stored.this.start(getComponentInstance(container, NOTHING.class));
                 instanceReference.get().started = true;
+                restoreInstance();
             }
 
             public void stop(final PicoContainer container) {
@@ -254,8 +786,14 @@ public class Storing extends AbstractBehavior {
                 guardAlreadyDisposed();
                 guardNotInstantiated();
                 guardStartState(false, "not started");
+                for (Stored<?> later : madeLater()) {
+                    if (later.isStarted()) {
+                        later.stop(container);
+                    }
+                }
                 Stored.this.stop(instanceReference.get().instance);
                 instanceReference.get().started = false;
+                restoreInstance();
 
             }
 
@@ -263,9 +801,17 @@ public class Storing extends AbstractBehavior {
                 guardInstRef();
                 Instance<?> instance = instanceReference.get();
                 if (instance.instance != null) {
+                    if (lazySiblings != null && instance.disposed) {
+                        // disposed already, before an instance made earlier
+                        return;
+                    }
                     guardAlreadyDisposed();
+                    for (Stored<?> later : madeLater()) {
+                        later.dispose(container);
+                    }
                     Stored.this.dispose(instance.instance);
                     instance.disposed = true;
+                    restoreInstance();
                 }
             }
 
@@ -317,15 +863,51 @@ public class Storing extends AbstractBehavior {
             }
         }
 
+        /**
+         * @return the sibling adapters whose instances in this unit of work were made after this one's and are
+         * not disposed yet, the last made first.
+         */
+        private List<Stored<?>> madeLater() {
+            if (lazySiblings == null) {
+                return Collections.emptyList();
+            }
+            final long made = instanceReference.get().made;
+            List<Stored<?>> later = new ArrayList<Stored<?>>();
+            for (Stored<?> sibling : lazySiblings) {
+                Instance<?> inst = sibling.instanceReference.get();
+                if (inst != null && inst.instance != null && !inst.disposed && inst.made > made) {
+                    later.add(sibling);
+                }
+            }
+            Collections.sort(later, new Comparator<Stored<?>>() {
+                public int compare(final Stored<?> one, final Stored<?> other) {
+                    long oneMade = one.instanceReference.get().made;
+                    long otherMade = other.instanceReference.get().made;
+                    return oneMade > otherMade ? -1 : oneMade == otherMade ? 0 : 1;
+                }
+            });
+            return later;
+        }
+
         private static boolean hasLifecycle(final ComponentAdapter delegate) {
             return delegate instanceof LifecycleStrategy
                     && ((LifecycleStrategy) delegate).hasLifecycle(delegate.getComponentImplementation());
         }
 
         public static class Instance<T> implements Serializable {
+            /**
+             * The value computed for this class before it was declared, so that stores in sessions written
+             * back then can still be read.
+             */
+            private static final long serialVersionUID = -446395070717560880L;
+
             private T instance;
             protected boolean started;
             protected boolean disposed;
+            /**
+             * When the instance was made, relative to the others made on first use.
+             */
+            private long made;
         }
 
     }
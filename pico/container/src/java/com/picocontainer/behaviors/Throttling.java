@@ -0,0 +1,206 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ * Original code by                                                          *
+ *****************************************************************************/
+package com.picocontainer.behaviors;
+
+import java.lang.reflect.Method;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.picocontainer.Characteristics;
+import com.picocontainer.ComponentAdapter;
+import com.picocontainer.ComponentMonitor;
+import com.picocontainer.LifecycleStrategy;
+import com.picocontainer.PicoContainer;
+import com.picocontainer.PicoException;
+import com.picocontainer.parameters.ConstructorParameters;
+import com.picocontainer.parameters.FieldParameters;
+import com.picocontainer.parameters.MethodParameters;
+
+/**
+ * This behavior factory limits the number of threads that may be calling methods on a component at the same time
+ * (a bulkhead).  Unlike {@link com.picocontainer.behaviors.Locking} it is not about mutual exclusion, it protects
+ * the rest of the application from piling all its threads into one slow component.
+ * <p/>
+ * Calls beyond the concurrency limit wait in a bounded queue for up to the given timeout.  If the queue is full,
+ * or the timeout expires, the call is rejected with a {@link ThrottledException} which is also reported to
+ * {@link ComponentMonitor#invocationFailed(java.lang.reflect.Member, Object, Exception)}.
+ * <p/>
+ * Like {@link ImplementationHiding} a proxy is used, so the component key has to be an interface (or an array of them).
+ */
+@SuppressWarnings("serial")
+public class Throttling extends AbstractBehavior {
+
+    public static final int DEFAULT_MAX_CONCURRENT_CALLS = 10;
+    public static final int DEFAULT_MAX_WAITING_CALLS = 10;
+    public static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+
+    private final int maxConcurrentCalls;
+    private final int maxWaitingCalls;
+    private final long timeoutMillis;
+
+    public Throttling() {
+        this(DEFAULT_MAX_CONCURRENT_CALLS, DEFAULT_MAX_WAITING_CALLS, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * @param maxConcurrentCalls the number of calls allowed in the component at once.
+     * @param maxWaitingCalls the number of calls allowed to wait for a permit, zero rejects immediately.
+     * @param timeoutMillis how long a waiting call waits for a permit before it is rejected.
+     */
+    public Throttling(final int maxConcurrentCalls, final int maxWaitingCalls, final long timeoutMillis) {
+        if (maxConcurrentCalls < 1) {
+            throw new IllegalArgumentException("maxConcurrentCalls must be at least one");
+        }
+        if (maxWaitingCalls < 0 || timeoutMillis < 0) {
+            throw new IllegalArgumentException("maxWaitingCalls and timeoutMillis must not be negative");
+        }
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxWaitingCalls = maxWaitingCalls;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+	public <T> ComponentAdapter<T> createComponentAdapter(final ComponentMonitor monitor, final LifecycleStrategy lifecycle,
+                                                   final Properties componentProps, final Object key, final Class<T> impl, final ConstructorParameters constructorParams, final FieldParameters[] fieldParams, final MethodParameters[] methodParams) {
+
+        if (removePropertiesIfPresent(componentProps, Characteristics.NO_THROTTLE)) {
+            return super.createComponentAdapter(monitor, lifecycle, componentProps, key, impl, constructorParams, fieldParams, methodParams);
+        }
+
+        removePropertiesIfPresent(componentProps, Characteristics.THROTTLE);
+        return monitor.changedBehavior(new Throttled<T>(super.createComponentAdapter(monitor, lifecycle, componentProps, key, impl, constructorParams, fieldParams, methodParams),
+                maxConcurrentCalls, maxWaitingCalls, timeoutMillis));
+    }
+
+    /** {@inheritDoc} **/
+    @Override
+	public <T> ComponentAdapter<T> addComponentAdapter(final ComponentMonitor monitor, final LifecycleStrategy lifecycle,
+                                                final Properties componentProps, final ComponentAdapter<T> adapter) {
+        if (removePropertiesIfPresent(componentProps, Characteristics.NO_THROTTLE)) {
+            return super.addComponentAdapter(monitor, lifecycle, componentProps, adapter);
+        }
+
+        removePropertiesIfPresent(componentProps, Characteristics.THROTTLE);
+        return monitor.changedBehavior(new Throttled<T>(super.addComponentAdapter(monitor, lifecycle, componentProps, adapter),
+                maxConcurrentCalls, maxWaitingCalls, timeoutMillis));
+    }
+
+    /**
+     * Component adapter that guards each method call on the component with a semaphore.
+     * The counters are available from the adapter, and monitors receive the adapter in
+     * {@link ComponentMonitor#invoking} and {@link ComponentMonitor#invoked}.
+     */
+    @SuppressWarnings("serial")
+    public static class Throttled<T> extends ImplementationHiding.HiddenImplementation<T> {
+
+        private final Semaphore permits;
+        private final int maxConcurrentCalls;
+        private final int maxWaitingCalls;
+        private final long timeoutMillis;
+
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong timedOut = new AtomicLong();
+
+        public Throttled(final ComponentAdapter<T> delegate, final int maxConcurrentCalls, final int maxWaitingCalls, final long timeoutMillis) {
+            super(delegate);
+            this.permits = new Semaphore(maxConcurrentCalls, true);
+            this.maxConcurrentCalls = maxConcurrentCalls;
+            this.maxWaitingCalls = maxWaitingCalls;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        protected Object invokeMethod(final Object componentInstance, final Method method, final Object[] args, final PicoContainer container) throws Throwable {
+            if (!permits.tryAcquire()) {
+                acquireOrReject(componentInstance, method);
+            }
+            try {
+                return super.invokeMethod(componentInstance, method, args, container);
+            } finally {
+                permits.release();
+                completed.incrementAndGet();
+            }
+        }
+
+        private void acquireOrReject(final Object componentInstance, final Method method) {
+            if (waiting.incrementAndGet() > maxWaitingCalls) {
+                waiting.decrementAndGet();
+                rejected.incrementAndGet();
+                throw reject(componentInstance, method, "wait queue is full");
+            }
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            } finally {
+                waiting.decrementAndGet();
+            }
+            if (!acquired) {
+                timedOut.incrementAndGet();
+                throw reject(componentInstance, method, "no permit within " + timeoutMillis + "ms");
+            }
+        }
+
+        private ThrottledException reject(final Object componentInstance, final Method method, final String reason) {
+            ThrottledException e = new ThrottledException(getComponentKey() + "." + method.getName() + "() throttled, " + reason
+                    + " (active=" + getActiveCalls() + ", waiting=" + getWaitingCalls()
+                    + ", rejected=" + getRejectedCalls() + ", timedOut=" + getTimedOutCalls() + ")");
+            currentMonitor().invocationFailed(method, componentInstance, e);
+            return e;
+        }
+
+        public int getActiveCalls() {
+            return getMaxConcurrentCalls() - permits.availablePermits();
+        }
+
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public int getWaitingCalls() {
+            return waiting.get();
+        }
+
+        public long getCompletedCalls() {
+            return completed.get();
+        }
+
+        public long getRejectedCalls() {
+            return rejected.get();
+        }
+
+        public long getTimedOutCalls() {
+            return timedOut.get();
+        }
+
+        @Override
+		public String getDescriptor() {
+            return "Throttled";
+        }
+    }
+
+    /**
+     * Thrown when a call could not get into a throttled component.
+     */
+    @SuppressWarnings("serial")
+    public static class ThrottledException extends PicoException {
+        public ThrottledException(final String message) {
+            super(message);
+        }
+    }
+}
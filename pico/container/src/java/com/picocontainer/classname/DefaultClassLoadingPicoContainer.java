@@ -34,6 +34,7 @@ import javax.inject.Provider;
 
 
 import com.googlecode.jtype.Generic;
+import com.picocontainer.BatchRegistering;
 import com.picocontainer.ComponentAdapter;
 import com.picocontainer.ComponentFactory;
 import com.picocontainer.ComponentMonitor;
@@ -49,6 +50,7 @@ import com.picocontainer.PicoCompositionException;
 import com.picocontainer.PicoContainer;
 import com.picocontainer.PicoException;
 import com.picocontainer.PicoVisitor;
+import com.picocontainer.Registrations;
 import com.picocontainer.behaviors.Caching;
 import com.picocontainer.containers.AbstractDelegatingMutablePicoContainer;
 import com.picocontainer.lifecycle.LifecycleState;
@@ -66,7 +68,7 @@ import com.picocontainer.security.CustomPermissionsURLClassLoader;
  */
 @SuppressWarnings("serial")
 public class DefaultClassLoadingPicoContainer extends AbstractDelegatingMutablePicoContainer implements
-        ClassLoadingPicoContainer, ComponentMonitorStrategy {
+        ClassLoadingPicoContainer, BatchRegistering, ComponentMonitorStrategy {
 
     /**
      * Converting Map to allow for primitives to be boxed to Object types.
@@ -336,6 +338,21 @@ public class DefaultClassLoadingPicoContainer extends AbstractDelegatingMutableP
         return this;
     }
 
+	public MutablePicoContainer addComponents(final Registrations registrations) {
+        classNamesToClasses(registrations).addTo(getDelegate());
+        return this;
+    }
+
+    private Registrations classNamesToClasses(final Registrations registrations) {
+        Registrations loaded = new Registrations().createdWith(registrations.getExecutor());
+        for (Registrations.Registration registration : registrations.getRegistrations()) {
+            loaded.add(new Registrations.Registration(classNameToClassIfApplicable(registration.getKey()),
+                    classNameToClassIfApplicable(registration.getImplOrInstance()),
+                    registration.getConstructorParams(), registration.getFieldParams(), registration.getMethodParams()));
+        }
+        return loaded;
+    }
+
     private Object classNameToClassIfApplicable(Object key) {
         if (key instanceof ClassName) {
             key = loadClass((ClassName) key);
@@ -433,7 +450,7 @@ public class DefaultClassLoadingPicoContainer extends AbstractDelegatingMutableP
         return new AsPropertiesPicoContainer(properties);
     }
 
-    private class AsPropertiesPicoContainer implements ClassLoadingPicoContainer {
+    private class AsPropertiesPicoContainer implements ClassLoadingPicoContainer, BatchRegistering {
         private final MutablePicoContainer delegate;
 
         public AsPropertiesPicoContainer(final Properties... props) {
@@ -478,6 +495,11 @@ public class DefaultClassLoadingPicoContainer extends AbstractDelegatingMutableP
             return DefaultClassLoadingPicoContainer.this;
         }
 
+        public MutablePicoContainer addComponents(final Registrations registrations) {
+            classNamesToClasses(registrations).addTo(delegate);
+            return DefaultClassLoadingPicoContainer.this;
+        }
+
         public MutablePicoContainer addConfig(final String name, final Object val) {
             delegate.addConfig(name, val);
             return DefaultClassLoadingPicoContainer.this;
@@ -18,6 +18,7 @@ import java.util.List;
 
 
 import com.googlecode.jtype.Generic;
+import com.picocontainer.ChangeCounting;
 import com.picocontainer.ComponentAdapter;
 import com.picocontainer.Converters;
 import com.picocontainer.Converting;
@@ -34,7 +35,7 @@ import com.picocontainer.converters.ConvertsNothing;
  * @author Konstantin Pribluda
  */
 @SuppressWarnings("serial")
-public class EmptyPicoContainer implements PicoContainer, Converting, Serializable {
+public class EmptyPicoContainer implements PicoContainer, Converting, ChangeCounting, Serializable {
 
     public Object getComponent(final Object keyOrType) {
         return null;
@@ -137,4 +138,11 @@ public class EmptyPicoContainer implements PicoContainer, Converting, Serializab
         return new ConvertsNothing();
     }
 
+    /**
+     * Nothing is ever added or removed.
+     */
+    public long getChangeCount() {
+        return 0;
+    }
+
 }
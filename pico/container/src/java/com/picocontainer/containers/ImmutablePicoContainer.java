@@ -19,6 +19,7 @@ import java.util.List;
 import com.googlecode.jtype.Generic;
 import com.picocontainer.ComponentAdapter;
 import com.picocontainer.Converters;
+import com.picocontainer.ChangeCounting;
 import com.picocontainer.Converting;
 import com.picocontainer.NameBinding;
 import com.picocontainer.PicoContainer;
@@ -32,7 +33,7 @@ import com.picocontainer.converters.ConvertsNothing;
  * @author Konstantin Pribluda
  */
 @SuppressWarnings("serial")
-public final class ImmutablePicoContainer implements PicoContainer, Converting, Serializable {
+public final class ImmutablePicoContainer implements PicoContainer, Converting, ChangeCounting, Serializable {
 
     private final PicoContainer delegate;
 
@@ -156,4 +157,11 @@ public final class ImmutablePicoContainer implements PicoContainer, Converting,
         }
         return new ConvertsNothing();
     }
+
+    public long getChangeCount() {
+        if (delegate instanceof ChangeCounting) {
+            return ((ChangeCounting) delegate).getChangeCount();
+        }
+        return -1;
+    }
 }
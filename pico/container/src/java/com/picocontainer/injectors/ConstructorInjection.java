@@ -427,11 +427,13 @@ public class ConstructorInjection extends AbstractInjectionType {
         @Override
         public T getComponentInstance(final PicoContainer container, final Type into) throws PicoCompositionException {
         	boolean i_Instantiated = false;
+        	// read once, another thread sharing this injector may clear the field when it is done
+        	ThreadLocalCyclicDependencyGuard<T> guard = instantiationGuard;
         	T inst;
         	try {
-	            if (instantiationGuard == null) {
+	            if (guard == null) {
 	            	i_Instantiated = true;
-	                instantiationGuard = new ThreadLocalCyclicDependencyGuard<T>() {
+	                guard = new ThreadLocalCyclicDependencyGuard<T>() {
 	                    @Override
 	                    @SuppressWarnings("synthetic-access")
 	                    public T run(final Object instance) {
@@ -467,13 +469,14 @@ public class ConstructorInjection extends AbstractInjectionType {
 	                        }
 	                    }
 	                };
+	                instantiationGuard = guard;
 	            }
-	            instantiationGuard.setGuardedContainer(container);
-	            inst = instantiationGuard.observe(getComponentImplementation(), null);
+	            guard.setGuardedContainer(container);
+	            inst = guard.observe(getComponentImplementation(), null);
 	            decorate(inst, container);
         	} finally {
 	            if (i_Instantiated) {
-	            	instantiationGuard.remove();
+	            	guard.remove();
 	            	instantiationGuard = null;
 	            }
         	}
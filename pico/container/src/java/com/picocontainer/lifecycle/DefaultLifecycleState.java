@@ -7,6 +7,8 @@
  *****************************************************************************/
 package com.picocontainer.lifecycle;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 
 import com.picocontainer.PicoCompositionException;
@@ -127,4 +129,10 @@ public class DefaultLifecycleState implements LifecycleState, Serializable {
 
 	}
 
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		// the states are compared by identity
+		state = state.intern();
+	}
+
 }
@@ -0,0 +1,392 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.monitors;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.picocontainer.ComponentAdapter;
+import com.picocontainer.ComponentMonitor;
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.PicoContainer;
+
+/**
+ * <p>
+ * A {@link ComponentMonitor monitor} that hands the notification-only events (instantiated, instantiationFailed,
+ * invoked and invocationFailed) to its delegate on a background thread, so that monitors doing I/O, like
+ * {@link WriterComponentMonitor} or the logging monitors in gems, never slow down injection.
+ * </p>
+ * <p>
+ * Events are copied into a preallocated ring buffer.  When it is full the {@link Overflow overflow policy}
+ * decides whether the event is dropped (and counted) or whether the caller waits for room.  Callbacks whose
+ * return value matters to the container (instantiating, invoking, noComponentFound, newInjector and
+ * changedBehavior) are still passed to the delegate synchronously, on the calling thread, and so is
+ * lifecycleInvocationFailed, as the lifecycle strategies rely on the delegate rethrowing the failure.  As a
+ * result a delegate may see those before the asynchronous events that preceded them.
+ * </p>
+ */
+@SuppressWarnings("serial")
+public class AsyncComponentMonitor extends AbstractComponentMonitor {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    /**
+     * What to do with an event when the ring buffer is full.
+     */
+    public static enum Overflow {
+        /** Discard the event, it is counted in {@link AsyncComponentMonitor#getDroppedEvents()}. */
+        DROP,
+        /** Wait until the dispatcher thread made room. */
+        BLOCK
+    }
+
+    private static final int INSTANTIATED = 1;
+    private static final int INSTANTIATION_FAILED = 2;
+    private static final int INVOKED = 3;
+    private static final int INVOCATION_FAILED = 4;
+
+    private final Overflow overflow;
+    private final Event[] ring;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final AtomicLong dropped = new AtomicLong();
+    private int head;
+    private int count;
+    private boolean busy;
+    private volatile boolean closed;
+    private transient Thread dispatcher;
+
+    public AsyncComponentMonitor(final ComponentMonitor delegate) {
+        this(delegate, DEFAULT_CAPACITY, Overflow.DROP);
+    }
+
+    /**
+     * @param delegate the monitor receiving the events.
+     * @param capacity the number of events that can be queued.
+     * @param overflow what to do when <code>capacity</code> events are already queued.
+     */
+    public AsyncComponentMonitor(final ComponentMonitor delegate, final int capacity, final Overflow overflow) {
+        super(delegate);
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (overflow == null) {
+            throw new NullPointerException("overflow");
+        }
+        this.overflow = overflow;
+        this.ring = new Event[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Event();
+        }
+    }
+
+    @Override
+    public <T> void instantiated(final PicoContainer container, final ComponentAdapter<T> componentAdapter,
+                             final Constructor<T> constructor,
+                             final Object instantiated,
+                             final Object[] injected,
+                             final long duration) {
+        if (closed) {
+            super.instantiated(container, componentAdapter, constructor, instantiated, injected, duration);
+            return;
+        }
+        lock.lock();
+        try {
+            Event e = claim();
+            if (e != null) {
+                e.type = INSTANTIATED;
+                e.container = container;
+                e.adapter = componentAdapter;
+                e.constructor = constructor;
+                e.instance = instantiated;
+                e.args = injected;
+                e.duration = duration;
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public <T> void instantiationFailed(final PicoContainer container,
+                                    final ComponentAdapter<T> componentAdapter,
+                                    final Constructor<T> constructor,
+                                    final Exception cause) {
+        if (closed) {
+            super.instantiationFailed(container, componentAdapter, constructor, cause);
+            return;
+        }
+        lock.lock();
+        try {
+            Event e = claim();
+            if (e != null) {
+                e.type = INSTANTIATION_FAILED;
+                e.container = container;
+                e.adapter = componentAdapter;
+                e.constructor = constructor;
+                e.cause = cause;
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void invoked(final PicoContainer container,
+                        final ComponentAdapter<?> componentAdapter,
+                        final Member member,
+                        final Object instance,
+                        final long duration, final Object retVal, final Object[] args) {
+        if (closed) {
+            super.invoked(container, componentAdapter, member, instance, duration, retVal, args);
+            return;
+        }
+        lock.lock();
+        try {
+            Event e = claim();
+            if (e != null) {
+                e.type = INVOKED;
+                e.container = container;
+                e.adapter = componentAdapter;
+                e.member = member;
+                e.instance = instance;
+                e.duration = duration;
+                e.retVal = retVal;
+                e.args = args;
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void invocationFailed(final Member member, final Object instance, final Exception cause) {
+        if (closed) {
+            super.invocationFailed(member, instance, cause);
+            return;
+        }
+        lock.lock();
+        try {
+            Event e = claim();
+            if (e != null) {
+                e.type = INVOCATION_FAILED;
+                e.member = member;
+                e.instance = instance;
+                e.cause = cause;
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Passed to the delegate synchronously, as {@link NullComponentMonitor} and others report the failure by
+     * throwing a {@link com.picocontainer.PicoLifecycleException} from here.
+     */
+    @Override
+    public void lifecycleInvocationFailed(final MutablePicoContainer container,
+                                          final ComponentAdapter<?> componentAdapter, final Method method,
+                                          final Object instance,
+                                          final RuntimeException cause) {
+        super.lifecycleInvocationFailed(container, componentAdapter, method, instance, cause);
+    }
+
+    /**
+     * @return the number of events discarded because the ring buffer was full, including those of callers
+     * that were waiting for room with {@link Overflow#BLOCK} when the monitor was closed.
+     */
+    public long getDroppedEvents() {
+        return dropped.get();
+    }
+
+    /**
+     * Waits until all events queued so far have been delivered.
+     * @param timeout the maximum time to wait.
+     * @param unit the unit of <code>timeout</code>.
+     * @return true if all events were delivered in time.
+     */
+    public boolean flush(final long timeout, final TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (count > 0 || busy) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = notFull.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the dispatcher thread once the queued events are delivered.  Events arriving afterwards are
+     * delivered synchronously.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Called with the lock held.  Returns the slot to fill, or null if the event is dropped, either because the
+     * ring is full or because the monitor got closed while waiting for room.
+     */
+    private Event claim() {
+        if (count == ring.length) {
+            if (overflow == Overflow.DROP) {
+                dropped.incrementAndGet();
+                return null;
+            }
+            while (count == ring.length && !closed) {
+                notFull.awaitUninterruptibly();
+            }
+            if (closed) {
+                dropped.incrementAndGet();
+                return null;
+            }
+        }
+        if (dispatcher == null) {
+            startDispatcher();
+        }
+        return ring[(head + count) % ring.length];
+    }
+
+    /**
+     * Called with the lock held, once the slot returned by {@link #claim()} is filled.
+     */
+    private void publish() {
+        count++;
+        notEmpty.signal();
+    }
+
+    private void startDispatcher() {
+        dispatcher = new Thread(new Runnable() {
+            public void run() {
+                dispatch();
+            }
+        }, "AsyncComponentMonitor");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    private void dispatch() {
+        Event current = new Event();
+        while (true) {
+            lock.lock();
+            try {
+                busy = false;
+                notFull.signalAll();
+                while (count == 0) {
+                    if (closed) {
+                        return;
+                    }
+                    notEmpty.awaitUninterruptibly();
+                }
+                Event slot = ring[head];
+                current.copy(slot);
+                slot.clear();
+                head = (head + 1) % ring.length;
+                count--;
+                busy = true;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                deliver(current);
+            } catch (RuntimeException e) {
+                // a failing monitor must not stop delivery of later events
+            } finally {
+                current.clear();
+            }
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void deliver(final Event e) {
+        switch (e.type) {
+            case INSTANTIATED:
+                super.instantiated(e.container, (ComponentAdapter) e.adapter, (Constructor) e.constructor, e.instance, e.args, e.duration);
+                break;
+            case INSTANTIATION_FAILED:
+                super.instantiationFailed(e.container, (ComponentAdapter) e.adapter, (Constructor) e.constructor, e.cause);
+                break;
+            case INVOKED:
+                super.invoked(e.container, e.adapter, e.member, e.instance, e.duration, e.retVal, e.args);
+                break;
+            case INVOCATION_FAILED:
+                super.invocationFailed(e.member, e.instance, e.cause);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * A reusable slot of the ring buffer, holding the union of all callback arguments.
+     */
+    @SuppressWarnings("serial")
+    private static final class Event implements Serializable {
+        private int type;
+        private PicoContainer container;
+        private ComponentAdapter<?> adapter;
+        private Constructor<?> constructor;
+        private Member member;
+        private Object instance;
+        private Object[] args;
+        private long duration;
+        private Object retVal;
+        private Exception cause;
+
+        private void copy(final Event other) {
+            type = other.type;
+            container = other.container;
+            adapter = other.adapter;
+            constructor = other.constructor;
+            member = other.member;
+            instance = other.instance;
+            args = other.args;
+            duration = other.duration;
+            retVal = other.retVal;
+            cause = other.cause;
+        }
+
+        private void clear() {
+            type = 0;
+            container = null;
+            adapter = null;
+            constructor = null;
+            member = null;
+            instance = null;
+            args = null;
+            duration = 0;
+            retVal = null;
+            cause = null;
+        }
+    }
+}
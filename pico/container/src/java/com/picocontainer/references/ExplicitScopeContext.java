@@ -0,0 +1,124 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.references;
+
+import java.io.Serializable;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * A scope context whose values live in a {@link Scope} object that the unit of work carries, and enters on
+ * whatever thread runs it:
+ * <pre>
+ * Scope scope = new Scope();
+ * executor.execute(scope.wrap(task));
+ * </pre>
+ * However many contexts there are, a thread only refers to the scope it is running, and does so only while it is
+ * running it, so nothing is left behind for the next task of a pooled or virtual thread.  Using a context
+ * outside of any scope fails.
+ */
+@SuppressWarnings("serial")
+public class ExplicitScopeContext<T> implements ScopeContext<T>, Serializable {
+
+    @SuppressWarnings("unchecked")
+    public T get() {
+        Scope scope = Scope.entered();
+        if (!scope.values.containsKey(this)) {
+            T value = initialValue();
+            scope.values.put(this, value);
+            return value;
+        }
+        return (T) scope.values.get(this);
+    }
+
+    public void set(final T item) {
+        Scope.entered().values.put(this, item);
+    }
+
+    public void remove() {
+        Scope.entered().values.remove(this);
+    }
+
+    /**
+     * @return the value of this context in a scope that has not set one, null unless overridden.
+     */
+    protected T initialValue() {
+        return null;
+    }
+
+    /**
+     * The values of all explicit scope contexts for one unit of work.  A scope should be entered by one
+     * thread at a time.
+     */
+    public static final class Scope {
+        private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<Scope>();
+
+        private final Map<ExplicitScopeContext<?>, Object> values = new IdentityHashMap<ExplicitScopeContext<?>, Object>(8);
+
+        /**
+         * @return the scope the current thread is running, or null.
+         */
+        public static Scope current() {
+            return CURRENT.get();
+        }
+
+        private static Scope entered() {
+            Scope scope = CURRENT.get();
+            if (scope == null) {
+                throw new IllegalStateException("no scope has been entered by thread '" + Thread.currentThread().getName() + "'");
+            }
+            return scope;
+        }
+
+        public void run(final Runnable task) {
+            Scope previous = enter();
+            try {
+                task.run();
+            } finally {
+                exit(previous);
+            }
+        }
+
+        public <V> V call(final Callable<V> task) throws Exception {
+            Scope previous = enter();
+            try {
+                return task.call();
+            } finally {
+                exit(previous);
+            }
+        }
+
+        /**
+         * @return a task that runs the given one in this scope.
+         */
+        public Runnable wrap(final Runnable task) {
+            return new Runnable() {
+                public void run() {
+                    Scope.this.run(task);
+                }
+            };
+        }
+
+        private Scope enter() {
+            Scope previous = CURRENT.get();
+            CURRENT.set(this);
+            return previous;
+        }
+
+        private static void exit(final Scope previous) {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.references;
+
+import com.picocontainer.ObjectReference;
+
+/**
+ * A reference whose value depends on the scope, such as a request or a task, that is current when it is used.
+ * Behaviors that keep state per unit of work hold their state through one, so that how the current scope is
+ * found can be chosen: per thread with {@link ThreadLocalScopeContext}, or through a scope object that is passed
+ * explicitly with {@link ExplicitScopeContext}.
+ */
+public interface ScopeContext<T> extends ObjectReference<T> {
+
+    /**
+     * Forgets the value of the current scope, so that the next {@link #get()} starts over.
+     */
+    void remove();
+
+}
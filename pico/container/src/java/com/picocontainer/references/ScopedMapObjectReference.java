@@ -0,0 +1,34 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.references;
+
+import java.util.Map;
+
+import com.picocontainer.ObjectReference;
+
+/**
+ * Gets and sets references on a map held by a {@link ScopeContext}.
+ */
+public class ScopedMapObjectReference<T> implements ObjectReference<T> {
+    private final ObjectReference<Map<Object, T>> context;
+    private final Object key;
+
+    public ScopedMapObjectReference(final ObjectReference<Map<Object, T>> context, final Object key) {
+        this.context = context;
+        this.key = key;
+    }
+
+    public T get() {
+        return context.get().get(key);
+    }
+
+    public void set(final T item) {
+        context.get().put(key, item);
+    }
+}
@@ -0,0 +1,17 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.references;
+
+/**
+ * A scope context that keys values off the current thread.  Override {@link #initialValue()} to give each
+ * thread a value of its own.
+ */
+@SuppressWarnings("serial")
+public class ThreadLocalScopeContext<T> extends ThreadLocalReference<T> implements ScopeContext<T> {
+}
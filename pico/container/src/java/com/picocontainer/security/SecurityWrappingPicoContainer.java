@@ -2,15 +2,24 @@ package com.picocontainer.security;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.security.AccessControlContext;
 import java.security.AccessControlException;
+import java.security.AccessController;
 import java.security.Permission;
+import java.security.Policy;
+import java.security.PrivilegedAction;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.inject.Provider;
 
 import com.googlecode.jtype.Generic;
+import com.picocontainer.BatchRegistering;
 import com.picocontainer.ComponentAdapter;
 import com.picocontainer.ComponentMonitor;
 import com.picocontainer.MutablePicoContainer;
@@ -18,22 +27,96 @@ import com.picocontainer.NameBinding;
 import com.picocontainer.Parameter;
 import com.picocontainer.PicoContainer;
 import com.picocontainer.PicoVisitor;
+import com.picocontainer.Registrations;
 import com.picocontainer.lifecycle.LifecycleState;
 import com.picocontainer.parameters.ConstructorParameters;
 import com.picocontainer.parameters.FieldParameters;
 import com.picocontainer.parameters.MethodParameters;
 
-public final class SecurityWrappingPicoContainer implements MutablePicoContainer {
+/**
+ * Wraps a container so that each call checks, with the installed SecurityManager, that the caller has
+ * {@link PicoAccessPermission} to read or write the scope.
+ * <p>
+ * The permissions granted to each set of calling protection domains are remembered, so a caller that has
+ * been checked once skips the SecurityManager and the stack walk of the policy.  So a SecurityManager that
+ * decides on more than the callers' protection domains should not be used with this container.  The decisions
+ * for the most recently seen sets of callers are kept, up to a bound, the least recently seen being forgotten
+ * first; all are forgotten when a different SecurityManager or Policy is installed, or when the policy is
+ * refreshed through {@link #refreshPolicy()}, which also lets go of the protection domains of an undeployed
+ * application, and with them its classloader.  A trusted framework
+ * can also {@link #preAuthorize()} a thread for the length of a request, after which each call only tests a
+ * flag.  Nothing pre-authorizes on its own, as that would let through whatever code the thread goes on to run.
+ * </p>
+ */
+public final class SecurityWrappingPicoContainer implements MutablePicoContainer, BatchRegistering {
 
 	private static final class DefaultAccessWrapper implements AccessControllerWrapper {
+
+		private static final int MAX_CONTEXTS = 1024;
+
+		private static final PrivilegedAction<Policy> GET_POLICY = new PrivilegedAction<Policy>() {
+			public Policy run() {
+				return Policy.getPolicy();
+			}
+		};
+
+		/**
+		 * The permissions granted to each set of callers, in the order they were last seen.  A context is
+		 * equal to another of the same protection domains, so the fresh context of each call finds them.
+		 */
+		@SuppressWarnings("serial")
+		private static final Map<AccessControlContext, Set<Permission>> grants = new LinkedHashMap<AccessControlContext, Set<Permission>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<AccessControlContext, Set<Permission>> eldest) {
+				return size() > MAX_CONTEXTS;
+			}
+		};
+
+		// guarded by grants
+		private static SecurityManager grantedBy;
+
+		// guarded by grants
+		private static Policy grantedUnder;
+
 		public void checkPermission(final Permission checkingPermission) throws AccessControlException {
 			 SecurityManager security = System.getSecurityManager();
 		     if (security != null) {
+		    	 Policy policy = AccessController.doPrivileged(GET_POLICY);
+		    	 AccessControlContext callers = AccessController.getContext();
+		    	 synchronized (grants) {
+		    		 if (security != grantedBy || policy != grantedUnder) {
+		    			 grants.clear();
+		    			 grantedBy = security;
+		    			 grantedUnder = policy;
+		    		 }
+		    		 Set<Permission> granted = grants.get(callers);
+		    		 if (granted != null && granted.contains(checkingPermission)) {
+		    			 return;
+		    		 }
+		    	 }
+		    	 // the installed SecurityManager decides, with whatever it overrides, against the same callers
 		    	 security.checkPermission(checkingPermission);
+		    	 synchronized (grants) {
+		    		 if (security != grantedBy || policy != grantedUnder) {
+		    			 return;
+		    		 }
+		    		 Set<Permission> granted = grants.get(callers);
+		    		 if (granted == null) {
+		    			 granted = new HashSet<Permission>();
+		    			 grants.put(callers, granted);
+		    		 }
+		    		 granted.add(checkingPermission);
+		    	 }
 		     }
 		}
+
+		private static void forget() {
+			synchronized (grants) {
+				grants.clear();
+			}
+		}
 	}
-	
+
 	private final MutablePicoContainer pico;
 	
 	private final Permission readCheck;
@@ -44,6 +127,8 @@ public final class SecurityWrappingPicoContainer implements MutablePicoContainer
 	
 	private final AccessControllerWrapper accessWrapper;
 
+	private final ThreadLocal<Boolean> preAuthorized = new ThreadLocal<Boolean>();
+
 	public SecurityWrappingPicoContainer(String scope, MutablePicoContainer pico) {
 		if (scope == null) {
 			scope = "";
@@ -120,6 +205,16 @@ public final class SecurityWrappingPicoContainer implements MutablePicoContainer
 		return pico.addComponent(key, implOrInstance, constructorParameters);
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * <p>Requires <tt>write</tt> permission.
+	 */
+	public MutablePicoContainer addComponents(Registrations registrations) {
+		checkWritePermission();
+		registrations.addTo(pico);
+		return this;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * <p>Requires <tt>write</tt> permission.
@@ -183,8 +278,33 @@ public final class SecurityWrappingPicoContainer implements MutablePicoContainer
 		return pico.changeMonitor(monitor);
 	}
 
+	/**
+	 * Refreshes the security policy, and forgets the permissions granted under the old one.
+	 */
+	public static void refreshPolicy() {
+		Policy.getPolicy().refresh();
+		DefaultAccessWrapper.forget();
+	}
+
+	/**
+	 * Checks once that the caller may read and write this container, and then lets every call on this
+	 * thread through without a check, until {@link #endPreAuthorization()}.  Meant for a framework that
+	 * handles a request on the thread, such as a servlet filter, and must be ended in a finally block.
+	 * @throws AccessControlException if the caller may not read and write this container.
+	 */
+	public void preAuthorize() {
+		checkReadWritePermission();
+		preAuthorized.set(Boolean.TRUE);
+	}
+
+	public void endPreAuthorization() {
+		preAuthorized.remove();
+	}
+
 	private void checkReadPermission() {
-		accessWrapper.checkPermission(readCheck);
+		if (preAuthorized.get() == null) {
+			accessWrapper.checkPermission(readCheck);
+		}
 		
 	}
 
@@ -195,7 +315,9 @@ public final class SecurityWrappingPicoContainer implements MutablePicoContainer
 	}
 
 	private void checkWritePermission() {
-		accessWrapper.checkPermission(writeCheck);
+		if (preAuthorized.get() == null) {
+			accessWrapper.checkPermission(writeCheck);
+		}
 	}
 
 	/**
@@ -1039,4 +1039,16 @@ public final class DefaultPicoContainerTestCase extends AbstractPicoContainerTes
 		assertTrue(mpc.getLifecycleState().isDisposed());
 	}    
 
+    @Test public void testChangeCountMovesOnWithEveryAddAndRemoveEvenIfTheSizeIsTheSame() {
+        DefaultPicoContainer pico = new DefaultPicoContainer();
+        long initial = pico.getChangeCount();
+        pico.addComponent("one", "1");
+        long added = pico.getChangeCount();
+        assertTrue(added != initial);
+        pico.removeComponent("one");
+        pico.addComponent("two", "2");
+        assertEquals(1, pico.getComponentAdapters().size());
+        assertTrue(pico.getChangeCount() != added);
+    }
+
 }
\ No newline at end of file
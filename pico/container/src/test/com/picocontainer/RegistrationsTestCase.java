@@ -0,0 +1,160 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.inject.Named;
+
+import org.junit.Test;
+
+import com.picocontainer.behaviors.Caching;
+import com.picocontainer.classname.DefaultClassLoadingPicoContainer;
+import com.picocontainer.containers.JSR330PicoContainer;
+import com.picocontainer.injectors.ConstructorInjection;
+import com.picocontainer.parameters.ComponentParameter;
+import com.picocontainer.testmodel.DependsOnTouchable;
+import com.picocontainer.testmodel.SimpleTouchable;
+import com.picocontainer.testmodel.Touchable;
+
+public class RegistrationsTestCase {
+
+    public static class Counting implements Startable {
+        int started;
+
+        public void start() {
+            started++;
+        }
+
+        public void stop() {
+        }
+    }
+
+    @Test public void testBatchIsEquivalentToSingleRegistrations() {
+        MutablePicoContainer pico = new DefaultPicoContainer(new Caching());
+        new Registrations()
+                .add(Touchable.class, SimpleTouchable.class)
+                .add(DependsOnTouchable.class)
+                .add("greeting", "hello")
+                .add("named", DependsOnTouchable.class, new ComponentParameter(Touchable.class))
+                .addTo(pico);
+
+        assertEquals(4, pico.getComponentAdapters().size());
+        assertSame(pico.getComponent(Touchable.class), pico.getComponent(DependsOnTouchable.class).getTouchable());
+        assertEquals("hello", pico.getComponent("greeting"));
+        assertSame(pico.getComponent(Touchable.class), ((DependsOnTouchable) pico.getComponent("named")).getTouchable());
+    }
+
+    @Test public void testCharacteristicsOfAsApplyToTheWholeBatch() {
+        MutablePicoContainer pico = new DefaultPicoContainer(new Caching());
+        new Registrations()
+                .add(Touchable.class, SimpleTouchable.class)
+                .add(DependsOnTouchable.class)
+                .addTo(pico.as(Characteristics.NO_CACHE));
+        pico.addComponent("cached", SimpleTouchable.class);
+
+        assertNotSame(pico.getComponent(Touchable.class), pico.getComponent(Touchable.class));
+        assertNotSame(pico.getComponent(DependsOnTouchable.class), pico.getComponent(DependsOnTouchable.class));
+        assertSame(pico.getComponent("cached"), pico.getComponent("cached"));
+    }
+
+    @Test public void testNothingIsRegisteredWhenTheBatchHasDuplicateKeys() {
+        MutablePicoContainer pico = new DefaultPicoContainer();
+        pico.addComponent("existing", SimpleTouchable.class);
+        try {
+            new Registrations()
+                    .add(Touchable.class, SimpleTouchable.class)
+                    .add("existing", SimpleTouchable.class)
+                    .addTo(pico);
+            fail("should have barfed");
+        } catch (PicoCompositionException e) {
+            assertTrue(e.getMessage().startsWith("Duplicate Keys not allowed"));
+        }
+        assertNull(pico.getComponentAdapter(Touchable.class));
+        assertEquals(1, pico.getComponentAdapters().size());
+    }
+
+    @Test public void testUnprocessedCharacteristicsFailTheWholeBatch() {
+        MutablePicoContainer pico = new DefaultPicoContainer(new ConstructorInjection());
+        try {
+            new Registrations()
+                    .add(Touchable.class, SimpleTouchable.class)
+                    .add(DependsOnTouchable.class)
+                    .addTo(pico.as(Characteristics.CACHE));
+            fail("should have barfed");
+        } catch (PicoCompositionException e) {
+            assertTrue(e.getMessage().startsWith("Unprocessed Characteristics"));
+        }
+        assertEquals(0, pico.getComponentAdapters().size());
+    }
+
+    @Test public void testAdaptersCanBeCreatedInParallel() {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            MutablePicoContainer pico = new DefaultPicoContainer(new Caching());
+            Registrations registrations = new Registrations().createdWith(executor);
+            for (int i = 0; i < 200; i++) {
+                registrations.add("touchable" + i, SimpleTouchable.class);
+            }
+            registrations.addTo(pico);
+
+            assertEquals(200, pico.getComponentAdapters().size());
+            for (int i = 0; i < 200; i++) {
+                assertNotNull(pico.getComponentAdapter("touchable" + i).findAdapterOfType(Caching.Cached.class));
+            }
+            assertEquals("touchable199", new ArrayList<ComponentAdapter<?>>(pico.getComponentAdapters()).get(199).getComponentKey());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test public void testComponentsAddedToAStartedContainerAreStarted() {
+        MutablePicoContainer pico = new DefaultPicoContainer(new Caching());
+        pico.start();
+        new Registrations().add(Counting.class).addTo(pico);
+        assertEquals(1, pico.getComponent(Counting.class).started);
+    }
+
+    @Named("apple")
+    public static class Apple {
+    }
+
+    @Test public void testContainersThatAreNotBatchRegisteringGetTheRegistrationsOneAtATime() {
+        MutablePicoContainer pico = new JSR330PicoContainer();
+        new Registrations()
+                .add(Apple.class)
+                .add(Touchable.class, SimpleTouchable.class)
+                .addTo(pico);
+
+        assertNotNull(pico.getComponentAdapter("apple"));
+        assertNull(pico.getComponentAdapter(Apple.class));
+        assertNotNull(pico.getComponent(Touchable.class));
+    }
+
+    @Test public void testDelegatingContainersPassTheBatchToABatchRegisteringDelegate() {
+        MutablePicoContainer pico = new DefaultClassLoadingPicoContainer(new DefaultPicoContainer(new Caching()));
+        new Registrations()
+                .add(Touchable.class, SimpleTouchable.class)
+                .add(DependsOnTouchable.class)
+                .addTo(pico);
+
+        assertSame(pico.getComponent(Touchable.class), pico.getComponent(DependsOnTouchable.class).getTouchable());
+    }
+
+}
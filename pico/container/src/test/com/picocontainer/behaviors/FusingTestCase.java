@@ -0,0 +1,99 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.behaviors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.picocontainer.ComponentAdapter;
+import com.picocontainer.ComponentFactory;
+import com.picocontainer.DefaultPicoContainer;
+import com.picocontainer.Startable;
+import com.picocontainer.injectors.AdaptingInjection;
+import com.picocontainer.injectors.ConstructorInjection;
+import com.picocontainer.tck.AbstractComponentFactoryTest;
+import com.picocontainer.testmodel.SimpleTouchable;
+import com.picocontainer.testmodel.Touchable;
+
+public class FusingTestCase extends AbstractComponentFactoryTest {
+
+    public static class Counting implements Startable {
+        int started;
+        int stopped;
+
+        public void start() {
+            started++;
+        }
+
+        public void stop() {
+            stopped++;
+        }
+    }
+
+    @Override
+    protected ComponentFactory createComponentFactory() {
+        return new Fusing().wrap(new Caching().wrap(new AdaptingInjection()));
+    }
+
+    @Test public void testChainIsFusedAndStillFindsItsLayers() {
+        DefaultPicoContainer pico = new DefaultPicoContainer(new Fusing().wrap(new Locking().wrap(new Caching().wrap(new ConstructorInjection()))));
+        pico.addComponent(Touchable.class, SimpleTouchable.class);
+
+        ComponentAdapter<?> adapter = pico.getComponentAdapter(Touchable.class);
+        assertEquals(Fusing.Fused.class, adapter.getClass());
+        assertNotNull(adapter.findAdapterOfType(Locking.Locked.class));
+        assertNotNull(adapter.findAdapterOfType(Caching.Cached.class));
+        assertNotNull(adapter.findAdapterOfType(ConstructorInjection.ConstructorInjector.class));
+        assertNull(adapter.findAdapterOfType(Synchronizing.Synchronized.class));
+        assertSame(adapter, adapter.findAdapterOfType(Fusing.Fused.class));
+        assertTrue(adapter.toString().startsWith("Fused:Locked:Cached:"));
+    }
+
+    @Test public void testCachedInstanceIsReturnedUntilFlushed() {
+        DefaultPicoContainer pico = new DefaultPicoContainer(new Fusing().wrap(new Locking().wrap(new Caching().wrap(new ConstructorInjection()))));
+        pico.addComponent(Touchable.class, SimpleTouchable.class);
+
+        Touchable first = pico.getComponent(Touchable.class);
+        assertSame(first, pico.getComponent(Touchable.class));
+
+        pico.getComponentAdapter(Touchable.class).findAdapterOfType(Caching.Cached.class).flush();
+        Touchable second = pico.getComponent(Touchable.class);
+        assertNotSame(first, second);
+        assertSame(second, pico.getComponent(Touchable.class));
+    }
+
+    @Test public void testUncachedChainsAreResolvedEveryTime() {
+        DefaultPicoContainer pico = new DefaultPicoContainer(new Fusing().wrap(new Locking().wrap(new ConstructorInjection())));
+        pico.addComponent(Touchable.class, SimpleTouchable.class);
+        assertNotSame(pico.getComponent(Touchable.class), pico.getComponent(Touchable.class));
+    }
+
+    @Test public void testLifecycleGoesThroughFusedChain() {
+        DefaultPicoContainer pico = new DefaultPicoContainer(new Fusing().wrap(new Caching().wrap(new ConstructorInjection())));
+        pico.addComponent(Counting.class);
+        pico.start();
+        Counting counting = pico.getComponent(Counting.class);
+        assertEquals(1, counting.started);
+        pico.stop();
+        assertEquals(1, counting.stopped);
+        assertTrue(pico.getComponentAdapter(Counting.class) instanceof Fusing.Fused);
+    }
+
+    @Test public void testBareInjectorsAreNotWrapped() {
+        ComponentAdapter<SimpleTouchable> injector = new ConstructorInjection.ConstructorInjector<SimpleTouchable>(SimpleTouchable.class, SimpleTouchable.class);
+        assertSame(injector, Fusing.fuse(injector));
+    }
+
+}
@@ -9,6 +9,7 @@
  *****************************************************************************/
 package com.picocontainer.behaviors;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -17,12 +18,29 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.HashMap;
+
 import org.junit.Test;
 
+import com.picocontainer.Characteristics;
+import com.picocontainer.ComponentAdapter;
 import com.picocontainer.DefaultPicoContainer;
+import com.picocontainer.Disposable;
+import com.picocontainer.PicoContainer;
+import com.picocontainer.Startable;
 import com.picocontainer.behaviors.Caching;
 import com.picocontainer.behaviors.Storing;
+import com.picocontainer.lifecycle.DefaultLifecycleState;
 import com.picocontainer.lifecycle.NullLifecycleStrategy;
+import com.picocontainer.lifecycle.StartableLifecycleStrategy;
+import com.picocontainer.monitors.NullComponentMonitor;
+import com.picocontainer.references.ExplicitScopeContext;
 
 public class StoringTestCase {
 
@@ -40,6 +58,11 @@ public class StoringTestCase {
         }
     }
 
+    @SuppressWarnings("serial")
+    public static class Cart implements Serializable {
+        private int items;
+    }
+
     @Test public void testThatForASingleThreadTheBehaviorIsTheSameAsPlainCaching() {
 
         DefaultPicoContainer parent = new DefaultPicoContainer(new Caching());
@@ -256,6 +279,308 @@ public class StoringTestCase {
         }
     }
 
+    @Test public void testThatEachOpenedCacheMapStartsEmpty() {
+        DefaultPicoContainer parent = new DefaultPicoContainer(new Caching());
+        final Storing storeCaching = new Storing();
+        final DefaultPicoContainer child = new DefaultPicoContainer(parent, storeCaching);
+
+        parent.addComponent(StringBuilder.class);
+        child.addComponent(Foo.class);
+
+        storeCaching.openCacheForThread();
+        Foo one = child.getComponent(Foo.class);
+        assertSame(one, child.getComponent(Foo.class));
+        storeCaching.invalidateCacheForThread();
+        assertEquals(0, storeCaching.getCacheSize());
+
+        try {
+            child.getComponent(Foo.class);
+            fail("should have barfed");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        storeCaching.openCacheForThread();
+        Foo two = child.getComponent(Foo.class);
+        assertNotSame(one, two);
+        assertSame(two, child.getComponent(Foo.class));
+    }
+
+    @Test public void testThatStoreTracksChangesSinceItWasPutOnTheThread() {
+        DefaultPicoContainer parent = new DefaultPicoContainer(new Caching());
+        final Storing storeCaching = new Storing();
+        final DefaultPicoContainer child = new DefaultPicoContainer(parent, new NullLifecycleStrategy(), storeCaching);
+
+        parent.addComponent(StringBuilder.class);
+        child.addComponent(Foo.class);
+
+        Storing.StoreWrapper store = storeCaching.resetCacheForThread();
+        storeCaching.putCacheForThread(store);
+        assertFalse(storeCaching.isCacheDirtyForThread());
+        Foo foo = child.getComponent(Foo.class);
+        assertTrue("instance was created", storeCaching.isCacheDirtyForThread());
+
+        storeCaching.putCacheForThread(store);
+        assertSame(foo, child.getComponent(Foo.class));
+        assertFalse("instance was only read", storeCaching.isCacheDirtyForThread());
+        storeCaching.markCacheDirtyForThread();
+        assertTrue(storeCaching.isCacheDirtyForThread());
+    }
+
+    @Test public void testThatDeepDirtyCheckingSeesChangesToTheStateOfStoredInstances() {
+        final Storing storeCaching = new Storing();
+        final DefaultPicoContainer child = new DefaultPicoContainer((PicoContainer) null, new NullLifecycleStrategy(), storeCaching);
+        child.as(Characteristics.DEEP_DIRTY_CHECK).addComponent(Cart.class);
+
+        Storing.StoreWrapper store = storeCaching.resetCacheForThread();
+        storeCaching.putCacheForThread(store);
+        child.getComponent(Cart.class);
+
+        storeCaching.putCacheForThread(store);
+        Cart cart = child.getComponent(Cart.class);
+        assertFalse(storeCaching.isCacheDirtyForThread());
+        cart.items++;
+        assertTrue("a field of the instance was changed", storeCaching.isCacheDirtyForThread());
+
+        storeCaching.putCacheForThread(store);
+        assertFalse(storeCaching.isCacheDirtyForThread());
+    }
+
+    @Test public void testThatStoresAreSerializedCompactlyAndReadBackIntoAnotherThread() throws Exception {
+        final Storing storeCaching = new Storing();
+        final DefaultPicoContainer child = new DefaultPicoContainer((PicoContainer) null, new NullLifecycleStrategy(), storeCaching);
+        child.addComponent(Cart.class);
+
+        Storing.StoreWrapper store = storeCaching.resetCacheForThread();
+        child.getComponent(Cart.class).items = 3;
+
+        byte[] compact = serialize(store);
+        assertTrue("keys are written as indexes", compact.length < serialize(new HashMap<Object, Object>(store.asMap())).length);
+
+        final Storing.StoreWrapper read = (Storing.StoreWrapper) new ObjectInputStream(new ByteArrayInputStream(compact)).readObject();
+        final Cart[] carts = new Cart[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                storeCaching.putCacheForThread(read);
+                carts[0] = child.getComponent(Cart.class);
+            }
+        };
+        thread.start();
+        thread.join();
+        assertEquals(3, carts[0].items);
+    }
+
+    /**
+     * A key whose description differs from instance to instance, as one with an identity hash in it would
+     * from JVM to JVM.
+     */
+    @SuppressWarnings("serial")
+    public static class UnstableKey implements Serializable {
+        private static int made;
+        private final transient int instance = ++made;
+
+        @Override
+        public boolean equals(final Object other) {
+            return other instanceof UnstableKey;
+        }
+
+        @Override
+        public int hashCode() {
+            return 1;
+        }
+
+        @Override
+        public String toString() {
+            return "UnstableKey#" + instance;
+        }
+    }
+
+    @Test public void testThatOnlyStableKeysAreNumberedSoAnotherNodeFindsTheSameDictionary() throws Exception {
+        byte[][] written = new byte[2][];
+        for (int i = 0; i < written.length; i++) {
+            Storing storeCaching = new Storing();
+            DefaultPicoContainer node = new DefaultPicoContainer((PicoContainer) null, new NullLifecycleStrategy(), storeCaching);
+            node.addComponent(Cart.class);
+            node.addComponent(new UnstableKey(), Cart.class);
+            Storing.StoreWrapper store = storeCaching.resetCacheForThread();
+            node.getComponent(Cart.class);
+            node.getComponent(new UnstableKey());
+            written[i] = serialize(store);
+        }
+        assertArrayEquals(written[0], written[1]);
+    }
+
+    @Test public void testThatStoresCanBeKeptInScopesThatMoveBetweenThreads() throws Exception {
+        DefaultPicoContainer parent = new DefaultPicoContainer(new Caching());
+        final DefaultPicoContainer child = new DefaultPicoContainer(parent, new NullLifecycleStrategy(),
+                new Storing(new Storing.StoreScope<Object>()));
+        parent.addComponent(StringBuilder.class);
+        child.addComponent(Foo.class);
+
+        final Foo[] foos = new Foo[3];
+        ExplicitScopeContext.Scope one = new ExplicitScopeContext.Scope();
+        ExplicitScopeContext.Scope two = new ExplicitScopeContext.Scope();
+        one.run(new Runnable() {
+            public void run() {
+                foos[0] = child.getComponent(Foo.class);
+            }
+        });
+        two.run(new Runnable() {
+            public void run() {
+                foos[1] = child.getComponent(Foo.class);
+            }
+        });
+        Thread thread = new Thread(one.wrap(new Runnable() {
+            public void run() {
+                foos[2] = child.getComponent(Foo.class);
+            }
+        }));
+        thread.start();
+        thread.join();
+
+        assertNotSame("each scope has its own store", foos[0], foos[1]);
+        assertSame("a scope keeps its store on another thread", foos[0], foos[2]);
+        assertEquals(null, ExplicitScopeContext.Scope.current());
+        try {
+            child.getComponent(Foo.class);
+            fail("should have barfed");
+        } catch (IllegalStateException e) {
+            // expected, no scope entered
+        }
+    }
+
+    @SuppressWarnings({"serial", "deprecation"})
+    @Test public void testThatSubclassesStillGetTheThreadLocalStoreWhenThereIsOne() {
+        class Subclass extends Storing {
+            Subclass() {
+            }
+
+            Subclass(final StoreScope<Object> scope) {
+                super(scope);
+            }
+
+            Object threadLocalStore() {
+                return getThreadLocalStore();
+            }
+        }
+        Subclass storing = new Subclass();
+        assertSame(storing.getStoreContext(), storing.threadLocalStore());
+        try {
+            new Subclass(new Storing.StoreScope<Object>()).threadLocalStore();
+            fail("should have barfed");
+        } catch (IllegalStateException e) {
+            // expected, the store is kept in a scope
+        }
+    }
+
+    private static byte[] serialize(final Object object) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(object);
+        oos.close();
+        return baos.toByteArray();
+    }
+
+
+    public static class Logged implements Startable {
+        protected final StringBuilder sb;
+        public Logged(final StringBuilder sb) {
+            this.sb = sb;
+        }
+        public void start() {
+            sb.append("<" + getClass().getSimpleName());
+        }
+        public void stop() {
+            sb.append(">" + getClass().getSimpleName());
+        }
+    }
+
+    public static class Dep extends Logged {
+        public Dep(final StringBuilder sb) {
+            super(sb);
+        }
+    }
+
+    public static class Used extends Logged {
+        public Used(final StringBuilder sb, final Dep dep) {
+            super(sb);
+        }
+    }
+
+    public static class Unused extends Logged {
+        public Unused(final StringBuilder sb) {
+            super(sb);
+        }
+    }
+
+    @Test public void testThatOnlyInstancesUsedWhileTheScopeIsStartedAreStartedAndStopped() {
+        DefaultPicoContainer parent = new DefaultPicoContainer(new Caching());
+        parent.addComponent(StringBuilder.class);
+        DefaultLifecycleState state = new DefaultLifecycleState();
+        Storing storing = new Storing().startedOnFirstUse(state);
+        DefaultPicoContainer child = new DefaultPicoContainer(parent, new StartableLifecycleStrategy(new NullComponentMonitor()) {
+            @Override
+            public boolean isLazy(final ComponentAdapter<?> adapter) {
+                return true;
+            }
+        }, storing);
+        child.setLifecycleState(state);
+        child.addComponent(Dep.class);
+        child.addComponent(Used.class);
+        child.addComponent(Unused.class);
+        StringBuilder sb = parent.getComponent(StringBuilder.class);
+
+        child.start();
+        assertEquals("", sb.toString());
+        child.getComponent(Used.class);
+        child.getComponent(Used.class);
+        assertEquals("<Dep<Used", sb.toString());
+        child.stop();
+        assertEquals("<Dep<Used>Used>Dep", sb.toString());
+        child.dispose();
+        assertFalse(sb.toString().contains("Unused"));
+    }
+
+    public static class Till extends Logged implements Disposable {
+        public Till(final StringBuilder sb) {
+            super(sb);
+        }
+        public void dispose() {
+            sb.append("x" + getClass().getSimpleName());
+        }
+    }
+
+    public static class Shop extends Till {
+        public Shop(final StringBuilder sb, final Till till) {
+            super(sb);
+        }
+    }
+
+    @Test public void testThatInstancesUsedWhileTheScopeIsStartedAreStoppedAndDisposedInTheReverseOfTheOrderTheyWereMade() {
+        DefaultPicoContainer parent = new DefaultPicoContainer(new Caching());
+        parent.addComponent(StringBuilder.class);
+        DefaultLifecycleState state = new DefaultLifecycleState();
+        Storing storing = new Storing().startedOnFirstUse(state);
+        DefaultPicoContainer child = new DefaultPicoContainer(parent, new StartableLifecycleStrategy(new NullComponentMonitor()) {
+            @Override
+            public boolean isLazy(final ComponentAdapter<?> adapter) {
+                return true;
+            }
+        }, storing);
+        child.setLifecycleState(state);
+        child.addComponent(Shop.class);
+        child.addComponent(Till.class);
+        StringBuilder sb = parent.getComponent(StringBuilder.class);
+
+        child.start();
+        child.getComponent(Shop.class);
+        assertEquals("<Till<Shop", sb.toString());
+        child.stop();
+        assertEquals("<Till<Shop>Shop>Till", sb.toString());
+        child.dispose();
+        assertEquals("<Till<Shop>Shop>TillxShopxTill", sb.toString());
+    }
 
     private void sleepALittle() {
         try {
@@ -270,5 +595,19 @@ public class StoringTestCase {
     	storing.dispose();
     }
 
+    @Test
+    public void testDisposingRemovesTheStoreOfTheThread() {
+        Storing storing = new Storing();
+        DefaultPicoContainer pico = new DefaultPicoContainer(storing);
+        pico.addComponent(StringBuilder.class);
+
+        storing.openCacheForThread();
+        StringBuilder sb = pico.getComponent(StringBuilder.class);
+        storing.dispose();
+
+        assertEquals(0, storing.getCacheSize());
+        assertNotSame(sb, pico.getComponent(StringBuilder.class));
+    }
+
 
 }
\ No newline at end of file
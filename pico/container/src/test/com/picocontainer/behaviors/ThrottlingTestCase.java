@@ -0,0 +1,146 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.behaviors;
+
+import static com.picocontainer.Characteristics.NO_THROTTLE;
+import static com.picocontainer.Characteristics.THROTTLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Member;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.picocontainer.ComponentFactory;
+import com.picocontainer.DefaultPicoContainer;
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.PicoBuilder;
+import com.picocontainer.containers.EmptyPicoContainer;
+import com.picocontainer.injectors.AdaptingInjection;
+import com.picocontainer.lifecycle.NullLifecycleStrategy;
+import com.picocontainer.monitors.NullComponentMonitor;
+import com.picocontainer.tck.AbstractComponentFactoryTest;
+
+public class ThrottlingTestCase extends AbstractComponentFactoryTest {
+
+    private final ComponentFactory throttling = new Throttling().wrap(new AdaptingInjection());
+
+    public static interface Slow {
+        void call() throws InterruptedException;
+    }
+
+    public static class BlockingSlow implements Slow {
+        static CountDownLatch entered;
+        static CountDownLatch release;
+
+        public void call() throws InterruptedException {
+            entered.countDown();
+            release.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void testPicocontainerPropertiesIntegration() {
+        MutablePicoContainer mpc = new PicoBuilder().withBehaviors(new Throttling()).build();
+        mpc.as(THROTTLE).addComponent("throttled", "It is throttled");
+        mpc.as(NO_THROTTLE).addComponent("not throttled", "It is not throttled");
+
+        assertNotNull(mpc.getComponentAdapter("throttled").findAdapterOfType(Throttling.Throttled.class));
+        assertNull(mpc.getComponentAdapter("not throttled").findAdapterOfType(Throttling.Throttled.class));
+    }
+
+    @Test
+    public void testCallsBeyondLimitAndQueueAreRejectedAndReportedToMonitor() throws Exception {
+        final Exception[] reported = new Exception[1];
+        DefaultPicoContainer pico = new DefaultPicoContainer(new EmptyPicoContainer(), new NullLifecycleStrategy(), new NullComponentMonitor() {
+            @Override
+            public void invocationFailed(final Member member, final Object instance, final Exception e) {
+                reported[0] = e;
+            }
+        }, new Throttling(1, 0, 0).wrap(new Caching().wrap(new AdaptingInjection())));
+        pico.addComponent(Slow.class, BlockingSlow.class);
+
+        BlockingSlow.entered = new CountDownLatch(1);
+        BlockingSlow.release = new CountDownLatch(1);
+        final Slow slow = pico.getComponent(Slow.class);
+        Thread first = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    slow.call();
+                } catch (InterruptedException e) {
+                    // ends the test thread
+                }
+            }
+        };
+        first.start();
+        assertTrue(BlockingSlow.entered.await(5, TimeUnit.SECONDS));
+
+        Throttling.Throttled<?> throttled = pico.getComponentAdapter(Slow.class).findAdapterOfType(Throttling.Throttled.class);
+        assertEquals(1, throttled.getActiveCalls());
+        try {
+            slow.call();
+            fail("should have been throttled");
+        } catch (Throttling.ThrottledException e) {
+            assertSame(e, reported[0]);
+        }
+        assertEquals(1, throttled.getRejectedCalls());
+
+        BlockingSlow.release.countDown();
+        first.join();
+        assertEquals(0, throttled.getActiveCalls());
+        assertEquals(1, throttled.getCompletedCalls());
+    }
+
+    @Test
+    public void testWaitingCallsTimeOut() throws Exception {
+        DefaultPicoContainer pico = new DefaultPicoContainer(new Throttling(1, 1, 10).wrap(new Caching().wrap(new AdaptingInjection())));
+        pico.addComponent(Slow.class, BlockingSlow.class);
+
+        BlockingSlow.entered = new CountDownLatch(1);
+        BlockingSlow.release = new CountDownLatch(1);
+        final Slow slow = pico.getComponent(Slow.class);
+        Thread first = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    slow.call();
+                } catch (InterruptedException e) {
+                    // ends the test thread
+                }
+            }
+        };
+        first.start();
+        assertTrue(BlockingSlow.entered.await(5, TimeUnit.SECONDS));
+        try {
+            slow.call();
+            fail("should have timed out");
+        } catch (Throttling.ThrottledException e) {
+            // expected
+        }
+        BlockingSlow.release.countDown();
+        first.join();
+
+        Throttling.Throttled<?> throttled = pico.getComponentAdapter(Slow.class).findAdapterOfType(Throttling.Throttled.class);
+        assertEquals(1, throttled.getTimedOutCalls());
+        assertEquals(0, throttled.getWaitingCalls());
+    }
+
+    @Override
+    protected ComponentFactory createComponentFactory() {
+        return throttling;
+    }
+
+}
@@ -48,6 +48,18 @@ public class ImmutablePicoContainerTestCase {
         }
     }
 
+    @Test public void testChangesAreCountedByTheDelegate() {
+        DefaultPicoContainer pico = new DefaultPicoContainer();
+        ImmutablePicoContainer immutable = new ImmutablePicoContainer(pico);
+        long before = immutable.getChangeCount();
+        pico.addComponent("foo", Object.class);
+        assertEquals(pico.getChangeCount(), immutable.getChangeCount());
+        assertFalse(before == immutable.getChangeCount());
+
+        assertEquals(0, new ImmutablePicoContainer(new EmptyPicoContainer()).getChangeCount());
+        assertEquals(-1, new ImmutablePicoContainer(mockery.mock(PicoContainer.class)).getChangeCount());
+    }
+
     @Test public void testVisitingOfImmutableContainerWorks() {
         final AdaptingInjection ai = new AdaptingInjection();
         final DefaultPicoContainer pico = new DefaultPicoContainer(ai);
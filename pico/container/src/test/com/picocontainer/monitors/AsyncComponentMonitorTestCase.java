@@ -0,0 +1,185 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.monitors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.picocontainer.Characteristics;
+import com.picocontainer.ComponentAdapter;
+import com.picocontainer.DefaultPicoContainer;
+import com.picocontainer.PicoContainer;
+import com.picocontainer.PicoLifecycleException;
+import com.picocontainer.Startable;
+import com.picocontainer.testmodel.SimpleTouchable;
+import com.picocontainer.testmodel.Touchable;
+
+@SuppressWarnings("serial")
+public class AsyncComponentMonitorTestCase {
+
+    private final List<Thread> instantiatingThreads = new CopyOnWriteArrayList<Thread>();
+    private final List<Thread> instantiatedThreads = new CopyOnWriteArrayList<Thread>();
+    private final List<Object> instantiated = new CopyOnWriteArrayList<Object>();
+
+    private final NullComponentMonitor recording = new NullComponentMonitor() {
+        @Override
+        public <T> Constructor<T> instantiating(final PicoContainer container, final ComponentAdapter<T> componentAdapter,
+                                                final Constructor<T> constructor) {
+            instantiatingThreads.add(Thread.currentThread());
+            return constructor;
+        }
+
+        @Override
+        public <T> void instantiated(final PicoContainer container, final ComponentAdapter<T> componentAdapter,
+                                     final Constructor<T> constructor, final Object instance, final Object[] injected, final long duration) {
+            instantiatedThreads.add(Thread.currentThread());
+            instantiated.add(instance);
+        }
+    };
+
+    @Test public void testNotificationsAreDeliveredOnAnotherThreadButInstantiatingIsNot() throws InterruptedException {
+        AsyncComponentMonitor monitor = new AsyncComponentMonitor(recording);
+        DefaultPicoContainer pico = new DefaultPicoContainer(monitor);
+        pico.addComponent(Touchable.class, SimpleTouchable.class);
+        Touchable touchable = pico.getComponent(Touchable.class);
+
+        assertTrue(monitor.flush(5, TimeUnit.SECONDS));
+        assertEquals(1, instantiatingThreads.size());
+        assertSame(Thread.currentThread(), instantiatingThreads.get(0));
+        assertEquals(1, instantiatedThreads.size());
+        assertNotSame(Thread.currentThread(), instantiatedThreads.get(0));
+        assertSame(touchable, instantiated.get(0));
+        monitor.close();
+    }
+
+    @Test public void testEventsAreDroppedAndCountedWhenTheRingIsFull() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivering = new CountDownLatch(1);
+        AsyncComponentMonitor monitor = new AsyncComponentMonitor(new NullComponentMonitor() {
+            @Override
+            public void invocationFailed(final Member member, final Object instance, final Exception e) {
+                delivering.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 2, AsyncComponentMonitor.Overflow.DROP);
+
+        monitor.invocationFailed(null, "first", null);
+        assertTrue(delivering.await(5, TimeUnit.SECONDS));
+        monitor.invocationFailed(null, "queued 1", null);
+        monitor.invocationFailed(null, "queued 2", null);
+        monitor.invocationFailed(null, "dropped", null);
+        assertEquals(1, monitor.getDroppedEvents());
+
+        release.countDown();
+        assertTrue(monitor.flush(5, TimeUnit.SECONDS));
+        monitor.close();
+    }
+
+    @Test public void testBlockingOverflowWaitsForRoom() throws InterruptedException {
+        final List<Object> delivered = new CopyOnWriteArrayList<Object>();
+        AsyncComponentMonitor monitor = new AsyncComponentMonitor(new NullComponentMonitor() {
+            @Override
+            public void invocationFailed(final Member member, final Object instance, final Exception e) {
+                delivered.add(instance);
+            }
+        }, 1, AsyncComponentMonitor.Overflow.BLOCK);
+
+        for (int i = 0; i < 100; i++) {
+            monitor.invocationFailed(null, i, null);
+        }
+        assertTrue(monitor.flush(5, TimeUnit.SECONDS));
+        assertEquals(100, delivered.size());
+        assertEquals(0, monitor.getDroppedEvents());
+        monitor.close();
+    }
+
+    public static class FailingToStart implements Startable {
+        public void start() {
+            throw new IllegalStateException("won't start");
+        }
+
+        public void stop() {
+        }
+    }
+
+    @Test public void testLifecycleFailuresAreStillRethrownByTheDelegate() {
+        AsyncComponentMonitor monitor = new AsyncComponentMonitor(new NullComponentMonitor());
+        DefaultPicoContainer pico = new DefaultPicoContainer(monitor);
+        pico.as(Characteristics.CACHE).addComponent(FailingToStart.class);
+        try {
+            pico.start();
+            fail("should have barfed");
+        } catch (PicoLifecycleException e) {
+            assertEquals("won't start", e.getCause().getMessage());
+        } finally {
+            monitor.close();
+        }
+    }
+
+    @Test public void testEventsOfCallersWaitingForRoomWhenClosedAreCountedAsDropped() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivering = new CountDownLatch(1);
+        final AsyncComponentMonitor monitor = new AsyncComponentMonitor(new NullComponentMonitor() {
+            @Override
+            public void invocationFailed(final Member member, final Object instance, final Exception e) {
+                delivering.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, 1, AsyncComponentMonitor.Overflow.BLOCK);
+
+        monitor.invocationFailed(null, "first", null);
+        assertTrue(delivering.await(5, TimeUnit.SECONDS));
+        monitor.invocationFailed(null, "queued", null);
+        Thread waiting = new Thread() {
+            @Override
+            public void run() {
+                monitor.invocationFailed(null, "waiting", null);
+            }
+        };
+        waiting.start();
+        while (waiting.getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        monitor.close();
+        waiting.join(5000);
+        assertFalse(waiting.isAlive());
+        assertEquals(1, monitor.getDroppedEvents());
+        release.countDown();
+    }
+
+    @Test public void testEventsAfterCloseAreDeliveredSynchronously() throws InterruptedException {
+        AsyncComponentMonitor monitor = new AsyncComponentMonitor(recording);
+        monitor.close();
+        monitor.instantiated(null, null, null, "late", null, 0);
+        assertEquals(1, instantiatedThreads.size());
+        assertSame(Thread.currentThread(), instantiatedThreads.get(0));
+        assertFalse(monitor.getDroppedEvents() > 0);
+    }
+}
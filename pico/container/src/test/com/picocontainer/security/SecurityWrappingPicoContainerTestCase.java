@@ -1,5 +1,6 @@
 package com.picocontainer.security;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
 
@@ -9,6 +10,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.security.AccessControlException;
 import java.security.Permission;
+import java.security.Policy;
 import java.util.Collections;
 import java.util.Properties;
 
@@ -27,6 +29,7 @@ import com.googlecode.jtype.Generic;
 import com.picocontainer.ComponentAdapter;
 import com.picocontainer.ComponentFactory;
 import com.picocontainer.ComponentMonitor;
+import com.picocontainer.DefaultPicoContainer;
 import com.picocontainer.MutablePicoContainer;
 import com.picocontainer.NameBinding;
 import com.picocontainer.Parameter;
@@ -514,6 +517,128 @@ public class SecurityWrappingPicoContainerTestCase {
 		expectSuccess("changeMonitor", new Object[]{null}, ComponentMonitor.class);		
 	}
 	
+	public static class CountingAccessControllerWrapper implements AccessControllerWrapper {
+		private int checks;
+
+		public void checkPermission(Permission checkingPermission) throws AccessControlException {
+			checks++;
+		}
+	}
+
+	@Test
+	public void testPreAuthorizedThreadsAreNotCheckedUntilThePreAuthorizationEnds() throws Exception {
+		SecurityWrappingPicoContainer wrapped = new SecurityWrappingPicoContainer(PicoAccessPermission.REQUEST_SCOPE,
+				new DefaultPicoContainer().addComponent("foo", "bar"));
+		CountingAccessControllerWrapper counting = new CountingAccessControllerWrapper();
+		Field targetField = SecurityWrappingPicoContainer.class.getDeclaredField("accessWrapper");
+		targetField.setAccessible(true);
+		targetField.set(wrapped, counting);
+
+		wrapped.preAuthorize();
+		assertEquals(2, counting.checks);
+		try {
+			for (int i = 0; i < 100; i++) {
+				assertEquals("bar", wrapped.getComponent("foo"));
+			}
+			assertEquals(2, counting.checks);
+		} finally {
+			wrapped.endPreAuthorization();
+		}
+		wrapped.getComponent("foo");
+		assertEquals(3, counting.checks);
+	}
+
+	@Test
+	public void testThreadsThatMayNotWriteCannotBePreAuthorized() throws Exception {
+		setReadsAllowed();
+		try {
+			pico.preAuthorize();
+			fail("Expected Failure");
+		} catch (AccessControlException e) {
+			assertNotNull(e.getMessage());
+		}
+	}
+
+	private static class CountingSecurityManager extends SecurityManager {
+		private int picoChecks;
+
+		@Override
+		public void checkPermission(Permission perm) {
+			if (perm instanceof PicoAccessPermission) {
+				picoChecks++;
+			}
+		}
+
+		@Override
+		public void checkPermission(Permission perm, Object context) {
+		}
+	}
+
+	@Test
+	public void testGrantedPermissionsAreRememberedUntilThePolicyChanges() throws Exception {
+		SecurityWrappingPicoContainer wrapped = new SecurityWrappingPicoContainer(PicoAccessPermission.REQUEST_SCOPE,
+				new DefaultPicoContainer().addComponent("foo", "bar"));
+		CountingSecurityManager security = new CountingSecurityManager();
+		System.setSecurityManager(security);
+		try {
+			for (int i = 0; i < 100; i++) {
+				wrapped.getComponent("foo");
+			}
+			assertEquals(1, security.picoChecks);
+
+			SecurityWrappingPicoContainer.refreshPolicy();
+			wrapped.getComponent("foo");
+			assertEquals(2, security.picoChecks);
+
+			CountingSecurityManager another = new CountingSecurityManager();
+			System.setSecurityManager(another);
+			wrapped.getComponent("foo");
+			wrapped.getComponent("foo");
+			assertEquals(1, another.picoChecks);
+		} finally {
+			System.setSecurityManager(null);
+		}
+	}
+
+	@Test
+	public void testGrantedPermissionsOutliveTheCallersContext() throws Exception {
+		SecurityWrappingPicoContainer wrapped = new SecurityWrappingPicoContainer(PicoAccessPermission.REQUEST_SCOPE,
+				new DefaultPicoContainer().addComponent("foo", "bar"));
+		CountingSecurityManager security = new CountingSecurityManager();
+		System.setSecurityManager(security);
+		try {
+			wrapped.getComponent("foo");
+			System.gc();
+			wrapped.getComponent("foo");
+			assertEquals(1, security.picoChecks);
+		} finally {
+			System.setSecurityManager(null);
+		}
+	}
+
+	@Test
+	public void testGrantedPermissionsAreForgottenWhenAnotherPolicyIsInstalled() throws Exception {
+		SecurityWrappingPicoContainer wrapped = new SecurityWrappingPicoContainer(PicoAccessPermission.REQUEST_SCOPE,
+				new DefaultPicoContainer().addComponent("foo", "bar"));
+		Policy original = Policy.getPolicy();
+		CountingSecurityManager security = new CountingSecurityManager();
+		System.setSecurityManager(security);
+		try {
+			wrapped.getComponent("foo");
+			wrapped.getComponent("foo");
+			assertEquals(1, security.picoChecks);
+
+			Policy.setPolicy(new Policy() {
+			});
+			wrapped.getComponent("foo");
+			wrapped.getComponent("foo");
+			assertEquals(2, security.picoChecks);
+		} finally {
+			Policy.setPolicy(original);
+			System.setSecurityManager(null);
+		}
+	}
+
 	private void expectSuccess(String methodName, Object[] args, Class<?>... argTypes) throws NoSuchMethodException, InvocationTargetException, IllegalAccessException {
 		invokeMethod(methodName, args, argTypes);
 	}
@@ -20,6 +20,10 @@ public final class GemsCharacteristics {
 
     private static final String _POOL = "pooled";
 
+    private static final String _PROFILE = "profiled";
+
+    private static final String _RECYCLE = "recycled";
+
     /**
      * Turn off behavior for {@link com.picocontainer.gems.jmx.JMXExposing JMXExposing}
      */
@@ -51,4 +55,24 @@ public final class GemsCharacteristics {
      */
     public static final Properties NO_POOL = immutable(_POOL, FALSE);
 
+    /**
+     * Turn on method profiling behavior.
+     */
+    public static final Properties PROFILE = immutable(_PROFILE, TRUE);
+
+    /**
+     * Turn off method profiling behavior.
+     */
+    public static final Properties NO_PROFILE = immutable(_PROFILE, FALSE);
+
+    /**
+     * Turn on recycling behavior for {@link com.picocontainer.gems.behaviors.Recycling Recycling}.
+     */
+    public static final Properties RECYCLE = immutable(_RECYCLE, TRUE);
+
+    /**
+     * Turn off recycling behavior.
+     */
+    public static final Properties NO_RECYCLE = immutable(_RECYCLE, FALSE);
+
 }
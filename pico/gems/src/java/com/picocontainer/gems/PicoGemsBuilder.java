@@ -13,10 +13,12 @@ import com.picocontainer.gems.adapters.ThreadLocalizing;
 import com.picocontainer.gems.behaviors.AsmImplementationHiding;
 import com.picocontainer.gems.behaviors.HotSwapping;
 import com.picocontainer.gems.behaviors.Pooling;
+import com.picocontainer.gems.behaviors.Recycling;
 import com.picocontainer.gems.jmx.JMXExposing;
 import com.picocontainer.gems.monitors.CommonsLoggingComponentMonitor;
 import com.picocontainer.gems.monitors.Log4JComponentMonitor;
 import com.picocontainer.gems.monitors.Slf4jComponentMonitor;
+import com.thoughtworks.proxy.kit.Resetter;
 
 import com.picocontainer.Behavior;
 import com.picocontainer.ComponentMonitor;
@@ -71,6 +73,15 @@ public class PicoGemsBuilder {
     	return new Pooling();
     }
 
+    /**
+     * Creates an adapter factory that recycles instances between units of work.
+     * @param resetter readies a given back instance for its next use.
+     * @return
+     */
+    public static Behavior RECYCLING(final Resetter<Object> resetter) {
+    	return new Recycling(resetter);
+    }
+
     /**
      * Creates a log4j component monitor instance.  You will need Log4j in your classpath for this method to work.
      * @return Log4j-based component monitor.
@@ -0,0 +1,436 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.gems.behaviors;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import com.picocontainer.ComponentAdapter;
+import com.picocontainer.ComponentMonitor;
+import com.picocontainer.LifecycleStrategy;
+import com.picocontainer.PicoCompositionException;
+import com.picocontainer.PicoContainer;
+import com.picocontainer.behaviors.AbstractBehavior;
+import com.picocontainer.gems.GemsCharacteristics;
+import com.picocontainer.gems.jmx.JMXRegistrationException;
+import com.picocontainer.gems.util.StripedCounters;
+import com.picocontainer.parameters.ConstructorParameters;
+import com.picocontainer.parameters.FieldParameters;
+import com.picocontainer.parameters.MethodParameters;
+
+/**
+ * Records call counts, error counts and latency histograms for every business method called on a component.
+ * {@link ComponentMonitor#invoking} and {@link ComponentMonitor#invoked} only see injection and lifecycle
+ * calls, this behavior sees the calls the application makes.
+ * <p/>
+ * The component is wrapped in a JDK proxy implementing the component key, when the key is an interface or an
+ * array of interfaces, as with {@link com.picocontainer.behaviors.ImplementationHiding}.  Components with other keys
+ * are handed out undecorated, and their calls are not profiled.  Statistics are kept in {@link StripedCounters} so recording a call costs a couple
+ * of uncontended atomic adds.  If constructed with an {@link MBeanServer} each profiled component is also registered
+ * as a {@link ProfiledMBean} under <code>com.picocontainer.gems:type=Profiled,key=&lt;key&gt;</code>.
+ * <p/>
+ * <em>Note that this behavior doesn't cache the proxy, use a {@link com.picocontainer.behaviors.Caching.Cached} around it
+ * if you want one.</em>
+ */
+@SuppressWarnings("serial")
+public class Profiling extends AbstractBehavior {
+
+    public static final String OBJECT_NAME_PREFIX = "com.picocontainer.gems:type=Profiled,key=";
+
+    private final transient MBeanServer mBeanServer;
+    private final List<ObjectName> registeredObjectNames = new CopyOnWriteArrayList<ObjectName>();
+
+    public Profiling() {
+        this(null);
+    }
+
+    /**
+     * @param mBeanServer the MBeanServer to register the statistics of each profiled component in, may be null.
+     */
+    public Profiling(final MBeanServer mBeanServer) {
+        this.mBeanServer = mBeanServer;
+    }
+
+    @Override
+	public <T> ComponentAdapter<T> createComponentAdapter(final ComponentMonitor monitor, final LifecycleStrategy lifecycle, final Properties componentProps,
+                                 final Object key, final Class<T> impl, final ConstructorParameters constructorParams, final FieldParameters[] fieldParams, final MethodParameters[] methodParams) throws PicoCompositionException {
+        ComponentAdapter<T> delegateAdapter = super.createComponentAdapter(monitor, lifecycle,
+                componentProps, key, impl, constructorParams, fieldParams, methodParams);
+
+        if (AbstractBehavior.removePropertiesIfPresent(componentProps, GemsCharacteristics.NO_PROFILE)) {
+        	return delegateAdapter;
+		}
+
+		AbstractBehavior.removePropertiesIfPresent(componentProps, GemsCharacteristics.PROFILE);
+        return register(monitor.changedBehavior(new Profiled<T>(delegateAdapter)));
+    }
+
+    @Override
+	public <T> ComponentAdapter<T> addComponentAdapter(final ComponentMonitor monitor, final LifecycleStrategy lifecycle,
+                                                final Properties componentProps, final ComponentAdapter<T> adapter) {
+        if (AbstractBehavior.removePropertiesIfPresent(componentProps, GemsCharacteristics.NO_PROFILE)) {
+        	return super.addComponentAdapter(monitor, lifecycle, componentProps, adapter);
+		}
+
+		AbstractBehavior.removePropertiesIfPresent(componentProps, GemsCharacteristics.PROFILE);
+        return register(monitor.changedBehavior(new Profiled<T>(super.addComponentAdapter(monitor, lifecycle, componentProps, adapter))));
+    }
+
+    private <T> ComponentAdapter<T> register(final ComponentAdapter<T> adapter) {
+        if (mBeanServer == null) {
+            return adapter;
+        }
+        Profiled<?> profiled = adapter.findAdapterOfType(Profiled.class);
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(String.valueOf(profiled.getComponentKey())));
+            mBeanServer.registerMBean(new StandardMBean(profiled, ProfiledMBean.class), name);
+            registeredObjectNames.add(name);
+        } catch (MalformedObjectNameException e) {
+            throw new JMXRegistrationException(e);
+        } catch (JMException e) {
+            throw new JMXRegistrationException("Registering MBean failed", e);
+        }
+        return adapter;
+    }
+
+    /**
+     * Unregisters the MBeans this factory registered.  All are attempted, and the first failure is rethrown
+     * once the rest are done.
+     */
+    @Override
+    public void dispose() {
+        JMXRegistrationException failure = null;
+        for (ObjectName name : registeredObjectNames) {
+            try {
+                mBeanServer.unregisterMBean(name);
+            } catch (JMException e) {
+                if (failure == null) {
+                    failure = new JMXRegistrationException("Unregistering MBean " + name + " failed", e);
+                }
+            }
+        }
+        registeredObjectNames.clear();
+        super.dispose();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Management interface of a {@link Profiled} component.  Methods are identified by
+     * the names returned from {@link #getProfiledMethods()}, for example <code>wash(java.lang.String)</code>.
+     */
+    public interface ProfiledMBean {
+
+        String[] getProfiledMethods();
+
+        long getCalls(String method);
+
+        long getErrors(String method);
+
+        long getMeanNanos(String method);
+
+        long getMaxNanos(String method);
+
+        long getPercentileNanos(String method, double percentile);
+
+        /**
+         * @return one line of statistics per method.
+         */
+        String[] getReport();
+
+        void reset();
+    }
+
+    /**
+     * Call statistics of one method.  The histogram has a bucket per power of two nanoseconds, so percentiles
+     * are an upper bound accurate to a factor of two, which is plenty to spot latency changes.
+     */
+    public static class MethodProfile {
+
+        private static final int CALLS = 0;
+        private static final int ERRORS = 1;
+        private static final int TOTAL_NANOS = 2;
+        private static final int MAX_NANOS = 3;
+        private static final int FIRST_BUCKET = 4;
+        private static final int BUCKETS = 64;
+
+        private final String name;
+        private final StripedCounters counters = new StripedCounters(FIRST_BUCKET + BUCKETS);
+
+        public MethodProfile(final String name) {
+            this.name = name;
+        }
+
+        public void record(final long nanos, final boolean failed) {
+            long duration = nanos < 0 ? 0 : nanos;
+            counters.increment(CALLS);
+            if (failed) {
+                counters.increment(ERRORS);
+            }
+            counters.add(TOTAL_NANOS, duration);
+            counters.accumulateMax(MAX_NANOS, duration);
+            counters.increment(FIRST_BUCKET + bucket(duration));
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCalls() {
+            return counters.sum(CALLS);
+        }
+
+        public long getErrors() {
+            return counters.sum(ERRORS);
+        }
+
+        public long getTotalNanos() {
+            return counters.sum(TOTAL_NANOS);
+        }
+
+        public long getMaxNanos() {
+            return counters.max(MAX_NANOS);
+        }
+
+        public long getMeanNanos() {
+            long calls = getCalls();
+            return calls == 0 ? 0 : getTotalNanos() / calls;
+        }
+
+        /**
+         * @return the number of calls per histogram bucket, bucket <code>i</code> counts calls that
+         * took less than <code>2^i</code> nanoseconds (and at least <code>2^(i-1)</code>).
+         */
+        public long[] getHistogram() {
+            long[] histogram = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram[i] = counters.sum(FIRST_BUCKET + i);
+            }
+            return histogram;
+        }
+
+        /**
+         * @param percentile between 0 and 100.
+         * @return the upper bound of the bucket containing the percentile, in nanoseconds.
+         */
+        public long getPercentileNanos(final double percentile) {
+            long[] histogram = getHistogram();
+            long total = 0;
+            for (long count : histogram) {
+                total += count;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += histogram[i];
+                if (seen >= rank && histogram[i] > 0) {
+                    return i == BUCKETS - 1 ? Long.MAX_VALUE : 1L << i;
+                }
+            }
+            return getMaxNanos();
+        }
+
+        public void reset() {
+            counters.reset();
+        }
+
+        @Override
+        public String toString() {
+            return name + " calls=" + getCalls() + " errors=" + getErrors() + " mean=" + getMeanNanos()
+                    + "ns p50<" + getPercentileNanos(50) + "ns p99<" + getPercentileNanos(99) + "ns max=" + getMaxNanos() + "ns";
+        }
+
+        private static int bucket(final long nanos) {
+            return 64 - Long.numberOfLeadingZeros(nanos);
+        }
+    }
+
+    /**
+     * Component adapter that wraps each instance in a proxy recording method statistics.
+     */
+    @SuppressWarnings("serial")
+    public static class Profiled<T> extends AbstractChangedBehavior<T> implements ProfiledMBean {
+
+        /**
+         * Methods aren't serializable, so the statistics don't travel with the adapter.
+         */
+        private transient volatile ConcurrentMap<Method, MethodProfile> profiles;
+
+        public Profiled(final ComponentAdapter<T> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T getComponentInstance(final PicoContainer container, final Type into) throws PicoCompositionException {
+            final T instance = super.getComponentInstance(container, into);
+            Class<?>[] interfaces = interfacesToProxy();
+            if (interfaces == null) {
+                return instance;
+            }
+            return (T) Proxy.newProxyInstance(instance.getClass().getClassLoader(), interfaces, new InvocationHandler() {
+                public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                    MethodProfile profile = profileFor(method);
+                    boolean failed = true;
+                    long start = System.nanoTime();
+                    try {
+                        Object rv = method.invoke(instance, args);
+                        failed = false;
+                        return rv;
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    } finally {
+                        profile.record(System.nanoTime() - start, failed);
+                    }
+                }
+            });
+        }
+
+        /**
+         * @return the interfaces of the key, or null if the key is not an interface or an array of them.
+         */
+        private Class<?>[] interfacesToProxy() {
+            Object key = getComponentKey();
+            if (key instanceof Class && ((Class<?>) key).isInterface()) {
+                return new Class<?>[] {(Class<?>) key};
+            }
+            if (key instanceof Class[]) {
+                Class<?>[] classes = (Class<?>[]) key;
+                for (Class<?> clazz : classes) {
+                    if (!clazz.isInterface()) {
+                        throw new PicoCompositionException("Class keys must be interfaces. " + clazz + " is not an interface.");
+                    }
+                }
+                return classes;
+            }
+            return null;
+        }
+
+        private ConcurrentMap<Method, MethodProfile> profiles() {
+            if (profiles == null) {
+                synchronized (this) {
+                    if (profiles == null) {
+                        profiles = new ConcurrentHashMap<Method, MethodProfile>();
+                    }
+                }
+            }
+            return profiles;
+        }
+
+        private MethodProfile profileFor(final Method method) {
+            ConcurrentMap<Method, MethodProfile> profiles = profiles();
+            MethodProfile profile = profiles.get(method);
+            if (profile == null) {
+                MethodProfile created = new MethodProfile(nameOf(method));
+                profile = profiles.putIfAbsent(method, created);
+                if (profile == null) {
+                    profile = created;
+                }
+            }
+            return profile;
+        }
+
+        private static String nameOf(final Method method) {
+            StringBuilder sb = new StringBuilder(method.getName()).append('(');
+            Class<?>[] types = method.getParameterTypes();
+            for (int i = 0; i < types.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(types[i].getName());
+            }
+            return sb.append(')').toString();
+        }
+
+        /**
+         * @return the statistics of every method called so far, keyed by method.
+         */
+        public Map<Method, MethodProfile> getMethodProfiles() {
+            return Collections.unmodifiableMap(profiles());
+        }
+
+        public MethodProfile getMethodProfile(final String method) {
+            for (MethodProfile profile : profiles().values()) {
+                if (profile.getName().equals(method)) {
+                    return profile;
+                }
+            }
+            return new MethodProfile(method);
+        }
+
+        public String[] getProfiledMethods() {
+            List<String> names = new ArrayList<String>();
+            for (MethodProfile profile : profiles().values()) {
+                names.add(profile.getName());
+            }
+            Collections.sort(names);
+            return names.toArray(new String[names.size()]);
+        }
+
+        public long getCalls(final String method) {
+            return getMethodProfile(method).getCalls();
+        }
+
+        public long getErrors(final String method) {
+            return getMethodProfile(method).getErrors();
+        }
+
+        public long getMeanNanos(final String method) {
+            return getMethodProfile(method).getMeanNanos();
+        }
+
+        public long getMaxNanos(final String method) {
+            return getMethodProfile(method).getMaxNanos();
+        }
+
+        public long getPercentileNanos(final String method, final double percentile) {
+            return getMethodProfile(method).getPercentileNanos(percentile);
+        }
+
+        public String[] getReport() {
+            String[] methods = getProfiledMethods();
+            String[] report = new String[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                report[i] = getMethodProfile(methods[i]).toString();
+            }
+            return report;
+        }
+
+        public void reset() {
+            for (MethodProfile profile : profiles().values()) {
+                profile.reset();
+            }
+        }
+
+        public String getDescriptor() {
+            return "Profiled";
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ * Original code by                                                          *
+ *****************************************************************************/
+package com.picocontainer.gems.behaviors;
+
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.Properties;
+
+import com.picocontainer.ComponentAdapter;
+import com.picocontainer.ComponentMonitor;
+import com.picocontainer.LifecycleStrategy;
+import com.picocontainer.PicoCompositionException;
+import com.picocontainer.PicoContainer;
+import com.picocontainer.behaviors.AbstractBehavior;
+import com.picocontainer.gems.GemsCharacteristics;
+import com.picocontainer.parameters.ConstructorParameters;
+import com.picocontainer.parameters.FieldParameters;
+import com.picocontainer.parameters.MethodParameters;
+import com.thoughtworks.proxy.kit.Resetter;
+
+/**
+ * Hands out instances that earlier units of work gave back, rather than making new ones.  Only the
+ * components registered with {@link GemsCharacteristics#RECYCLE} are recycled.
+ * <p>
+ * Recycling goes beneath a behavior that keeps an instance for a unit of work and disposes it at the end,
+ * such as {@link com.picocontainer.behaviors.Storing}.  Instead of being disposed, the instance is reset with
+ * the {@link Resetter} and parked until the next unit of work asks for one.  If the resetter returns false or
+ * the pool is full, the instance is disposed as it would have been without recycling.  A resetter is required,
+ * as a recycled instance goes on to serve a later unit of work, which may be another user's.
+ * </p>
+ * <p>
+ * The parked instances are disposed when the {@link Recycled} adapter is disposed with its container.  A behavior
+ * above that disposes its instances at the end of each unit of work, like Storing, does not pass that on, so
+ * {@link Recycled#clear()} is left to whoever shuts the application down.
+ * </p>
+ * <p>
+ * Unlike {@link Pooling} there are no proxies and no waiting: the pool of a component is striped by thread
+ * so that threads seldom contend for it, and an empty stripe simply means a new instance is made.
+ * </p>
+ */
+@SuppressWarnings("serial")
+public class Recycling extends AbstractBehavior {
+
+    /**
+     * The default number of idle instances kept for each component.
+     */
+    public static final int DEFAULT_MAX_SIZE = 16;
+
+    private final Resetter<Object> resetter;
+
+    private final int maxSize;
+
+    /**
+     * @param resetter readies a given back instance, of any of the recycled components, for its next use.
+     */
+    public Recycling(final Resetter<Object> resetter) {
+        this(resetter, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param resetter readies a given back instance, of any of the recycled components, for its next use.
+     * @param maxSize the number of idle instances kept for each component.
+     * @throws NullPointerException if the resetter is null.
+     * @throws IllegalArgumentException if the maximum size is not positive.
+     */
+    public Recycling(final Resetter<Object> resetter, final int maxSize) {
+        if (resetter == null) {
+            throw new NullPointerException("resetter");
+        }
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid maximum pool size");
+        }
+        this.resetter = resetter;
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public <T> ComponentAdapter<T> createComponentAdapter(final ComponentMonitor monitor, final LifecycleStrategy lifecycle, final Properties componentProps,
+                                                          final Object key, final Class<T> impl, final ConstructorParameters constructorParams,
+                                                          final FieldParameters[] fieldParams, final MethodParameters[] methodParams) throws PicoCompositionException {
+        boolean recycle = AbstractBehavior.removePropertiesIfPresent(componentProps, GemsCharacteristics.RECYCLE);
+        AbstractBehavior.removePropertiesIfPresent(componentProps, GemsCharacteristics.NO_RECYCLE);
+        ComponentAdapter<T> delegate = super.createComponentAdapter(monitor, lifecycle, componentProps, key, impl, constructorParams, fieldParams, methodParams);
+        if (!recycle) {
+            return delegate;
+        }
+        return monitor.changedBehavior(new Recycled<T>(delegate, resetter, maxSize));
+    }
+
+    @Override
+    public <T> ComponentAdapter<T> addComponentAdapter(final ComponentMonitor monitor, final LifecycleStrategy lifecycle,
+                                                       final Properties componentProps, final ComponentAdapter<T> adapter) {
+        boolean recycle = AbstractBehavior.removePropertiesIfPresent(componentProps, GemsCharacteristics.RECYCLE);
+        AbstractBehavior.removePropertiesIfPresent(componentProps, GemsCharacteristics.NO_RECYCLE);
+        ComponentAdapter<T> delegate = super.addComponentAdapter(monitor, lifecycle, componentProps, adapter);
+        if (!recycle) {
+            return delegate;
+        }
+        return monitor.changedBehavior(new Recycled<T>(delegate, resetter, maxSize));
+    }
+
+    /**
+     * Keeps the instances given back by disposal, a stripe per group of threads.
+     */
+    public static final class Recycled<T> extends AbstractChangedBehavior<T> {
+
+        private final Resetter<? super T> resetter;
+        private final int stripeSize;
+        private final int mask;
+        private transient volatile ArrayDeque<T>[] stripes;
+
+        public Recycled(final ComponentAdapter<T> delegate, final Resetter<? super T> resetter, final int maxSize) {
+            super(delegate);
+            this.resetter = resetter;
+            int count = 1;
+            while (count < Runtime.getRuntime().availableProcessors() && count < maxSize) {
+                count <<= 1;
+            }
+            this.mask = count - 1;
+            this.stripeSize = (maxSize + count - 1) / count;
+        }
+
+        @Override
+        public T getComponentInstance(final PicoContainer container, final Type into) throws PicoCompositionException {
+            ArrayDeque<T> stripe = stripe();
+            T instance;
+            synchronized (stripe) {
+                instance = stripe.poll();
+            }
+            return instance != null ? instance : super.getComponentInstance(container, into);
+        }
+
+        /**
+         * Instances are given back by being disposed, so every recycled component has a lifecycle.
+         */
+        @Override
+        public boolean hasLifecycle(final Class<?> type) {
+            return true;
+        }
+
+        /**
+         * Disposes the parked instances as well, as no unit of work will ask for them any more.
+         */
+        @Override
+        public void dispose(final PicoContainer container) {
+            try {
+                super.dispose(container);
+            } finally {
+                clear();
+            }
+        }
+
+        /**
+         * Parks the instance for another unit of work, or disposes it if it cannot be reset or the
+         * pool is full.
+         */
+        @Override
+        public void dispose(final Object component) {
+            if (!recycle((T) component)) {
+                super.dispose(component);
+            }
+        }
+
+        private boolean recycle(final T component) {
+            if (!resetter.reset(component)) {
+                return false;
+            }
+            ArrayDeque<T> stripe = stripe();
+            synchronized (stripe) {
+                if (stripe.size() < stripeSize) {
+                    stripe.push(component);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Disposes the parked instances and empties the pool.
+         */
+        public void clear() {
+            ArrayDeque<T>[] all = stripes;
+            if (all == null) {
+                return;
+            }
+            for (ArrayDeque<T> stripe : all) {
+                while (true) {
+                    T instance;
+                    synchronized (stripe) {
+                        instance = stripe.poll();
+                    }
+                    if (instance == null) {
+                        break;
+                    }
+                    super.dispose(instance);
+                }
+            }
+        }
+
+        /**
+         * @return the number of parked instances.
+         */
+        public int size() {
+            ArrayDeque<T>[] all = stripes;
+            int size = 0;
+            if (all != null) {
+                for (ArrayDeque<T> stripe : all) {
+                    synchronized (stripe) {
+                        size += stripe.size();
+                    }
+                }
+            }
+            return size;
+        }
+
+        private ArrayDeque<T> stripe() {
+            ArrayDeque<T>[] all = stripes;
+            if (all == null) {
+                synchronized (this) {
+                    all = stripes;
+                    if (all == null) {
+                        all = new ArrayDeque[mask + 1];
+                        for (int i = 0; i < all.length; i++) {
+                            all[i] = new ArrayDeque<T>(stripeSize);
+                        }
+                        stripes = all;
+                    }
+                }
+            }
+            long id = Thread.currentThread().getId();
+            return all[(int) (id ^ (id >>> 16)) & mask];
+        }
+
+        public String getDescriptor() {
+            return "Recycled";
+        }
+    }
+}
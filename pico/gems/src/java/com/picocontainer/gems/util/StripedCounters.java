@@ -0,0 +1,109 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.gems.util;
+
+import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-width array of long counters that is cheap to increment from many threads.
+ * Each thread is mapped onto one of several stripes, so concurrent writers rarely
+ * hit the same cache line.  Reads sum all stripes and are therefore more expensive
+ * than writes, which is the right trade-off for always-on statistics.
+ */
+@SuppressWarnings("serial")
+public class StripedCounters implements Serializable {
+
+    /**
+     * Longs between two stripes, so that two stripes never share a 64 byte cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final int width;
+    private final int stripeLength;
+    private final int mask;
+    private final AtomicLongArray cells;
+
+    /**
+     * @param width the number of counters.
+     */
+    public StripedCounters(final int width) {
+        this(width, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    /**
+     * @param width the number of counters.
+     * @param stripes the number of stripes, rounded up to a power of two.
+     */
+    public StripedCounters(final int width, final int stripes) {
+        if (width < 1 || stripes < 1) {
+            throw new IllegalArgumentException("width and stripes must be positive");
+        }
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.width = width;
+        this.stripeLength = ((width + PADDING - 1) / PADDING) * PADDING + PADDING;
+        this.mask = size - 1;
+        this.cells = new AtomicLongArray(size * stripeLength);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public void increment(final int counter) {
+        add(counter, 1);
+    }
+
+    public void add(final int counter, final long delta) {
+        cells.getAndAdd(stripe() + counter, delta);
+    }
+
+    /**
+     * Raises the counter to the given value if it is currently lower.  The maximum is kept per stripe
+     * and {@link #max(int)} combines them.
+     */
+    public void accumulateMax(final int counter, final long value) {
+        int index = stripe() + counter;
+        long current = cells.get(index);
+        while (value > current && !cells.compareAndSet(index, current, value)) {
+            current = cells.get(index);
+        }
+    }
+
+    public long sum(final int counter) {
+        long sum = 0;
+        for (int i = counter; i < cells.length(); i += stripeLength) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    public long max(final int counter) {
+        long max = 0;
+        for (int i = counter; i < cells.length(); i += stripeLength) {
+            max = Math.max(max, cells.get(i));
+        }
+        return max;
+    }
+
+    public void reset() {
+        for (int i = 0; i < cells.length(); i++) {
+            cells.set(i, 0);
+        }
+    }
+
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & mask) * stripeLength;
+    }
+}
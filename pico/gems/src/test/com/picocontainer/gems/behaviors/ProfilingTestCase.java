@@ -0,0 +1,165 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+
+package com.picocontainer.gems.behaviors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.picocontainer.ComponentFactory;
+import com.picocontainer.DefaultPicoContainer;
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.PicoBuilder;
+import com.picocontainer.gems.GemsCharacteristics;
+import com.picocontainer.gems.jmx.JMXRegistrationException;
+import com.picocontainer.injectors.AdaptingInjection;
+import com.picocontainer.tck.AbstractComponentFactoryTest;
+
+public final class ProfilingTestCase extends AbstractComponentFactoryTest {
+
+    public static interface Washer {
+        String wash(String what);
+    }
+
+    public static class FussyWasher implements Washer {
+        public String wash(final String what) {
+            if (what == null) {
+                throw new IllegalArgumentException("nothing to wash");
+            }
+            return "clean " + what;
+        }
+    }
+
+    @Override
+    protected ComponentFactory createComponentFactory() {
+        return new Profiling().wrap(new AdaptingInjection());
+    }
+
+    @Test
+    public void testCallsAndErrorsAreCountedPerMethod() {
+        DefaultPicoContainer pico = new DefaultPicoContainer(new Profiling().wrap(new AdaptingInjection()));
+        pico.addComponent(Washer.class, FussyWasher.class);
+
+        Washer washer = pico.getComponent(Washer.class);
+        assertEquals("clean car", washer.wash("car"));
+        assertEquals("clean dog", washer.wash("dog"));
+        try {
+            washer.wash(null);
+            fail("should have thrown");
+        } catch (IllegalArgumentException e) {
+            // expected, the target exception is rethrown unwrapped
+        }
+
+        Profiling.Profiled<?> profiled = pico.getComponentAdapter(Washer.class).findAdapterOfType(Profiling.Profiled.class);
+        assertArrayEquals(new String[] {"wash(java.lang.String)"}, profiled.getProfiledMethods());
+        assertEquals(3, profiled.getCalls("wash(java.lang.String)"));
+        assertEquals(1, profiled.getErrors("wash(java.lang.String)"));
+        assertTrue(profiled.getPercentileNanos("wash(java.lang.String)", 99) >= profiled.getPercentileNanos("wash(java.lang.String)", 1));
+
+        profiled.reset();
+        assertEquals(0, profiled.getCalls("wash(java.lang.String)"));
+    }
+
+    @Test
+    public void testPercentilesComeFromHistogramBuckets() {
+        Profiling.MethodProfile profile = new Profiling.MethodProfile("m()");
+        for (int i = 0; i < 99; i++) {
+            profile.record(100, false);
+        }
+        profile.record(1000000, false);
+        assertEquals(128, profile.getPercentileNanos(50));
+        assertEquals(128, profile.getPercentileNanos(99));
+        assertEquals(1 << 20, profile.getPercentileNanos(100));
+        assertEquals(1000000, profile.getMaxNanos());
+        assertEquals((99 * 100 + 1000000) / 100, profile.getMeanNanos());
+    }
+
+    @Test
+    public void testCharacteristicsSwitchProfilingOff() {
+        MutablePicoContainer mpc = new PicoBuilder().withBehaviors(new Profiling()).build();
+        mpc.as(GemsCharacteristics.PROFILE).addComponent(Washer.class, FussyWasher.class);
+        mpc.as(GemsCharacteristics.NO_PROFILE).addComponent("not profiled", FussyWasher.class);
+
+        assertNotNull(mpc.getComponentAdapter(Washer.class).findAdapterOfType(Profiling.Profiled.class));
+        assertNull(mpc.getComponentAdapter("not profiled").findAdapterOfType(Profiling.Profiled.class));
+        assertTrue(Proxy.isProxyClass(mpc.getComponent(Washer.class).getClass()));
+        assertFalse(Proxy.isProxyClass(mpc.getComponent("not profiled").getClass()));
+    }
+
+    @Test
+    public void testComponentsNotKeyedByInterfacesAreHandedOutUndecorated() {
+        DefaultPicoContainer pico = new DefaultPicoContainer(new Profiling().wrap(new AdaptingInjection()));
+        pico.addComponent(FussyWasher.class);
+        pico.addComponent("washer", FussyWasher.class);
+
+        assertEquals("clean car", pico.getComponent(FussyWasher.class).wash("car"));
+        assertFalse(Proxy.isProxyClass(pico.getComponent("washer").getClass()));
+    }
+
+    @Test
+    public void testEveryInterfaceOfAnArrayKeyIsProfiled() {
+        DefaultPicoContainer pico = new DefaultPicoContainer(new Profiling().wrap(new AdaptingInjection()));
+        Class<?>[] key = {Washer.class};
+        pico.addComponent(key, FussyWasher.class);
+
+        assertEquals("clean car", ((Washer) pico.getComponent(key)).wash("car"));
+        Profiling.Profiled<?> profiled = pico.getComponentAdapter(key).findAdapterOfType(Profiling.Profiled.class);
+        assertEquals(1, profiled.getCalls("wash(java.lang.String)"));
+    }
+
+    @Test
+    public void testStatisticsAreExposedThroughJmx() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        Profiling profiling = new Profiling(mBeanServer);
+        DefaultPicoContainer pico = new DefaultPicoContainer(profiling.wrap(new AdaptingInjection()));
+        pico.addComponent(Washer.class, FussyWasher.class);
+        pico.getComponent(Washer.class).wash("cat");
+
+        ObjectName name = new ObjectName(Profiling.OBJECT_NAME_PREFIX + ObjectName.quote(Washer.class.toString()));
+        assertTrue(mBeanServer.isRegistered(name));
+        assertEquals(1L, mBeanServer.invoke(name, "getCalls", new Object[] {"wash(java.lang.String)"}, new String[] {String.class.getName()}));
+
+        profiling.dispose();
+        assertFalse(mBeanServer.isRegistered(name));
+    }
+
+    @Test
+    public void testDisposeUnregistersTheRestWhenOneUnregisterFails() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        Profiling profiling = new Profiling(mBeanServer);
+        DefaultPicoContainer pico = new DefaultPicoContainer(profiling.wrap(new AdaptingInjection()));
+        pico.addComponent("first", FussyWasher.class);
+        pico.addComponent("second", FussyWasher.class);
+        ObjectName first = new ObjectName(Profiling.OBJECT_NAME_PREFIX + ObjectName.quote("first"));
+        ObjectName second = new ObjectName(Profiling.OBJECT_NAME_PREFIX + ObjectName.quote("second"));
+        mBeanServer.unregisterMBean(first);
+
+        try {
+            profiling.dispose();
+            fail("should have thrown");
+        } catch (JMXRegistrationException e) {
+            assertTrue(e.getMessage().contains("first"));
+        }
+        assertFalse(mBeanServer.isRegistered(second));
+    }
+
+}
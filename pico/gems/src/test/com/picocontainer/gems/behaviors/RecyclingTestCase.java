@@ -0,0 +1,140 @@
+package com.picocontainer.gems.behaviors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Properties;
+
+import org.junit.Test;
+
+import com.picocontainer.ComponentFactory;
+import com.picocontainer.DefaultPicoContainer;
+import com.picocontainer.Disposable;
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.behaviors.Storing;
+import com.picocontainer.gems.GemsCharacteristics;
+import com.picocontainer.injectors.AdaptingInjection;
+import com.picocontainer.lifecycle.DefaultLifecycleState;
+import com.picocontainer.lifecycle.StartableLifecycleStrategy;
+import com.picocontainer.monitors.NullComponentMonitor;
+import com.picocontainer.tck.AbstractComponentFactoryTest;
+import com.thoughtworks.proxy.kit.Resetter;
+
+public class RecyclingTestCase extends AbstractComponentFactoryTest {
+
+    public static class Binder implements Disposable {
+        private final StringBuilder fields = new StringBuilder();
+        private boolean disposed;
+
+        public void dispose() {
+            disposed = true;
+        }
+    }
+
+    private static final Resetter<Object> CLEARING = new Resetter<Object>() {
+        public boolean reset(final Object object) {
+            if (object instanceof Binder) {
+                ((Binder) object).fields.setLength(0);
+            }
+            return true;
+        }
+    };
+
+    private MutablePicoContainer makeRequestContainer(final Storing storing, final Recycling recycling) {
+        MutablePicoContainer app = new DefaultPicoContainer();
+        MutablePicoContainer request = new DefaultPicoContainer(app, storing, recycling);
+        request.as(GemsCharacteristics.RECYCLE).addComponent(Binder.class);
+        request.addComponent("fresh", Binder.class);
+        return request;
+    }
+
+    private void endRequest(final Storing storing, final MutablePicoContainer request) {
+        request.stop();
+        request.dispose();
+        storing.resetCacheForThread();
+        request.setLifecycleState(new DefaultLifecycleState());
+    }
+
+    @Test
+    public void testInstancesAreResetAndHandedOutAgainOnTheNextUnitOfWork() {
+        Storing storing = new Storing();
+        MutablePicoContainer request = makeRequestContainer(storing, new Recycling(CLEARING, 4));
+
+        storing.resetCacheForThread();
+        request.start();
+        Binder first = request.getComponent(Binder.class);
+        first.fields.append("name=x");
+        Binder fresh = (Binder) request.getComponent("fresh");
+        endRequest(storing, request);
+
+        request.start();
+        assertSame(first, request.getComponent(Binder.class));
+        assertEquals("", first.fields.toString());
+        assertEquals(false, first.disposed);
+        assertNotSame(fresh, request.getComponent("fresh"));
+        assertEquals(true, fresh.disposed);
+    }
+
+    @Test
+    public void testInstancesBeyondTheSizeCapOrRejectedByTheResetterAreDisposed() {
+        Recycling.Recycled<Binder> recycled = new Recycling.Recycled<Binder>(
+                new AdaptingInjection().createComponentAdapter(new NullComponentMonitor(),
+                        new StartableLifecycleStrategy(new NullComponentMonitor()),
+                        new Properties(), Binder.class, Binder.class, null, null, null), CLEARING, 1);
+        Binder one = new Binder();
+        Binder two = new Binder();
+        recycled.dispose(one);
+        recycled.dispose(two);
+        assertEquals(1, recycled.size());
+        assertEquals(false, one.disposed);
+        assertEquals(true, two.disposed);
+        recycled.clear();
+        assertEquals(0, recycled.size());
+        assertEquals(true, one.disposed);
+
+        Recycling.Recycled<Binder> rejecting = new Recycling.Recycled<Binder>(recycled.getDelegate(), new Resetter<Binder>() {
+            public boolean reset(final Binder binder) {
+                return false;
+            }
+        }, 4);
+        Binder three = new Binder();
+        rejecting.dispose(three);
+        assertEquals(0, rejecting.size());
+        assertEquals(true, three.disposed);
+    }
+
+    @Test
+    public void testParkedInstancesAreDisposedWithTheAdapter() {
+        Recycling.Recycled<Binder> recycled = new Recycling.Recycled<Binder>(
+                new AdaptingInjection().createComponentAdapter(new NullComponentMonitor(),
+                        new StartableLifecycleStrategy(new NullComponentMonitor()),
+                        new Properties(), Binder.class, Binder.class, null, null, null), CLEARING, 4);
+        Binder parked = new Binder();
+        recycled.dispose(parked);
+        assertEquals(1, recycled.size());
+        recycled.dispose(new DefaultPicoContainer());
+        assertEquals(0, recycled.size());
+        assertEquals(true, parked.disposed);
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testAResetterIsRequired() {
+        new Recycling(null);
+    }
+
+    @Test
+    public void testOnlyComponentsThatOptInAreRecycled() {
+        MutablePicoContainer request = makeRequestContainer(new Storing(), new Recycling(CLEARING));
+        assertNotNull(request.getComponentAdapter(Binder.class).findAdapterOfType(Recycling.Recycled.class));
+        assertNull(request.getComponentAdapter("fresh").findAdapterOfType(Recycling.Recycled.class));
+    }
+
+    @Override
+    protected ComponentFactory createComponentFactory() {
+        return new Recycling(CLEARING).wrap(new AdaptingInjection());
+    }
+
+}
@@ -9,8 +9,13 @@ package com.picocontainer.web;
 
 import com.picocontainer.*;
 import com.picocontainer.adapters.AbstractAdapter;
+import com.picocontainer.behaviors.Storing;
 import com.picocontainer.containers.TransientPicoContainer;
+import com.picocontainer.injectors.ConstructorInjection;
 import com.picocontainer.lifecycle.DefaultLifecycleState;
+import com.picocontainer.lifecycle.LifecycleState;
+import com.picocontainer.lifecycle.NullLifecycleStrategy;
+import com.picocontainer.monitors.NullComponentMonitor;
 import com.picocontainer.security.PicoAccessPermission;
 import com.picocontainer.security.SecurityWrappingPicoContainer;
 
@@ -22,6 +27,14 @@ import javax.servlet.http.HttpSession;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SuppressWarnings("serial")
 public abstract class AbstractPicoServletContainerFilter implements Filter, Serializable {
@@ -31,9 +44,16 @@ public abstract class AbstractPicoServletContainerFilter implements Filter, Seri
     private boolean printSessionSize;
 	private boolean debug = false;
 
-    private static ThreadLocal<HttpSession> currentSession = new ThreadLocal<HttpSession>();
-    private static ThreadLocal<ServletRequest> currentRequest = new ThreadLocal<ServletRequest>();
-    private static ThreadLocal<ServletResponse> currentResponse = new ThreadLocal<ServletResponse>();
+    /**
+     * Set for each request and removed when it ends, so that a pooled thread keeps nothing of the webapp.
+     */
+    private static final ThreadLocal<ServletObjects> currentServletObjects = new ThreadLocal<ServletObjects>();
+
+    private transient volatile ScopeWrappers scopeWrappers;
+
+    private transient volatile RequestComponentAdapters requestComponentAdapters;
+
+    private transient volatile LifecycleCheck requestLifecycleCheck;
     
     abstract protected MutablePicoContainer getRequestContainer();
     
@@ -54,7 +74,7 @@ public abstract class AbstractPicoServletContainerFilter implements Filter, Seri
         }
 
         
-        setAppContainer(new SecurityWrappingPicoContainer(PicoAccessPermission.APP_SCOPE,scopedContainers.getApplicationContainer()));
+        setAppContainer(getScopeWrappers(scopedContainers).app);
 
         isStateless = Boolean.parseBoolean(context.getInitParameter(PicoServletContainerListener.STATELESS_WEBAPP));
         printSessionSize = Boolean.parseBoolean(context.getInitParameter(PicoServletContainerListener.PRINT_SESSION_SIZE));
@@ -88,15 +108,68 @@ public abstract class AbstractPicoServletContainerFilter implements Filter, Seri
     protected void initAdditionalScopedComponents(MutablePicoContainer sessionContainer, MutablePicoContainer reqContainer) {
     }
 
+    /**
+     * Makes a new instance of a type that need not be registered, with its dependencies resolved from the
+     * request container of the current thread.  The adapters made for each type are pooled, so the constructor
+     * of each is only chosen once, until components are added to or removed from any of the scopes.  An adapter
+     * is used by one thread at a time, as the injectors keep state while they instantiate.
+     */
     public Object getRequestComponentForThread(Class<?> type) {
         MutablePicoContainer requestContainer = getRequestContainer();
-        MutablePicoContainer container = new TransientPicoContainer(requestContainer);
-        container.addComponent(type);
-        return container.getComponent(type);
+        ScopeWrappers wrappers = scopeWrappers;
+        RequestComponentAdapters adapters = wrappers == null ? null : getRequestComponentAdapters(wrappers.scopedContainers);
+        if (adapters == null) {
+            MutablePicoContainer container = new TransientPicoContainer(requestContainer);
+            container.addComponent(type);
+            return container.getComponent(type);
+        }
+        ComponentAdapter<?> adapter = adapters.borrow(type);
+        try {
+            return adapter.getComponentInstance(requestContainer, ComponentAdapter.NOTHING.class);
+        } finally {
+            adapters.giveBack(type, adapter);
+        }
+    }
+
+    /**
+     * @return the adapters for the current registrations of the scopes, or null if they cannot be told apart
+     *         from earlier ones because a scope's container is not {@link ChangeCounting}.
+     */
+    private RequestComponentAdapters getRequestComponentAdapters(ScopedContainers scopedContainers) {
+        long[] changeCounts = RequestComponentAdapters.changeCounts(scopedContainers);
+        if (changeCounts == null) {
+            return null;
+        }
+        RequestComponentAdapters adapters = requestComponentAdapters;
+        if (adapters == null || !Arrays.equals(adapters.changeCounts, changeCounts)) {
+            adapters = new RequestComponentAdapters(changeCounts);
+            requestComponentAdapters = adapters;
+        }
+        return adapters;
     }
 
+    /**
+     * The per-request work is kept light: the security wrappers are flyweights shared by all requests, and when no
+     * request scoped component has a lifecycle the start/stop/dispose walks of the request container are skipped.
+     * Nothing is left in the thread locals of the thread when the request ends.
+     * <p>A request that goes asynchronous keeps its scopes: they are moved off the thread into a
+     * {@link RequestScope}, attached again for async dispatches, and ended when the async processing completes.</p>
+     */
     public void doFilter(ServletRequest req, ServletResponse resp, FilterChain filterChain) throws IOException, ServletException {
 
+        if (req.getDispatcherType() == DispatcherType.ASYNC) {
+            RequestScope scope = RequestScope.of(req);
+            if (scope != null) {
+                Attachment previous = scope.attach();
+                try {
+                    filterChain.doFilter(req, resp);
+                } finally {
+                    scope.detach(previous);
+                }
+                return;
+            }
+        }
+
         HttpServletRequest servletRequest = (HttpServletRequest) req;
         HttpSession sess = null;
         
@@ -104,15 +177,20 @@ public abstract class AbstractPicoServletContainerFilter implements Filter, Seri
         	sess = servletRequest.getSession();
         }
         
+        ServletObjects servletObjects = null;
         if (exposeServletInfrastructure) {
-            currentSession.set(sess);
-            currentRequest.set(req);
-            currentResponse.set(resp);
+            servletObjects = new ServletObjects();
+            servletObjects.session = sess;
+            servletObjects.request = req;
+            servletObjects.response = resp;
+            currentServletObjects.set(servletObjects);
         }
 
         ScopedContainers scopedContainers = getScopedContainers(req.getServletContext());
+        ScopeWrappers wrappers = getScopeWrappers(scopedContainers);
 
         SessionStoreHolder ssh = null;
+        boolean newHolder = false;
         if (!isStateless) {
 
             ssh = (SessionStoreHolder) sess.getAttribute(SessionStoreHolder.class.getName());
@@ -122,74 +200,468 @@ public abstract class AbstractPicoServletContainerFilter implements Filter, Seri
                             "at the session level, but no working container to host them");
                 }
                 ssh = new SessionStoreHolder(scopedContainers.getSessionStoring().getCacheForThread(), new DefaultLifecycleState());
+                newHolder = true;
             }
 
             scopedContainers.getSessionStoring().putCacheForThread(ssh.getStoreWrapper());
             scopedContainers.getSessionState().putLifecycleStateModelForThread(ssh.getLifecycleState());
 
         }
-        scopedContainers.getRequestStoring().resetCacheForThread();
+        MutablePicoContainer requestContainer = scopedContainers.getRequestContainer();
+        boolean requestLifecycle = requestScopeHasLifecycle(requestContainer);
+        scopedContainers.getRequestStoring().openCacheForThread();
         scopedContainers.getRequestState().resetStateModelForThread();
 
-        scopedContainers.getRequestContainer().start();
+        if (requestLifecycle) {
+            requestContainer.start();
+        }
 
         try {
 	        
-	        setAppContainer(new SecurityWrappingPicoContainer(PicoAccessPermission.APP_SCOPE,scopedContainers.getApplicationContainer()));
+	        setAppContainer(wrappers.app);
 	        if (!isStateless) {
-	            setSessionContainer(new SecurityWrappingPicoContainer(PicoAccessPermission.SESSION_SCOPE,scopedContainers.getSessionContainer()));
+	            setSessionContainer(wrappers.session);
 	        }
-	        setRequestContainer(new SecurityWrappingPicoContainer(PicoAccessPermission.REQUEST_SCOPE,scopedContainers.getRequestContainer()));
+	        setRequestContainer(wrappers.request);
 	        
-	        containersSetupForRequest(scopedContainers.getApplicationContainer(), scopedContainers.getSessionContainer(), scopedContainers.getRequestContainer(), req, resp);
+	        containersSetupForRequest(scopedContainers.getApplicationContainer(), scopedContainers.getSessionContainer(), requestContainer, req, resp);
 	
 	        filterChain.doFilter(req, resp);
         } finally {
-	
-	        if (scopedContainers.getRequestContainer() != null) {
-	        	scopedContainers.getRequestContainer().stop();
+
+	        if (req.isAsyncStarted()) {
+	            suspendRequest(new RequestScope(this, req, wrappers, servletObjects, sess, ssh, newHolder, requestLifecycle));
+	        } else {
+	            try {
+	                endRequest(scopedContainers, sess, ssh, newHolder, false, requestLifecycle);
+	            } finally {
+	                currentServletObjects.remove();
+	            }
 	        }
-	        
-	        if (scopedContainers.getRequestContainer() != null) {
-	        	scopedContainers.getRequestContainer().dispose();
+        }
+    }
+
+    /**
+     * Ends the request scope bound to this thread, writing the session store back if it changed.
+     */
+    private void endRequest(ScopedContainers scopedContainers, HttpSession sess, SessionStoreHolder ssh, boolean newHolder,
+                            boolean sessionDirty, boolean requestLifecycle) throws IOException {
+        MutablePicoContainer requestContainer = scopedContainers.getRequestContainer();
+        try {
+	        if (requestLifecycle) {
+	        	try {
+	        		requestContainer.stop();
+	        	} finally {
+	        		requestContainer.dispose();
+	        	}
 	        }
+        } finally {
 	        
 	        setRequestContainer(null);
 	
 	        if (!isStateless) {
-	            if (printSessionSize) {
-	                PrintSessionSizeDetailsForDebugging.printItIfDebug(debug, ssh);
-	            }
-	            try {
-	                sess.setAttribute(SessionStoreHolder.class.getName(), ssh);
-	            }
-	            catch (IllegalStateException ex) {
-	                // catalina can report 'Session already invalidated'
+	            // setting the attribute again is what makes a clustered container replicate the session,
+	            // so it is only done when the session store has changed
+	            boolean dirty = ssh.takeDirty() | scopedContainers.getSessionStoring().isCacheDirtyForThread() | sessionDirty;
+	            if (newHolder || dirty) {
+	                if (printSessionSize) {
+	                    PrintSessionSizeDetailsForDebugging.printItIfDebug(debug, ssh);
+	                }
+	                try {
+	                    sess.setAttribute(SessionStoreHolder.class.getName(), ssh);
+	                }
+	                catch (IllegalStateException ex) {
+	                    // catalina can report 'Session already invalidated'
+	                }
 	            }
 	            setSessionContainer(null);
 	        }
+	        // the request store and state are dropped rather than kept for the next request, as anything
+	        // parked in a thread local of a pooled thread pins the webapp's classloader after undeployment
 	        scopedContainers.getRequestStoring().invalidateCacheForThread();
 	        scopedContainers.getRequestState().invalidateStateModelForThread();
 	
-	        if (!isStateless) {
-	            scopedContainers.getSessionStoring().invalidateCacheForThread();
-	            scopedContainers.getSessionState().invalidateStateModelForThread();
-	        }
+	        releaseSessionScope(scopedContainers);
 	
 	        setAppContainer(null);
-	        if (exposeServletInfrastructure) {
-	            currentSession.set(null);
-	            currentRequest.set(null);
-	            currentResponse.set(null);
-	        }
         }
     }
 
+    /**
+     * Moves the scopes of a request that has gone asynchronous off this thread, leaving the thread ready for
+     * its next request.
+     */
+    private void suspendRequest(RequestScope scope) {
+        ScopedContainers scopedContainers = scope.wrappers.scopedContainers;
+        scope.requestStore = scopedContainers.getRequestStoring().getCacheForThread();
+        scope.requestState = scopedContainers.getRequestState().getLifecycleStateModelForThread();
+        scopedContainers.getRequestStoring().invalidateCacheForThread();
+        scopedContainers.getRequestState().invalidateStateModelForThread();
+        currentServletObjects.remove();
+        scope.request.setAttribute(RequestScope.class.getName(), scope);
+        scope.request.getAsyncContext().addListener(scope.completion);
+        scope.unbind();
+    }
+
+    private void releaseSessionScope(ScopedContainers scopedContainers) {
+        if (!isStateless) {
+            scopedContainers.getSessionStoring().invalidateCacheForThread();
+            scopedContainers.getSessionState().invalidateStateModelForThread();
+        }
+    }
+
+    private ScopeWrappers getScopeWrappers(ScopedContainers scopedContainers) {
+        ScopeWrappers wrappers = scopeWrappers;
+        if (wrappers == null || wrappers.scopedContainers != scopedContainers) {
+            wrappers = new ScopeWrappers(scopedContainers);
+            scopeWrappers = wrappers;
+        }
+        return wrappers;
+    }
+
+    /**
+     * Whether any adapter of the request container has a lifecycle.  The answer is kept until a component is
+     * added to or removed from the request container, if it is {@link ChangeCounting}, else worked out each time.
+     */
+    private boolean requestScopeHasLifecycle(MutablePicoContainer requestContainer) {
+        long changeCount = requestContainer instanceof ChangeCounting
+                ? ((ChangeCounting) requestContainer).getChangeCount() : -1;
+        if (changeCount == -1) {
+            return hasLifecycle(requestContainer.getComponentAdapters());
+        }
+        LifecycleCheck check = requestLifecycleCheck;
+        if (check == null || check.changeCount != changeCount) {
+            check = new LifecycleCheck(changeCount, hasLifecycle(requestContainer.getComponentAdapters()));
+            requestLifecycleCheck = check;
+        }
+        return check.lifecycle;
+    }
+
+    private static boolean hasLifecycle(Collection<ComponentAdapter<?>> adapters) {
+        for (ComponentAdapter<?> adapter : adapters) {
+            if (adapter instanceof ComponentLifecycle && ((ComponentLifecycle<?>) adapter).componentHasLifecycle()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     protected void containersSetupForRequest(MutablePicoContainer appcontainer, MutablePicoContainer sessionContainer,
                                              MutablePicoContainer requestContainer, ServletRequest req, ServletResponse resp) {
     }
 
 
+    /**
+     * Whether the request container had lifecycle components, as of one count of its changes.
+     */
+    private static final class LifecycleCheck {
+        private final long changeCount;
+        private final boolean lifecycle;
+
+        private LifecycleCheck(long changeCount, boolean lifecycle) {
+            this.changeCount = changeCount;
+            this.lifecycle = lifecycle;
+        }
+    }
+
+    /**
+     * The servlet objects of the request being processed by a thread.
+     */
+    private static final class ServletObjects {
+        private HttpSession session;
+        private ServletRequest request;
+        private ServletResponse response;
+    }
+
+    /**
+     * The scopes of a request that has gone asynchronous.  They are attached to the thread that resumes the
+     * request when the servlet container dispatches it again, and ended when the async processing completes.
+     * Work done for the request on threads of the application's own should be wrapped likewise:
+     * <pre>
+     * final RequestScope scope = RequestScope.of(request);
+     * executor.execute(scope.wrap(new Runnable() { ... }));
+     * </pre>
+     * A scope can only be attached to one thread at a time.  If the async processing completes while the scope
+     * is attached, the scope is ended when the last attachment is detached.
+     */
+    public static final class RequestScope {
+        private final AbstractPicoServletContainerFilter filter;
+        private final ServletRequest request;
+        private final ScopeWrappers wrappers;
+        private final ServletObjects servletObjects;
+        private final HttpSession session;
+        private final SessionStoreHolder ssh;
+        private final boolean newHolder;
+        private final boolean requestLifecycle;
+        private final AsyncListener completion = new Completion();
+        private final AtomicInteger attachments = new AtomicInteger();
+        private final AtomicBoolean ended = new AtomicBoolean();
+        private volatile boolean completed;
+        private Storing.StoreWrapper requestStore;
+        private LifecycleState requestState;
+        private volatile boolean sessionDirty;
+
+        private RequestScope(AbstractPicoServletContainerFilter filter, ServletRequest request, ScopeWrappers wrappers,
+                             ServletObjects servletObjects, HttpSession session, SessionStoreHolder ssh,
+                             boolean newHolder, boolean requestLifecycle) {
+            this.filter = filter;
+            this.request = request;
+            this.wrappers = wrappers;
+            this.servletObjects = servletObjects;
+            this.session = session;
+            this.ssh = ssh;
+            this.newHolder = newHolder;
+            this.requestLifecycle = requestLifecycle;
+        }
+
+        /**
+         * @return the scope of the given request if it has gone asynchronous, else null.
+         */
+        public static RequestScope of(ServletRequest request) {
+            return (RequestScope) request.getAttribute(RequestScope.class.getName());
+        }
+
+        /**
+         * Binds the app, session and request scopes of the request to the current thread.
+         * @return what the thread had bound before, to be passed to {@link #detach(Attachment)}.
+         */
+        public Attachment attach() {
+            attachments.incrementAndGet();
+            return bind();
+        }
+
+        /**
+         * Unbinds the scopes from the current thread, restoring what the thread had before.
+         * @param previous what {@link #attach()} returned on this thread.
+         */
+        public void detach(Attachment previous) {
+            try {
+                requestStore = wrappers.scopedContainers.getRequestStoring().getCacheForThread();
+                unbind();
+                previous.restore(wrappers.scopedContainers);
+            } finally {
+                if (attachments.decrementAndGet() == 0 && completed) {
+                    end();
+                }
+            }
+        }
+
+        /**
+         * @return a task that runs the given one with this scope attached.
+         */
+        public Runnable wrap(final Runnable task) {
+            return new Runnable() {
+                public void run() {
+                    Attachment previous = attach();
+                    try {
+                        task.run();
+                    } finally {
+                        detach(previous);
+                    }
+                }
+            };
+        }
+
+        private Attachment bind() {
+            ScopedContainers scopedContainers = wrappers.scopedContainers;
+            Attachment previous = new Attachment(scopedContainers, ssh != null);
+            if (servletObjects != null) {
+                currentServletObjects.set(servletObjects);
+            }
+            scopedContainers.getRequestStoring().putCacheForThread(requestStore);
+            scopedContainers.getRequestState().putLifecycleStateModelForThread(requestState);
+            if (ssh != null) {
+                scopedContainers.getSessionStoring().putCacheForThread(ssh.getStoreWrapper());
+                scopedContainers.getSessionState().putLifecycleStateModelForThread(ssh.getLifecycleState());
+            }
+            filter.setAppContainer(wrappers.app);
+            if (ssh != null) {
+                filter.setSessionContainer(wrappers.session);
+            }
+            filter.setRequestContainer(wrappers.request);
+            return previous;
+        }
+
+        private void unbind() {
+            if (ssh != null) {
+                sessionDirty |= wrappers.scopedContainers.getSessionStoring().isCacheDirtyForThread();
+            }
+            filter.setRequestContainer(null);
+            filter.setSessionContainer(null);
+            filter.setAppContainer(null);
+            filter.releaseSessionScope(wrappers.scopedContainers);
+        }
+
+        private void onComplete() {
+            completed = true;
+            if (attachments.get() == 0) {
+                end();
+            }
+        }
+
+        /**
+         * Ends the request scope, once.
+         */
+        private void end() {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            request.removeAttribute(RequestScope.class.getName());
+            Attachment previous = bind();
+            try {
+                filter.endRequest(wrappers.scopedContainers, session, ssh, newHolder, sessionDirty, requestLifecycle);
+            } catch (IOException e) {
+                throw new PicoContainerWebException("Could not end the request scope", e);
+            } finally {
+                previous.restore(wrappers.scopedContainers);
+            }
+        }
+
+        private class Completion implements AsyncListener {
+            public void onComplete(AsyncEvent event) {
+                RequestScope.this.onComplete();
+            }
+
+            public void onTimeout(AsyncEvent event) {
+            }
+
+            public void onError(AsyncEvent event) {
+            }
+
+            public void onStartAsync(AsyncEvent event) {
+                // listeners are dropped when the request goes asynchronous again
+                event.getAsyncContext().addListener(this);
+            }
+        }
+    }
+
+    /**
+     * What a thread had bound before a {@link RequestScope} was attached to it.  Each attachment has its own, so
+     * that scopes attached on several threads at once do not restore each other's.
+     */
+    public static final class Attachment {
+        private final ServletObjects servletObjects;
+        private final Storing.StoreWrapper requestStore;
+        private final LifecycleState requestState;
+        private final Storing.StoreWrapper sessionStore;
+        private final LifecycleState sessionState;
+
+        private Attachment(ScopedContainers scopedContainers, boolean session) {
+            servletObjects = currentServletObjects.get();
+            requestStore = scopedContainers.getRequestStoring().getCacheForThread();
+            requestState = scopedContainers.getRequestState().getLifecycleStateModelForThread();
+            sessionStore = session ? scopedContainers.getSessionStoring().getCacheForThread() : null;
+            sessionState = session ? scopedContainers.getSessionState().getLifecycleStateModelForThread() : null;
+        }
+
+        /**
+         * Puts back what the thread had, as it was: an invalidated store stays invalidated rather than being
+         * made into one that can be stored into, and a thread that had nothing is left with nothing.
+         */
+        private void restore(ScopedContainers scopedContainers) {
+            if (servletObjects == null) {
+                currentServletObjects.remove();
+            } else {
+                currentServletObjects.set(servletObjects);
+            }
+            scopedContainers.getRequestStoring().restoreCacheForThread(requestStore);
+            restoreState(scopedContainers.getRequestState(), requestState);
+            if (sessionStore != null) {
+                scopedContainers.getSessionStoring().restoreCacheForThread(sessionStore);
+                restoreState(scopedContainers.getSessionState(), sessionState);
+            }
+        }
+
+        private static void restoreState(ThreadLocalLifecycleState threadState, LifecycleState previous) {
+            if (previous == null || previous instanceof DefaultLifecycleState && ((DefaultLifecycleState) previous).isConstructed()) {
+                // no different from what the thread would make for itself
+                threadState.invalidateStateModelForThread();
+            } else {
+                threadState.putLifecycleStateModelForThread(previous);
+            }
+        }
+    }
+
+    /**
+     * The security wrappers of the three scopes, created once and shared by all requests.
+     */
+    private static final class ScopeWrappers {
+        private final ScopedContainers scopedContainers;
+        private final MutablePicoContainer app;
+        private final MutablePicoContainer session;
+        private final MutablePicoContainer request;
+
+        private ScopeWrappers(ScopedContainers scopedContainers) {
+            this.scopedContainers = scopedContainers;
+            app = new SecurityWrappingPicoContainer(PicoAccessPermission.APP_SCOPE, scopedContainers.getApplicationContainer());
+            session = scopedContainers.getSessionContainer() == null ? null
+                    : new SecurityWrappingPicoContainer(PicoAccessPermission.SESSION_SCOPE, scopedContainers.getSessionContainer());
+            request = new SecurityWrappingPicoContainer(PicoAccessPermission.REQUEST_SCOPE, scopedContainers.getRequestContainer());
+        }
+    }
+
+    /**
+     * The adapters made by {@link AbstractPicoServletContainerFilter#getRequestComponentForThread(Class)}, valid
+     * for one count of the changes to each of the app, session and request registries.  The adapters of a type
+     * are lent out one thread at a time.  Up to {@link #MAX_POOLED} of them are kept for each type, and those
+     * given back beyond that are dropped, so a burst of requests does not leave its adapters pinned.
+     */
+    private static final class RequestComponentAdapters {
+        private static final ConstructorInjection INJECTION = new ConstructorInjection();
+        private static final int MAX_POOLED = 16;
+
+        private final long[] changeCounts;
+        private final ConcurrentHashMap<Class<?>, Queue<ComponentAdapter<?>>> pools = new ConcurrentHashMap<Class<?>, Queue<ComponentAdapter<?>>>();
+
+        private RequestComponentAdapters(long[] changeCounts) {
+            this.changeCounts = changeCounts;
+        }
+
+        /**
+         * @return the change counts of the app, session and request containers, or null if any of them does
+         *         not count its changes.
+         */
+        private static long[] changeCounts(ScopedContainers scopedContainers) {
+            MutablePicoContainer[] containers = {scopedContainers.getApplicationContainer(),
+                    scopedContainers.getSessionContainer(), scopedContainers.getRequestContainer()};
+            long[] changeCounts = new long[containers.length];
+            for (int i = 0; i < containers.length; i++) {
+                if (containers[i] instanceof ChangeCounting) {
+                    changeCounts[i] = ((ChangeCounting) containers[i]).getChangeCount();
+                    if (changeCounts[i] == -1) {
+                        return null;
+                    }
+                } else if (containers[i] != null) {
+                    return null;
+                }
+            }
+            return changeCounts;
+        }
+
+        private ComponentAdapter<?> borrow(Class<?> type) {
+            Queue<ComponentAdapter<?>> pool = pools.get(type);
+            ComponentAdapter<?> adapter = pool == null ? null : pool.poll();
+            if (adapter == null) {
+                adapter = INJECTION.createComponentAdapter(new NullComponentMonitor(), new NullLifecycleStrategy(),
+                        new Properties(), type, type, null, null, null);
+            }
+            return adapter;
+        }
+
+        private void giveBack(Class<?> type, ComponentAdapter<?> adapter) {
+            Queue<ComponentAdapter<?>> pool = pools.get(type);
+            if (pool == null) {
+                pool = new ArrayBlockingQueue<ComponentAdapter<?>>(MAX_POOLED);
+                Queue<ComponentAdapter<?>> raced = pools.putIfAbsent(type, pool);
+                if (raced != null) {
+                    pool = raced;
+                }
+            }
+            // refused when the pool is full
+            pool.offer(adapter);
+        }
+    }
+
     public static class HttpSessionInjector extends AbstractAdapter<HttpSession> {
 
         public HttpSessionInjector() {
@@ -197,7 +669,8 @@ public abstract class AbstractPicoServletContainerFilter implements Filter, Seri
         }
 
         public HttpSession getComponentInstance(PicoContainer picoContainer, Type type) throws PicoCompositionException {
-            return currentSession.get();
+            ServletObjects servletObjects = currentServletObjects.get();
+            return servletObjects == null ? null : servletObjects.session;
         }
 
         public void verify(PicoContainer picoContainer) throws PicoCompositionException {
@@ -215,7 +688,8 @@ public abstract class AbstractPicoServletContainerFilter implements Filter, Seri
         }
 
         public HttpServletRequest getComponentInstance(PicoContainer picoContainer, Type type) throws PicoCompositionException {
-            return (HttpServletRequest) currentRequest.get();
+            ServletObjects servletObjects = currentServletObjects.get();
+            return servletObjects == null ? null : (HttpServletRequest) servletObjects.request;
         }
 
         public void verify(PicoContainer picoContainer) throws PicoCompositionException {
@@ -233,7 +707,8 @@ public abstract class AbstractPicoServletContainerFilter implements Filter, Seri
         }
 
         public HttpServletResponse getComponentInstance(PicoContainer picoContainer, Type type) throws PicoCompositionException {
-            return (HttpServletResponse) currentResponse.get();
+            ServletObjects servletObjects = currentServletObjects.get();
+            return servletObjects == null ? null : (HttpServletResponse) servletObjects.response;
         }
 
         public void verify(PicoContainer picoContainer) throws PicoCompositionException {
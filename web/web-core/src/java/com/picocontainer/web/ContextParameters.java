@@ -57,6 +57,39 @@ public interface ContextParameters {
 	 * One value only.  Example:  <code>com.picocontainer.lifecycle.StartableLifecycleStrategy</code>
 	 */
 	String LIFECYCLE_STRATEGY = "pico.lifecycle-strategy";
+
+	/**
+	 * Set to true to start request-level components the first time they are used in a request, rather than
+	 * all of them at the start of each request.  Only the components a request used are stopped and disposed
+	 * at its end.
+	 */
+	String LAZY_REQUEST_LIFECYCLE = "pico.lazy-request-lifecycle";
+
+	/**
+	 * The number of idle instances to keep of each request-level component registered with
+	 * {@link com.picocontainer.gems.GemsCharacteristics#RECYCLE}.  When set, those instances are reset and handed
+	 * out again to later requests rather than made afresh.  Example: <code>16</code>
+	 * <p>
+	 * Needs {@link #REQUEST_RECYCLING_RESETTER}.  A recycled instance keeps whatever was injected when it was
+	 * made, so recycle only components that depend on application components alone, never ones taking the
+	 * request, the session, or session or request components.
+	 * </p>
+	 */
+	String REQUEST_RECYCLING = "pico.request-recycling";
+
+	/**
+	 * Classname of the {@link com.thoughtworks.proxy.kit.Resetter} that wipes a recycled request component before
+	 * a later request, possibly of another user, is handed it.  Required with {@link #REQUEST_RECYCLING}.
+	 * One value only.
+	 */
+	String REQUEST_RECYCLING_RESETTER = "pico.request-recycling-resetter";
+
+	/**
+	 * The number of expired sessions that can wait for the session containers to be torn down on a background
+	 * thread.  Defaults to {@link com.picocontainer.web.SessionTeardown#DEFAULT_CAPACITY}.  Set to 0 to tear them
+	 * down on the servlet container's own session expiry thread.
+	 */
+	String SESSION_TEARDOWN_QUEUE = "pico.session-teardown-queue";
 	
 	
 	/**
@@ -18,4 +18,10 @@ import java.lang.annotation.ElementType;
 @Retention(RetentionPolicy.RUNTIME)
 @Target(value={ElementType.METHOD})
 public @interface GET {
+
+    /**
+     * How many seconds the reply may be served from cache for the same parameters, or 0 for not at all.
+     * Only for methods whose reply depends on nothing but their parameters.
+     */
+    int cacheSeconds() default 0;
 }
\ No newline at end of file
@@ -9,4 +9,8 @@ public class PicoContainerWebException extends RuntimeException{
     public PicoContainerWebException(String s) {
         super(s);
     }
+
+    public PicoContainerWebException(String s, Throwable cause) {
+        super(s, cause);
+    }
 }
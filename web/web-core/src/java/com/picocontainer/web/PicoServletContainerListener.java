@@ -74,6 +74,8 @@ public class PicoServletContainerListener implements ServletContextListener, Htt
     public static final String PRINT_SESSION_SIZE = "print-session-size";
 
     private boolean isStateless;
+
+    private transient SessionTeardown sessionTeardown;
     /**
      * Default constructor used in webapp containers
      */
@@ -91,6 +93,23 @@ public class PicoServletContainerListener implements ServletContextListener, Htt
         compose(loadComposer(context), context, scopedContainers);
         start(scopedContainers.getApplicationContainer());
         context.setAttribute(ScopedContainers.class.getName(), scopedContainers);
+        sessionTeardown = makeSessionTeardown(context, scopedContainers);
+    }
+
+    /**
+     * Starts the background teardown of expired sessions, unless the webapp is stateless or the
+     * <code>pico.session-teardown-queue</code> context parameter is 0.
+     */
+    protected SessionTeardown makeSessionTeardown(ServletContext context, ScopedContainers scopedContainers) {
+        if (scopedContainers.getSessionContainer() == null) {
+            return null;
+        }
+        String queue = context.getInitParameter(ContextParameters.SESSION_TEARDOWN_QUEUE);
+        int capacity = queue == null ? SessionTeardown.DEFAULT_CAPACITY : Integer.parseInt(queue.trim());
+        if (capacity <= 0) {
+            return null;
+        }
+        return new SessionTeardown(context, scopedContainers, capacity, SessionTeardown.DEFAULT_BATCH_SIZE);
     }
 
     /**
@@ -191,6 +210,10 @@ public class PicoServletContainerListener implements ServletContextListener, Htt
     }
 
     public void contextDestroyed(ServletContextEvent event) {
+        if (sessionTeardown != null) {
+            sessionTeardown.close(30000);
+            sessionTeardown = null;
+        }
         ScopedContainers scopedContainers = getScopedContainers(event.getServletContext());
         if (scopedContainers != null && scopedContainers.getApplicationContainer() != null) {
 	        stop(scopedContainers.getApplicationContainer());
@@ -207,11 +230,11 @@ public class PicoServletContainerListener implements ServletContextListener, Htt
         container.start();
     }
 
-    private void dispose(MutablePicoContainer container) {
+    static void dispose(MutablePicoContainer container) {
         container.dispose();
     }
 
-    private void stop(MutablePicoContainer container) {
+    static void stop(MutablePicoContainer container) {
     	try {
 	    	if (container.getLifecycleState().isStarted()) {
 	    		container.stop();
@@ -243,18 +266,16 @@ public class PicoServletContainerListener implements ServletContextListener, Htt
         if (!isStateless) {
             HttpSession session = event.getSession();
             ScopedContainers scopedContainers = getScopedContainers(session.getServletContext());
-            MutablePicoContainer sessionCtr = scopedContainers.getSessionContainer();
             SessionStoreHolder ssh = (SessionStoreHolder) session.getAttribute(SessionStoreHolder.class.getName());
-            scopedContainers.getSessionStoring().putCacheForThread(ssh.getStoreWrapper());
-            scopedContainers.getSessionState().putLifecycleStateModelForThread(ssh.getLifecycleState());
-            try {
-	            stop(sessionCtr);
-	            dispose(sessionCtr);
-            } finally {
-            	//No matter what else happens, clear the memory.
-	            scopedContainers.getSessionStoring().invalidateCacheForThread();
-	            scopedContainers.getSessionState().invalidateStateModelForThread();
-	            session.removeAttribute(SessionStoreHolder.class.getName());
+            session.removeAttribute(SessionStoreHolder.class.getName());
+            if (ssh == null) {
+                return;
+            }
+            SessionTeardown teardown = sessionTeardown;
+            if (teardown != null) {
+                teardown.submit(ssh);
+            } else {
+                SessionTeardown.tearDown(scopedContainers, ssh);
             }
         }
     }
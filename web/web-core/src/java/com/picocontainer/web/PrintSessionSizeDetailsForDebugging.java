@@ -7,20 +7,29 @@ import com.picocontainer.web.SessionStoreHolder;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.util.HashMap;
 
 public class PrintSessionSizeDetailsForDebugging {
 
     public static void printItIfDebug(boolean debug, SessionStoreHolder ssh) throws IOException {
         if ( debug ){
-               ByteArrayOutputStream baos = new ByteArrayOutputStream();
-               ObjectOutputStream oos = new ObjectOutputStream(baos);
-               oos.writeObject(ssh);
-               oos.close();
-               baos.close();
+               int bytes = serializedSize(ssh);
+               // what default serialization of the store and lifecycle state comes to
+               int defaultBytes = serializedSize(new Object[] {
+                       new HashMap<Object, Object>(ssh.getStoreWrapper().asMap()), ssh.getLifecycleState()});
                String xml = new XStream(new PureJavaReflectionProvider()).toXML(ssh);
-               int bytes = baos.toByteArray().length;
-               System.out.println("** Session written (" + bytes + " bytes), xml representation= " + xml);
+               System.out.println("** Session written (" + bytes + " bytes, " + defaultBytes
+                       + " bytes with default serialization), xml representation= " + xml);
         }
     }
 
+    private static int serializedSize(Object object) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(object);
+        oos.close();
+        baos.close();
+        return baos.toByteArray().length;
+    }
+
 }
@@ -60,6 +60,11 @@ import java.util.ArrayList;
  * @author Mark S. Petrovic
  */
 public class ProfilingSecurityManager extends SecurityManager {
+
+    /**
+     * System property naming the file the grant rules are written to.
+     */
+    public static final String OUTPUT_FILE_PROPERTY = "pico.profileSecurity.output";
     
     /* Variables of pure convenience */
     final private String thisClassName;
@@ -71,12 +76,19 @@ public class ProfilingSecurityManager extends SecurityManager {
     
     // ---------------------------------
     
+    /**
+     * Writes the grant rules to the file named by the <code>pico.profileSecurity.output</code> system property,
+     * or to <code>profile-output.txt</code> in the working directory if it is not set.
+     */
     public ProfilingSecurityManager() {
+        this(new File(System.getProperty(OUTPUT_FILE_PROPERTY, "profile-output.txt")));
+    }
+
+    public ProfilingSecurityManager(File outputFile) {
         thisClassName=this.getClass().getName();
         CodeSource thisCodeSource = this.getClass().getProtectionDomain().getCodeSource();
         thisCodeSourceURLString = thisCodeSource.getLocation().toString();
         
-        File outputFile = new File("profile-output.txt");
         try {
 			out = new PrintStream(outputFile);
 		} catch (FileNotFoundException e) {
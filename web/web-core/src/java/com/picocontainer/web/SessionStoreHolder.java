@@ -1,14 +1,40 @@
 package com.picocontainer.web;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
 
 import com.picocontainer.behaviors.Storing;
+import com.picocontainer.lifecycle.DefaultLifecycleState;
 import com.picocontainer.lifecycle.LifecycleState;
 
-@SuppressWarnings("serial")
+/**
+ * What a session holds for PicoContainer: the store of session scoped instances and the lifecycle state
+ * of the session container.  It is written in a compact, versioned format, see {@link Storing.StoreWrapper}.
+ * Holders written by default serialization, before the compact format, are still read, so sessions persisted
+ * or replicated by an earlier version survive an upgrade.
+ */
 public class SessionStoreHolder implements Serializable {
-    private final Storing.StoreWrapper storeWrapper;
-    private final LifecycleState lifecycleState;
+
+    /**
+     * The id computed for the default serialized form, so that holders in that form can still be read.
+     */
+    private static final long serialVersionUID = -5129393867504155235L;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int CONSTRUCTED = 0;
+    private static final int STARTED = 1;
+    private static final int STOPPED = 2;
+    private static final int DISPOSED = 3;
+    private static final int OTHER_STATE = 4;
+
+    private Storing.StoreWrapper storeWrapper;
+    private LifecycleState lifecycleState;
+    private transient volatile boolean dirty;
 
     public SessionStoreHolder(Storing.StoreWrapper storeWrapper,
                               LifecycleState lifecycleState) {
@@ -23,4 +49,95 @@ public class SessionStoreHolder implements Serializable {
     LifecycleState getLifecycleState() {
         return lifecycleState;
     }
+
+    /**
+     * Asks for this holder to be set on the session again at the end of the current request, for changes to
+     * session scoped components that the store cannot see.  Servlet containers that replicate sessions
+     * generally only replicate attributes that are set again.
+     */
+    public void markDirty() {
+        dirty = true;
+    }
+
+    boolean takeDirty() {
+        boolean wasDirty = dirty;
+        dirty = false;
+        return wasDirty;
+    }
+
+    private Object writeReplace() {
+        return new CompactForm(this);
+    }
+
+    /**
+     * A copy of this holder that can be torn down on another thread: the store is copied, and so is the
+     * lifecycle state if it is a plain {@link DefaultLifecycleState}.  The stored instances are not, so
+     * tearing the copy down stops and disposes the instances of this holder.
+     */
+    SessionStoreHolder capture() {
+        LifecycleState state = lifecycleState != null && lifecycleState.getClass() == DefaultLifecycleState.class
+                ? replay(stateOf(lifecycleState)) : lifecycleState;
+        return new SessionStoreHolder(storeWrapper.copy(), state);
+    }
+
+    private static int stateOf(LifecycleState lifecycleState) {
+        return lifecycleState.isStarted() ? STARTED : lifecycleState.isStopped() ? STOPPED
+                : lifecycleState.isDisposed() ? DISPOSED : CONSTRUCTED;
+    }
+
+    private static DefaultLifecycleState replay(int state) {
+        // replay the transitions, the state itself is not settable
+        DefaultLifecycleState defaultState = new DefaultLifecycleState();
+        if (state == STARTED || state == STOPPED) {
+            defaultState.starting("session");
+        }
+        if (state == STOPPED) {
+            defaultState.stopped();
+        }
+        if (state == DISPOSED) {
+            defaultState.disposed();
+        }
+        return defaultState;
+    }
+
+    /**
+     * What a {@link SessionStoreHolder} is serialized as.
+     */
+    private static final class CompactForm implements Externalizable {
+        private SessionStoreHolder holder;
+
+        public CompactForm() {
+        }
+
+        private CompactForm(SessionStoreHolder holder) {
+            this.holder = holder;
+        }
+
+        public void writeExternal(ObjectOutput out) throws IOException {
+            out.writeByte(FORMAT_VERSION);
+            holder.storeWrapper.writeTo(out);
+            LifecycleState lifecycleState = holder.lifecycleState;
+            if (lifecycleState != null && lifecycleState.getClass() == DefaultLifecycleState.class) {
+                out.writeByte(stateOf(lifecycleState));
+            } else {
+                out.writeByte(OTHER_STATE);
+                out.writeObject(lifecycleState);
+            }
+        }
+
+        public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+            int version = in.readUnsignedByte();
+            if (version > FORMAT_VERSION) {
+                throw new InvalidObjectException("session store written in format " + version + ", only " + FORMAT_VERSION + " and earlier can be read");
+            }
+            Storing.StoreWrapper storeWrapper = new Storing.StoreWrapper();
+            storeWrapper.readFrom(in);
+            int state = in.readUnsignedByte();
+            holder = new SessionStoreHolder(storeWrapper, state == OTHER_STATE ? (LifecycleState) in.readObject() : replay(state));
+        }
+
+        private Object readResolve() {
+            return holder;
+        }
+    }
 }
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * --------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletContext;
+
+import com.picocontainer.MutablePicoContainer;
+
+/**
+ * Stops and disposes the session containers of expired sessions on a background thread, so that the
+ * servlet container's session expiry thread is not held up when many sessions expire together.
+ * <p>
+ * Expired sessions wait in a bounded queue and are torn down in batches.  When the queue is full, the
+ * session is torn down on the thread that expired it, which slows expiry down to the pace teardown can
+ * keep up with.  Each session's store and lifecycle state are copied when it expires, so that the teardown
+ * thread has its own, but the copies hold the session's instances themselves: a request still using the
+ * session when it expires sees them stopped and disposed.  Failed teardowns are logged to the
+ * {@link ServletContext} and do not hold up the others.
+ * </p>
+ */
+public final class SessionTeardown implements Runnable {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public static final int DEFAULT_BATCH_SIZE = 64;
+
+    private final ServletContext context;
+    private final ScopedContainers scopedContainers;
+    private final BlockingQueue<SessionStoreHolder> expired;
+    private final int batchSize;
+    private final Thread worker;
+    private volatile boolean closed;
+
+    /**
+     * @param capacity the number of expired sessions that can wait for teardown.
+     * @param batchSize the number of sessions torn down each time the teardown thread wakes.
+     */
+    public SessionTeardown(ServletContext context, ScopedContainers scopedContainers, int capacity, int batchSize) {
+        this.context = context;
+        this.scopedContainers = scopedContainers;
+        this.expired = new ArrayBlockingQueue<SessionStoreHolder>(capacity);
+        this.batchSize = batchSize;
+        this.worker = new Thread(this, "pico-session-teardown");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Queues the teardown of an expired session, or tears it down straight away if the queue is full.
+     */
+    public void submit(SessionStoreHolder ssh) {
+        SessionStoreHolder captured = ssh.capture();
+        if (closed || !expired.offer(captured)) {
+            tearDown(scopedContainers, captured);
+        }
+    }
+
+    public void run() {
+        List<SessionStoreHolder> batch = new ArrayList<SessionStoreHolder>(batchSize);
+        while (!closed || !expired.isEmpty()) {
+            try {
+                SessionStoreHolder first = expired.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                return;
+            }
+            expired.drainTo(batch, batchSize - 1);
+            for (SessionStoreHolder ssh : batch) {
+                try {
+                    tearDown(scopedContainers, ssh);
+                } catch (RuntimeException e) {
+                    // one failed teardown must not keep the others waiting
+                    context.log("Failed to tear down the session container of an expired session", e);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Tears down the sessions still queued and ends the teardown thread.
+     * @param timeoutMillis how long to wait for the teardown thread before tearing the rest down here.
+     */
+    public void close(long timeoutMillis) {
+        closed = true;
+        try {
+            worker.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        SessionStoreHolder ssh;
+        while ((ssh = expired.poll()) != null) {
+            tearDown(scopedContainers, ssh);
+        }
+    }
+
+    /**
+     * @return the number of expired sessions waiting for teardown.
+     */
+    public int backlog() {
+        return expired.size();
+    }
+
+    /**
+     * Stops and disposes the session container for the given session, on the current thread.
+     */
+    static void tearDown(ScopedContainers scopedContainers, SessionStoreHolder ssh) {
+        MutablePicoContainer sessionCtr = scopedContainers.getSessionContainer();
+        scopedContainers.getSessionStoring().putCacheForThread(ssh.getStoreWrapper());
+        scopedContainers.getSessionState().putLifecycleStateModelForThread(ssh.getLifecycleState());
+        try {
+            PicoServletContainerListener.stop(sessionCtr);
+            PicoServletContainerListener.dispose(sessionCtr);
+        } finally {
+            //No matter what else happens, clear the memory.
+            scopedContainers.getSessionStoring().invalidateCacheForThread();
+            scopedContainers.getSessionState().invalidateStateModelForThread();
+        }
+    }
+
+}
@@ -2,10 +2,28 @@ package com.picocontainer.web;
 
 import com.picocontainer.lifecycle.DefaultLifecycleState;
 import com.picocontainer.lifecycle.LifecycleState;
+import com.picocontainer.references.ExplicitScopeContext;
+import com.picocontainer.references.ScopeContext;
+import com.picocontainer.references.ThreadLocalScopeContext;
 
 public class ThreadLocalLifecycleState implements LifecycleState {
 
-    private LifecycleStateThreadLocal tl = new LifecycleStateThreadLocal();
+    private final ScopeContext<LifecycleState> context;
+
+    /**
+     * Keeps a lifecycle state per thread.
+     */
+    public ThreadLocalLifecycleState() {
+        this(new LifecycleStateThreadLocal());
+    }
+
+    /**
+     * @param context how the lifecycle state of the current unit of work is found, for example a
+     * {@link LifecycleStateScope} for work that carries its scope from thread to thread.
+     */
+    public ThreadLocalLifecycleState(ScopeContext<LifecycleState> context) {
+        this.context = context;
+    }
 
    
     public void removingComponent() {
@@ -79,35 +97,40 @@ public class ThreadLocalLifecycleState implements LifecycleState {
     }
 
     public void putLifecycleStateModelForThread(LifecycleState lifecycleState) {
-    	//Forces creation of lifecycle threadlocal
-    	getOrCreateThreadlocalLifecycleState();
-		tl.set(lifecycleState);	
+    	context.set(lifecycleState);
+    }
+
+    public LifecycleState getLifecycleStateModelForThread() {
+    	return context.get();
     }
 
     public LifecycleState resetStateModelForThread() {
         DefaultLifecycleState dls = new DefaultLifecycleState();
-        invalidateStateModelForThread();
-        tl = new LifecycleStateThreadLocal();
-        tl.set(dls);
+        context.set(dls);
         return dls;
     }
 
     public void invalidateStateModelForThread() {
-    	if (tl != null) {
-    		tl.remove();
-    		tl = null;
-    	}
+    	context.remove();
     }
 
     private LifecycleState getOrCreateThreadlocalLifecycleState() {
-    	if (tl == null) {
-    		tl = new LifecycleStateThreadLocal();
-    	}
-		return tl.get();
+		return context.get();
 	}
 
 
-	private static class LifecycleStateThreadLocal extends ThreadLocal<LifecycleState> {
+	@SuppressWarnings("serial")
+	private static class LifecycleStateThreadLocal extends ThreadLocalScopeContext<LifecycleState> {
+        protected LifecycleState initialValue() {
+            return new DefaultLifecycleState();
+        }
+    }
+
+    /**
+     * Keeps the lifecycle state in the {@link ExplicitScopeContext.Scope} being run rather than in a thread local.
+     */
+    @SuppressWarnings("serial")
+    public static class LifecycleStateScope extends ExplicitScopeContext<LifecycleState> {
         protected LifecycleState initialValue() {
             return new DefaultLifecycleState();
         }
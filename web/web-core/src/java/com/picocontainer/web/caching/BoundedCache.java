@@ -0,0 +1,297 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.web.caching;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.picocontainer.web.Cache;
+
+/**
+ * A thread safe cache that holds at most a given number of entries.
+ * <p>When full, entries are evicted oldest first, except that an entry is kept in preference to a newcomer that
+ * has been asked for less often (TinyLFU admission).  How often keys are asked for, including misses, is
+ * estimated by a small count-min sketch that halves its counts periodically, so past popularity fades.
+ * An entry that wins against a newcomer goes to the back of the queue, to be considered again later.</p>
+ * <p>Entries can be given a time to live, after which they are no longer returned.</p>
+ * <p>Entries that expire or are removed leave their place in the queue behind.  Those places are swept out
+ * whenever the queue has grown to twice the maximum size, so the queue stays bounded however the cache is used.</p>
+ */
+public class BoundedCache implements Cache {
+
+    private final int maximumSize;
+    private final long timeToLiveNanos;
+    private final ConcurrentHashMap<Object, Node> data = new ConcurrentHashMap<Object, Node>();
+    private final ConcurrentLinkedQueue<Node> insertionOrder = new ConcurrentLinkedQueue<Node>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final FrequencySketch sketch;
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public BoundedCache(int maximumSize) {
+        this(maximumSize, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param maximumSize the number of entries to hold at most.
+     * @param timeToLive how long entries are held after being put, or 0 for as long as there is room.
+     * @param unit the unit of timeToLive.
+     */
+    public BoundedCache(int maximumSize, long timeToLive, TimeUnit unit) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive, was " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        this.timeToLiveNanos = unit.toNanos(timeToLive);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    public Object get(Object key) {
+        sketch.increment(key);
+        Node node = data.get(key);
+        if (node == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (node.isExpired(System.nanoTime())) {
+            if (data.remove(key, node)) {
+                node.removed = true;
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return node.value;
+    }
+
+    public void put(Object key, Object toCache) {
+        put(key, toCache, timeToLiveNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Puts an entry with a time to live of its own.
+     * @param timeToLive how long the entry is held, or 0 for as long as there is room.
+     */
+    public void put(Object key, Object toCache, long timeToLive, TimeUnit unit) {
+        if (toCache == null) {
+            Node removed = data.remove(key);
+            if (removed != null) {
+                removed.removed = true;
+            }
+            return;
+        }
+        sketch.increment(key);
+        long ttl = unit.toNanos(timeToLive);
+        long expiresAt = ttl > 0 ? System.nanoTime() + ttl : 0;
+        Node node = new Node(key, toCache, expiresAt);
+        Node existing;
+        while ((existing = data.putIfAbsent(key, node)) != null) {
+            // keeps its place in the queue
+            existing.value = toCache;
+            existing.expiresAt = expiresAt;
+            if (data.get(key) == existing) {
+                return;
+            }
+            // evicted or removed while it was being updated, so the update would be lost
+        }
+        enqueue(node);
+        if (data.size() > maximumSize) {
+            evict(node);
+        }
+    }
+
+    private void enqueue(Node node) {
+        insertionOrder.offer(node);
+        if (queued.incrementAndGet() > 2 * maximumSize) {
+            pruneRemoved();
+        }
+    }
+
+    private Node dequeue() {
+        Node node = insertionOrder.poll();
+        if (node != null) {
+            queued.decrementAndGet();
+        }
+        return node;
+    }
+
+    /**
+     * Sweeps the places of removed entries out of the queue.  Skipped if another thread holds the lock, as it
+     * will be tried again on the next offer.
+     */
+    private void pruneRemoved() {
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            for (Iterator<Node> it = insertionOrder.iterator(); it.hasNext();) {
+                if (it.next().removed) {
+                    it.remove();
+                    queued.decrementAndGet();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void evict(Node candidate) {
+        evictionLock.lock();
+        try {
+            long now = System.nanoTime();
+            while (data.size() > maximumSize) {
+                Node victim = dequeue();
+                if (victim == null) {
+                    return;
+                }
+                if (data.get(victim.key) != victim) {
+                    continue; // removed since it was queued
+                }
+                if (victim != candidate && !victim.isExpired(now) && data.get(candidate.key) == candidate
+                        && sketch.frequency(victim.key) > sketch.frequency(candidate.key)) {
+                    // the victim is the more popular, it stays and the newcomer goes
+                    insertionOrder.offer(victim);
+                    queued.incrementAndGet();
+                    victim = candidate;
+                }
+                if (data.remove(victim.key, victim)) {
+                    victim.removed = true;
+                    evictions.incrementAndGet();
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the places in the queue, including those of removed entries not swept out yet.
+     */
+    int getQueueLength() {
+        return queued.get();
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedCache[size=" + size() + "/" + maximumSize + ", hits=" + getHitCount() + ", misses="
+                + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private static final class Node {
+        private final Object key;
+        private volatile Object value;
+        private volatile long expiresAt;
+        private volatile boolean removed;
+
+        private Node(Object key, Object value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            long at = expiresAt;
+            return at != 0 && now - at >= 0;
+        }
+    }
+
+    /**
+     * Estimates how often keys were used, in four bit counters, four per key.  Counters are updated without
+     * synchronization, so some increments are lost under contention, which only makes the estimate rougher.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final int MAXIMUM = 15;
+
+        private final byte[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(int maximumSize) {
+            int length = Integer.highestOneBit(Math.max(16, Math.min(maximumSize, 1 << 24) * 4 - 1)) << 1;
+            table = new byte[length];
+            mask = length - 1;
+            sampleSize = 10 * maximumSize;
+        }
+
+        private int frequency(Object key) {
+            int hash = spread(key.hashCode());
+            int frequency = MAXIMUM;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, table[indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private void increment(Object key) {
+            int hash = spread(key.hashCode());
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = indexOf(hash, i);
+                if (table[index] < MAXIMUM) {
+                    table[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        /**
+         * Halves all counts, so that keys that were popular long ago make way for those popular now.
+         */
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] = (byte) (table[i] >>> 1);
+            }
+            additions = additions >>> 1;
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & mask;
+        }
+
+        private static int spread(int hash) {
+            hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+            return (hash >>> 16) ^ hash;
+        }
+    }
+
+}
@@ -1,30 +1,27 @@
 package com.picocontainer.web.caching;
 
 import javax.cache.CacheException;
-import java.util.Map;
-import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
 
 import com.picocontainer.web.caching.JCacheProvider;
 import com.picocontainer.web.Cache;
 
 public class FallbackCacheProvider extends JCacheProvider {
 
-    final Map fallBackImpl = new HashMap();
+    /**
+     * The number of entries held by the fallback cache.
+     */
+    public static final int FALLBACK_MAXIMUM_SIZE = 10000;
+
+    // as long as the JCache entries live
+    final BoundedCache fallBackImpl = new BoundedCache(FALLBACK_MAXIMUM_SIZE, 120, TimeUnit.SECONDS);
 
     @Override
     public Cache provide() throws CacheException {
         try {
             return super.provide();
         } catch (NullPointerException e) {
-            return new Cache() {
-                public Object get(Object key) {
-                    return fallBackImpl.get(key);
-                }
-
-                public void put(Object key, Object toCache) {
-                    fallBackImpl.put(key, toCache);
-                }
-            };
+            return fallBackImpl;
         }
     }
 
@@ -12,6 +12,7 @@ package com.picocontainer.web.chain;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.picocontainer.Disposable;
 import com.picocontainer.PicoContainer;
 import com.picocontainer.Startable;
 
@@ -20,12 +21,21 @@ import com.picocontainer.Startable;
  * 
  * @author Konstantin Pribluda
  */
-public final class ContainerChain implements Startable {
+public final class ContainerChain implements Startable, Disposable {
 
 	private final List chain = new ArrayList();
 
 	private PicoContainer last;
 
+	// guarded by this
+	private int users;
+
+	// guarded by this
+	private boolean retired;
+
+	// guarded by this
+	private boolean disposed;
+
 	/**
 	 * Returns last container in chain.
 	 * 
@@ -63,4 +73,59 @@ public final class ContainerChain implements Startable {
 		}
 	}
 
+	/**
+	 * dispose each container in the chain, last first.  A chain already disposed is left as it is.
+	 */
+	public void dispose() {
+		synchronized (this) {
+			if (disposed) {
+				return;
+			}
+			disposed = true;
+		}
+		for (int i = chain.size() - 1; i >= 0; i--) {
+			((Disposable) chain.get(i)).dispose();
+		}
+	}
+
+	/**
+	 * Counts another user of the chain, unless it has been retired.
+	 * 
+	 * @return false if the chain has been retired, and may not be used any more
+	 */
+	synchronized boolean acquire() {
+		if (retired) {
+			return false;
+		}
+		users++;
+		return true;
+	}
+
+	/**
+	 * Counts a user of the chain off, disposing it if it has been retired and this was its last user.
+	 */
+	void release() {
+		synchronized (this) {
+			users--;
+			if (!retired || users > 0) {
+				return;
+			}
+		}
+		dispose();
+	}
+
+	/**
+	 * Keeps the chain from further use, disposing it now if nobody uses it, or else when its last user
+	 * counts off.
+	 */
+	void retire() {
+		synchronized (this) {
+			retired = true;
+			if (users > 0) {
+				return;
+			}
+		}
+		dispose();
+	}
+
 }
\ No newline at end of file
@@ -7,39 +7,72 @@
  ******************************************************************************/
 package com.picocontainer.web.chain;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
 
 import javax.servlet.ServletContext;
 
 import com.picocontainer.script.ContainerBuilder;
 
-import com.picocontainer.ComponentAdapter;
-import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.Disposable;
 import com.picocontainer.Parameter;
 import com.picocontainer.PicoContainer;
 import com.picocontainer.classname.ClassLoadingPicoContainer;
 import com.picocontainer.classname.ClassName;
 import com.picocontainer.classname.DefaultClassLoadingPicoContainer;
 import com.picocontainer.parameters.ConstantParameter;
+import com.picocontainer.web.PicoContainerWebException;
 
 /**
  * <p>
  * ServletChainBuilder builds ContainerChains from servlet path and caches
- * container recorders for later use.
+ * them for later use.  Each directory of the path, from the root down, adds
+ * a container built by the container script in that directory, or by the
+ * empty container script if it has none.
+ * </p>
+ * <p>
+ * Chains are cached per directory, up to a bound, least recently used first
+ * out.  A chain is kept with the checksums of its scripts, so it is only
+ * rebuilt when one of them changes, which is checked for at most once per
+ * check interval.  Each build runs a fresh container builder over the text of
+ * the script, as the builders of script engines read their script only once.
+ * </p>
+ * <p>
+ * One chain is kept per directory, for the last parent it was asked for, so
+ * the builder is meant to be used with a single parent, such as the
+ * application container.  Asking with another parent rebuilds the chain.
+ * Each chain got must be given back with {@link #releaseContainerChain}; a
+ * chain that is rebuilt, or dropped beyond the bound, is disposed once the
+ * last caller using it has given it back.  Disposing the builder, when the
+ * application shuts down, does the same for every cached chain.
  * </p>
  * 
  * @author Kontantin Pribluda
  * @author Mauro Talevi
  */
-public final class ServletChainBuilder {
+public final class ServletChainBuilder implements Disposable {
+
+    private static final String SLASH = "/";
+    private static final int DEFAULT_MAX_CHAINS = 256;
+    private static final long DEFAULT_CHECK_INTERVAL_MILLIS = 5000;
 
     private final ServletContext context;
     private final String containerBuilderClassName;
     private final String containerScriptName;
     private final String emptyContainerScript;
+    private final long checkIntervalMillis;
+    private final Map<String, CachedChain> chains;
+    // guarded by chains
+    private final List<CachedChain> evicted = new ArrayList<CachedChain>();
 
     /**
      * Constructor for the ServletChainBuilder object
@@ -52,29 +85,151 @@ public final class ServletChainBuilder {
      */
     public ServletChainBuilder(ServletContext context, String containerBuilderClassName, String containerScriptName,
             String emptyContainerScript) {
+        this(context, containerBuilderClassName, containerScriptName, emptyContainerScript, DEFAULT_MAX_CHAINS,
+                DEFAULT_CHECK_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param maxChains the number of chains that are cached
+     * @param checkIntervalMillis how long a cached chain is used before its scripts are checked
+     *            for changes, or 0 to check them every time
+     */
+    public ServletChainBuilder(ServletContext context, String containerBuilderClassName, String containerScriptName,
+            String emptyContainerScript, int maxChains, long checkIntervalMillis) {
         this.context = context;
         this.containerBuilderClassName = containerBuilderClassName;
         this.containerScriptName = containerScriptName;
         this.emptyContainerScript = emptyContainerScript;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.chains = new LeastRecentlyUsed<CachedChain>(maxChains) {
+            @Override
+            protected void evicted(CachedChain eldest) {
+                evicted.add(eldest);
+            }
+        };
+    }
+
+    /**
+     * Returns the chain of containers for the directories of the servlet path,
+     * the first of which is a child of the given parent.  The same chain is
+     * returned for each path of a directory until a script of the chain changes.
+     * The containers are started by the container builders as they are built.
+     * 
+     * @param servletPath the servlet path, such as <code>/foo/bar/baz.jsp</code>
+     * @param parent the parent of the first container of the chain
+     * @return the chain, to be given back with {@link #releaseContainerChain}
+     */
+    public ContainerChain getContainerChain(String servletPath, PicoContainer parent) {
+        String[] directories = parseServletPath(servletPath);
+        String key = directories[directories.length - 1];
+        ContainerChain chain = cachedChain(key, parent);
+        if (chain != null) {
+            return chain;
+        }
+        return buildChain(key, directories, parent);
+    }
+
+    private ContainerChain cachedChain(String key, PicoContainer parent) {
+        CachedChain cached;
+        synchronized (chains) {
+            cached = chains.get(key);
+        }
+        if (cached != null && cached.parent == parent && isCurrent(cached) && cached.chain.acquire()) {
+            return cached.chain;
+        }
+        return null;
+    }
+
+    /**
+     * Gives back a chain got from {@link #getContainerChain}, disposing it if it
+     * has been rebuilt or dropped since and no other caller is using it.
+     * 
+     * @param chain the chain
+     */
+    public void releaseContainerChain(ContainerChain chain) {
+        chain.release();
+    }
+
+    /**
+     * Drops every cached chain, disposing those no caller is using, and the
+     * others as they are given back.
+     */
+    public void dispose() {
+        List<CachedChain> dropped;
+        synchronized (chains) {
+            dropped = new ArrayList<CachedChain>(chains.values());
+            chains.clear();
+        }
+        retire(dropped);
     }
 
     /**
-     * populate container for given path. cache result in container recorders
+     * Splits a servlet path into the paths of its directories, from the root down,
+     * so <code>/foo/bar/baz.jsp</code> gives <code>/</code>, <code>/foo/</code>
+     * and <code>/foo/bar/</code>.
      * 
-     * @param container the MutablePicoContainer used by the recorder
-     * @param path the String representing the servlet path used as key for the
-     *            recorder cache
+     * @param servletPath the servlet path
+     * @return the directory paths, each ending with a slash
      */
-    private void populateContainer(String resourcePath, MutablePicoContainer container) {
-        PicoContainer buildContainer = buildContainer(resourcePath, container.getParent());
-        for (ComponentAdapter<?> adapter : buildContainer.getComponentAdapters()) {
-            container.addAdapter(adapter);
+    public static String[] parseServletPath(String servletPath) {
+        List<String> directories = new ArrayList<String>();
+        directories.add(SLASH);
+        int slash = servletPath.indexOf('/', 1);
+        while (slash != -1) {
+            directories.add(servletPath.substring(0, slash + 1));
+            slash = servletPath.indexOf('/', slash + 1);
         }
+        return directories.toArray(new String[directories.size()]);
     }
 
-    private PicoContainer buildContainer(String resourcePath, PicoContainer parent) {
-        ContainerBuilder builder = createContainerBuilder(obtainReader(resourcePath));
-        return builder.buildContainer(parent, null, false);
+    private boolean isCurrent(CachedChain cached) {
+        long now = System.currentTimeMillis();
+        if (now - cached.checkedAt < checkIntervalMillis) {
+            return true;
+        }
+        for (int i = 0; i < cached.directories.length; i++) {
+            if (checksum(readScript(cached.directories[i])) != cached.checksums[i]) {
+                return false;
+            }
+        }
+        cached.checkedAt = now;
+        return true;
+    }
+
+    private synchronized ContainerChain buildChain(String key, String[] directories, PicoContainer parent) {
+        ContainerChain chain = cachedChain(key, parent);
+        if (chain != null) {
+            // built by another thread while this one waited
+            return chain;
+        }
+        chain = new ContainerChain();
+        chain.acquire();
+        long[] checksums = new long[directories.length];
+        PicoContainer current = parent;
+        for (int i = 0; i < directories.length; i++) {
+            String script = readScript(directories[i]);
+            checksums[i] = checksum(script);
+            current = createContainerBuilder(new StringReader(script)).buildContainer(current, null, false);
+            chain.addContainer(current);
+        }
+        List<CachedChain> dropped;
+        synchronized (chains) {
+            CachedChain replaced = chains.put(key, new CachedChain(parent, chain, directories, checksums,
+                    System.currentTimeMillis()));
+            dropped = new ArrayList<CachedChain>(evicted);
+            evicted.clear();
+            if (replaced != null) {
+                dropped.add(replaced);
+            }
+        }
+        retire(dropped);
+        return chain;
+    }
+
+    private static void retire(List<CachedChain> dropped) {
+        for (CachedChain cached : dropped) {
+            cached.chain.retire();
+        }
     }
 
     private ContainerBuilder createContainerBuilder(Reader reader) {
@@ -85,28 +240,88 @@ public final class ServletChainBuilder {
         return scripted.getComponent(ContainerBuilder.class);
     }
 
-
-
-
     /**
-     * Obtain reader from servlet context path, by appending container script
-     * name to path. If not found, returns reader for empty container instead.
+     * Reads the script from servlet context path, by appending container script
+     * name to path. If not found, returns the script for empty container instead.
      * 
      * @param path the String representing the path in servlet context
-     * @return A Reader for corresponding script or for empty container if
-     *         script not found
+     * @return the script for the path or for empty container if not found
      */
-    private Reader obtainReader(String path) {
+    private String readScript(String path) {
         InputStream is = context.getResourceAsStream(path + containerScriptName);
-        if (is != null) {
-            return new InputStreamReader(is);
-        } else {
-            return new StringReader(emptyContainerScript);
+        if (is == null) {
+            return emptyContainerScript;
+        }
+        try {
+            try {
+                Reader reader = new InputStreamReader(is);
+                StringWriter script = new StringWriter();
+                char[] buf = new char[4096];
+                int n;
+                while ((n = reader.read(buf)) != -1) {
+                    script.write(buf, 0, n);
+                }
+                return script.toString();
+            } finally {
+                is.close();
+            }
+        } catch (IOException e) {
+            throw new PicoContainerWebException("Unable to read container script " + path + containerScriptName
+                    + ": " + e.getMessage());
+        }
+    }
+
+    private static long checksum(String script) {
+        CRC32 crc = new CRC32();
+        for (int i = 0; i < script.length(); i++) {
+            char c = script.charAt(i);
+            crc.update(c >>> 8);
+            crc.update(c);
         }
+        return crc.getValue() << 32 | script.length();
     }
-    
+
     private ClassLoader getClassLoader() {
         return Thread.currentThread().getContextClassLoader();
     }
 
+    private static final class CachedChain {
+        private final PicoContainer parent;
+        private final ContainerChain chain;
+        private final String[] directories;
+        private final long[] checksums;
+        private volatile long checkedAt;
+
+        private CachedChain(PicoContainer parent, ContainerChain chain, String[] directories, long[] checksums,
+                long checkedAt) {
+            this.parent = parent;
+            this.chain = chain;
+            this.directories = directories;
+            this.checksums = checksums;
+            this.checkedAt = checkedAt;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static class LeastRecentlyUsed<V> extends LinkedHashMap<String, V> {
+        private final int maxEntries;
+
+        private LeastRecentlyUsed(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+            if (size() > maxEntries) {
+                evicted(eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+
+        protected void evicted(V eldest) {
+        }
+    }
+
 }
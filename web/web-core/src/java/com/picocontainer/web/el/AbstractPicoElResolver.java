@@ -5,16 +5,29 @@ package com.picocontainer.web.el;
 
 import java.beans.FeatureDescriptor;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.el.ELContext;
 import javax.el.ELResolver;
 
+import com.picocontainer.ChangeCounting;
 import com.picocontainer.ComponentAdapter;
 import com.picocontainer.PicoContainer;
+import com.picocontainer.containers.AbstractDelegatingPicoContainer;
 
 /**
  * Generic component resolution into a PicoContainer resolver.
+ * <p>
+ * The components resolved while evaluating the expressions of one page are remembered in its ELContext, so
+ * a page that names a component many times looks it up once.  Which names have a component, and which do
+ * not, is remembered for the whole application until components are added to or removed from the
+ * container or its parents, so the names of page variables that reach this resolver are not looked up
+ * again on every evaluation.  That needs the containers to be {@link ChangeCounting}; otherwise names are
+ * only remembered for one page.
+ * </p>
  * @author Michael Rimov
  *
  */
@@ -27,6 +40,10 @@ abstract public class AbstractPicoElResolver extends ELResolver {
     private final boolean HIDDEN = true;
     private final boolean PREFERRED = true;
 
+    private static final Object NOTHING = new Object();
+
+    private volatile Adapters adapters;
+
 	/**
 	 * 
 	 */
@@ -35,9 +52,14 @@ abstract public class AbstractPicoElResolver extends ELResolver {
 
 	@Override
 	public Object getValue(ELContext context, Object base, Object property) {
-		if (base == null) {
-			Object result = getPicoContainer(context).getComponent(property);
-			if (result != null) {
+		if (base == null && property != null) {
+			Resolved resolved = resolved(context);
+			Object result = resolved.instances.get(property);
+			if (result == null) {
+				result = resolved.adapters.get(property) == null ? null : resolved.container.getComponent(property);
+				resolved.instances.put(property, result == null ? NOTHING : result);
+			}
+			if (result != null && result != NOTHING) {
 				context.setPropertyResolved(true);
 				return result;				
 			}
@@ -47,8 +69,8 @@ abstract public class AbstractPicoElResolver extends ELResolver {
 
 	@Override
 	public Class<?> getType(ELContext context, Object base, Object property) {
-		if (base == null) {
-			ComponentAdapter<?> result = getPicoContainer(context).getComponentAdapter(property);
+		if (base == null && property != null) {
+			ComponentAdapter<?> result = resolved(context).adapters.get(property);
 			if (result != null) {
 				context.setPropertyResolved(true);
 				return result.getComponentImplementation();				
@@ -98,4 +120,86 @@ abstract public class AbstractPicoElResolver extends ELResolver {
 	
 	abstract protected PicoContainer getPicoContainer(ELContext context);
 
+	private Resolved resolved(ELContext context) {
+		PicoContainer container = getPicoContainer(context);
+		Resolved resolved = (Resolved) context.getContext(Resolved.class);
+		if (resolved == null || resolved.container != container) {
+			resolved = new Resolved(container, adaptersFor(container));
+			context.putContext(Resolved.class, resolved);
+		}
+		return resolved;
+	}
+
+	private Adapters adaptersFor(PicoContainer container) {
+		long registryVersion = Adapters.registryVersion(container);
+		if (registryVersion == -1) {
+			return new Adapters(container, registryVersion);
+		}
+		Adapters current = adapters;
+		if (current == null || current.container != container || current.registryVersion != registryVersion) {
+			current = new Adapters(container, registryVersion);
+			adapters = current;
+		}
+		return current;
+	}
+
+	/**
+	 * The components resolved for one ELContext.
+	 */
+	private static final class Resolved {
+		private final PicoContainer container;
+		private final Adapters adapters;
+		private final Map<Object, Object> instances = new HashMap<Object, Object>();
+
+		private Resolved(PicoContainer container, Adapters adapters) {
+			this.container = container;
+			this.adapters = adapters;
+		}
+	}
+
+	/**
+	 * The adapter for each name looked up, or that there is none, valid for one version of the registries
+	 * of the container and its parents.
+	 */
+	private static final class Adapters {
+		private final PicoContainer container;
+		private final long registryVersion;
+		private final ConcurrentHashMap<Object, Object> adapters = new ConcurrentHashMap<Object, Object>();
+
+		private Adapters(PicoContainer container, long registryVersion) {
+			this.container = container;
+			this.registryVersion = registryVersion;
+		}
+
+		/**
+		 * @return the sum of the change counts of the container and its parents, which goes up with every
+		 *         change to any of them, or -1 if one of them does not count its changes.
+		 */
+		private static long registryVersion(PicoContainer container) {
+			long registryVersion = 0;
+			for (PicoContainer pico = container; pico != null; pico = pico.getParent()) {
+				PicoContainer registry = pico;
+				while (registry instanceof AbstractDelegatingPicoContainer) {
+					// a delegating container's registrations are those of its delegate
+					registry = ((AbstractDelegatingPicoContainer) registry).getDelegate();
+				}
+				long changeCount = registry instanceof ChangeCounting ? ((ChangeCounting) registry).getChangeCount() : -1;
+				if (changeCount == -1) {
+					return -1;
+				}
+				registryVersion += changeCount;
+			}
+			return registryVersion;
+		}
+
+		private ComponentAdapter<?> get(Object property) {
+			Object adapter = adapters.get(property);
+			if (adapter == null) {
+				adapter = container.getComponentAdapter(property);
+				adapters.put(property, adapter == null ? NOTHING : adapter);
+			}
+			return adapter == NOTHING ? null : (ComponentAdapter<?>) adapter;
+		}
+	}
+
 }
@@ -29,6 +29,10 @@ public abstract class AbstractScopedContainerBuilder implements ScopedContainerP
 	private PicoContainer parentContainer = null;
 	
 	private Class<? extends MutablePicoContainer> picoImplementation = DefaultPicoContainer.class;
+
+	private boolean lazyRequestLifecycle;
+
+	private ComponentFactory requestRecycling;
 	
 
 	public ComponentMonitor getApplicationMonitor() {
@@ -63,6 +67,29 @@ public abstract class AbstractScopedContainerBuilder implements ScopedContainerP
 		this.lifecycleStrategy = lifecycleStrategy;
 	}
 
+	public boolean isLazyRequestLifecycle() {
+		return lazyRequestLifecycle;
+	}
+
+	/**
+	 * @param lazyRequestLifecycle true to start request components on first use within each request.
+	 */
+	public void setLazyRequestLifecycle(boolean lazyRequestLifecycle) {
+		this.lazyRequestLifecycle = lazyRequestLifecycle;
+	}
+
+	public ComponentFactory getRequestRecycling() {
+		return requestRecycling;
+	}
+
+	/**
+	 * @param requestRecycling goes beneath the store of request components, to recycle the ones that opt in,
+	 * such as {@link com.picocontainer.gems.behaviors.Recycling}.  Null for none.
+	 */
+	public void setRequestRecycling(ComponentFactory requestRecycling) {
+		this.requestRecycling = requestRecycling;
+	}
+
 	public ComponentFactory[] getRequestComponentFactories() {
 		return requestComponentFactories;
 	}
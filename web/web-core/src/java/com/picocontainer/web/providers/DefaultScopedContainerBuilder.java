@@ -4,12 +4,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import com.picocontainer.ComponentAdapter;
 import com.picocontainer.ComponentFactory;
 import com.picocontainer.DefaultPicoContainer;
+import com.picocontainer.LifecycleStrategy;
 import com.picocontainer.PicoContainer;
-import com.picocontainer.behaviors.Caching;
 import com.picocontainer.behaviors.Guarding;
 import com.picocontainer.behaviors.Storing;
+import com.picocontainer.lifecycle.CompositeLifecycleStrategy;
+import com.picocontainer.lifecycle.NullLifecycleStrategy;
 import com.picocontainer.web.ScopedContainers;
 import com.picocontainer.web.ThreadLocalLifecycleState;
 
@@ -40,14 +43,15 @@ public class DefaultScopedContainerBuilder extends AbstractScopedContainerBuilde
             parentOfRequestContainer = sessCtnr;
         }
         Storing reqStoring = new Storing();
-        List<ComponentFactory> factories = new ArrayList<ComponentFactory>();
-        factories.add(new Guarding());
-        factories.addAll(Arrays.asList(this.getRequestComponentFactories()));
-        factories.add(reqStoring);
-        
-        DefaultPicoContainer reqCtnr = new DefaultPicoContainer(parentOfRequestContainer, getLifecycleStrategy(), getRequestMonitor(), getAllRequestComponentFactories(reqStoring));
-        reqCtnr.setName("request");
         ThreadLocalLifecycleState requestState = new ThreadLocalLifecycleState();
+        LifecycleStrategy requestLifecycle = getLifecycleStrategy();
+        if (isLazyRequestLifecycle()) {
+            reqStoring.startedOnFirstUse(requestState);
+            requestLifecycle = new CompositeLifecycleStrategy(requestLifecycle, new StartedOnFirstUse());
+        }
+
+        DefaultPicoContainer reqCtnr = new DefaultPicoContainer(parentOfRequestContainer, requestLifecycle, getRequestMonitor(), getAllRequestComponentFactories(reqStoring));
+        reqCtnr.setName("request");
         reqCtnr.setLifecycleState(requestState);
         return new ScopedContainers(appCtnr, sessCtnr, reqCtnr, sessStoring, reqStoring, sessionState, requestState);
 	}
@@ -57,6 +61,9 @@ public class DefaultScopedContainerBuilder extends AbstractScopedContainerBuilde
         factories.add(new Guarding());
         factories.addAll(Arrays.asList(this.getRequestComponentFactories()));
         factories.add(reqStoring);
+        if (getRequestRecycling() != null) {
+            factories.add(getRequestRecycling());
+        }
         return factories.toArray(new ComponentFactory[factories.size()]);		
 	}
 	
@@ -71,8 +78,19 @@ public class DefaultScopedContainerBuilder extends AbstractScopedContainerBuilde
 		 List<ComponentFactory> factories = new ArrayList<ComponentFactory>();
 		 factories.add(new Guarding());
 	     factories.addAll(Arrays.asList(this.getSessionComponentFactories()));
-	     factories.add(new Caching());
+	     factories.add(sessionStoring);
 		 return factories.toArray(new ComponentFactory[factories.size()]);		
 	}
 
+	/**
+	 * Tells the request container to leave starting to the request components themselves.
+	 */
+	@SuppressWarnings("serial")
+	private static class StartedOnFirstUse extends NullLifecycleStrategy {
+		@Override
+		public boolean isLazy(ComponentAdapter<?> adapter) {
+			return true;
+		}
+	}
+
 }
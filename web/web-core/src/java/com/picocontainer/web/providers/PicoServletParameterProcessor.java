@@ -6,6 +6,7 @@ import javax.servlet.ServletContext;
 
 import com.picocontainer.web.PicoServletContainerListener;
 import com.picocontainer.web.ProfilingSecurityManager;
+import com.picocontainer.web.providers.defaults.RecyclingProvider;
 
 public class PicoServletParameterProcessor {
 
@@ -54,6 +55,12 @@ public class PicoServletParameterProcessor {
 		
 		String lifecycleStrategy = context.getInitParameter(LIFECYCLE_STRATEGY);
 		returnResult.setLifecycleStrategy(new LifecycleProviderFactory(returnResult.getApplicationMonitor()).constructProvider(context, lifecycleStrategy) );
+		returnResult.setLazyRequestLifecycle(Boolean.parseBoolean(context.getInitParameter(LAZY_REQUEST_LIFECYCLE)));
+		String requestRecycling = context.getInitParameter(REQUEST_RECYCLING);
+		if (requestRecycling != null) {
+			returnResult.setRequestRecycling(new RecyclingProvider(Integer.parseInt(requestRecycling.trim()))
+					.constructProvider(context, context.getInitParameter(REQUEST_RECYCLING_RESETTER)));
+		}
 
 		String parentProviderFactory = context.getInitParameter(PARENT_PICO);
 		returnResult.setParentContainer(new ParentPicoProviderFactory().constructProvider(context, parentProviderFactory).getParentPicoContainer(context));
@@ -0,0 +1,64 @@
+package com.picocontainer.web.providers.defaults;
+
+import java.util.List;
+
+import javax.servlet.ServletContext;
+
+import com.picocontainer.ComponentFactory;
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.classname.ClassName;
+import com.picocontainer.classname.DefaultClassLoadingPicoContainer;
+import com.picocontainer.gems.behaviors.Recycling;
+import com.picocontainer.monitors.NullComponentMonitor;
+import com.picocontainer.web.ContextParameters;
+import com.picocontainer.web.providers.AbstractProviderFactory;
+import com.picocontainer.web.providers.ProviderSetupException;
+import com.thoughtworks.proxy.kit.Resetter;
+
+/**
+ * Makes the {@link Recycling} behavior for request components.  Only loaded when
+ * {@link com.picocontainer.web.ContextParameters#REQUEST_RECYCLING} is set, so that PicoContainer Gems is
+ * not needed otherwise.
+ * <p>
+ * A recycled instance goes on to serve requests of other sessions, so recycling is refused unless a
+ * {@link Resetter} is named with {@link com.picocontainer.web.ContextParameters#REQUEST_RECYCLING_RESETTER}
+ * to wipe what one request left in it.  The resetter is made with the {@link ServletContext} available to its
+ * constructor.
+ * </p>
+ */
+public class RecyclingProvider extends AbstractProviderFactory<ComponentFactory> {
+
+	private final int maxSize;
+
+	public RecyclingProvider(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param parameterValue the class name of the resetter.
+	 * @throws ProviderSetupException if no resetter is named, or it is not a {@link Resetter}.
+	 */
+	@Override
+	public ComponentFactory constructProvider(ServletContext context, String parameterValue) {
+		List<String> resetters = getParameterStrings(parameterValue);
+		if (resetters.size() != 1) {
+			throw new ProviderSetupException(ContextParameters.REQUEST_RECYCLING + " needs exactly one resetter listed in "
+					+ ContextParameters.REQUEST_RECYCLING_RESETTER + ", found " + resetters);
+		}
+		String resetterName = resetters.get(0).trim();
+
+		MutablePicoContainer picoServices = buildParentPico(context);
+		DefaultClassLoadingPicoContainer pico = new DefaultClassLoadingPicoContainer(picoServices.getComponent(ClassLoader.class), picoServices, new NullComponentMonitor());
+		pico.addComponent(resetterName, new ClassName(resetterName));
+
+		Object resetter = pico.getComponent(resetterName);
+		if (!(resetter instanceof Resetter)) {
+			throw new ProviderSetupException(resetterName + " named in " + ContextParameters.REQUEST_RECYCLING_RESETTER
+					+ " is not a " + Resetter.class.getName());
+		}
+		@SuppressWarnings("unchecked")
+		Resetter<Object> anyResetter = (Resetter<Object>) resetter;
+		return new Recycling(anyResetter, maxSize);
+	}
+
+}
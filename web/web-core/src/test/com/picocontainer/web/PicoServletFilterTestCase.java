@@ -0,0 +1,413 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.picocontainer.Startable;
+import com.picocontainer.lifecycle.DefaultLifecycleState;
+import com.picocontainer.web.providers.DefaultScopedContainerBuilder;
+
+@RunWith(JMock.class)
+public class PicoServletFilterTestCase {
+
+    public static class RequestScoped {
+        private final HttpServletRequest request;
+
+        public RequestScoped(HttpServletRequest request) {
+            this.request = request;
+        }
+    }
+
+    public static class StartableRequestScoped implements Startable {
+        static int started;
+        static int stopped;
+
+        public void start() {
+            started++;
+        }
+
+        public void stop() {
+            stopped++;
+        }
+    }
+
+    public static class Extra {
+    }
+
+    public static class Action {
+        private final RequestScoped requestScoped;
+        private final Extra extra;
+
+        public Action(RequestScoped requestScoped) {
+            this(requestScoped, null);
+        }
+
+        public Action(RequestScoped requestScoped, Extra extra) {
+            this.requestScoped = requestScoped;
+            this.extra = extra;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    public static class SessionScoped implements Serializable {
+    }
+
+    private final Mockery mockery = new JUnit4Mockery();
+
+    private ScopedContainers scopedContainers;
+    private ServletContext servletContext;
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private PicoServletFilter filter;
+    private SessionStoreHolder sessionStoreHolder;
+    private int sessionStoreHolderSets;
+    private final Map<String, Object> requestAttributes = new HashMap<String, Object>();
+    private DispatcherType dispatcherType = DispatcherType.REQUEST;
+    private boolean asyncStarted;
+    private AsyncListener asyncListener;
+
+    @Before
+    public void setUp() throws Exception {
+        scopedContainers = new DefaultScopedContainerBuilder().makeScopedContainers(false);
+        servletContext = mockery.mock(ServletContext.class);
+        request = mockery.mock(HttpServletRequest.class);
+        response = mockery.mock(HttpServletResponse.class);
+        final FilterConfig filterConfig = mockery.mock(FilterConfig.class);
+        final HttpSession session = mockery.mock(HttpSession.class);
+        final AsyncContext asyncContext = mockery.mock(AsyncContext.class);
+        mockery.checking(new Expectations() {{
+            allowing(filterConfig).getServletContext(); will(returnValue(servletContext));
+            allowing(filterConfig).getInitParameter(with(any(String.class))); will(returnValue(null));
+            allowing(servletContext).getAttribute(ScopedContainers.class.getName()); will(returnValue(scopedContainers));
+            allowing(servletContext).getInitParameter(with(any(String.class))); will(returnValue(null));
+            allowing(request).getServletContext(); will(returnValue(servletContext));
+            allowing(request).getSession(); will(returnValue(session));
+            allowing(request).getDispatcherType(); will(new CustomAction("dispatcher type") {
+                public Object invoke(Invocation invocation) {
+                    return dispatcherType;
+                }
+            });
+            allowing(request).isAsyncStarted(); will(new CustomAction("async started") {
+                public Object invoke(Invocation invocation) {
+                    return asyncStarted;
+                }
+            });
+            allowing(request).getAsyncContext(); will(returnValue(asyncContext));
+            allowing(asyncContext).addListener(with(any(AsyncListener.class))); will(new CustomAction("add listener") {
+                public Object invoke(Invocation invocation) {
+                    asyncListener = (AsyncListener) invocation.getParameter(0);
+                    return null;
+                }
+            });
+            allowing(request).getAttribute(with(any(String.class))); will(new CustomAction("get attribute") {
+                public Object invoke(Invocation invocation) {
+                    return requestAttributes.get(invocation.getParameter(0));
+                }
+            });
+            allowing(request).setAttribute(with(any(String.class)), with(any(Object.class))); will(new CustomAction("set attribute") {
+                public Object invoke(Invocation invocation) {
+                    requestAttributes.put((String) invocation.getParameter(0), invocation.getParameter(1));
+                    return null;
+                }
+            });
+            allowing(request).removeAttribute(with(any(String.class))); will(new CustomAction("remove attribute") {
+                public Object invoke(Invocation invocation) {
+                    requestAttributes.remove(invocation.getParameter(0));
+                    return null;
+                }
+            });
+            allowing(session).getAttribute(SessionStoreHolder.class.getName()); will(new CustomAction("get holder") {
+                public Object invoke(Invocation invocation) {
+                    return sessionStoreHolder;
+                }
+            });
+            allowing(session).setAttribute(with(equal(SessionStoreHolder.class.getName())), with(any(Object.class))); will(new CustomAction("set holder") {
+                public Object invoke(Invocation invocation) {
+                    sessionStoreHolder = (SessionStoreHolder) invocation.getParameter(1);
+                    sessionStoreHolderSets++;
+                    return null;
+                }
+            });
+        }});
+        filter = new PicoServletFilter();
+        filter.init(filterConfig);
+        StartableRequestScoped.started = 0;
+        StartableRequestScoped.stopped = 0;
+    }
+
+    @Test
+    public void testRequestScopedComponentsLiveForOneRequest() throws Exception {
+        scopedContainers.getRequestContainer().addComponent(RequestScoped.class);
+        final List<Object> seen = new ArrayList<Object>();
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+                RequestScoped one = filter.getRequestContainer().getComponent(RequestScoped.class);
+                assertSame(one, filter.getRequestContainer().getComponent(RequestScoped.class));
+                assertSame(request, one.request);
+                seen.add(one);
+            }
+        };
+
+        filter.doFilter(request, response, chain);
+        filter.doFilter(request, response, chain);
+
+        assertEquals(2, seen.size());
+        assertNotSame(seen.get(0), seen.get(1));
+        assertEquals(0, scopedContainers.getRequestStoring().getCacheSize());
+        try {
+            filter.getRequestContainer();
+            fail("should have barfed");
+        } catch (PicoContainerWebException e) {
+            // expected, the request is over
+        }
+    }
+
+    @Test
+    public void testRequestScopedLifecycleIsRunForEachRequest() throws Exception {
+        scopedContainers.getRequestContainer().addComponent(StartableRequestScoped.class);
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+                assertNotNull(filter.getRequestContainer().getComponent(StartableRequestScoped.class));
+            }
+        };
+
+        filter.doFilter(request, response, chain);
+        filter.doFilter(request, response, chain);
+
+        assertEquals(2, StartableRequestScoped.started);
+        assertEquals(2, StartableRequestScoped.stopped);
+    }
+
+    @Test
+    public void testLifecycleComponentsAddedAfterEarlierRequestsAreStillStarted() throws Exception {
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+            }
+        };
+        filter.doFilter(request, response, chain);
+        scopedContainers.getRequestContainer().addComponent(StartableRequestScoped.class);
+        filter.doFilter(request, response, chain);
+
+        assertEquals(1, StartableRequestScoped.started);
+        assertEquals(1, StartableRequestScoped.stopped);
+    }
+
+    @Test
+    public void testLifecycleComponentsSwappedForOthersBetweenRequestsAreStillStarted() throws Exception {
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+            }
+        };
+        scopedContainers.getRequestContainer().addComponent(Extra.class);
+        filter.doFilter(request, response, chain);
+        scopedContainers.getRequestContainer().removeComponent(Extra.class);
+        scopedContainers.getRequestContainer().addComponent(StartableRequestScoped.class);
+        filter.doFilter(request, response, chain);
+
+        assertEquals(1, StartableRequestScoped.started);
+        assertEquals(1, StartableRequestScoped.stopped);
+    }
+
+    @Test
+    public void testServletObjectsAreNotLeftOnTheThreadAfterTheRequest() throws Exception {
+        final AbstractPicoServletContainerFilter.HttpServletRequestInjector injector = new AbstractPicoServletContainerFilter.HttpServletRequestInjector();
+        filter.doFilter(request, response, new FilterChain() {
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+                assertSame(request, injector.getComponentInstance(null, null));
+            }
+        });
+        assertNull(injector.getComponentInstance(null, null));
+    }
+
+    @Test
+    public void testUnregisteredRequestComponentsAreMadeWithTheCurrentRequestScope() throws Exception {
+        scopedContainers.getRequestContainer().addComponent(RequestScoped.class);
+        final List<Action> actions = new ArrayList<Action>();
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+                actions.add((Action) filter.getRequestComponentForThread(Action.class));
+                actions.add((Action) filter.getRequestComponentForThread(Action.class));
+            }
+        };
+
+        filter.doFilter(request, response, chain);
+        assertNotSame(actions.get(0), actions.get(1));
+        assertSame(actions.get(0).requestScoped, actions.get(1).requestScoped);
+        assertNull(actions.get(0).extra);
+
+        scopedContainers.getRequestContainer().addComponent(Extra.class);
+        filter.doFilter(request, response, chain);
+        assertNotSame(actions.get(1).requestScoped, actions.get(2).requestScoped);
+        assertNotNull("greedier constructor chosen once the registry changed", actions.get(2).extra);
+    }
+
+    @Test
+    public void testUnregisteredRequestComponentsSeeComponentsSwappedInAtAnyScope() throws Exception {
+        scopedContainers.getRequestContainer().addComponent(RequestScoped.class);
+        scopedContainers.getApplicationContainer().addComponent("placeholder", "placeholder");
+        final List<Action> actions = new ArrayList<Action>();
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+                actions.add((Action) filter.getRequestComponentForThread(Action.class));
+            }
+        };
+
+        filter.doFilter(request, response, chain);
+        assertNull(actions.get(0).extra);
+
+        scopedContainers.getApplicationContainer().removeComponent("placeholder");
+        scopedContainers.getApplicationContainer().addComponent(Extra.class);
+        filter.doFilter(request, response, chain);
+        assertNotNull(actions.get(1).extra);
+    }
+
+    @Test
+    public void testSessionIsOnlySetAgainWhenItsStoreChanged() throws Exception {
+        scopedContainers.getSessionContainer().addComponent(SessionScoped.class);
+        sessionStoreHolder = new SessionStoreHolder(scopedContainers.getSessionStoring().resetCacheForThread(), new DefaultLifecycleState());
+        final List<SessionScoped> seen = new ArrayList<SessionScoped>();
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+                seen.add(filter.getSessionContainer().getComponent(SessionScoped.class));
+            }
+        };
+
+        filter.doFilter(request, response, chain);
+        assertEquals("instance was created", 1, sessionStoreHolderSets);
+        filter.doFilter(request, response, chain);
+        assertEquals("instance was only read", 1, sessionStoreHolderSets);
+        assertSame(seen.get(0), seen.get(1));
+
+        sessionStoreHolder.markDirty();
+        filter.doFilter(request, response, chain);
+        assertEquals(2, sessionStoreHolderSets);
+    }
+
+    @Test
+    public void testAsyncRequestKeepsItsRequestScopeUntilCompletion() throws Exception {
+        scopedContainers.getRequestContainer().addComponent(StartableRequestScoped.class);
+        final List<StartableRequestScoped> seen = new ArrayList<StartableRequestScoped>();
+        FilterChain chain = new FilterChain() {
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+                seen.add(filter.getRequestContainer().getComponent(StartableRequestScoped.class));
+            }
+        };
+
+        asyncStarted = true;
+        filter.doFilter(request, response, chain);
+        assertEquals(1, StartableRequestScoped.started);
+        assertEquals(0, StartableRequestScoped.stopped);
+        assertNull(filter.getRequestContainerWithoutException());
+
+        AbstractPicoServletContainerFilter.RequestScope scope = AbstractPicoServletContainerFilter.RequestScope.of(request);
+        Thread thread = new Thread(scope.wrap(new Runnable() {
+            public void run() {
+                seen.add(filter.getRequestContainer().getComponent(StartableRequestScoped.class));
+            }
+        }));
+        thread.start();
+        thread.join();
+
+        asyncStarted = false;
+        filter.doFilter(request, response, chain);
+        assertEquals("another request on the same thread has its own scope", 2, StartableRequestScoped.started);
+        assertEquals(1, StartableRequestScoped.stopped);
+
+        dispatcherType = DispatcherType.ASYNC;
+        filter.doFilter(request, response, chain);
+        asyncListener.onComplete(null);
+
+        assertEquals(4, seen.size());
+        assertSame(seen.get(0), seen.get(1));
+        assertNotSame(seen.get(0), seen.get(2));
+        assertSame(seen.get(0), seen.get(3));
+        assertEquals(2, StartableRequestScoped.stopped);
+        assertNull(AbstractPicoServletContainerFilter.RequestScope.of(request));
+    }
+
+    @Test
+    public void testAsyncRequestCompletingWhileAWrappedTaskRunsIsEndedWhenTheTaskIsDone() throws Exception {
+        scopedContainers.getRequestContainer().addComponent(StartableRequestScoped.class);
+        scopedContainers.getRequestContainer().addComponent(Extra.class);
+        asyncStarted = true;
+        filter.doFilter(request, response, new FilterChain() {
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+                filter.getRequestContainer().getComponent(StartableRequestScoped.class);
+            }
+        });
+
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch completed = new CountDownLatch(1);
+        AbstractPicoServletContainerFilter.RequestScope scope = AbstractPicoServletContainerFilter.RequestScope.of(request);
+        Thread thread = new Thread(scope.wrap(new Runnable() {
+            public void run() {
+                running.countDown();
+                try {
+                    completed.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                assertNotNull(filter.getRequestContainer().getComponent(StartableRequestScoped.class));
+            }
+        }));
+        thread.start();
+        running.await();
+        asyncListener.onComplete(null);
+        assertEquals("still attached", 0, StartableRequestScoped.stopped);
+        completed.countDown();
+        thread.join();
+
+        assertEquals(1, StartableRequestScoped.stopped);
+        assertNull(AbstractPicoServletContainerFilter.RequestScope.of(request));
+        try {
+            scopedContainers.getRequestContainer().getComponent(Extra.class);
+            fail("should have barfed");
+        } catch (UnsupportedOperationException e) {
+            // expected, the request store of this thread is still invalidated
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+import org.junit.Test;
+
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.lifecycle.DefaultLifecycleState;
+import com.picocontainer.web.providers.DefaultScopedContainerBuilder;
+
+public class SessionStoreHolderTestCase {
+
+    @SuppressWarnings("serial")
+    public static class Basket implements Serializable {
+        private String contents;
+    }
+
+    @Test
+    public void testHolderIsReadBackWithItsInstancesAndLifecycleState() throws Exception {
+        ScopedContainers scopedContainers = new DefaultScopedContainerBuilder().makeScopedContainers(false);
+        MutablePicoContainer sessionContainer = scopedContainers.getSessionContainer();
+        sessionContainer.addComponent(Basket.class);
+        DefaultLifecycleState state = new DefaultLifecycleState();
+        state.starting("session");
+        SessionStoreHolder ssh = new SessionStoreHolder(scopedContainers.getSessionStoring().resetCacheForThread(), state);
+        sessionContainer.getComponent(Basket.class).contents = "apples";
+
+        SessionStoreHolder read = roundTrip(ssh);
+        scopedContainers.getSessionStoring().putCacheForThread(read.getStoreWrapper());
+
+        assertEquals("apples", sessionContainer.getComponent(Basket.class).contents);
+        assertTrue(read.getLifecycleState().isStarted());
+    }
+
+    /**
+     * A holder with a started session and a basket of apples, as written by default serialization before
+     * the compact format.
+     */
+    private static final String LEGACY_HOLDER =
+            "aced000573720028636f6d2e7069636f636f6e7461696e65722e7765622e53657373696f6e53746f7265486f6c646572" +
+            "b8d0bb744659059d0200024c000e6c6966656379636c65537461746574002c4c636f6d2f7069636f636f6e7461696e65" +
+            "722f6c6966656379636c652f4c6966656379636c6553746174653b4c000c73746f7265577261707065727400324c636f" +
+            "6d2f7069636f636f6e7461696e65722f6265686176696f72732f53746f72696e672453746f7265577261707065723b78" +
+            "7073720031636f6d2e7069636f636f6e7461696e65722e6c6966656379636c652e44656661756c744c6966656379636c" +
+            "6553746174653c46d306bc2c81b30200014c000573746174657400124c6a6176612f6c616e672f537472696e673b7870" +
+            "7400075354415254454473720030636f6d2e7069636f636f6e7461696e65722e6265686176696f72732e53746f72696e" +
+            "672453746f7265577261707065723f48a81e3abb7ff70200014c00077772617070656474000f4c6a6176612f7574696c" +
+            "2f4d61703b7870737200116a6176612e7574696c2e486173684d61700507dac1c31660d103000246000a6c6f61644661" +
+            "63746f724900097468726573686f6c6478703f4000000000000c7708000000100000000176720037636f6d2e7069636f" +
+            "636f6e7461696e65722e7765622e53657373696f6e53746f7265486f6c6465725465737443617365244261736b6574ca" +
+            "2ceffd580762410200014c0008636f6e74656e747371007e0005787073720033636f6d2e7069636f636f6e7461696e65" +
+            "722e6265686176696f72732e53746f72696e672453746f72656424496e7374616e6365f9ce160c5c64f7d00200035a00" +
+            "08646973706f7365645a0007737461727465644c0008696e7374616e63657400124c6a6176612f6c616e672f4f626a65" +
+            "63743b787000007371007e000d7400066170706c657378";
+
+    @Test
+    public void testHolderWrittenBeforeTheCompactFormatIsStillRead() throws Exception {
+        ScopedContainers scopedContainers = new DefaultScopedContainerBuilder().makeScopedContainers(false);
+        MutablePicoContainer sessionContainer = scopedContainers.getSessionContainer();
+        sessionContainer.addComponent(Basket.class);
+
+        byte[] bytes = new byte[LEGACY_HOLDER.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(LEGACY_HOLDER.substring(i * 2, i * 2 + 2), 16);
+        }
+        SessionStoreHolder read = (SessionStoreHolder) new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+        scopedContainers.getSessionStoring().putCacheForThread(read.getStoreWrapper());
+
+        assertEquals("apples", sessionContainer.getComponent(Basket.class).contents);
+        assertTrue(read.getLifecycleState().isStarted());
+        assertTrue(roundTrip(read).getLifecycleState().isStarted());
+    }
+
+    private static SessionStoreHolder roundTrip(SessionStoreHolder ssh) throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(ssh);
+        oos.close();
+        return (SessionStoreHolder) new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray())).readObject();
+    }
+
+}
@@ -0,0 +1,132 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.servlet.ServletContext;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.picocontainer.Disposable;
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.Startable;
+import com.picocontainer.web.providers.DefaultScopedContainerBuilder;
+
+@RunWith(JMock.class)
+public class SessionTeardownTestCase {
+
+    private final Mockery mockery = new JUnit4Mockery();
+    private final ServletContext servletContext = mockery.mock(ServletContext.class);
+
+    public static class Cart implements Startable, Disposable {
+        private volatile String stoppedOn;
+        private volatile boolean disposed;
+
+        public void start() {
+        }
+
+        public void stop() {
+            stoppedOn = Thread.currentThread().getName();
+        }
+
+        public void dispose() {
+            disposed = true;
+        }
+    }
+
+    public static class Wallet implements Disposable {
+        private volatile boolean failOnDispose;
+
+        public void dispose() {
+            if (failOnDispose) {
+                throw new IllegalStateException("wallet stuck");
+            }
+        }
+    }
+
+    @Test
+    public void testExpiredSessionsAreTornDownOnTheTeardownThreadWithoutChangingTheLifecycleStateOfOtherThreads() {
+        ScopedContainers scopedContainers = new DefaultScopedContainerBuilder().makeScopedContainers(false);
+        MutablePicoContainer sessionContainer = scopedContainers.getSessionContainer();
+        sessionContainer.addComponent(Cart.class);
+
+        SessionStoreHolder ssh = new SessionStoreHolder(scopedContainers.getSessionStoring().resetCacheForThread(),
+                scopedContainers.getSessionState().resetStateModelForThread());
+        sessionContainer.start();
+        Cart cart = sessionContainer.getComponent(Cart.class);
+
+        SessionTeardown teardown = new SessionTeardown(servletContext, scopedContainers, 4, 2);
+        teardown.submit(ssh);
+        teardown.close(5000);
+
+        assertEquals("pico-session-teardown", cart.stoppedOn);
+        assertTrue(cart.disposed);
+        assertEquals(0, teardown.backlog());
+        // the teardown thread had its own copy of the lifecycle state
+        assertTrue(scopedContainers.getSessionState().isStarted());
+    }
+
+    @Test
+    public void testSessionsExpiringAfterCloseAreTornDownOnTheExpiringThread() {
+        ScopedContainers scopedContainers = new DefaultScopedContainerBuilder().makeScopedContainers(false);
+        MutablePicoContainer sessionContainer = scopedContainers.getSessionContainer();
+        sessionContainer.addComponent(Cart.class);
+
+        SessionTeardown teardown = new SessionTeardown(servletContext, scopedContainers, 1, 1);
+        teardown.close(5000);
+
+        SessionStoreHolder ssh = new SessionStoreHolder(scopedContainers.getSessionStoring().resetCacheForThread(),
+                scopedContainers.getSessionState().resetStateModelForThread());
+        sessionContainer.start();
+        Cart cart = sessionContainer.getComponent(Cart.class);
+        teardown.submit(ssh);
+
+        assertEquals(Thread.currentThread().getName(), cart.stoppedOn);
+        assertTrue(cart.disposed);
+        assertFalse(scopedContainers.getSessionState().isStarted());
+    }
+
+    @Test
+    public void testAFailedTeardownIsLoggedAndTheOthersStillHappen() {
+        ScopedContainers scopedContainers = new DefaultScopedContainerBuilder().makeScopedContainers(false);
+        MutablePicoContainer sessionContainer = scopedContainers.getSessionContainer();
+        sessionContainer.addComponent(Wallet.class);
+        sessionContainer.addComponent(Cart.class);
+
+        SessionStoreHolder failing = new SessionStoreHolder(scopedContainers.getSessionStoring().resetCacheForThread(),
+                scopedContainers.getSessionState().resetStateModelForThread());
+        sessionContainer.start();
+        sessionContainer.getComponent(Wallet.class).failOnDispose = true;
+
+        SessionStoreHolder ssh = new SessionStoreHolder(scopedContainers.getSessionStoring().resetCacheForThread(),
+                scopedContainers.getSessionState().resetStateModelForThread());
+        sessionContainer.start();
+        sessionContainer.getComponent(Wallet.class);
+        Cart cart = sessionContainer.getComponent(Cart.class);
+
+        mockery.checking(new Expectations() {{
+            oneOf(servletContext).log(with(any(String.class)), with(any(Throwable.class)));
+        }});
+        SessionTeardown teardown = new SessionTeardown(servletContext, scopedContainers, 4, 2);
+        teardown.submit(failing);
+        teardown.submit(ssh);
+        teardown.close(5000);
+
+        assertTrue(cart.disposed);
+    }
+
+}
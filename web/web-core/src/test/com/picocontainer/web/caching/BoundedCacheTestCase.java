@@ -0,0 +1,101 @@
+/*****************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.    *
+ * ------------------------------------------------------------------------- *
+ * The software in this package is published under the terms of the BSD      *
+ * style license a copy of which has been included with this distribution in *
+ * the LICENSE.txt file.                                                     *
+ *                                                                           *
+ *****************************************************************************/
+package com.picocontainer.web.caching;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class BoundedCacheTestCase {
+
+    @Test
+    public void testSizeIsBounded() {
+        BoundedCache cache = new BoundedCache(100);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "value" + i);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testFrequentlyUsedEntriesSurviveAStreamOfNewcomers() {
+        BoundedCache cache = new BoundedCache(10);
+        cache.put("hot", "popular");
+        for (int i = 0; i < 10; i++) {
+            cache.get("hot");
+        }
+        for (int i = 0; i < 100; i++) {
+            cache.put("cold" + i, "once");
+        }
+        assertEquals("popular", cache.get("hot"));
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void testEntriesExpireAfterTheirTimeToLive() throws InterruptedException {
+        BoundedCache cache = new BoundedCache(10, 1, TimeUnit.HOURS);
+        cache.put("short", "lived", 1, TimeUnit.MILLISECONDS);
+        cache.put("long", "lived");
+        Thread.sleep(20);
+        assertNull(cache.get("short"));
+        assertEquals("lived", cache.get("long"));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testPlacesOfRemovedAndExpiredEntriesDoNotAccumulate() throws InterruptedException {
+        BoundedCache cache = new BoundedCache(10);
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "value");
+            cache.put(i, null);
+        }
+        assertEquals(0, cache.size());
+        assertTrue("queue length " + cache.getQueueLength(), cache.getQueueLength() <= 20);
+
+        for (int i = 0; i < 100; i++) {
+            cache.put(i, "value", 1, TimeUnit.NANOSECONDS);
+            Thread.sleep(1);
+            assertNull(cache.get(i));
+        }
+        assertTrue("queue length " + cache.getQueueLength(), cache.getQueueLength() <= 20);
+    }
+
+    @Test
+    public void testConcurrentUseStaysWithinBounds() throws InterruptedException {
+        final BoundedCache cache = new BoundedCache(500);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 20000; i++) {
+                        Integer key = (i * 31 + seed * 7) % 2000;
+                        if (cache.get(key) == null) {
+                            cache.put(key, key);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(cache.toString(), cache.size() <= 500);
+        assertEquals(8 * 20000, cache.getHitCount() + cache.getMissCount());
+    }
+
+}
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.chain;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.ServletContext;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JMock;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import com.picocontainer.DefaultPicoContainer;
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.PicoContainer;
+import com.picocontainer.script.JdkScriptingContainerBuilder;
+import com.picocontainer.script.xml.XMLContainerBuilder;
+
+@RunWith(JMock.class)
+public class ServletChainBuilderTestCase {
+
+    private static final String SCRIPT_NAME = "container.xml";
+    private static final String EMPTY_SCRIPT = "<container/>";
+
+    private final Mockery mockery = new JUnit4Mockery();
+    private final Map<String, String> scripts = new HashMap<String, String>();
+    private final Map<String, Integer> reads = new LinkedHashMap<String, Integer>();
+    private ServletContext servletContext;
+
+    @Before
+    public void setUp() {
+        scripts.put("/" + SCRIPT_NAME, script("root", ArrayList.class));
+        scripts.put("/foo/" + SCRIPT_NAME, script("foo", HashMap.class));
+        servletContext = mockery.mock(ServletContext.class);
+        mockery.checking(new Expectations() {{
+            allowing(servletContext).getResourceAsStream(with(any(String.class)));
+            will(new CustomAction("script") {
+                public Object invoke(Invocation invocation) {
+                    String path = (String) invocation.getParameter(0);
+                    Integer count = reads.get(path);
+                    reads.put(path, count == null ? 1 : count + 1);
+                    String script = scripts.get(path);
+                    return script == null ? null : new ByteArrayInputStream(script.getBytes());
+                }
+            });
+        }});
+    }
+
+    private static String script(String key, Class<?> impl) {
+        return "<container><component-implementation key='" + key + "' class='" + impl.getName() + "'/></container>";
+    }
+
+    private ServletChainBuilder builder(int maxChains, long checkIntervalMillis) {
+        return new ServletChainBuilder(servletContext, XMLContainerBuilder.class.getName(), SCRIPT_NAME,
+                EMPTY_SCRIPT, maxChains, checkIntervalMillis);
+    }
+
+    public static class JavascriptContainerBuilder extends JdkScriptingContainerBuilder {
+        public JavascriptContainerBuilder(Reader script, ClassLoader classLoader) {
+            super("javascript", script, classLoader);
+        }
+    }
+
+    private static String javascript(String key, Class<?> impl) {
+        return "var pico = new Packages.com.picocontainer.DefaultPicoContainer(parent);\n"
+                + "pico.addComponent('" + key + "', java.lang.Class.forName('" + impl.getName() + "'));\n"
+                + "pico;\n";
+    }
+
+    @Test
+    public void testServletPathsAreSplitIntoTheirDirectories() {
+        assertArrayEquals(new String[] {"/"}, ServletChainBuilder.parseServletPath("/index.jsp"));
+        assertArrayEquals(new String[] {"/", "/foo/", "/foo/bar/"},
+                ServletChainBuilder.parseServletPath("/foo/bar/baz.jsp"));
+    }
+
+    @Test
+    public void testChainsAreBuiltOncePerDirectory() {
+        ServletChainBuilder builder = builder(16, 60000);
+        PicoContainer parent = new DefaultPicoContainer();
+
+        ContainerChain chain = builder.getContainerChain("/foo/bar/baz.jsp", parent);
+        PicoContainer last = chain.getLast();
+        assertTrue(last.getComponent("root") instanceof ArrayList);
+        assertTrue(last.getComponent("foo") instanceof HashMap);
+
+        assertSame(chain, builder.getContainerChain("/foo/bar/other.jsp", parent));
+        assertEquals("{/container.xml=1, /foo/container.xml=1, /foo/bar/container.xml=1}", reads.toString());
+
+        assertNotSame(chain, builder.getContainerChain("/foo/bar/baz.jsp", new DefaultPicoContainer()));
+    }
+
+    @Test
+    public void testChainsAreRebuiltWhenAScriptChanges() {
+        ServletChainBuilder builder = builder(16, 0);
+        PicoContainer parent = new DefaultPicoContainer();
+
+        ContainerChain chain = builder.getContainerChain("/foo/index.jsp", parent);
+        assertSame(chain, builder.getContainerChain("/foo/index.jsp", parent));
+
+        scripts.put("/foo/" + SCRIPT_NAME, script("foo", LinkedHashMap.class));
+        ContainerChain changed = builder.getContainerChain("/foo/index.jsp", parent);
+        assertNotSame(chain, changed);
+        assertTrue(changed.getLast().getComponent("foo") instanceof LinkedHashMap);
+        assertSame(changed, builder.getContainerChain("/foo/index.jsp", parent));
+        assertFalse(isDisposed(chain));
+        builder.releaseContainerChain(chain);
+        builder.releaseContainerChain(chain);
+        assertTrue(isDisposed(chain));
+        assertFalse(isDisposed(changed));
+    }
+
+    @Test
+    public void testChainsOfScriptEngineBuildersAreRebuiltWhenAScriptChanges() {
+        scripts.put("/" + SCRIPT_NAME, javascript("root", ArrayList.class));
+        scripts.put("/foo/" + SCRIPT_NAME, javascript("foo", HashMap.class));
+        ServletChainBuilder builder = new ServletChainBuilder(servletContext,
+                JavascriptContainerBuilder.class.getName(), SCRIPT_NAME, javascript("empty", Object.class), 16, 0);
+        PicoContainer parent = new DefaultPicoContainer();
+
+        ContainerChain chain = builder.getContainerChain("/foo/index.jsp", parent);
+        assertTrue(chain.getLast().getComponent("root") instanceof ArrayList);
+        builder.releaseContainerChain(chain);
+
+        scripts.put("/foo/" + SCRIPT_NAME, javascript("foo", LinkedHashMap.class));
+        ContainerChain changed = builder.getContainerChain("/foo/index.jsp", parent);
+        assertTrue(changed.getLast().getComponent("root") instanceof ArrayList);
+        assertTrue(changed.getLast().getComponent("foo") instanceof LinkedHashMap);
+        assertTrue(isDisposed(chain));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedChainsAreDroppedBeyondTheBound() {
+        ServletChainBuilder builder = builder(1, 60000);
+        PicoContainer parent = new DefaultPicoContainer();
+
+        ContainerChain foo = builder.getContainerChain("/foo/index.jsp", parent);
+        builder.releaseContainerChain(foo);
+        assertSame(foo, builder.getContainerChain("/foo/index.jsp", parent));
+        builder.releaseContainerChain(foo);
+        builder.getContainerChain("/index.jsp", parent);
+        assertTrue(isDisposed(foo));
+        assertNotSame(foo, builder.getContainerChain("/foo/index.jsp", parent));
+    }
+
+    @Test
+    public void testDisposingTheBuilderDisposesEachChainOnceItIsGivenBack() {
+        ServletChainBuilder builder = builder(16, 60000);
+        PicoContainer parent = new DefaultPicoContainer();
+
+        ContainerChain foo = builder.getContainerChain("/foo/index.jsp", parent);
+        ContainerChain root = builder.getContainerChain("/index.jsp", parent);
+        builder.releaseContainerChain(root);
+        builder.dispose();
+        assertTrue(isDisposed(root));
+        assertFalse(isDisposed(foo));
+        builder.releaseContainerChain(foo);
+        assertTrue(isDisposed(foo));
+        foo.dispose();
+        assertNotSame(foo, builder.getContainerChain("/foo/index.jsp", parent));
+    }
+
+    private static boolean isDisposed(ContainerChain chain) {
+        return ((MutablePicoContainer) chain.getLast()).getLifecycleState().isDisposed();
+    }
+
+}
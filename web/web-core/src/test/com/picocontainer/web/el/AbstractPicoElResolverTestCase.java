@@ -0,0 +1,160 @@
+package com.picocontainer.web.el;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.el.ELContext;
+import javax.el.ELResolver;
+import javax.el.FunctionMapper;
+import javax.el.VariableMapper;
+
+import org.junit.Test;
+
+import com.picocontainer.ComponentAdapter;
+import com.picocontainer.DefaultPicoContainer;
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.PicoContainer;
+import com.picocontainer.behaviors.Caching;
+import com.picocontainer.containers.AbstractDelegatingPicoContainer;
+
+public class AbstractPicoElResolverTestCase {
+
+	public static class Basket {
+	}
+
+	@SuppressWarnings("serial")
+	private static class CountingPicoContainer extends AbstractDelegatingPicoContainer {
+		private int lookups;
+		private int instances;
+
+		private CountingPicoContainer(PicoContainer delegate) {
+			super(delegate);
+		}
+
+		@Override
+		public ComponentAdapter<?> getComponentAdapter(Object key) {
+			lookups++;
+			return super.getComponentAdapter(key);
+		}
+
+		@Override
+		public Object getComponent(Object keyOrType) {
+			instances++;
+			return super.getComponent(keyOrType);
+		}
+	}
+
+	private static class PageContext extends ELContext {
+		@Override
+		public ELResolver getELResolver() {
+			return null;
+		}
+
+		@Override
+		public FunctionMapper getFunctionMapper() {
+			return null;
+		}
+
+		@Override
+		public VariableMapper getVariableMapper() {
+			return null;
+		}
+	}
+
+	private static AbstractPicoElResolver resolverOf(final PicoContainer container) {
+		return new AbstractPicoElResolver() {
+			@Override
+			protected PicoContainer getPicoContainer(ELContext context) {
+				return container;
+			}
+		};
+	}
+
+	@Test
+	public void testComponentsAreLookedUpOncePerPage() {
+		MutablePicoContainer app = new DefaultPicoContainer();
+		CountingPicoContainer request = new CountingPicoContainer(
+				new DefaultPicoContainer(app, new Caching()).addComponent("basket", Basket.class));
+		AbstractPicoElResolver resolver = resolverOf(request);
+
+		ELContext page = new PageContext();
+		Object basket = resolver.getValue(page, null, "basket");
+		assertTrue(basket instanceof Basket);
+		assertTrue(page.isPropertyResolved());
+		assertEquals(1, request.lookups);
+		assertEquals(1, request.instances);
+		for (int i = 0; i < 200; i++) {
+			assertSame(basket, resolver.getValue(page, null, "basket"));
+		}
+		assertEquals(Basket.class, resolver.getType(page, null, "basket"));
+		assertEquals(1, request.lookups);
+		assertEquals(1, request.instances);
+
+		ELContext nextPage = new PageContext();
+		assertSame(basket, resolver.getValue(nextPage, null, "basket"));
+		assertEquals(1, request.lookups);
+		assertEquals(2, request.instances);
+	}
+
+	@Test
+	public void testMissingNamesAreRememberedUntilAComponentIsAdded() {
+		MutablePicoContainer app = new DefaultPicoContainer();
+		CountingPicoContainer request = new CountingPicoContainer(new DefaultPicoContainer(app));
+		AbstractPicoElResolver resolver = resolverOf(request);
+
+		ELContext page = new PageContext();
+		assertNull(resolver.getValue(page, null, "item"));
+		assertFalse(page.isPropertyResolved());
+		int lookups = request.lookups;
+		assertNull(resolver.getValue(new PageContext(), null, "item"));
+		assertNull(resolver.getType(new PageContext(), null, "item"));
+		assertEquals(lookups, request.lookups);
+
+		app.addComponent("item", Basket.class);
+		assertTrue(resolver.getValue(new PageContext(), null, "item") instanceof Basket);
+	}
+
+	@Test
+	public void testRemovingOneComponentAndAddingAnotherIsNoticed() {
+		MutablePicoContainer app = new DefaultPicoContainer();
+		app.addComponent("item", Basket.class);
+		AbstractPicoElResolver resolver = resolverOf(new DefaultPicoContainer(app));
+
+		assertTrue(resolver.getValue(new PageContext(), null, "item") instanceof Basket);
+		assertNull(resolver.getValue(new PageContext(), null, "other"));
+
+		// the number of components is the same as before
+		app.removeComponent("item");
+		app.addComponent("other", Basket.class);
+		assertNull(resolver.getValue(new PageContext(), null, "item"));
+		assertTrue(resolver.getValue(new PageContext(), null, "other") instanceof Basket);
+	}
+
+	@Test
+	public void testNamesAreOnlyRememberedPerPageWhenAContainerDoesNotCountItsChanges() {
+		final MutablePicoContainer app = new DefaultPicoContainer();
+		PicoContainer uncounted = (PicoContainer) Proxy.newProxyInstance(getClass().getClassLoader(),
+				new Class<?>[] {PicoContainer.class}, new InvocationHandler() {
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						return method.invoke(app, args);
+					}
+				});
+		CountingPicoContainer request = new CountingPicoContainer(new DefaultPicoContainer(uncounted));
+		AbstractPicoElResolver resolver = resolverOf(request);
+
+		ELContext page = new PageContext();
+		assertNull(resolver.getValue(page, null, "item"));
+		assertNull(resolver.getValue(page, null, "item"));
+		assertEquals(1, request.lookups);
+		assertNull(resolver.getValue(new PageContext(), null, "item"));
+		assertEquals(2, request.lookups);
+	}
+
+}
@@ -1,7 +1,9 @@
 package com.picocontainer.web.providers;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -9,8 +11,13 @@ import java.lang.reflect.Method;
 import org.junit.Test;
 
 import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.Startable;
 import com.picocontainer.behaviors.Storing;
+import com.picocontainer.gems.GemsCharacteristics;
+import com.picocontainer.gems.behaviors.Recycling;
 import com.picocontainer.web.ScopedContainers;
+import com.picocontainer.web.ThreadLocalLifecycleState;
+import com.thoughtworks.proxy.kit.Resetter;
 
 public class DefaultScopedContainerBuilderTestCase {
 
@@ -37,7 +44,88 @@ public class DefaultScopedContainerBuilderTestCase {
 		assertNotNull(getRequestContainer(containers));		
 	}
 
-	
+	public static class Logged implements Startable {
+		private final StringBuilder sb;
+		public Logged(StringBuilder sb) {
+			this.sb = sb;
+		}
+		public void start() {
+			sb.append("<" + getClass().getSimpleName());
+		}
+		public void stop() {
+			sb.append(">" + getClass().getSimpleName());
+		}
+	}
+
+	public static class Used extends Logged {
+		public Used(StringBuilder sb) {
+			super(sb);
+		}
+	}
+
+	public static class Unused extends Logged {
+		public Unused(StringBuilder sb) {
+			super(sb);
+		}
+	}
+
+	@Test
+	public void testLazyRequestLifecycleOnlyStartsAndStopsTheComponentsARequestUsed() {
+		DefaultScopedContainerBuilder containerBuilder = new DefaultScopedContainerBuilder();
+		containerBuilder.setLazyRequestLifecycle(true);
+		ScopedContainers containers = containerBuilder.makeScopedContainers(true);
+		StringBuilder sb = new StringBuilder();
+		getAppContainer(containers).addComponent(sb);
+		MutablePicoContainer requestContainer = getRequestContainer(containers);
+		requestContainer.addComponent(Used.class);
+		requestContainer.addComponent(Unused.class);
+
+		requestContainer.start();
+		assertEquals("", sb.toString());
+		requestContainer.getComponent(Used.class);
+		requestContainer.stop();
+		assertEquals("<Used>Used", sb.toString());
+
+		getRequestStoring(containers).resetCacheForThread();
+		requestContainer.start();
+		requestContainer.stop();
+		assertEquals("<Used>Used", sb.toString());
+	}
+
+	public static class Binder {
+		private String name;
+	}
+
+	@Test
+	public void testRecycledRequestComponentsAreHandedToTheNextRequest() {
+		DefaultScopedContainerBuilder containerBuilder = new DefaultScopedContainerBuilder();
+		containerBuilder.setRequestRecycling(new Recycling(new Resetter<Object>() {
+			public boolean reset(Object binder) {
+				((Binder) binder).name = null;
+				return true;
+			}
+		}, 4));
+		ScopedContainers containers = containerBuilder.makeScopedContainers(true);
+		MutablePicoContainer requestContainer = getRequestContainer(containers);
+		requestContainer.as(GemsCharacteristics.RECYCLE).addComponent(Binder.class);
+		ThreadLocalLifecycleState requestState = (ThreadLocalLifecycleState) invokeGetterMethod(containers, "getRequestState");
+
+		getRequestStoring(containers).openCacheForThread();
+		requestState.resetStateModelForThread();
+		requestContainer.start();
+		Binder binder = requestContainer.getComponent(Binder.class);
+		binder.name = "first";
+		requestContainer.stop();
+		requestContainer.dispose();
+		getRequestStoring(containers).invalidateCacheForThread();
+
+		getRequestStoring(containers).openCacheForThread();
+		requestState.resetStateModelForThread();
+		requestContainer.start();
+		assertSame(binder, requestContainer.getComponent(Binder.class));
+		assertNull(binder.name);
+	}
+
 	static Storing getRequestStoring(ScopedContainers containers) {
 		Storing result = (Storing)invokeGetterMethod(containers, "getRequestStoring");
 		return result;
@@ -5,6 +5,9 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
 
 import javax.servlet.ServletContext;
 
@@ -26,6 +29,8 @@ import com.picocontainer.behaviors.Locking.Locked;
 import com.picocontainer.behaviors.Synchronizing;
 import com.picocontainer.behaviors.Synchronizing.Synchronized;
 import com.picocontainer.containers.EmptyPicoContainer;
+import com.picocontainer.gems.GemsCharacteristics;
+import com.picocontainer.gems.behaviors.Recycling.Recycled;
 import com.picocontainer.gems.jmx.JMXExposing;
 import com.picocontainer.gems.jmx.JMXExposing.JMXExposed;
 import com.picocontainer.gems.monitors.CommonsLoggingComponentMonitor;
@@ -37,6 +42,7 @@ import com.picocontainer.web.ScopedContainers;
 import com.picocontainer.web.providers.defaults.CommonsLoggingMonitorProvider;
 import com.picocontainer.web.providers.defaults.Slf4jMonitorProvider;
 import com.picocontainer.web.providers.defaults.TestPicoProvider;
+import com.thoughtworks.proxy.kit.Resetter;
 
 @RunWith(JMock.class)
 public class PicoServletParameterProcessorTestCase {
@@ -109,6 +115,12 @@ public class PicoServletParameterProcessorTestCase {
 			oneOf(servletContext).getInitParameter(with(same(LIFECYCLE_STRATEGY)));
 			will((returnValue(null)));
 
+			oneOf(servletContext).getInitParameter(with(same(LAZY_REQUEST_LIFECYCLE)));
+			will((returnValue(null)));
+
+			oneOf(servletContext).getInitParameter(with(same(REQUEST_RECYCLING)));
+			will((returnValue(null)));
+
 		}});
 	}
 	
@@ -263,6 +275,12 @@ public class PicoServletParameterProcessorTestCase {
 			will((returnValue(Locking.class.getName() + "," + JMXExposing.class.getName())));
 			
 			oneOf(servletContext).getInitParameter(with(same(LIFECYCLE_STRATEGY)));
+			will((returnValue(null)));
+
+			oneOf(servletContext).getInitParameter(with(same(LAZY_REQUEST_LIFECYCLE)));
+			will((returnValue(null)));
+
+			oneOf(servletContext).getInitParameter(with(same(REQUEST_RECYCLING)));
 			will((returnValue(null)));			
 		}});
 		
@@ -347,6 +365,8 @@ public class PicoServletParameterProcessorTestCase {
 			will(returnValue("true"));
 		}});	
 		
+		// keeps the grant rules written by the profiler with the rest of the build output
+		System.setProperty(ProfilingSecurityManager.OUTPUT_FILE_PROPERTY, new File("target", "profile-output.txt").getPath());
 		try {
 			addNullStateLessExpectations();
 			addNullComponentMonitorExpectations();	
@@ -358,9 +378,83 @@ public class PicoServletParameterProcessorTestCase {
 			assertTrue(System.getSecurityManager() instanceof ProfilingSecurityManager);
 		} finally {
 			System.setSecurityManager(null);
+			System.clearProperty(ProfilingSecurityManager.OUTPUT_FILE_PROPERTY);
 		}	
 		
 	}
 	
 
+	private void addRecyclingExpectations(final String resetter) {
+		context.checking(new Expectations() {{
+			oneOf(servletContext).getInitParameter(with(same(REQUEST_BEHAVIORS)));
+			will((returnValue(null)));
+
+			oneOf(servletContext).getInitParameter(with(same(SESSION_BEHAVIORS)));
+			will((returnValue(null)));
+
+			oneOf(servletContext).getInitParameter(with(same(APP_BEHAVIORS)));
+			will((returnValue(null)));
+
+			oneOf(servletContext).getInitParameter(with(same(LIFECYCLE_STRATEGY)));
+			will((returnValue(null)));
+
+			oneOf(servletContext).getInitParameter(with(same(LAZY_REQUEST_LIFECYCLE)));
+			will((returnValue(null)));
+
+			oneOf(servletContext).getInitParameter(with(same(REQUEST_RECYCLING)));
+			will((returnValue("4")));
+
+			oneOf(servletContext).getInitParameter(with(same(REQUEST_RECYCLING_RESETTER)));
+			will((returnValue(resetter)));
+		}});
+		addNullStateLessExpectations();
+		addNullComponentMonitorExpectations();
+		addNullExpectationsOnProfilingJavaSecurity();
+	}
+
+	@Test
+	public void testRequestRecyclingIsRefusedWithoutAResetter() {
+		addRecyclingExpectations(null);
+
+		try {
+			new PicoServletParameterProcessor().processContextParameters(servletContext);
+			fail("recycling without a resetter would hand one user's component to the next");
+		} catch (ProviderSetupException e) {
+			assertTrue(e.getMessage().contains(REQUEST_RECYCLING_RESETTER));
+		}
+	}
+
+	@Test
+	public void testRequestRecyclingIsRefusedWithSomethingOtherThanAResetter() {
+		addRecyclingExpectations(Object.class.getName());
+
+		try {
+			new PicoServletParameterProcessor().processContextParameters(servletContext);
+			fail("expected ProviderSetupException");
+		} catch (ProviderSetupException e) {
+			assertTrue(e.getMessage().contains(Object.class.getName()));
+		}
+	}
+
+	@Test
+	public void testRequestRecyclingUsesTheNamedResetter() {
+		addRecyclingExpectations(ClearingResetter.class.getName());
+		addNullParentPicoContainerExpectations();
+
+		PicoServletParameterProcessor paramProcessor = new PicoServletParameterProcessor();
+		AbstractScopedContainerBuilder containerBuilder = paramProcessor.processContextParameters(servletContext);
+		ScopedContainers containers =  containerBuilder.makeScopedContainers(paramProcessor.isStateless());
+
+		MutablePicoContainer requestPico = DefaultScopedContainerBuilderTestCase.getRequestContainer(containers);
+		requestPico.as(GemsCharacteristics.RECYCLE).addComponent(StringBuilder.class);
+		assertNotNull(requestPico.getComponentAdapter(StringBuilder.class).findAdapterOfType(Recycled.class));
+	}
+
+	public static class ClearingResetter implements Resetter<StringBuilder> {
+		public boolean reset(StringBuilder object) {
+			object.setLength(0);
+			return true;
+		}
+	}
+
 }
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+/**
+ * Mapped ahead of {@link com.picocontainer.web.PicoServletFilter}, counts the bytes allocated by the thread
+ * serving each request from there on, which is the PicoContainer request cycle and the servlet but not
+ * Jetty's own parsing and writing.  Allocation is only counted on JVMs whose ThreadMXBean can report it.
+ */
+public class AllocationFilter implements Filter {
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong allocatedBytes = new AtomicLong();
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        try {
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean allocating = (com.sun.management.ThreadMXBean) threads;
+                if (allocating.isThreadAllocatedMemorySupported()) {
+                    allocating.setThreadAllocatedMemoryEnabled(true);
+                    return allocating;
+                }
+            }
+        } catch (LinkageError e) {
+            // not a Sun derived JVM
+        } catch (UnsupportedOperationException e) {
+            // not supported
+        }
+        return null;
+    }
+
+    public static boolean isSupported() {
+        return THREADS != null;
+    }
+
+    public void init(FilterConfig filterConfig) {
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (THREADS == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long thread = Thread.currentThread().getId();
+        long before = THREADS.getThreadAllocatedBytes(thread);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            allocatedBytes.addAndGet(THREADS.getThreadAllocatedBytes(thread) - before);
+            requests.incrementAndGet();
+        }
+    }
+
+    public void destroy() {
+    }
+
+    /**
+     * @return the mean bytes allocated per request since the last reset, or -1 if that cannot be told.
+     */
+    public long bytesPerRequest() {
+        long count = requests.get();
+        return THREADS == null || count == 0 ? -1 : allocatedBytes.get() / count;
+    }
+
+    public void reset() {
+        requests.set(0);
+        allocatedBytes.set(0);
+    }
+
+}
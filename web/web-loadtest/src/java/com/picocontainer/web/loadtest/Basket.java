@@ -0,0 +1,36 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Session scoped: what a visitor has added so far, which is what makes their session grow.
+ */
+@SuppressWarnings("serial")
+public class Basket implements Serializable {
+
+    private final List<String> skus = new ArrayList<String>();
+    private int pence;
+
+    public void add(Price price) {
+        skus.add(price.getSku());
+        pence += price.getPence();
+    }
+
+    public int size() {
+        return skus.size();
+    }
+
+    public int getPence() {
+        return pence;
+    }
+
+}
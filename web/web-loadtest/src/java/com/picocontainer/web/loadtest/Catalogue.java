@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Application scoped: the prices every session shops from.
+ */
+public class Catalogue {
+
+    private static final int SIZE = 20;
+
+    private final List<Price> prices;
+
+    public Catalogue() {
+        List<Price> prices = new ArrayList<Price>(SIZE);
+        for (int i = 0; i < SIZE; i++) {
+            prices.add(new Price("sku-" + i, 100 + 25 * i));
+        }
+        this.prices = Collections.unmodifiableList(prices);
+    }
+
+    public List<Price> getPrices() {
+        return prices;
+    }
+
+    public Price get(int index) {
+        return prices.get(index % prices.size());
+    }
+
+}
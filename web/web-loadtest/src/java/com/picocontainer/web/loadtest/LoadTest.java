@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+import com.picocontainer.web.remoting.BinaryPicoWebRemotingServlet;
+import com.picocontainer.web.remoting.BinaryReplyReader;
+
+/**
+ * Drives a {@link LoadTestServer} from in-process virtual users, each a thread with its own session cookie,
+ * and reports throughput, latency percentiles, allocation per request and session size.
+ * <p>
+ * Each user makes its warm-up requests, which are not measured, and then its measured requests.  A request
+ * is a page view, a JSON remoting call or a binary remoting call, picked at random in the proportions of the
+ * mix.  Before each request, a user becomes a new visitor, dropping its session cookie, with the chance given
+ * by <code>newSessions</code>; each page view adds <code>items</code> to the visitor's basket.  Run from the
+ * command line with any of these options, shown with their defaults:
+ * </p>
+ * <pre>
+ * java com.picocontainer.web.loadtest.LoadTest users=8 requests=2000 warmup=500 mix=page:6,json:3,binary:1
+ *     newSessions=0.01 items=1 seed=42 port=0
+ * </pre>
+ */
+public class LoadTest {
+
+    public enum Kind {
+        PAGE("/page"), JSON("/json/Till/prices"), BINARY("/binary/Till/prices");
+
+        private final String path;
+
+        private Kind(String path) {
+            this.path = path;
+        }
+    }
+
+    private static final int TIMEOUT_MILLIS = 10000;
+
+    private int users = 8;
+    private int requests = 2000;
+    private int warmup = 500;
+    private final Map<Kind, Integer> mix = new EnumMap<Kind, Integer>(Kind.class);
+    private double newSessions = 0.01;
+    private int items = 1;
+    private long seed = 42;
+
+    public LoadTest() {
+        mix.put(Kind.PAGE, 6);
+        mix.put(Kind.JSON, 3);
+        mix.put(Kind.BINARY, 1);
+    }
+
+    public LoadTest users(int users) {
+        this.users = users;
+        return this;
+    }
+
+    /**
+     * @param requests the measured requests made by each user.
+     */
+    public LoadTest requests(int requests) {
+        this.requests = requests;
+        return this;
+    }
+
+    /**
+     * @param warmup the requests each user makes before those measured.
+     */
+    public LoadTest warmup(int warmup) {
+        this.warmup = warmup;
+        return this;
+    }
+
+    /**
+     * @param mix the weight of each kind of request, such as <code>page:6,json:3,binary:1</code>.  Kinds left
+     *            out are not requested.
+     */
+    public LoadTest mix(String mix) {
+        this.mix.clear();
+        for (String weight : mix.split(",")) {
+            String[] kindAndWeight = weight.split(":");
+            if (kindAndWeight.length != 2) {
+                throw new IllegalArgumentException("Expected kind:weight in mix, got '" + weight + "'");
+            }
+            this.mix.put(Kind.valueOf(kindAndWeight[0].trim().toUpperCase()), Integer.parseInt(kindAndWeight[1].trim()));
+        }
+        return this;
+    }
+
+    /**
+     * @param newSessions the chance, from 0 to 1, of a request being made by a new visitor.
+     */
+    public LoadTest newSessions(double newSessions) {
+        this.newSessions = newSessions;
+        return this;
+    }
+
+    /**
+     * @param items the items each page view adds to the basket.
+     */
+    public LoadTest items(int items) {
+        this.items = items;
+        return this;
+    }
+
+    public LoadTest seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    public LoadTestReport run(LoadTestServer server) throws IOException, InterruptedException {
+        Kind[] kinds = weightedKinds();
+        String base = "http://localhost:" + server.getPort() + LoadTestServer.CONTEXT_PATH;
+        User[] users = new User[this.users];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = new User(base, kinds, new Random(seed + i));
+        }
+
+        runAll(users, warmup, false);
+        server.getAllocationFilter().reset();
+        long start = System.nanoTime();
+        runAll(users, requests, true);
+        long elapsed = System.nanoTime() - start;
+
+        long[] latencies = new long[users.length * requests];
+        int errors = 0;
+        String firstError = null;
+        for (int i = 0; i < users.length; i++) {
+            System.arraycopy(users[i].latencies, 0, latencies, i * requests, requests);
+            errors += users[i].errors;
+            if (firstError == null) {
+                firstError = users[i].firstError;
+            }
+        }
+        return new LoadTestReport(latencies.length, errors, firstError, elapsed, latencies,
+                server.getAllocationFilter().bytesPerRequest(), server.getSessionTracker().sessionSizes());
+    }
+
+    private Kind[] weightedKinds() {
+        int total = 0;
+        for (int weight : mix.values()) {
+            total += weight;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("Mix " + mix + " has no weight");
+        }
+        Kind[] kinds = new Kind[total];
+        int i = 0;
+        for (Map.Entry<Kind, Integer> weight : mix.entrySet()) {
+            for (int j = 0; j < weight.getValue(); j++) {
+                kinds[i++] = weight.getKey();
+            }
+        }
+        return kinds;
+    }
+
+    private void runAll(User[] users, int requests, boolean measured) throws InterruptedException {
+        Thread[] threads = new Thread[users.length];
+        for (int i = 0; i < users.length; i++) {
+            threads[i] = new Thread(users[i].run(requests, measured), "loadtest-user-" + i);
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * A visitor, who keeps their session cookie until they are replaced by a new one.
+     */
+    private class User {
+
+        private final String base;
+        private final Kind[] kinds;
+        private final Random random;
+        private final byte[] buffer = new byte[8192];
+        private String cookie;
+        private long[] latencies = new long[0];
+        private int errors;
+        private String firstError;
+
+        private User(String base, Kind[] kinds, Random random) {
+            this.base = base;
+            this.kinds = kinds;
+            this.random = random;
+        }
+
+        private Runnable run(final int requests, final boolean measured) {
+            if (measured) {
+                latencies = new long[requests];
+            }
+            return new Runnable() {
+                public void run() {
+                    for (int i = 0; i < requests; i++) {
+                        Kind kind = kinds[random.nextInt(kinds.length)];
+                        if (random.nextDouble() < newSessions) {
+                            cookie = null;
+                        }
+                        long start = System.nanoTime();
+                        String error;
+                        try {
+                            error = request(kind);
+                        } catch (Exception e) {
+                            error = e.toString();
+                        }
+                        if (measured) {
+                            latencies[i] = System.nanoTime() - start;
+                            if (error != null) {
+                                errors++;
+                                if (firstError == null) {
+                                    firstError = kind + ": " + error;
+                                }
+                            }
+                        }
+                    }
+                }
+            };
+        }
+
+        /**
+         * @return what went wrong, or null if nothing did.
+         */
+        private String request(Kind kind) throws IOException {
+            String path = kind == Kind.PAGE ? kind.path + "?items=" + items : kind.path;
+            HttpURLConnection connection = (HttpURLConnection) new URL(base + path).openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            connection.setUseCaches(false);
+            if (cookie != null) {
+                connection.setRequestProperty("Cookie", cookie);
+            }
+            if (kind == Kind.BINARY) {
+                connection.setRequestProperty("Accept", BinaryPicoWebRemotingServlet.MIME_TYPE);
+            }
+            int status = connection.getResponseCode();
+            String setCookie = connection.getHeaderField("Set-Cookie");
+            if (setCookie != null) {
+                int semicolon = setCookie.indexOf(';');
+                cookie = semicolon == -1 ? setCookie : setCookie.substring(0, semicolon);
+            }
+            byte[] body = readFully(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            if (status != HttpURLConnection.HTTP_OK) {
+                String reply = new String(body, "UTF-8");
+                return "HTTP " + status + " " + reply.substring(0, Math.min(reply.length(), 500));
+            }
+            if (kind == Kind.BINARY) {
+                Object reply = BinaryReplyReader.fromBytes(body);
+                if (reply instanceof Map && ((Map<?, ?>) reply).containsKey("ERROR")) {
+                    return String.valueOf(reply);
+                }
+            } else if (kind == Kind.JSON && new String(body, "UTF-8").contains("\"ERROR\"")) {
+                return new String(body, "UTF-8");
+            }
+            return null;
+        }
+
+        private byte[] readFully(InputStream in) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            if (in == null) {
+                return body.toByteArray();
+            }
+            try {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    body.write(buffer, 0, n);
+                }
+            } finally {
+                in.close();
+            }
+            return body.toByteArray();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTest loadTest = new LoadTest();
+        int port = 0;
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals == -1) {
+                throw new IllegalArgumentException("Expected name=value, got '" + arg + "'");
+            }
+            String name = arg.substring(0, equals);
+            String value = arg.substring(equals + 1);
+            if (name.equals("users")) {
+                loadTest.users(Integer.parseInt(value));
+            } else if (name.equals("requests")) {
+                loadTest.requests(Integer.parseInt(value));
+            } else if (name.equals("warmup")) {
+                loadTest.warmup(Integer.parseInt(value));
+            } else if (name.equals("mix")) {
+                loadTest.mix(value);
+            } else if (name.equals("newSessions")) {
+                loadTest.newSessions(Double.parseDouble(value));
+            } else if (name.equals("items")) {
+                loadTest.items(Integer.parseInt(value));
+            } else if (name.equals("seed")) {
+                loadTest.seed(Long.parseLong(value));
+            } else if (name.equals("port")) {
+                port = Integer.parseInt(value);
+            } else {
+                throw new IllegalArgumentException("Unknown option '" + name + "'");
+            }
+        }
+        if (System.getProperty("http.maxConnections") == null) {
+            // lets every user keep its connection alive
+            System.setProperty("http.maxConnections", String.valueOf(loadTest.users));
+        }
+
+        LoadTestServer server = new LoadTestServer(port);
+        server.start();
+        try {
+            System.out.println(loadTest.run(server));
+        } finally {
+            server.stop();
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+import javax.servlet.ServletContext;
+
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.web.WebappComposer;
+
+/**
+ * Composes the load test webapp, which, like the stub webapp, has a component in each scope.
+ */
+public class LoadTestComposer implements WebappComposer {
+
+    public void composeApplication(MutablePicoContainer container, ServletContext context) {
+        container.addComponent(Catalogue.class);
+    }
+
+    public void composeSession(MutablePicoContainer container) {
+        container.addComponent(Basket.class);
+    }
+
+    public void composeRequest(MutablePicoContainer container) {
+        container.addComponent(Till.class);
+    }
+
+}
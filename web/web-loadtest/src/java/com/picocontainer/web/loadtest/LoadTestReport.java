@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The numbers from a {@link LoadTest} run.  Latencies are measured by the client, from sending a request to
+ * reading the last of its reply; allocation is measured on the server, by the {@link AllocationFilter}.
+ */
+public class LoadTestReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final int requests;
+    private final int errors;
+    private final String firstError;
+    private final long elapsedNanos;
+    private final long[] latencies;
+    private final long bytesPerRequest;
+    private final int[] sessionSizes;
+
+    public LoadTestReport(int requests, int errors, String firstError, long elapsedNanos, long[] latencies,
+                          long bytesPerRequest, List<Integer> sessionSizes) {
+        this.requests = requests;
+        this.errors = errors;
+        this.firstError = firstError;
+        this.elapsedNanos = elapsedNanos;
+        this.latencies = latencies.clone();
+        Arrays.sort(this.latencies);
+        this.bytesPerRequest = bytesPerRequest;
+        this.sessionSizes = new int[sessionSizes.size()];
+        for (int i = 0; i < this.sessionSizes.length; i++) {
+            this.sessionSizes[i] = sessionSizes.get(i);
+        }
+        Arrays.sort(this.sessionSizes);
+    }
+
+    public int getRequests() {
+        return requests;
+    }
+
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the first error seen, or null if there were none.
+     */
+    public String getFirstError() {
+        return firstError;
+    }
+
+    /**
+     * @return requests per second.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : requests * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @param percentile from 0 to 100.
+     * @return the latency, in nanoseconds, that the given percentage of requests took no longer than.
+     */
+    public long getLatencyNanos(double percentile) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+        return latencies[Math.min(Math.max(rank, 1), latencies.length) - 1];
+    }
+
+    /**
+     * @return the mean bytes allocated on the server per request, or -1 if the JVM cannot tell.
+     */
+    public long getBytesPerRequest() {
+        return bytesPerRequest;
+    }
+
+    public int getSessions() {
+        return sessionSizes.length;
+    }
+
+    /**
+     * @return the mean serialized size, in bytes, of what PicoContainer keeps in a session.
+     */
+    public int getMeanSessionBytes() {
+        if (sessionSizes.length == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int size : sessionSizes) {
+            total += size;
+        }
+        return (int) (total / sessionSizes.length);
+    }
+
+    public int getMaxSessionBytes() {
+        return sessionSizes.length == 0 ? 0 : sessionSizes[sessionSizes.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("requests:    %d in %.2fs, %d errors%n", requests, elapsedNanos / 1e9, errors));
+        if (firstError != null) {
+            report.append(String.format("first error: %s%n", firstError));
+        }
+        report.append(String.format("throughput:  %.1f requests/s%n", getThroughput()));
+        report.append("latency:    ");
+        for (double percentile : PERCENTILES) {
+            report.append(String.format(" p%s=%.3fms", percentile == (int) percentile ? String.valueOf((int) percentile)
+                    : String.valueOf(percentile), getLatencyNanos(percentile) / 1e6));
+        }
+        report.append(String.format(" max=%.3fms%n", getLatencyNanos(100) / 1e6));
+        report.append(String.format("allocation:  %s bytes/request%n",
+                bytesPerRequest < 0 ? "unknown" : String.valueOf(bytesPerRequest)));
+        report.append(String.format("sessions:    %d, mean %d bytes, max %d bytes%n",
+                getSessions(), getMeanSessionBytes(), getMaxSessionBytes()));
+        return report.toString();
+    }
+
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+import java.util.EnumSet;
+
+import javax.servlet.DispatcherType;
+
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletHolder;
+
+import com.picocontainer.DefaultPicoContainer;
+import com.picocontainer.Startable;
+import com.picocontainer.jetty.PicoContext;
+import com.picocontainer.jetty.PicoJettyServer;
+import com.picocontainer.web.PicoServletContainerListener;
+import com.picocontainer.web.PicoServletFilter;
+import com.picocontainer.web.remoting.BinaryPicoWebRemotingServlet;
+import com.picocontainer.web.remoting.JsonPicoWebRemotingServlet;
+
+/**
+ * An embedded {@link PicoJettyServer}, on localhost, serving the load test webapp at {@link #CONTEXT_PATH}:
+ * <ul>
+ * <li><code>/page</code> - the {@link PageServlet}, which uses every scope and so a session</li>
+ * <li><code>/json/*</code> - the request scope published by {@link JsonPicoWebRemotingServlet}</li>
+ * <li><code>/binary/*</code> - the same, published by {@link BinaryPicoWebRemotingServlet}</li>
+ * </ul>
+ * All of them are behind {@link PicoServletFilter}, which is behind an {@link AllocationFilter}.
+ */
+public class LoadTestServer implements Startable {
+
+    public static final String CONTEXT_PATH = "/loadtest";
+
+    private static final EnumSet<DispatcherType> REQUEST = EnumSet.of(DispatcherType.REQUEST);
+
+    private final PicoJettyServer server;
+    private final ServerConnector connector;
+    private final AllocationFilter allocationFilter = new AllocationFilter();
+    private final SessionTracker sessionTracker = new SessionTracker();
+
+    /**
+     * @param port the port to listen on, or 0 for any free port.
+     */
+    public LoadTestServer(int port) {
+        server = new PicoJettyServer(new DefaultPicoContainer());
+        connector = (ServerConnector) server.createServerConnector("localhost", port);
+        PicoContext context = server.createContext(CONTEXT_PATH, true);
+        context.addInitParam(PicoServletContainerListener.WEBAPP_COMPOSER_CLASS, LoadTestComposer.class.getName());
+        context.addListener(new PicoServletContainerListener());
+        context.addListener(sessionTracker);
+        context.addFilterWithMapping(allocationFilter, "/*", REQUEST);
+        context.addFilterWithMapping(PicoServletFilter.class, "/*", REQUEST);
+        context.addServletWithMapping(PageServlet.class, "/page");
+        publish(context.addServletWithMapping(JsonPicoWebRemotingServlet.class, "/json/*"));
+        publish(context.addServletWithMapping(BinaryPicoWebRemotingServlet.class, "/binary/*"));
+    }
+
+    private static void publish(ServletHolder remoting) {
+        remoting.setInitParameter("scopes_to_publish", "request");
+        remoting.setInitParameter("package_prefix_to_strip", LoadTestServer.class.getPackage().getName());
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop();
+    }
+
+    /**
+     * @return the port listened on, once started.
+     */
+    public int getPort() {
+        return connector.getLocalPort();
+    }
+
+    public AllocationFilter getAllocationFilter() {
+        return allocationFilter;
+    }
+
+    public SessionTracker getSessionTracker() {
+        return sessionTracker;
+    }
+
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.web.PicoServletFilter;
+
+/**
+ * A page view: adds items to the session's basket and writes its total, in the way the stub webapp's
+ * servlet gets its request scoped component.  The number of items comes from the <code>items</code>
+ * parameter, and is one if there is none.
+ */
+@SuppressWarnings("serial")
+public class PageServlet extends HttpServlet {
+
+    private final PicoHook picoHook = new PicoHook();
+
+    private static class PicoHook extends PicoServletFilter {
+        protected final MutablePicoContainer getRequestPicoForThread() {
+            return this.getRequestContainer();
+        }
+    }
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String items = request.getParameter("items");
+        Till till = picoHook.getRequestPicoForThread().getComponent(Till.class);
+        int total = till.add(items == null ? 1 : Integer.parseInt(items));
+        response.setContentType("text/plain");
+        response.getWriter().print(total);
+    }
+
+}
@@ -0,0 +1,31 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+/**
+ * An item in the {@link Catalogue}.
+ */
+public class Price {
+
+    private final String sku;
+    private final int pence;
+
+    public Price(String sku, int pence) {
+        this.sku = sku;
+        this.pence = pence;
+    }
+
+    public String getSku() {
+        return sku;
+    }
+
+    public int getPence() {
+        return pence;
+    }
+
+}
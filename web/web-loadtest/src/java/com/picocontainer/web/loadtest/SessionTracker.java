@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionEvent;
+import javax.servlet.http.HttpSessionListener;
+
+import com.picocontainer.web.SessionStoreHolder;
+
+/**
+ * Keeps hold of the live sessions so that what PicoContainer stores in them can be sized once a run is over,
+ * rather than while requests are being timed.
+ */
+public class SessionTracker implements HttpSessionListener {
+
+    private final ConcurrentMap<String, HttpSession> sessions = new ConcurrentHashMap<String, HttpSession>();
+
+    public void sessionCreated(HttpSessionEvent event) {
+        HttpSession session = event.getSession();
+        sessions.put(session.getId(), session);
+    }
+
+    public void sessionDestroyed(HttpSessionEvent event) {
+        sessions.remove(event.getSession().getId());
+    }
+
+    /**
+     * @return the serialized size, in bytes, of the {@link SessionStoreHolder} of each live session that has one.
+     */
+    public List<Integer> sessionSizes() throws IOException {
+        List<Integer> sizes = new ArrayList<Integer>(sessions.size());
+        for (HttpSession session : sessions.values()) {
+            Object holder;
+            try {
+                holder = session.getAttribute(SessionStoreHolder.class.getName());
+            } catch (IllegalStateException e) {
+                continue; // invalidated
+            }
+            if (holder != null) {
+                sizes.add(serializedSize(holder));
+            }
+        }
+        return sizes;
+    }
+
+    private static int serializedSize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.size();
+    }
+
+}
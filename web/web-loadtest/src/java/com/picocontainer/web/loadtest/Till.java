@@ -0,0 +1,45 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+import java.util.List;
+
+/**
+ * Request scoped, depending on a component from each of the other scopes.  Its getters are what is published
+ * for web remoting.
+ */
+public class Till {
+
+    private final Catalogue catalogue;
+    private final Basket basket;
+
+    public Till(Catalogue catalogue, Basket basket) {
+        this.catalogue = catalogue;
+        this.basket = basket;
+    }
+
+    public List<Price> getPrices() {
+        return catalogue.getPrices();
+    }
+
+    public int getTotal() {
+        return basket.getPence();
+    }
+
+    /**
+     * Adds the next items of the catalogue to the basket.
+     * @return the basket's total.
+     */
+    public int add(int items) {
+        for (int i = 0; i < items; i++) {
+            basket.add(catalogue.get(basket.size()));
+        }
+        return basket.getPence();
+    }
+
+}
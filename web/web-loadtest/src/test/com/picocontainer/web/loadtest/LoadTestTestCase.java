@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.loadtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class LoadTestTestCase {
+
+    private LoadTestServer server;
+
+    @Before
+    public void setUp() {
+        server = new LoadTestServer(0);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void testAShortRunOfEveryKindOfRequestIsReported() throws Exception {
+        LoadTestReport report = new LoadTest().users(2).warmup(10).requests(50).newSessions(0.1).items(3)
+                .mix("page:2,json:1,binary:1").run(server);
+
+        assertEquals(report.toString(), 0, report.getErrors());
+        assertEquals(100, report.getRequests());
+        assertTrue(report.getThroughput() > 0);
+        assertTrue(report.getLatencyNanos(50) > 0);
+        assertTrue(report.getLatencyNanos(50) <= report.getLatencyNanos(99));
+        assertTrue(report.getSessions() > 2);
+        assertTrue(report.getMeanSessionBytes() > 0);
+        assertTrue(!AllocationFilter.isSupported() || report.getBytesPerRequest() > 0);
+    }
+
+    @Test
+    public void testSessionsGrowWithTheItemsAddedToThem() throws Exception {
+        LoadTestReport few = new LoadTest().users(1).warmup(0).requests(5).newSessions(0).items(1).mix("page:1")
+                .run(server);
+        LoadTestReport many = new LoadTest().users(1).warmup(0).requests(5).newSessions(0).items(50).mix("page:1")
+                .seed(7).run(server);
+
+        assertEquals(0, few.getErrors() + many.getErrors());
+        assertTrue(many.getMaxSessionBytes() > few.getMaxSessionBytes());
+    }
+
+    @Test
+    public void testLatencyPercentilesAreNearestRank() {
+        LoadTestReport report = new LoadTestReport(4, 0, null, 1000000000L, new long[] {40, 10, 30, 20}, -1,
+                Arrays.asList(100, 300));
+
+        assertEquals(10, report.getLatencyNanos(0));
+        assertEquals(20, report.getLatencyNanos(50));
+        assertEquals(40, report.getLatencyNanos(99));
+        assertEquals(40, report.getLatencyNanos(100));
+        assertEquals(4.0, report.getThroughput(), 0.001);
+        assertEquals(200, report.getMeanSessionBytes());
+        assertEquals(300, report.getMaxSessionBytes());
+        assertEquals(0, new LoadTestReport(0, 0, null, 0, new long[0], -1, Collections.<Integer>emptyList())
+                .getLatencyNanos(50));
+    }
+
+}
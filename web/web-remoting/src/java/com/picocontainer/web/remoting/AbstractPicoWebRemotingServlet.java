@@ -9,6 +9,10 @@ package com.picocontainer.web.remoting;
 
 import java.io.IOException;
 import java.lang.reflect.Member;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -21,6 +25,7 @@ import com.picocontainer.ComponentMonitor;
 import com.picocontainer.MutablePicoContainer;
 import com.picocontainer.PicoContainer;
 import com.picocontainer.monitors.NullComponentMonitor;
+import com.picocontainer.web.Cache;
 import com.picocontainer.web.PicoServletFilter;
 import com.thoughtworks.xstream.XStream;
 
@@ -28,6 +33,24 @@ import com.thoughtworks.xstream.XStream;
  * Abstract Servlet used for the calling of methods in a tree of components managed by PicoContainer.
  * The form of the reply is determined by the XStream implementation passed into the constructor,
  * the request is plainly mapped from Query Strings and form fields to the method signature.
+ * <p>
+ * The reply is serialized straight into the response.  The <code>chunk_size</code> init parameter flushes
+ * the response each time that many characters have been written, and <code>gzip</code> compresses the
+ * reply for clients that accept it.
+ * </p>
+ * <p>
+ * If the application container has a {@link Cache}, the replies of web methods marked
+ * <code>@GET(cacheSeconds = ...)</code> on application scoped components are cached in it, apart from those of
+ * the other servlets, and are validated with an ETag, so a client that already holds the reply is answered with
+ * 304 Not Modified.
+ * </p>
+ * <p>
+ * Given a <code>batch_path</code> init parameter, such as <code>/batch</code>, a request for that path
+ * invokes each of its <code>call</code> parameters, written as <code>GET /Foo/hello?longArg=123</code>,
+ * and replies with an array of their replies.  <code>batch_threads</code> sets how many of the calls may
+ * run in parallel, and <code>batch_max_calls</code> the most calls a batch may have; see
+ * {@link PicoWebRemoting#writeBatchReply}.
+ * </p>
  *
  * @author Paul Hammant
  */
@@ -55,6 +78,15 @@ public abstract class AbstractPicoWebRemotingServlet extends HttpServlet {
     private static final String MIME_TYPE = "mime_type";
     private static final String LOWER_CASE_PATH = "lower_case_path";
     private static final String USE_METHOD_NAME_PREFIXES_FOR_VERBS = "use_method_name_prefixes_for_verbs";
+    private static final String CHUNK_SIZE = "chunk_size";
+    private static final String GZIP = "gzip";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String ETAG = "ETag";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String BATCH_PATH = "batch_path";
+    private static final String BATCH_THREADS = "batch_threads";
+    private static final String BATCH_MAX_CALLS = "batch_max_calls";
+    private static final String CALL = "call";
 
 
 
@@ -62,9 +94,25 @@ public abstract class AbstractPicoWebRemotingServlet extends HttpServlet {
     private PicoWebRemoting pwr;
     private String mimeType = "text/plain";
     private PicoWebRemotingMonitor monitor;
+    private int chunkSize;
+    private boolean gzip;
+    private String batchPath;
+    private ExecutorService batchExecutor;
 
     private volatile boolean initialized;
 
+    private static final NullComponentMonitor INVOCATION_MONITOR = new NullComponentMonitor() {
+        @Override
+        public Object invoking(PicoContainer container, ComponentAdapter<?> componentAdapter, Member member, Object instance, Object... args) {
+            return ComponentMonitor.KEEP;
+        }
+
+        @Override
+        public void invoked(PicoContainer container, ComponentAdapter<?> componentAdapter, Member member, Object instance, long duration, Object retVal, Object... args) {
+            // Empty
+        }
+    };
+
     protected abstract XStream createXStream();
     
     @Override
@@ -89,28 +137,46 @@ public abstract class AbstractPicoWebRemotingServlet extends HttpServlet {
         response.setContentType(mimeType);
 
         final String httpMethod = request.getMethod();
+        MutablePicoContainer reqContainer = picoHook.getCurrentRequestContainer();
+        NullComponentMonitor invocationMonitor = INVOCATION_MONITOR;
 
-        //final Cache cache = currentAppContainer.get().getComponent(Cache.class);
-
-        String result = pwr.processRequest(pathInfo, picoHook.getCurrentRequestContainer(), httpMethod, new NullComponentMonitor() {
-                            @Override
-                            public Object invoking(PicoContainer container, ComponentAdapter<?> componentAdapter, Member member, Object instance, Object... args) {
-                                return ComponentMonitor.KEEP;
-                            }
+        CachedReply cached = pwr.cachedReply(pathInfo, reqContainer, picoHook.getAppContainer(),
+                httpMethod, invocationMonitor);
+        if (cached != null && cached.getETag() != null) {
+            response.setHeader(ETAG, cached.getETag());
+            if (cached.isMatchedBy(request.getHeader(IF_NONE_MATCH))) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+        }
 
-                            @Override
-                            public void invoked(PicoContainer container, ComponentAdapter<?> componentAdapter, Member member, Object instance, long duration, Object retVal, Object... args) {
-                                // Empty
-                            }
-                        });
+        boolean gzipped = gzip && acceptsGzip(request);
+        if (gzip) {
+            response.addHeader("Vary", ACCEPT_ENCODING);
+        }
+        if (gzipped) {
+            response.setHeader("Content-Encoding", GZIP);
+        }
 
-        if (result != null) {
-            response.getWriter().print(result);
-        } else {
-            response.sendError(400, "Nothing is mapped to this URL, try removing the last term for directory list.");
+        ReplyWriter out = new ReplyWriter(response.getOutputStream(), response.getCharacterEncoding(), gzipped, chunkSize);
+        try {
+            if (cached != null) {
+                out.write(cached.getBody());
+            } else if (pathInfo != null && pathInfo.equals(batchPath)) {
+                pwr.writeBatchReply(request.getParameterValues(CALL), httpMethod, reqContainer,
+                        picoHook.getAppContainer(), invocationMonitor, batchExecutor, out);
+            } else {
+                pwr.writeReply(pathInfo, reqContainer, httpMethod, invocationMonitor, out);
+            }
+        } finally {
+            out.close();
         }
     }
 
+    private boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains(GZIP);
+    }
 
     @Override
     public void init(ServletConfig servletConfig) throws ServletException {
@@ -150,8 +216,42 @@ public abstract class AbstractPicoWebRemotingServlet extends HttpServlet {
             useMethodNamePrefixesForVerbs = lowerCasePathStr.toLowerCase().equals(Boolean.TRUE.toString());
         }
 
+        String chunkSizeStr = servletConfig.getInitParameter(CHUNK_SIZE);
+        if (chunkSizeStr != null) {
+            chunkSize = Integer.parseInt(chunkSizeStr);
+        }
+
+        String gzipStr = servletConfig.getInitParameter(GZIP);
+        gzip = gzipStr != null && gzipStr.toLowerCase().equals(Boolean.TRUE.toString());
+
+        batchPath = servletConfig.getInitParameter(BATCH_PATH);
+        String batchThreadsStr = servletConfig.getInitParameter(BATCH_THREADS);
+        if (batchPath != null && batchThreadsStr != null && Integer.parseInt(batchThreadsStr) > 0) {
+            batchExecutor = Executors.newFixedThreadPool(Integer.parseInt(batchThreadsStr), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "pico-remoting-batch-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
         super.init(servletConfig);
         pwr = new PicoWebRemoting(xstream, prefixToStripFromUrls, suffixToStrip, scopesToPublish, lowerCasePath, useMethodNamePrefixesForVerbs);
+        String batchMaxCallsStr = servletConfig.getInitParameter(BATCH_MAX_CALLS);
+        if (batchMaxCallsStr != null) {
+            pwr.setMaxBatchCalls(Integer.parseInt(batchMaxCallsStr));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+        }
+        super.destroy();
     }
 
     private void publishAdapters() {
@@ -167,6 +267,15 @@ public abstract class AbstractPicoWebRemotingServlet extends HttpServlet {
             monitor = new NullPicoWebRemotingMonitor();
         }
         pwr.setMonitor(monitor);
+        pwr.setCache(picoHook.getAppContainer().getComponent(Cache.class), getServletName());
+    }
+
+    /**
+     * Invokes the method for the request, for servlets that write the reply without XStream.
+     * @return the reply, or the error reply if the method could not be found or invoked.
+     */
+    protected Object reply(String pathInfo, String httpMethod) throws IOException {
+        return pwr.reply(pathInfo, picoHook.getCurrentRequestContainer(), httpMethod, INVOCATION_MONITOR);
     }
 
     protected void visitClass(String clazz, MethodVisitor mapv) throws IOException {
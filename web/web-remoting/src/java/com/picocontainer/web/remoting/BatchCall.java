@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.remoting;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.picocontainer.web.PicoContainerWebException;
+
+/**
+ * One call of a batch, written as the verb, the path info and the URL encoded arguments of a web method,
+ * for example <code>GET /Foo/hello?longArg=123</code>.
+ */
+public final class BatchCall {
+
+    private static final String UTF_8 = "UTF-8";
+
+    private final String verb;
+    private final String pathInfo;
+    private final Map<String, String> arguments;
+
+    public BatchCall(String verb, String pathInfo, Map<String, String> arguments) {
+        this.verb = verb;
+        this.pathInfo = pathInfo;
+        this.arguments = arguments;
+    }
+
+    /**
+     * @throws PicoContainerWebException if the call is not of the form <code>VERB /path?name=value&amp;...</code>
+     */
+    public static BatchCall parse(String call) {
+        int space = call.indexOf(' ');
+        if (space <= 0 || space + 1 == call.length() || call.charAt(space + 1) != '/') {
+            throw new PicoContainerWebException("Batch call '" + call + "' is not of the form 'VERB /path?args'");
+        }
+        String verb = call.substring(0, space);
+        String pathInfo = call.substring(space + 1);
+        int question = pathInfo.indexOf('?');
+        if (question == -1) {
+            return new BatchCall(verb, pathInfo, Collections.<String, String>emptyMap());
+        }
+        Map<String, String> arguments = new LinkedHashMap<String, String>();
+        for (String pair : pathInfo.substring(question + 1).split("&")) {
+            if (pair.length() == 0) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            if (equals == -1) {
+                arguments.put(decode(pair), "");
+            } else {
+                arguments.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+            }
+        }
+        return new BatchCall(verb, pathInfo.substring(0, question), arguments);
+    }
+
+    private static String decode(String encoded) {
+        try {
+            return URLDecoder.decode(encoded, UTF_8);
+        } catch (UnsupportedEncodingException e) {
+            throw new PicoContainerWebException("UTF-8 not supported");
+        }
+    }
+
+    public String getVerb() {
+        return verb;
+    }
+
+    public String getPathInfo() {
+        return pathInfo;
+    }
+
+    public Map<String, String> getArguments() {
+        return arguments;
+    }
+
+}
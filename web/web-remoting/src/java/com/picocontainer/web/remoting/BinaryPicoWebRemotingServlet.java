@@ -0,0 +1,53 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.remoting;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.picocontainer.web.PicoContainerWebException;
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.reflection.PureJavaReflectionProvider;
+
+/**
+ * Servlet that uses a compact binary form as the form of the reply, for callers that want throughput
+ * rather than a readable reply.  See {@link BinaryReplyWriter} for the form, and {@link BinaryRemotingClient}
+ * for a client.
+ * <p>
+ * Each reply is sent whole, with its Content-Length, so a client can read replies one after another off a
+ * kept-alive connection.  The <code>mime_type</code>, <code>chunk_size</code>, <code>gzip</code> and
+ * <code>batch_path</code> init parameters, and the caching of replies, apply to the XStream servlets only.
+ * </p>
+ */
+@SuppressWarnings("serial")
+public class BinaryPicoWebRemotingServlet extends AbstractPicoWebRemotingServlet {
+
+    public static final String MIME_TYPE = "application/x-pico-remoting";
+
+    @Override
+    protected XStream createXStream() {
+        return new XStream(new PureJavaReflectionProvider());
+    }
+
+    @Override
+    protected void respond(HttpServletRequest request, HttpServletResponse response, String pathInfo) throws IOException {
+        Object reply = reply(pathInfo, request.getMethod());
+        byte[] frame;
+        try {
+            frame = BinaryReplyWriter.toBytes(reply);
+        } catch (PicoContainerWebException e) {
+            frame = BinaryReplyWriter.toBytes(new ErrorReply(e.getMessage()));
+        }
+        response.setContentType(MIME_TYPE);
+        response.setContentLength(frame.length);
+        response.getOutputStream().write(frame);
+    }
+
+}
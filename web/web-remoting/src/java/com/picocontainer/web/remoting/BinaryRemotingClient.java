@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.remoting;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client for a {@link BinaryPicoWebRemotingServlet}, which keeps its connection alive between calls and
+ * pipelines calls, writing them before reading the first reply.  Replies are read by
+ * {@link BinaryReplyReader}.
+ * <p>
+ * As RFC 7230 section 6.3.2 asks, nothing is pipelined after a POST, PUT or DELETE call: the calls up to it
+ * are sent, and the rest only once its reply has been read.
+ * </p>
+ * <p>
+ * Arguments of GET and DELETE calls are sent in the query string, and those of POST and PUT calls as a
+ * form.  A client holds one connection, and is not safe for use by more than one thread at a time.
+ * </p>
+ */
+public class BinaryRemotingClient implements Closeable {
+
+    private static final String CRLF = "\r\n";
+    private static final String ISO_8859_1 = "ISO-8859-1";
+    private static final String UTF_8 = "UTF-8";
+
+    private final String host;
+    private final int port;
+    private final String servletPath;
+    private final int timeoutMillis;
+
+    private Socket socket;
+    private InputStream in;
+    private OutputStream out;
+
+    /**
+     * @param servletPath the context and servlet path the servlet is mapped to, such as <code>/app/pwr</code>.
+     * @param timeoutMillis the timeout for connecting and for each read, or 0 for none.
+     */
+    public BinaryRemotingClient(String host, int port, String servletPath, int timeoutMillis) {
+        this.host = host;
+        this.port = port;
+        this.servletPath = servletPath;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return the reply, which is a map of field names to values for an {@link ErrorReply}, and a map of the
+     *         same form for a reply whose status is not 200.
+     */
+    public Object call(String verb, String pathInfo, Map<String, String> arguments) throws IOException {
+        return pipeline(Collections.singletonList(new BatchCall(verb, pathInfo, arguments))).get(0);
+    }
+
+    /**
+     * Sends the calls on the one connection, then reads their replies in order, sending the calls after a
+     * POST, PUT or DELETE call once its reply is read.  Should the server close the connection before
+     * answering all the calls sent, an IOException is thrown rather than those calls being sent again, as
+     * they may not be safe to repeat.
+     * @return the replies, in the order of the calls.
+     */
+    public List<Object> pipeline(List<BatchCall> calls) throws IOException {
+        List<Object> replies = new ArrayList<Object>(calls.size());
+        try {
+            int next = 0;
+            while (next < calls.size()) {
+                if (socket == null) {
+                    connect();
+                }
+                int end = next;
+                while (end < calls.size() && isIdempotent(calls.get(end++))) {
+                    // pipelines up to and including the first call that is not idempotent
+                }
+                for (int i = next; i < end; i++) {
+                    writeRequest(calls.get(i));
+                }
+                out.flush();
+                for (int i = next; i < end; i++) {
+                    replies.add(readReply(calls.get(i)));
+                    if (socket == null && i + 1 < end) {
+                        throw new IOException("Connection closed by server after " + replies.size() + " of "
+                                + calls.size() + " calls");
+                    }
+                }
+                next = end;
+            }
+            return replies;
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public void close() {
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // already closed
+            }
+            socket = null;
+            in = null;
+            out = null;
+        }
+    }
+
+    /**
+     * Whether a call may have others pipelined after it: POST is not idempotent, and the web methods behind
+     * PUT and DELETE may not be either.
+     */
+    private static boolean isIdempotent(BatchCall call) {
+        String verb = call.getVerb().toUpperCase();
+        return !verb.equals("POST") && !verb.equals("PUT") && !verb.equals("DELETE");
+    }
+
+    private void connect() throws IOException {
+        Socket socket = new Socket();
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(timeoutMillis);
+        socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+        this.socket = socket;
+        this.in = new BufferedInputStream(socket.getInputStream());
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+    }
+
+    private void writeRequest(BatchCall call) throws IOException {
+        String verb = call.getVerb().toUpperCase();
+        String form = encode(call.getArguments());
+        boolean inBody = verb.equals("POST") || verb.equals("PUT");
+        StringBuilder request = new StringBuilder();
+        request.append(verb).append(' ').append(servletPath).append(call.getPathInfo());
+        if (!inBody && form.length() > 0) {
+            request.append('?').append(form);
+        }
+        request.append(" HTTP/1.1").append(CRLF);
+        request.append("Host: ").append(host).append(':').append(port).append(CRLF);
+        request.append("Accept: ").append(BinaryPicoWebRemotingServlet.MIME_TYPE).append(CRLF);
+        if (inBody) {
+            request.append("Content-Type: application/x-www-form-urlencoded").append(CRLF);
+            request.append("Content-Length: ").append(form.length()).append(CRLF);
+        }
+        request.append(CRLF);
+        if (inBody) {
+            request.append(form);
+        }
+        out.write(request.toString().getBytes(ISO_8859_1));
+    }
+
+    private static String encode(Map<String, String> arguments) throws IOException {
+        StringBuilder form = new StringBuilder();
+        for (Map.Entry<String, String> argument : arguments.entrySet()) {
+            if (form.length() > 0) {
+                form.append('&');
+            }
+            form.append(URLEncoder.encode(argument.getKey(), UTF_8)).append('=')
+                    .append(URLEncoder.encode(argument.getValue(), UTF_8));
+        }
+        return form.toString();
+    }
+
+    private Object readReply(BatchCall call) throws IOException {
+        String statusLine = readLine();
+        String[] status = statusLine.split(" ", 3);
+        if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+            throw new IOException("Malformed status line '" + statusLine + "'");
+        }
+        int contentLength = -1;
+        boolean chunked = false;
+        boolean keepAlive = !status[0].equals("HTTP/1.0");
+        String line;
+        while ((line = readLine()).length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon == -1) {
+                continue;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(value);
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                chunked = value.equalsIgnoreCase("chunked");
+            } else if (name.equalsIgnoreCase("Connection")) {
+                keepAlive = !value.equalsIgnoreCase("close");
+            }
+        }
+        byte[] body;
+        if (chunked) {
+            body = readChunked();
+        } else if (contentLength >= 0) {
+            body = readFully(contentLength);
+        } else {
+            body = readToEnd();
+            keepAlive = false;
+        }
+        if (!keepAlive) {
+            close();
+        }
+        if (!status[1].equals("200")) {
+            // the other replies are still to be read
+            Map<String, Object> error = new LinkedHashMap<String, Object>();
+            error.put("ERROR", Boolean.TRUE);
+            error.put("message", "HTTP " + status[1] + " for " + call.getVerb() + " " + call.getPathInfo());
+            return error;
+        }
+        return BinaryReplyReader.fromBytes(body);
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c == -1) {
+                throw new IOException("Connection closed by server");
+            }
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+
+    private byte[] readFully(int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            int n = in.read(bytes, read, length - read);
+            if (n == -1) {
+                throw new IOException("Connection closed by server after " + read + " of " + length + " bytes");
+            }
+            read += n;
+        }
+        return bytes;
+    }
+
+    private byte[] readChunked() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int size;
+        while ((size = Integer.parseInt(readLine().split(";", 2)[0].trim(), 16)) > 0) {
+            body.write(readFully(size));
+            readLine();
+        }
+        while (readLine().length() > 0) {
+            // trailers
+        }
+        return body.toByteArray();
+    }
+
+    private byte[] readToEnd() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            body.write(buf, 0, n);
+        }
+        return body.toByteArray();
+    }
+
+}
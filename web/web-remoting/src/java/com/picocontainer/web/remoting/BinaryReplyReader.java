@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.remoting;
+
+import static com.picocontainer.web.remoting.BinaryReplyWriter.BYTE;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.BYTES;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.CHAR;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.DATE;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.DOUBLE;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.FALSE;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.FLOAT;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.INT;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.LIST;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.LONG;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.MAP;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.NULL;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.OBJECT;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.SCHEMA;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.SHORT;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.STRING;
+import static com.picocontainer.web.remoting.BinaryReplyWriter.TRUE;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a reply written by {@link BinaryReplyWriter}.  Lists and arrays are read as lists, and objects as
+ * maps of their field names to their values, in the order of the fields, so a client needs none of the
+ * server's classes.  An {@link ErrorReply} is read as a map with an <code>ERROR</code> entry of true.
+ */
+public final class BinaryReplyReader {
+
+    private final DataInputStream in;
+    private final List<String[]> schemas = new ArrayList<String[]>();
+
+    private BinaryReplyReader(DataInputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * @param frame the reply, framed by its length.
+     */
+    public static Object fromBytes(byte[] frame) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        int length = in.readInt();
+        if (length != frame.length - 4) {
+            throw new IOException("Reply frame is " + (frame.length - 4) + " bytes but is marked as " + length);
+        }
+        return new BinaryReplyReader(in).read();
+    }
+
+    private Object read() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+        case NULL:
+            return null;
+        case TRUE:
+            return Boolean.TRUE;
+        case FALSE:
+            return Boolean.FALSE;
+        case INT:
+            return in.readInt();
+        case LONG:
+            return in.readLong();
+        case DOUBLE:
+            return in.readDouble();
+        case FLOAT:
+            return in.readFloat();
+        case SHORT:
+            return in.readShort();
+        case BYTE:
+            return in.readByte();
+        case CHAR:
+            return in.readChar();
+        case STRING:
+            return new String(readBytes(), "UTF-8");
+        case DATE:
+            return new Date(in.readLong());
+        case BYTES:
+            return readBytes();
+        case LIST:
+            int size = in.readInt();
+            List<Object> list = new ArrayList<Object>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(read());
+            }
+            return list;
+        case MAP:
+            int entries = in.readInt();
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            for (int i = 0; i < entries; i++) {
+                map.put(read(), read());
+            }
+            return map;
+        case SCHEMA:
+            int id = in.readInt();
+            if (id != schemas.size()) {
+                throw new IOException("Schema " + id + " is out of order, expected " + schemas.size());
+            }
+            String[] names = new String[in.readInt()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = in.readUTF();
+            }
+            schemas.add(names);
+            return read();
+        case OBJECT:
+            int schema = in.readInt();
+            if (schema >= schemas.size()) {
+                throw new IOException("Object of undeclared schema " + schema);
+            }
+            Map<String, Object> object = new LinkedHashMap<String, Object>();
+            for (String name : schemas.get(schema)) {
+                object.put(name, read());
+            }
+            return object;
+        default:
+            throw new IOException("Unknown tag " + tag);
+        }
+    }
+
+    private byte[] readBytes() throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+}
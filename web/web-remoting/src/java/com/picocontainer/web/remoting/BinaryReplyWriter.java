@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.remoting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.picocontainer.web.PicoContainerWebException;
+
+/**
+ * Writes a reply in the compact binary form read by {@link BinaryReplyReader}.
+ * <p>
+ * A reply is framed as its length, as a four byte int, followed by a single value.  Each value starts
+ * with a one byte tag; strings are written as their length and UTF-8 bytes, and lists and maps as their
+ * size and elements.  An object is written as the values of its fields, in the order of a schema that is
+ * worked out once per class and kept for the life of the application: the fields, made accessible, and a
+ * writer for each field's type, so a primitive field is read and written without boxing.  Within a reply,
+ * the field names of a class are sent with its first object only.
+ * </p>
+ */
+public final class BinaryReplyWriter {
+
+    static final byte NULL = 0;
+    static final byte TRUE = 1;
+    static final byte FALSE = 2;
+    static final byte INT = 3;
+    static final byte LONG = 4;
+    static final byte DOUBLE = 5;
+    static final byte FLOAT = 6;
+    static final byte SHORT = 7;
+    static final byte BYTE = 8;
+    static final byte CHAR = 9;
+    static final byte STRING = 10;
+    static final byte DATE = 11;
+    static final byte BYTES = 12;
+    static final byte LIST = 13;
+    static final byte MAP = 14;
+    static final byte SCHEMA = 15;
+    static final byte OBJECT = 16;
+
+    private static final int MAX_DEPTH = 64;
+
+    private static final ConcurrentMap<Class<?>, Schema> SCHEMAS = new ConcurrentHashMap<Class<?>, Schema>();
+
+    private final DataOutputStream out;
+    private final Map<Schema, Integer> schemaIds = new IdentityHashMap<Schema, Integer>();
+    private int depth;
+
+    private BinaryReplyWriter(DataOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * @return the framed reply.
+     * @throws PicoContainerWebException if the reply nests too deeply, which includes a reply that refers to itself.
+     */
+    public static byte[] toBytes(Object reply) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0);
+            new BinaryReplyWriter(out).write(reply);
+        } catch (IOException e) {
+            throw new PicoContainerWebException("Unable to write reply: " + e.getMessage());
+        }
+        byte[] frame = bytes.toByteArray();
+        int length = frame.length - 4;
+        frame[0] = (byte) (length >>> 24);
+        frame[1] = (byte) (length >>> 16);
+        frame[2] = (byte) (length >>> 8);
+        frame[3] = (byte) length;
+        return frame;
+    }
+
+    private void write(Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            writeString(STRING, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar((Character) value);
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof byte[]) {
+            byte[] bytes = (byte[]) value;
+            out.writeByte(BYTES);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else if (value instanceof Enum) {
+            writeString(STRING, ((Enum<?>) value).name());
+        } else if (value instanceof Number || value instanceof CharSequence) {
+            writeString(STRING, value.toString());
+        } else if (value instanceof Class) {
+            writeString(STRING, ((Class<?>) value).getName());
+        } else {
+            enter();
+            if (value instanceof Collection) {
+                Collection<?> collection = (Collection<?>) value;
+                out.writeByte(LIST);
+                out.writeInt(collection.size());
+                for (Object element : collection) {
+                    write(element);
+                }
+            } else if (value instanceof Object[]) {
+                Object[] array = (Object[]) value;
+                out.writeByte(LIST);
+                out.writeInt(array.length);
+                for (Object element : array) {
+                    write(element);
+                }
+            } else if (value.getClass().isArray()) {
+                int length = Array.getLength(value);
+                out.writeByte(LIST);
+                out.writeInt(length);
+                for (int i = 0; i < length; i++) {
+                    write(Array.get(value, i));
+                }
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                out.writeByte(MAP);
+                out.writeInt(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    write(entry.getKey());
+                    write(entry.getValue());
+                }
+            } else {
+                writeObject(value);
+            }
+            depth--;
+        }
+    }
+
+    private void enter() {
+        if (++depth > MAX_DEPTH) {
+            throw new PicoContainerWebException("Reply is nested more than " + MAX_DEPTH
+                    + " deep, or refers to itself");
+        }
+    }
+
+    private void writeObject(Object value) throws IOException {
+        Schema schema = schemaOf(value.getClass());
+        Integer id = schemaIds.get(schema);
+        if (id == null) {
+            id = schemaIds.size();
+            schemaIds.put(schema, id);
+            out.writeByte(SCHEMA);
+            out.writeInt(id);
+            out.writeInt(schema.names.length);
+            for (String name : schema.names) {
+                out.writeUTF(name);
+            }
+        }
+        out.writeByte(OBJECT);
+        out.writeInt(id);
+        try {
+            for (int i = 0; i < schema.fields.length; i++) {
+                writeField(schema.kinds[i], schema.fields[i], value);
+            }
+        } catch (IllegalAccessException e) {
+            throw new PicoContainerWebException("Unable to read field of " + value.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+
+    private void writeField(byte kind, Field field, Object value) throws IOException, IllegalAccessException {
+        switch (kind) {
+        case INT:
+            out.writeByte(INT);
+            out.writeInt(field.getInt(value));
+            break;
+        case LONG:
+            out.writeByte(LONG);
+            out.writeLong(field.getLong(value));
+            break;
+        case TRUE:
+            out.writeByte(field.getBoolean(value) ? TRUE : FALSE);
+            break;
+        case DOUBLE:
+            out.writeByte(DOUBLE);
+            out.writeDouble(field.getDouble(value));
+            break;
+        case FLOAT:
+            out.writeByte(FLOAT);
+            out.writeFloat(field.getFloat(value));
+            break;
+        case SHORT:
+            out.writeByte(SHORT);
+            out.writeShort(field.getShort(value));
+            break;
+        case BYTE:
+            out.writeByte(BYTE);
+            out.writeByte(field.getByte(value));
+            break;
+        case CHAR:
+            out.writeByte(CHAR);
+            out.writeChar(field.getChar(value));
+            break;
+        case STRING:
+            String string = (String) field.get(value);
+            if (string == null) {
+                out.writeByte(NULL);
+            } else {
+                writeString(STRING, string);
+            }
+            break;
+        default:
+            write(field.get(value));
+        }
+    }
+
+    private void writeString(byte tag, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeByte(tag);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static Schema schemaOf(Class<?> type) {
+        Schema schema = SCHEMAS.get(type);
+        if (schema == null) {
+            schema = new Schema(type);
+            Schema existing = SCHEMAS.putIfAbsent(type, schema);
+            if (existing != null) {
+                schema = existing;
+            }
+        }
+        return schema;
+    }
+
+    /**
+     * The fields of a class that are written, superclass fields first, and how each is written.
+     */
+    private static final class Schema {
+
+        private final Field[] fields;
+        private final String[] names;
+        private final byte[] kinds;
+
+        private Schema(Class<?> type) {
+            List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+            for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+                hierarchy.add(0, c);
+            }
+            List<Field> fields = new ArrayList<Field>();
+            for (Class<?> c : hierarchy) {
+                for (Field field : c.getDeclaredFields()) {
+                    int modifiers = field.getModifiers();
+                    if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()) {
+                        continue;
+                    }
+                    try {
+                        field.setAccessible(true);
+                    } catch (SecurityException e) {
+                        continue;
+                    }
+                    fields.add(field);
+                }
+            }
+            this.fields = fields.toArray(new Field[fields.size()]);
+            this.names = new String[this.fields.length];
+            this.kinds = new byte[this.fields.length];
+            for (int i = 0; i < this.fields.length; i++) {
+                names[i] = this.fields[i].getName();
+                kinds[i] = kindOf(this.fields[i].getType());
+            }
+        }
+
+        private static byte kindOf(Class<?> type) {
+            if (type == int.class) {
+                return INT;
+            } else if (type == long.class) {
+                return LONG;
+            } else if (type == boolean.class) {
+                return TRUE;
+            } else if (type == double.class) {
+                return DOUBLE;
+            } else if (type == float.class) {
+                return FLOAT;
+            } else if (type == short.class) {
+                return SHORT;
+            } else if (type == byte.class) {
+                return BYTE;
+            } else if (type == char.class) {
+                return CHAR;
+            } else if (type == String.class) {
+                return STRING;
+            }
+            return OBJECT;
+        }
+    }
+
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.remoting;
+
+import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import com.picocontainer.web.PicoContainerWebException;
+
+/**
+ * The serialized reply of a cached web method, with the entity tag it is validated by.
+ */
+@SuppressWarnings("serial")
+public class CachedReply implements Serializable {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String body;
+    private final String eTag;
+    private final long expiresAt;
+
+    /**
+     * A reply that is cached until the given time.
+     */
+    public CachedReply(String body, long expiresAt) {
+        this.body = body;
+        this.eTag = "\"" + sha1(body) + "\"";
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * A reply that is not cached, such as an error.
+     */
+    public CachedReply(String body) {
+        this.body = body;
+        this.eTag = null;
+        this.expiresAt = 0;
+    }
+
+    /**
+     * The entity tag is strong, so it is the SHA-1 digest of the body rather than a hash that two bodies
+     * may well share.
+     */
+    private static String sha1(String body) {
+        byte[] digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1").digest(body.getBytes("UTF-8"));
+        } catch (NoSuchAlgorithmException e) {
+            throw new PicoContainerWebException("SHA-1 is not available for entity tags", e);
+        } catch (UnsupportedEncodingException e) {
+            throw new PicoContainerWebException("UTF-8 is not available for entity tags", e);
+        }
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[2 * i] = HEX[(digest[i] >> 4) & 0xf];
+            hex[2 * i + 1] = HEX[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    public String getBody() {
+        return body;
+    }
+
+    /**
+     * @return the entity tag, or null if the reply is not cached.
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    /**
+     * @param ifNoneMatch the If-None-Match header of the request, which may be null.
+     * @return true if the client already holds this reply.
+     */
+    public boolean isMatchedBy(String ifNoneMatch) {
+        if (ifNoneMatch == null || eTag == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
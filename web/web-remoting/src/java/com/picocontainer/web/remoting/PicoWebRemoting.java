@@ -8,21 +8,33 @@
 package com.picocontainer.web.remoting;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
 
+import com.picocontainer.web.Cache;
 import com.picocontainer.web.DELETE;
 import com.picocontainer.web.GET;
 import com.picocontainer.web.NONE;
@@ -32,14 +44,18 @@ import com.picocontainer.web.PicoContainerWebException;
 
 import com.picocontainer.Characteristics;
 import com.picocontainer.ComponentAdapter;
+import com.picocontainer.DefaultPicoContainer;
 import com.picocontainer.MutablePicoContainer;
 import com.picocontainer.PicoCompositionException;
 import com.picocontainer.PicoContainer;
+import com.picocontainer.converters.BuiltInConverters;
 import com.picocontainer.injectors.MethodInjection;
 import com.picocontainer.injectors.MultiArgMemberInjector;
 import com.picocontainer.injectors.ProviderAdapter;
 import com.picocontainer.injectors.Reinjector;
 import com.picocontainer.monitors.NullComponentMonitor;
+import com.thoughtworks.paranamer.AdaptiveParanamer;
+import com.thoughtworks.paranamer.Paranamer;
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.extended.ISO8601DateConverter;
 
@@ -59,6 +75,16 @@ public class PicoWebRemoting {
 	private static final String POST = "POST";
 	private static final String FALLBACK = "FALLBACK";
 
+	/**
+	 * The default for the most calls a batch may have.
+	 */
+	public static final int DEFAULT_MAX_BATCH_CALLS = 64;
+
+	private static final BuiltInConverters CONVERTERS = new BuiltInConverters();
+
+	private static final String REPLY_KEY_PREFIX = PicoWebRemoting.class.getName() + ".reply:";
+	private static final String GENERATION_KEY_PREFIX = PicoWebRemoting.class.getName() + ".generation:";
+
 	private final XStream xstream;
 	private final String toStripFromUrls;
 	private final String suffixToStrip;
@@ -66,9 +92,16 @@ public class PicoWebRemoting {
 	private final boolean lowerCasePath;
 	private final boolean useMethodNamePrefixesForVerbs;
 	private PicoWebRemotingMonitor monitor;
+	private Cache cache;
+	private String cacheNamespace = "";
+	private int maxBatchCalls = DEFAULT_MAX_BATCH_CALLS;
 
 	private Map<String, Object> paths = new HashMap<String, Object>();
 
+	private Map<String, Route> routes = new HashMap<String, Route>();
+
+	private Map<Class<?>, Generation> generations = new HashMap<Class<?>, Generation>();
+
 	public PicoWebRemoting(XStream xstream, String prefixToStripFromUrls,
 			String suffixToStrip, String scopesToPublish,
 			boolean lowerCasePath, boolean useMethodNamePrefixesForVerbs) {
@@ -99,56 +132,329 @@ public class PicoWebRemoting {
 		this.monitor = monitor;
 	}
 
+	/**
+	 * @param cache where the replies of web methods marked <code>@GET(cacheSeconds = ...)</code> are kept,
+	 *            or null for no caching.
+	 * @param namespace keeps the replies apart from those other servlets sharing the cache keep, as they
+	 *            may serialize them differently or publish other components at the same paths.
+	 */
+	public void setCache(Cache cache, String namespace) {
+		this.cache = cache;
+		this.cacheNamespace = namespace == null ? "" : namespace;
+	}
+
+	/**
+	 * @param maxBatchCalls the most calls a batch may have; a larger batch is refused as a whole.
+	 */
+	public void setMaxBatchCalls(int maxBatchCalls) {
+		this.maxBatchCalls = maxBatchCalls;
+	}
+
 	protected String processRequest(String pathInfo,
 			PicoContainer reqContainer, String httpMethod,
 			NullComponentMonitor monitor) throws IOException {
+		StringWriter out = new StringWriter();
+		writeReply(pathInfo, reqContainer, httpMethod, monitor, out);
+		return out.toString();
+	}
+
+	/**
+	 * Serializes the reply for the request straight into the given writer, so the reply is never held
+	 * in memory as a whole.  Failures to find or invoke the method are written as the reply; failures while
+	 * serializing the reply are thrown, as part of it may already have been written.
+	 */
+	protected void writeReply(String pathInfo, PicoContainer reqContainer,
+			String httpMethod, NullComponentMonitor monitor, Writer out)
+			throws IOException {
+		xstream.toXML(reply(pathInfo, reqContainer, httpMethod, monitor), out);
+		out.write(NL);
+	}
+
+	/**
+	 * Invokes the method for the request, for servlets that serialize the reply without XStream.
+	 * @return the reply, or the error reply if the method could not be found or invoked.
+	 */
+	protected Object reply(String pathInfo, PicoContainer reqContainer,
+			String httpMethod, NullComponentMonitor monitor) throws IOException {
 		try {
-		    if (pathInfo == null || pathInfo.length() == 0) {
-		        throw makeNothingMatchingException();
-		    }
-			String path = pathInfo.substring(1);
-			if (path.endsWith(SLASH)) {
-				path = path.substring(0, path.length() - 1);
+			return getReply(pathInfo, reqContainer, httpMethod, monitor);
+		} catch (RuntimeException e) {
+			return errorReply(e);
+		}
+	}
+
+	/**
+	 * Gets the reply for a GET request of a web method marked <code>@GET(cacheSeconds = ...)</code> from the
+	 * cache, or invokes the method and caches its serialized reply.  The reply is cached for the values of the
+	 * method's parameters, and until a POST, PUT or DELETE web method of the same component is invoked
+	 * through any of the servlets sharing the cache.
+	 * <p>
+	 * Only the replies of components the application container holds an instance of are cached, as they are
+	 * the same for every user; the reply of a session or request scoped component may hold what one user can
+	 * see and another cannot.
+	 * </p>
+	 * @return the reply, or null if the request is not for a cached web method of an application scoped
+	 *         component, or its parameters cannot be bound by name.
+	 */
+	protected CachedReply cachedReply(String pathInfo,
+			PicoContainer reqContainer, PicoContainer appContainer,
+			String httpMethod, NullComponentMonitor monitor) {
+		if (cache == null || !GET.equals(httpMethod) || pathInfo == null
+				|| pathInfo.length() == 0) {
+			return null;
+		}
+		Route route = findRoute(pathInfo);
+		Invoker invoker = route == null ? null : route.invokerFor(httpMethod);
+		if (invoker == null || !invoker.isCached()
+				|| !servedFromApplication(invoker, reqContainer, appContainer)) {
+			return null;
+		}
+		String key = invoker.cacheKey(cacheNamespace, pathInfo, reqContainer);
+		if (key == null) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		CachedReply reply = (CachedReply) cache.get(key);
+		if (reply != null && !reply.isExpired(now)) {
+			return reply;
+		}
+		try {
+			reply = new CachedReply(toXML(invoker.invoke(reqContainer, monitor)),
+					now + invoker.getCacheMillis());
+		} catch (RuntimeException e) {
+			return new CachedReply(toXML(errorReply(e)));
+		}
+		cache.put(key, reply);
+		return reply;
+	}
+
+	/**
+	 * Invokes the calls of a batch and writes their replies, in the order of the calls, as one array.  The
+	 * reply of a call that fails is its error reply, and does not affect the other calls.  A batch of more
+	 * than {@link #setMaxBatchCalls the most calls} is refused with a single error reply.  A batch made with
+	 * GET, which is safe to repeat or prefetch, may only have GET calls; any other call is failed.
+	 * <p>
+	 * Calls run one after the other against the request container, each with its arguments bound by name.
+	 * Given an executor, GET calls of web methods on application scoped components run in parallel with
+	 * the others, against the application container, as nothing request or session scoped may be touched
+	 * from another thread.  So that their parameters need nothing of the request or session either, only the
+	 * calls that give an argument for each parameter run in parallel.
+	 * </p>
+	 * @param httpMethod the method of the request the batch was made with.
+	 * @param executor runs the parallel calls, or null to run all the calls on this thread.
+	 */
+	protected void writeBatchReply(String[] calls, String httpMethod,
+			PicoContainer reqContainer, PicoContainer appContainer,
+			NullComponentMonitor monitor, ExecutorService executor, Writer out)
+			throws IOException {
+		if (calls != null && calls.length > maxBatchCalls) {
+			xstream.toXML(batchErrorReply(new PicoContainerWebException("A batch can have at most "
+					+ maxBatchCalls + " calls, this one has " + calls.length)), out);
+			out.write(NL);
+			return;
+		}
+		Object[] replies = new Object[calls == null ? 0 : calls.length];
+		List<FutureTask<Object>> parallel = new ArrayList<FutureTask<Object>>();
+		int[] parallelIndexes = new int[replies.length];
+		BatchCall[] parsed = new BatchCall[replies.length];
+		for (int i = 0; i < replies.length; i++) {
+			try {
+				parsed[i] = BatchCall.parse(calls[i]);
+			} catch (RuntimeException e) {
+				replies[i] = batchErrorReply(e);
+				continue;
+			}
+			if (GET.equals(httpMethod) && !GET.equals(parsed[i].getVerb())) {
+				replies[i] = batchErrorReply(new PicoContainerWebException("A "
+						+ parsed[i].getVerb() + " call cannot be batched in a GET request"));
+				parsed[i] = null;
+				continue;
 			}
-			path = toStripFromUrls + path;
+			if (executor != null && runsInParallel(parsed[i], appContainer)) {
+				FutureTask<Object> task = new FutureTask<Object>(
+						batchReply(parsed[i], appContainer, monitor));
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException e) {
+					task.run();
+				}
+				parallelIndexes[parallel.size()] = i;
+				parallel.add(task);
+				parsed[i] = null;
+			}
+		}
+		for (int i = 0; i < replies.length; i++) {
+			if (parsed[i] != null) {
+				replies[i] = batchReply(parsed[i], reqContainer, monitor).call();
+			}
+		}
+		for (int i = 0; i < parallel.size(); i++) {
+			replies[parallelIndexes[i]] = awaitReply(parallel.get(i));
+		}
+		xstream.toXML(replies, out);
+		out.write(NL);
+	}
 
-			if (suffixToStrip != null && path.endsWith(suffixToStrip)) {
-				path = path.substring(0, path.indexOf(suffixToStrip));
+	private boolean runsInParallel(BatchCall call, PicoContainer appContainer) {
+		if (!GET.equals(call.getVerb())) {
+			return false;
+		}
+		Route route = findRoute(call.getPathInfo());
+		Invoker invoker = route == null ? null : route.invokerFor(GET);
+		return invoker != null
+				&& invoker.isBoundBy(call.getArguments().keySet())
+				&& appContainer.getComponentAdapter(invoker.getKey()) != null;
+	}
+
+	/**
+	 * @return true if the request container resolves the component of the invoker to the very instance the
+	 *         application container holds, rather than to one of its own or of the session.
+	 */
+	private static boolean servedFromApplication(Invoker invoker,
+			PicoContainer reqContainer, PicoContainer appContainer) {
+		if (appContainer == null
+				|| appContainer.getComponentAdapter(invoker.getKey()) == null) {
+			return false;
+		}
+		Object instance = reqContainer.getComponent(invoker.getKey());
+		return instance != null
+				&& instance == appContainer.getComponent(invoker.getKey());
+	}
+
+	private BatchReply batchReply(BatchCall call, PicoContainer container,
+			NullComponentMonitor monitor) {
+		return new BatchReply(call, container, monitor);
+	}
+
+	/**
+	 * Invokes one call of a batch, with its arguments bound by name in a container of its own.
+	 */
+	private class BatchReply implements Callable<Object> {
+		private final BatchCall call;
+		private final PicoContainer container;
+		private final NullComponentMonitor monitor;
+
+		private BatchReply(BatchCall call, PicoContainer container,
+				NullComponentMonitor monitor) {
+			this.call = call;
+			this.container = container;
+			this.monitor = monitor;
+		}
+
+		public Object call() {
+			try {
+				PicoContainer callContainer = container;
+				if (!call.getArguments().isEmpty()) {
+					Route route = findRoute(call.getPathInfo());
+					Invoker invoker = route == null ? null : route.invokerFor(call.getVerb());
+					MutablePicoContainer arguments = new DefaultPicoContainer(container);
+					for (Map.Entry<String, String> argument : call.getArguments().entrySet()) {
+						Class<?> type = invoker == null ? String.class : invoker.getParameterType(argument.getKey());
+						arguments.addComponent(argument.getKey(), toType(argument.getKey(), argument.getValue(), type));
+					}
+					callContainer = arguments;
+				}
+				return getReply(call.getPathInfo(), callContainer, call.getVerb(), monitor);
+			} catch (RuntimeException e) {
+				return batchErrorReply(e);
+			} catch (IOException e) {
+				return batchErrorReply(new PicoContainerWebException(e.getMessage()));
 			}
+		}
+	}
 
-			long b4 = System.currentTimeMillis();
-			Object node = getNode(reqContainer, httpMethod, path, monitor);
-			long dur = System.currentTimeMillis() - b4;
-
-			if (node instanceof Directories) {
-				Directories directories = (Directories) node;
-				return xstream.toXML(sortedSet(directories).toArray()) + NL;
-			} else if (node instanceof WebMethods) {
-				WebMethods methods = (WebMethods) node;
-				return xstream.toXML(sortedSet(methods.keySet()).toArray())
-						+ NL;
-			} else if (node != null && isComposite(node)) {
-				b4 = System.currentTimeMillis();
-				String s = xstream.toXML(node) + NL;
-				dur = System.currentTimeMillis() - b4;
-				return s;
-			} else if (node != null) {
-				return node != null ? xstream.toXML(node) + NL : null;
-			} else {
-				throw makeNothingMatchingException();
+	/**
+	 * The error reply for a failed call of a batch.  An exception the monitor would rather throw is made into
+	 * an error reply too, as throwing it would fail the other calls as well.
+	 */
+	private Object batchErrorReply(RuntimeException e) {
+		try {
+			return errorReply(e);
+		} catch (RuntimeException thrown) {
+			return new ErrorReply(String.valueOf(thrown.getMessage()));
+		}
+	}
+
+	private Object awaitReply(FutureTask<Object> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			task.cancel(true);
+			return batchErrorReply(new PicoContainerWebException("Interrupted while waiting for a batch call"));
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Error) {
+				throw (Error) cause;
 			}
+			return batchErrorReply(cause instanceof RuntimeException ? (RuntimeException) cause
+					: new PicoContainerWebException(String.valueOf(cause)));
+		}
+	}
 
-		} catch (MultiArgMemberInjector.ParameterCannotBeNullException e) {
-			return errorResult(this.monitor.nullParameterForMethodInvocation(e
-					.getParameterName()));
-		} catch (PicoCompositionException e) {
-			return errorResult(this.monitor
-					.picoCompositionExceptionForMethodInvocation(e));
-		} catch (RuntimeException e) {
-			Object o = this.monitor.runtimeExceptionForMethodInvocation(e);
-			return errorResult(o);
+	private static Object toType(String name, String value, Class<?> type) {
+		if (!CONVERTERS.canConvert(type)) {
+			return value;
+		}
+		try {
+			return CONVERTERS.convert(value, type);
+		} catch (NumberFormatException e) {
+			throw new PicoContainerWebException("Argument '" + name + "' is not a "
+					+ type.getSimpleName() + ": " + value);
 		}
+	}
+
+	private String toXML(Object reply) {
+		return xstream.toXML(reply) + NL;
+	}
 
+	private Object errorReply(RuntimeException e) {
+		if (e instanceof MultiArgMemberInjector.ParameterCannotBeNullException) {
+			return monitor.nullParameterForMethodInvocation(((MultiArgMemberInjector.ParameterCannotBeNullException) e)
+					.getParameterName());
+		} else if (e instanceof PicoCompositionException) {
+			return monitor.picoCompositionExceptionForMethodInvocation((PicoCompositionException) e);
+		} else {
+			return monitor.runtimeExceptionForMethodInvocation(e);
+		}
+	}
+
+	private Object getReply(String pathInfo, PicoContainer reqContainer,
+			String httpMethod, NullComponentMonitor monitor) throws IOException {
+		if (pathInfo == null || pathInfo.length() == 0) {
+			throw makeNothingMatchingException();
+		}
+		Route route = routes.get(pathInfo);
+		if (route != null) {
+			return route.invoke(httpMethod, reqContainer, monitor);
+		}
+
+		Object node = getNode(reqContainer, httpMethod, toPath(pathInfo), monitor);
+
+		if (node instanceof Directories) {
+			Directories directories = (Directories) node;
+			return sortedSet(directories).toArray();
+		} else if (node instanceof WebMethods) {
+			WebMethods methods = (WebMethods) node;
+			return sortedSet(methods.keySet()).toArray();
+		} else if (node != null) {
+			return node;
+		} else {
+			throw makeNothingMatchingException();
+		}
+	}
+
+	private String toPath(String pathInfo) {
+		String path = pathInfo.substring(1);
+		if (path.endsWith(SLASH)) {
+			path = path.substring(0, path.length() - 1);
+		}
+		path = toStripFromUrls + path;
+
+		if (suffixToStrip != null && path.endsWith(suffixToStrip)) {
+			path = path.substring(0, path.indexOf(suffixToStrip));
+		}
+		return path;
 	}
 
 	protected SortedSet<String> sortedSet(Set<String> set) {
@@ -165,43 +471,30 @@ public class PicoWebRemoting {
 		Object node = paths.get(path);
 
 		if (node == null) {
-			int ix = path.lastIndexOf(SLASH);
-			if (ix > 0) {
-				String methodName = path.substring(ix + 1);
-				path = path.substring(0, ix);
-				Object node2 = paths.get(path);
-				if (node2 instanceof WebMethods) {
-					node = processWebMethodRequest(reqContainer, httpMethod,
-							methodName, node2, monitor);
-				}
-			} else {
-				node = null;
+			Route route = routeAt(path);
+			if (route != null) {
+				node = route.invoke(httpMethod, reqContainer, monitor);
 			}
 		}
 		return node;
 	}
 
-	private Object processWebMethodRequest(PicoContainer reqContainer,
-			String verb, String methodName, Object node2,
-			NullComponentMonitor monitor) throws IOException {
-		WebMethods methods = (WebMethods) node2;
-		if (!methods.containsKey(methodName)) {
-			throw makeNothingMatchingException();
-		}
-		HashMap<String, Method> methodz = methods.get(methodName);
-		Method method = null;
-		if (useMethodNamePrefixesForVerbs) {
-			method = methodz.get(verb);
-		}
-		if (method == null) {
-			method = methodz.get(FALLBACK);
+	private Route findRoute(String pathInfo) {
+		Route route = routes.get(pathInfo);
+		if (route == null) {
+			String path = toPath(pathInfo);
+			if (paths.get(path) == null) {
+				route = routeAt(path);
+			}
 		}
-		if (method == null) {
-			throw new PicoContainerWebException("method not allowed for "
-					+ verb);
+		return route;
+	}
+
+	private Route routeAt(String path) {
+		if (!path.startsWith(toStripFromUrls)) {
+			return null;
 		}
-		return reinject(methodName, method, methods.getKey(),
-				methods.getImpl(), reqContainer, monitor);
+		return routes.get(SLASH + path.substring(toStripFromUrls.length()));
 	}
 
 	private boolean delete(Method method) {
@@ -346,34 +639,28 @@ public class PicoWebRemoting {
 		WebMethods webMethods = new WebMethods(key, impl);
 		paths.put(path, webMethods);
 		determineEligibleMethods(impl, webMethods);
+		compileRoutes(path, webMethods);
 	}
 
-	private String errorResult(Object errorResult) {
-		return xstream.toXML(errorResult) + NL;
-	}
-
-	private boolean isComposite(Object node) {
-		return !(node.getClass().isPrimitive() || node instanceof Boolean
-				|| node instanceof Long || node instanceof Double
-				|| node instanceof Short || node instanceof Byte
-				|| node instanceof Integer || node instanceof String
-				|| node instanceof Float || node instanceof Character);
-	}
-
-	private Object reinject(String methodName, Method method, Class<?> key,
-			Class<?> impl, PicoContainer reqContainer,
-			NullComponentMonitor monitor) throws IOException {
-		MethodInjection methodInjection = new MethodInjection(method);
-		Reinjector reinjector = new Reinjector(reqContainer, monitor);
-
-		Properties props = (Properties) Characteristics.USE_NAMES.clone();
-		Object inst = reqContainer.getComponent(key);
-		Object rv = reinjector
-				.reinject(key, impl, inst, props, methodInjection);
-		if (method.getReturnType() == void.class) {
-			return OK;
+	/**
+	 * Maps the request path of each of the web methods straight to a route, so that a request for a
+	 * web method is dispatched with a single lookup of its path info.
+	 */
+	private void compileRoutes(String path, WebMethods webMethods) {
+		if (!path.startsWith(toStripFromUrls)) {
+			return;
+		}
+		String prefix = SLASH + path.substring(toStripFromUrls.length()) + SLASH;
+		Generation generation = generations.get(webMethods.getKey());
+		if (generation == null) {
+			generation = new Generation(webMethods.getKey());
+			generations.put(webMethods.getKey(), generation);
+		}
+		for (Map.Entry<String, HashMap<String, Method>> entry : webMethods.entrySet()) {
+			Route route = new Route(webMethods.getKey(), webMethods.getImpl(),
+					entry.getValue(), useMethodNamePrefixesForVerbs, generation);
+			routes.put(prefix + entry.getKey(), route);
 		}
-		return rv;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -433,6 +720,186 @@ public class PicoWebRemoting {
 	protected static class Directories extends HashSet<String> {
 	}
 
+	/**
+	 * The web method published at a path, with the method for each verb chosen when it was published.
+	 */
+	/**
+	 * The generation of the cached replies of one component's web methods, moved on by each of its POST,
+	 * PUT or DELETE web methods.  It is kept in the cache rather than here, so that a write through one
+	 * servlet is seen by every servlet sharing the cache.  A generation is a random token rather than a
+	 * count, so that one the cache evicts is never followed by the generation it replaced.
+	 */
+	protected class Generation {
+		private final String key;
+
+		protected Generation(Class<?> componentKey) {
+			this.key = GENERATION_KEY_PREFIX + componentKey.getName();
+		}
+
+		protected Object current() {
+			Cache cache = PicoWebRemoting.this.cache;
+			Object token = cache == null ? null : cache.get(key);
+			return token == null ? advance() : token;
+		}
+
+		protected Object advance() {
+			String token = UUID.randomUUID().toString();
+			Cache cache = PicoWebRemoting.this.cache;
+			if (cache != null) {
+				cache.put(key, token);
+			}
+			return token;
+		}
+	}
+
+	protected static class Route {
+		private final Map<String, Invoker> byVerb = new HashMap<String, Invoker>();
+		private final Invoker fallback;
+
+		protected Route(Class<?> key, Class<?> impl,
+				HashMap<String, Method> methodz,
+				boolean useMethodNamePrefixesForVerbs, Generation generation) {
+			Map<Method, Invoker> invokers = new HashMap<Method, Invoker>();
+			for (Map.Entry<String, Method> entry : methodz.entrySet()) {
+				Method method = entry.getValue();
+				boolean writes = POST.equals(entry.getKey())
+						|| PUT.equals(entry.getKey())
+						|| DELETE.equals(entry.getKey());
+				Invoker invoker = invokers.get(method);
+				if (invoker == null) {
+					invoker = new Invoker(key, impl, method, generation);
+					invokers.put(method, invoker);
+				}
+				if (writes) {
+					invoker.invalidates = true;
+				}
+				if (useMethodNamePrefixesForVerbs && !entry.getKey().equals(FALLBACK)) {
+					byVerb.put(entry.getKey(), invoker);
+				}
+			}
+			Method method = methodz.get(FALLBACK);
+			fallback = method == null ? null : invokers.get(method);
+		}
+
+		/**
+		 * @return the invoker for the verb, or null if no method is allowed for it.
+		 */
+		protected Invoker invokerFor(String verb) {
+			Invoker invoker = byVerb.get(verb);
+			return invoker != null ? invoker : fallback;
+		}
+
+		protected Object invoke(String verb, PicoContainer reqContainer,
+				NullComponentMonitor monitor) {
+			Invoker invoker = invokerFor(verb);
+			if (invoker == null) {
+				throw new PicoContainerWebException("method not allowed for "
+						+ verb);
+			}
+			return invoker.invoke(reqContainer, monitor);
+		}
+	}
+
+	/**
+	 * Invokes a web method on the request's instance of its component, reinjecting its parameters from
+	 * the request container.
+	 */
+	protected static class Invoker {
+		private static final Paranamer PARANAMER = new AdaptiveParanamer();
+
+		private final Class<?> key;
+		private final Class<?> impl;
+		private final MethodInjection methodInjection;
+		private final boolean returnsVoid;
+		private final long cacheMillis;
+		private final String[] parameterNames;
+		private final Class<?>[] parameterTypes;
+		private final Generation generation;
+		private boolean invalidates;
+
+		protected Invoker(Class<?> key, Class<?> impl, Method method,
+				Generation generation) {
+			this.key = key;
+			this.impl = impl;
+			this.methodInjection = new MethodInjection(method);
+			this.returnsVoid = method.getReturnType() == void.class;
+			this.generation = generation;
+			GET get = method.getAnnotation(GET.class);
+			this.cacheMillis = get == null ? 0 : get.cacheSeconds() * 1000L;
+			this.parameterTypes = method.getParameterTypes();
+			String[] names = PARANAMER.lookupParameterNames(method, false);
+			this.parameterNames = names.length == parameterTypes.length ? names : null;
+		}
+
+		protected Class<?> getKey() {
+			return key;
+		}
+
+		/**
+		 * @return the type of the named parameter, or String if the method has no parameter of that name.
+		 */
+		protected Class<?> getParameterType(String name) {
+			if (parameterNames != null) {
+				for (int i = 0; i < parameterNames.length; i++) {
+					if (parameterNames[i].equals(name)) {
+						return parameterTypes[i];
+					}
+				}
+			}
+			return String.class;
+		}
+
+		protected Object invoke(PicoContainer reqContainer,
+				NullComponentMonitor monitor) {
+			try {
+				Reinjector reinjector = new Reinjector(reqContainer, monitor);
+				Properties props = (Properties) Characteristics.USE_NAMES.clone();
+				Object inst = reqContainer.getComponent(key);
+				Object rv = reinjector.reinject(key, impl, inst, props,
+						methodInjection);
+				return returnsVoid ? OK : rv;
+			} finally {
+				if (invalidates) {
+					generation.advance();
+				}
+			}
+		}
+
+		/**
+		 * @return true if the names given have an argument for each of the method's parameters.
+		 */
+		protected boolean isBoundBy(Set<String> names) {
+			return parameterNames != null
+					&& names.containsAll(Arrays.asList(parameterNames));
+		}
+
+		protected boolean isCached() {
+			return cacheMillis > 0 && parameterNames != null;
+		}
+
+		protected long getCacheMillis() {
+			return cacheMillis;
+		}
+
+		/**
+		 * @return the cache key for the values the parameters are bound to by name, or null if one of
+		 *         them is not bound by name.
+		 */
+		protected String cacheKey(String namespace, String pathInfo, PicoContainer reqContainer) {
+			StringBuilder sb = new StringBuilder(REPLY_KEY_PREFIX).append(namespace.length()).append(':')
+					.append(namespace).append(pathInfo).append('#').append(generation.current());
+			for (String name : parameterNames) {
+				Object value = reqContainer.getComponent(name);
+				if (value == null) {
+					return null;
+				}
+				String str = value.toString();
+				sb.append('&').append(name).append('=').append(str.length()).append(':').append(str);
+			}
+			return sb.toString();
+		}
+	}
+
 	@SuppressWarnings("serial")
 	public static class WebMethods extends
 			HashMap<String, HashMap<String, Method>> {
@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.remoting;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Buffered writer that encodes a reply straight onto the response's output stream.  The character buffer
+ * is pooled per thread, so serving a reply allocates no buffer of its own.
+ * <p>
+ * {@link #flush()} only hands the buffered characters on to the encoder; the response is committed when
+ * the servlet container's own buffer fills, or, when a chunk size is given, each time that many characters
+ * have been written, so the client starts receiving a large reply while the rest is being serialized.
+ * With gzip, each chunk carries what the compressor has produced so far.
+ * </p>
+ */
+final class ReplyWriter extends Writer {
+
+    static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<char[]> POOL = new ThreadLocal<char[]>();
+
+    private final OutputStream stream;
+    private final ReplyGzip gzip;
+    private final Writer encoder;
+    private final int chunkSize;
+    private char[] buf;
+    private int count;
+    private int sinceChunk;
+
+    /**
+     * @param chunkSize the number of characters after which the response is flushed, or 0 to leave
+     *                  flushing to the servlet container.
+     */
+    ReplyWriter(OutputStream stream, String encoding, boolean gzip, int chunkSize) throws IOException {
+        this.stream = stream;
+        OutputStream unflushed = new FilterOutputStream(stream) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() {
+                // the encoder flushes when it is drained; the response is only flushed for a chunk
+            }
+        };
+        this.gzip = gzip ? new ReplyGzip(unflushed) : null;
+        this.encoder = new OutputStreamWriter(gzip ? this.gzip : unflushed, encoding);
+        this.chunkSize = chunkSize;
+        this.buf = POOL.get();
+        if (buf == null) {
+            buf = new char[BUFFER_SIZE];
+        } else {
+            // a reply written on this thread while this one is open gets a buffer of its own
+            POOL.set(null);
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        ensureOpen();
+        if (count == buf.length) {
+            drain();
+        }
+        buf[count++] = (char) c;
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            if (count == buf.length) {
+                drain();
+            }
+            int n = Math.min(len, buf.length - count);
+            System.arraycopy(cbuf, off, buf, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            if (count == buf.length) {
+                drain();
+            }
+            int n = Math.min(len, buf.length - count);
+            str.getChars(off, off + n, buf, count);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Hands the buffered characters on to the encoder without committing the response.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        drain();
+    }
+
+    /**
+     * Writes out the rest of the reply, frees the compressor and gives the buffer back to the pool, even when
+     * writing fails.  The response's output stream is left open and unflushed, for the servlet container
+     * to finish.
+     */
+    @Override
+    public void close() throws IOException {
+        if (buf == null) {
+            return;
+        }
+        try {
+            drain();
+            encoder.flush();
+            if (gzip != null) {
+                gzip.finish();
+            }
+        } finally {
+            if (gzip != null) {
+                // finish() leaves the compressor's native memory to the finalizer; end() cannot throw
+                gzip.end();
+            }
+            POOL.set(buf);
+            buf = null;
+        }
+    }
+
+    private void drain() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        encoder.write(buf, 0, count);
+        sinceChunk += count;
+        count = 0;
+        if (chunkSize > 0 && sinceChunk >= chunkSize) {
+            encoder.flush();
+            stream.flush();
+            sinceChunk = 0;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (buf == null) {
+            throw new IOException("Reply already written");
+        }
+    }
+
+    /**
+     * Gzip that can free its compressor without closing the response's output stream.
+     */
+    private static final class ReplyGzip extends GZIPOutputStream {
+
+        private ReplyGzip(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+        }
+
+        private void end() {
+            def.end();
+        }
+    }
+
+}
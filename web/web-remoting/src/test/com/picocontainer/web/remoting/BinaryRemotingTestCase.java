@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.remoting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.picocontainer.web.PicoContainerWebException;
+
+public final class BinaryRemotingTestCase {
+
+    public static class Price {
+        private final String sku;
+        private final long pence;
+        private final boolean onOffer;
+        private transient String ignored = "ignored";
+
+        public Price(String sku, long pence, boolean onOffer) {
+            this.sku = sku;
+            this.pence = pence;
+            this.onOffer = onOffer;
+        }
+    }
+
+    public static class Basket {
+        private final Price[] prices;
+        private final Map<String, Integer> quantities;
+        private Basket self;
+
+        public Basket(Map<String, Integer> quantities, Price... prices) {
+            this.quantities = quantities;
+            this.prices = prices;
+        }
+    }
+
+    @Test
+    public void testRepliesAreReadAsMapsOfTheirFieldsInOrder() throws IOException {
+        Map<String, Integer> quantities = new LinkedHashMap<String, Integer>();
+        quantities.put("tea", 2);
+        quantities.put("cake", 1);
+        byte[] frame = BinaryReplyWriter.toBytes(new Basket(quantities, new Price("tea", 120, false),
+                new Price("cake", 250, true), null));
+
+        Map<?, ?> basket = (Map<?, ?>) BinaryReplyReader.fromBytes(frame);
+        assertEquals(Arrays.asList("prices", "quantities", "self"), new ArrayList<Object>(basket.keySet()));
+        assertEquals(quantities, basket.get("quantities"));
+        List<?> prices = (List<?>) basket.get("prices");
+        assertEquals(3, prices.size());
+        assertEquals("{sku=tea, pence=120, onOffer=false}", prices.get(0).toString());
+        assertEquals("{sku=cake, pence=250, onOffer=true}", prices.get(1).toString());
+        assertEquals(null, prices.get(2));
+
+        assertEquals("{ERROR=true, message=oops}", BinaryReplyReader.fromBytes(
+                BinaryReplyWriter.toBytes(new ErrorReply("oops"))).toString());
+        assertEquals("h\u00e9llo", BinaryReplyReader.fromBytes(BinaryReplyWriter.toBytes("h\u00e9llo")));
+    }
+
+    @Test
+    public void testRepliesThatReferToThemselvesAreRefused() {
+        Basket basket = new Basket(Collections.<String, Integer>emptyMap());
+        basket.self = basket;
+        try {
+            BinaryReplyWriter.toBytes(basket);
+            fail("should have barfed");
+        } catch (PicoContainerWebException e) {
+            assertTrue(e.getMessage().contains("refers to itself"));
+        }
+    }
+
+    @Test
+    public void testCallsArePipelinedOnOneKeptAliveConnectionUpToEachCallThatIsNotIdempotent() throws Exception {
+        final ServerSocket server = new ServerSocket(0);
+        final List<String> requestLines = Collections.synchronizedList(new ArrayList<String>());
+        Thread serverThread = new Thread("binary-server") {
+            @Override
+            public void run() {
+                try {
+                    Socket socket = server.accept();
+                    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "ISO-8859-1"));
+                    OutputStream out = socket.getOutputStream();
+                    // the GET is pipelined with the POST, and the next GET only sent once the POST is answered
+                    List<String> bodies = readRequests(in, 2);
+                    if (in.ready()) {
+                        requestLines.add("pipelined after the POST");
+                    }
+                    answer(out, bodies, "200 OK");
+                    answer(out, readRequests(in, 1), "500 Server Error");
+                    answer(out, readRequests(in, 1), "200 OK");
+                    socket.close();
+                } catch (IOException e) {
+                    requestLines.add(e.toString());
+                }
+            }
+
+            private List<String> readRequests(BufferedReader in, int count) throws IOException {
+                List<String> bodies = new ArrayList<String>();
+                for (int i = 0; i < count; i++) {
+                    requestLines.add(in.readLine());
+                    int contentLength = 0;
+                    String header;
+                    while ((header = in.readLine()).length() > 0) {
+                        if (header.startsWith("Content-Length: ")) {
+                            contentLength = Integer.parseInt(header.substring(16));
+                        }
+                    }
+                    char[] body = new char[contentLength];
+                    for (int read = 0; read < contentLength;) {
+                        read += in.read(body, read, contentLength - read);
+                    }
+                    bodies.add(new String(body));
+                }
+                return bodies;
+            }
+
+            private void answer(OutputStream out, List<String> bodies, String status) throws IOException {
+                for (String body : bodies) {
+                    byte[] frame = BinaryReplyWriter.toBytes(body);
+                    out.write(("HTTP/1.1 " + status + "\r\nContent-Type: " + BinaryPicoWebRemotingServlet.MIME_TYPE
+                            + "\r\nContent-Length: " + frame.length + "\r\n\r\n").getBytes("ISO-8859-1"));
+                    out.write(frame);
+                }
+                out.flush();
+            }
+        };
+        serverThread.start();
+
+        BinaryRemotingClient client = new BinaryRemotingClient("localhost", server.getLocalPort(), "/app/pwr", 5000);
+        try {
+            Map<String, String> args = new LinkedHashMap<String, String>();
+            args.put("sku", "tea & cake");
+            List<Object> replies = client.pipeline(Arrays.asList(
+                    new BatchCall("GET", "/Prices/price", args),
+                    new BatchCall("POST", "/Prices/price", args),
+                    new BatchCall("GET", "/Prices", Collections.<String, String>emptyMap())));
+            assertEquals(3, replies.size());
+            assertEquals("", replies.get(0));
+            assertEquals("sku=tea+%26+cake", replies.get(1));
+            assertEquals("{ERROR=true, message=HTTP 500 for GET /Prices}", replies.get(2).toString());
+            assertEquals("", client.call("DELETE", "/Prices/price", Collections.<String, String>emptyMap()));
+        } finally {
+            client.close();
+            serverThread.join(5000);
+            server.close();
+        }
+
+        assertEquals(Arrays.asList(
+                "GET /app/pwr/Prices/price?sku=tea+%26+cake HTTP/1.1",
+                "POST /app/pwr/Prices/price HTTP/1.1",
+                "GET /app/pwr/Prices HTTP/1.1",
+                "DELETE /app/pwr/Prices/price HTTP/1.1"), requestLines);
+    }
+
+}
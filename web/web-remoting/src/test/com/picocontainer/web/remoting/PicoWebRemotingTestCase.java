@@ -8,19 +8,28 @@
 package com.picocontainer.web.remoting;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static com.picocontainer.web.remoting.JsonPicoWebRemotingServlet.makeJsonDriver;
 
 import java.awt.Color;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.junit.Test;
+import com.picocontainer.web.GET;
 import com.picocontainer.web.NONE;
+import com.picocontainer.web.caching.BoundedCache;
 
 import com.picocontainer.DefaultPicoContainer;
 import com.picocontainer.monitors.NullComponentMonitor;
@@ -216,6 +225,202 @@ public final class PicoWebRemotingTestCase {
         assertEquals("\"put color\"\n", result);
     }
 
+    @Test
+    public void testRoutesResolveVerbsAsTheyWerePublished() throws Exception {
+        PicoWebRemoting pwr = new PicoWebRemoting(xStream, "alpha/", null, "y", false, true);
+        pwr.setMonitor(new NullPicoWebRemotingMonitor());
+        pwr.directorize("alpha/Foo", Foo.class, Foo.class);
+
+        DefaultPicoContainer pico = new DefaultPicoContainer();
+        pico.addComponent(Foo.class);
+
+        assertEquals("33\n", pwr.processRequest("/Foo/goodbye", pico, "DELETE", new NullComponentMonitor()));
+        assertEquals("\"put color\"\n", pwr.processRequest("/Foo/color/", pico, "PUT", new NullComponentMonitor()));
+        assertEquals("{\n" +
+                "  \"ERROR\": true,\n" +
+                "  \"message\": \"method not allowed for PATCH\"\n" +
+                "}\n", pwr.processRequest("/Foo/color", pico, "PATCH", new NullComponentMonitor()));
+    }
+
+    @Test
+    public void testCachedRepliesAreKeptPerParameterValueUntilTheComponentIsWrittenTo() throws Exception {
+        PicoWebRemoting pwr = new PicoWebRemoting(xStream, "alpha/", null, "y", false, true);
+        pwr.setCache(new BoundedCache(10), "json");
+        pwr.directorize("alpha/Prices", Prices.class, Prices.class);
+
+        Prices prices = new Prices();
+        DefaultPicoContainer app = new DefaultPicoContainer();
+        app.addComponent(prices);
+        DefaultPicoContainer pico = new DefaultPicoContainer(app);
+        pico.addComponent("sku", "abc");
+
+        CachedReply first = pwr.cachedReply("/Prices/price", pico, app, "GET", new NullComponentMonitor());
+        assertEquals("1\n", first.getBody());
+        assertSame(first, pwr.cachedReply("/Prices/price", pico, app, "GET", new NullComponentMonitor()));
+        assertTrue(first.isMatchedBy("\"xyz\", " + first.getETag()));
+        assertTrue(first.getETag().matches("\"[0-9a-f]{40}\""));
+        assertEquals(1, prices.lookups);
+
+        DefaultPicoContainer other = new DefaultPicoContainer(app);
+        other.addComponent("sku", "def");
+        assertEquals("2\n", pwr.cachedReply("/Prices/price", other, app, "GET", new NullComponentMonitor()).getBody());
+
+        assertNull(pwr.cachedReply("/Prices/price", pico, app, "POST", new NullComponentMonitor()));
+        pwr.processRequest("/Prices/price", pico, "POST", new NullComponentMonitor());
+        assertEquals("3\n", pwr.cachedReply("/Prices/price", pico, app, "GET", new NullComponentMonitor()).getBody());
+    }
+
+    @Test
+    public void testServletsSharingACacheKeepTheirOwnRepliesButSeeEachOthersWrites() throws Exception {
+        BoundedCache cache = new BoundedCache(10);
+        PicoWebRemoting json = new PicoWebRemoting(xStream, "alpha/", null, "y", false, true);
+        json.setCache(cache, "json");
+        json.directorize("alpha/Prices", Prices.class, Prices.class);
+        PicoWebRemoting ruby = new PicoWebRemoting(xStream, "alpha/", null, "y", false, true);
+        ruby.setCache(cache, "ruby");
+        ruby.directorize("alpha/Prices", Prices.class, Prices.class);
+
+        Prices prices = new Prices();
+        DefaultPicoContainer app = new DefaultPicoContainer();
+        app.addComponent(prices);
+        DefaultPicoContainer pico = new DefaultPicoContainer(app);
+        pico.addComponent("sku", "abc");
+
+        CachedReply fromJson = json.cachedReply("/Prices/price", pico, app, "GET", new NullComponentMonitor());
+        CachedReply fromRuby = ruby.cachedReply("/Prices/price", pico, app, "GET", new NullComponentMonitor());
+        assertNotSame(fromJson, fromRuby);
+        assertEquals(2, prices.lookups);
+        assertSame(fromRuby, ruby.cachedReply("/Prices/price", pico, app, "GET", new NullComponentMonitor()));
+
+        json.processRequest("/Prices/price", pico, "POST", new NullComponentMonitor());
+        assertEquals("3\n", ruby.cachedReply("/Prices/price", pico, app, "GET", new NullComponentMonitor()).getBody());
+    }
+
+    @Test
+    public void testRepliesOfSessionAndRequestScopedComponentsAreNotCached() throws Exception {
+        PicoWebRemoting pwr = new PicoWebRemoting(xStream, "alpha/", null, "y", false, true);
+        pwr.setCache(new BoundedCache(10), "json");
+        pwr.directorize("alpha/Prices", Prices.class, Prices.class);
+
+        DefaultPicoContainer app = new DefaultPicoContainer();
+        app.addComponent(new Prices());
+        DefaultPicoContainer session = new DefaultPicoContainer(app);
+        session.addComponent(new Prices());
+        DefaultPicoContainer pico = new DefaultPicoContainer(session);
+        pico.addComponent("sku", "abc");
+
+        assertNull(pwr.cachedReply("/Prices/price", pico, app, "GET", new NullComponentMonitor()));
+        assertNull(pwr.cachedReply("/Prices/price", pico, new DefaultPicoContainer(), "GET", new NullComponentMonitor()));
+    }
+
+    @Test
+    public void testBatchedCallsReplyInOrderWithEachFailureKeptToItsOwnCall() throws Exception {
+        PicoWebRemoting pwr = new PicoWebRemoting(xStream, "alpha/", null, "y", false, true);
+        pwr.setMonitor(new NullPicoWebRemotingMonitor());
+        pwr.directorize("alpha/Foo", Foo.class, Foo.class);
+        pwr.directorize("alpha/Where", Where.class, Where.class);
+
+        DefaultPicoContainer app = new DefaultPicoContainer();
+        app.addComponent(Where.class);
+        DefaultPicoContainer request = new DefaultPicoContainer(app);
+        request.addComponent(Foo.class);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "batch");
+            }
+        });
+        try {
+            StringWriter out = new StringWriter();
+            pwr.writeBatchReply(new String[] {"GET /Foo/hello?longArg=5", "GET /Where/thread", "GET /Foo/nope",
+                    "GET /Foo/hello?longArg=five", "hello", "DELETE /Foo/color"}, "POST", request, app,
+                    new NullComponentMonitor(), executor, out);
+            assertEquals("[\n" +
+                    "  11,\n" +
+                    "  \"batch\",\n" +
+                    "  {\n" +
+                    "    \"ERROR\": true,\n" +
+                    "    \"message\": \"Nothing matches the path requested\"\n" +
+                    "  },\n" +
+                    "  {\n" +
+                    "    \"ERROR\": true,\n" +
+                    "    \"message\": \"Argument 'longArg' is not a long: five\"\n" +
+                    "  },\n" +
+                    "  {\n" +
+                    "    \"ERROR\": true,\n" +
+                    "    \"message\": \"Batch call 'hello' is not of the form 'VERB /path?args'\"\n" +
+                    "  },\n" +
+                    "  true\n" +
+                    "]\n", out.toString());
+        } finally {
+            executor.shutdown();
+        }
+
+        StringWriter out = new StringWriter();
+        pwr.writeBatchReply(new String[] {"GET /Where/thread"}, "GET", request, app, new NullComponentMonitor(), null, out);
+        assertEquals("[\n" +
+                "  \"" + Thread.currentThread().getName() + "\"\n" +
+                "]\n", out.toString());
+    }
+
+    @Test
+    public void testBatchesMadeWithGetOnlyRunGetCallsAndAreCapped() throws Exception {
+        PicoWebRemoting pwr = new PicoWebRemoting(xStream, "alpha/", null, "y", false, true);
+        pwr.setMonitor(new NullPicoWebRemotingMonitor());
+        pwr.directorize("alpha/Foo", Foo.class, Foo.class);
+        DefaultPicoContainer request = new DefaultPicoContainer();
+        request.addComponent(Foo.class);
+
+        StringWriter out = new StringWriter();
+        pwr.writeBatchReply(new String[] {"GET /Foo/goodbye", "DELETE /Foo/color"}, "GET", request, request,
+                new NullComponentMonitor(), null, out);
+        assertEquals("[\n" +
+                "  33,\n" +
+                "  {\n" +
+                "    \"ERROR\": true,\n" +
+                "    \"message\": \"A DELETE call cannot be batched in a GET request\"\n" +
+                "  }\n" +
+                "]\n", out.toString());
+
+        pwr.setMaxBatchCalls(1);
+        out = new StringWriter();
+        pwr.writeBatchReply(new String[] {"GET /Foo/goodbye", "GET /Foo/goodbye"}, "GET", request, request,
+                new NullComponentMonitor(), null, out);
+        assertEquals("{\n" +
+                "  \"ERROR\": true,\n" +
+                "  \"message\": \"A batch can have at most 1 calls, this one has 2\"\n" +
+                "}\n", out.toString());
+    }
+
+    @Test
+    public void testBatchedCallsNeedingRequestComponentsForTheirParametersRunOnTheRequestThread() throws Exception {
+        PicoWebRemoting pwr = new PicoWebRemoting(xStream, "alpha/", null, "y", false, true);
+        pwr.setMonitor(new NullPicoWebRemotingMonitor());
+        pwr.directorize("alpha/Greeter", Greeter.class, Greeter.class);
+
+        DefaultPicoContainer app = new DefaultPicoContainer();
+        app.addComponent(Greeter.class);
+        DefaultPicoContainer request = new DefaultPicoContainer(app);
+        request.addComponent("name", "Ann");
+
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                return new Thread(r, "batch");
+            }
+        });
+        try {
+            StringWriter out = new StringWriter();
+            pwr.writeBatchReply(new String[] {"GET /Greeter/greet", "GET /Greeter/greet?name=Bob"}, "GET", request,
+                    app, new NullComponentMonitor(), executor, out);
+            assertEquals("[\n" +
+                    "  \"Ann on " + Thread.currentThread().getName() + "\",\n" +
+                    "  \"Bob on batch\"\n" +
+                    "]\n", out.toString());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testHiddenMethodNotPublished() throws Exception {
         PicoWebRemoting pwr = new PicoWebRemoting(xStream, "alpha/", null, "y", false, true);
@@ -276,6 +481,30 @@ public final class PicoWebRemotingTestCase {
     }
 
 
+    public static class Where {
+        public String thread() {
+            return Thread.currentThread().getName();
+        }
+    }
+
+    public static class Greeter {
+        public String greet(String name) {
+            return name + " on " + Thread.currentThread().getName();
+        }
+    }
+
+    public static class Prices {
+        private int lookups;
+
+        @GET(cacheSeconds = 60)
+        public int getPrice(String sku) {
+            return ++lookups;
+        }
+
+        public void postPrice(String sku) {
+        }
+    }
+
     public static class Foo {
         public int hello(long longArg) {
             return 11;
@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright (C) 2003-2011 PicoContainer Committers. All rights reserved.
+ * ---------------------------------------------------------------------------
+ * The software in this package is published under the terms of the BSD style
+ * license a copy of which has been included with this distribution in the
+ * LICENSE.txt file.
+ ******************************************************************************/
+package com.picocontainer.web.remoting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static com.picocontainer.web.remoting.JsonPicoWebRemotingServlet.makeJsonDriver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.io.json.JsonWriter;
+
+public final class ReplyWriterTestCase {
+
+    private static class FlushCountingStream extends ByteArrayOutputStream {
+        private int flushes;
+
+        @Override
+        public void flush() {
+            flushes++;
+        }
+    }
+
+    private static List<String> listing(int size) {
+        List<String> listing = new ArrayList<String>();
+        for (int i = 0; i < size; i++) {
+            listing.add("entry-" + i);
+        }
+        return listing;
+    }
+
+    @Test
+    public void testRepliesAreOnlyFlushedToTheResponseForEachChunk() throws IOException {
+        XStream xStream = new XStream(makeJsonDriver(JsonWriter.DROP_ROOT_MODE));
+        String expected = xStream.toXML(listing(5000));
+
+        FlushCountingStream unchunked = new FlushCountingStream();
+        ReplyWriter out = new ReplyWriter(unchunked, "UTF-8", false, 0);
+        xStream.toXML(listing(5000), out);
+        out.close();
+        assertEquals(expected, unchunked.toString("UTF-8"));
+        assertEquals(0, unchunked.flushes);
+
+        FlushCountingStream chunked = new FlushCountingStream();
+        out = new ReplyWriter(chunked, "UTF-8", false, ReplyWriter.BUFFER_SIZE);
+        xStream.toXML(listing(5000), out);
+        out.close();
+        assertEquals(expected, chunked.toString("UTF-8"));
+        assertTrue(chunked.flushes > 1);
+        assertTrue(chunked.flushes <= expected.length() / ReplyWriter.BUFFER_SIZE);
+    }
+
+    @Test
+    public void testGzippedRepliesInflateToTheSameReply() throws IOException {
+        XStream xStream = new XStream(makeJsonDriver(JsonWriter.DROP_ROOT_MODE));
+        String expected = xStream.toXML(listing(5000));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReplyWriter out = new ReplyWriter(bytes, "UTF-8", true, ReplyWriter.BUFFER_SIZE);
+        xStream.toXML(listing(5000), out);
+        out.close();
+        assertTrue(bytes.size() < expected.length());
+
+        Reader in = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())), "UTF-8");
+        StringWriter inflated = new StringWriter();
+        char[] buf = new char[1024];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            inflated.write(buf, 0, n);
+        }
+        assertEquals(expected, inflated.toString());
+    }
+
+    @Test
+    public void testRepliesOpenTogetherOnOneThreadDoNotShareABuffer() throws IOException {
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        ReplyWriter one = new ReplyWriter(first, "UTF-8", false, 0);
+        ReplyWriter two = new ReplyWriter(second, "UTF-8", false, 0);
+        one.write("one");
+        two.write("two");
+        two.close();
+        one.close();
+        assertEquals("one", first.toString("UTF-8"));
+        assertEquals("two", second.toString("UTF-8"));
+    }
+
+    @Test
+    public void testAFailedGzippedReplyReportsTheFailureOfTheResponse() throws IOException {
+        // takes the gzip header, then fails
+        OutputStream broken = new ByteArrayOutputStream() {
+            @Override
+            public void write(byte[] b, int off, int len) {
+                if (count > 0) {
+                    throw new IllegalStateException("client went away");
+                }
+                super.write(b, off, len);
+            }
+        };
+        ReplyWriter out = new ReplyWriter(broken, "UTF-8", true, 0);
+        out.write("never sent");
+        try {
+            out.close();
+            fail("expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            assertEquals("client went away", e.getMessage());
+        }
+        out.close();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReplyWriter next = new ReplyWriter(bytes, "UTF-8", true, 0);
+        next.write("sent");
+        next.close();
+        Reader in = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray())), "UTF-8");
+        char[] buf = new char[16];
+        assertEquals(4, in.read(buf));
+        assertEquals("sent", new String(buf, 0, 4));
+    }
+
+}
@@ -11,6 +11,8 @@ package com.picocontainer.web.struts2;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.servlet.FilterConfig;
 import javax.servlet.ServletException;
@@ -58,23 +60,30 @@ public class PicoObjectFactory extends ObjectFactory {
     }
     
 
+    /**
+     * The container each class has been registered in or resolved from, so that only the first lookup of a
+     * class takes the registration lock.
+     */
+    private final ConcurrentMap<Class<?>, PicoContainer> knownClasses = new ConcurrentHashMap<Class<?>, PicoContainer>();
+
     @SuppressWarnings({ "rawtypes" })
     public Class getClassInstance(String name) throws ClassNotFoundException {
         final Class clazz = super.getClassInstance(name);
-        synchronized (this) {
-        	//We run this in a privileged block to minimize the duplication
-        	//of struts permissions that we're being bombarded with. :)
-        	
-        	AccessController.doPrivileged(new PrivilegedAction<Void>() {
-				public Void run() {
-					PicoContainer reqContainer = picoHook.getCurrentRequestPico();
-		            if (reqContainer != null) {
-		                // forces a registration via noComponentFound()
-		                reqContainer.getComponentAdapter(clazz);
-		            }
-		            return null;
-				}
-        	});
+        final PicoContainer reqContainer = picoHook.getCurrentRequestPico();
+        if (reqContainer != null && knownClasses.get(clazz) != reqContainer) {
+            // registrations are serialized, as containers are not safe for concurrent registration
+            synchronized (this) {
+                if (knownClasses.get(clazz) != reqContainer) {
+                    privileged(new PrivilegedAction<Void>() {
+                        public Void run() {
+                            // forces a registration via noComponentFound()
+                            reqContainer.getComponentAdapter(clazz);
+                            return null;
+                        }
+                    });
+                    knownClasses.put(clazz, reqContainer);
+                }
+            }
         }
         return clazz;
     }
@@ -82,25 +91,44 @@ public class PicoObjectFactory extends ObjectFactory {
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public Object buildBean(final Class clazz, final Map extraContext) throws Exception {
+        final PicoContainer requestContainer = picoHook.getCurrentRequestPico();
+        final PicoContainer container = requestContainer != null ? requestContainer : picoHook.getAppContainer();
+        if (knownClasses.get(clazz) == container) {
+            if (System.getSecurityManager() == null) {
+                return container.getComponent(clazz);
+            }
+            return privileged(new PrivilegedAction<Object>() {
+                public Object run() {
+                    return container.getComponent(clazz);
+                }
+            });
+        }
+        synchronized (this) {
+            Object comp = privileged(new PrivilegedAction<Object>() {
+                public Object run() {
+                    Object comp = container.getComponent(clazz);
+                    if (comp == null && requestContainer == null) {
+                        MutablePicoContainer appContainer = (MutablePicoContainer) container;
+                        appContainer.addComponent(clazz);
+                        comp = appContainer.getComponent(clazz);
+                    }
+                    return comp;
+                }
+            });
+            knownClasses.put(clazz, container);
+            return comp;
+        }
+    }
 
-    	return AccessController.doPrivileged(new PrivilegedAction<Object>() {
-
-			public Object run() {
-		        PicoContainer requestContainer = picoHook.getCurrentRequestPico();
-		        if (requestContainer == null) {
-		            MutablePicoContainer appContainer = picoHook.getAppContainer();
-		            Object comp = appContainer.getComponent(clazz);
-		            if (comp == null) {
-		                appContainer.addComponent(clazz);
-		                comp = appContainer.getComponent(clazz);
-		            }
-		            return comp;
-
-		        }
-		        return requestContainer.getComponent(clazz);			}
-    		
-    	});
-
+    /**
+     * Runs the action in a privileged block, to minimize the duplication of struts permissions that we're
+     * being bombarded with, or directly if there is no security manager to check them.
+     */
+    private static <T> T privileged(PrivilegedAction<T> action) {
+        if (System.getSecurityManager() == null) {
+            return action.run();
+        }
+        return AccessController.doPrivileged(action);
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -7,9 +7,24 @@
  ******************************************************************************/
 package com.picocontainer.web.struts2;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import org.junit.After;
 import org.junit.Test;
+
+import com.picocontainer.DefaultPicoContainer;
+import com.picocontainer.MutablePicoContainer;
+import com.picocontainer.behaviors.Caching;
+import com.picocontainer.web.PicoServletFilter;
 import com.picocontainer.web.struts2.PicoObjectFactory;
 
 /**
@@ -25,4 +40,58 @@ public final class PicoObjectFactoryTestCase {
         factory.buildBean("invalidAction", Collections.EMPTY_MAP);
     }
 
+    public static class Bean {
+    }
+
+    @SuppressWarnings("serial")
+    private static class AppContainerHook extends PicoServletFilter {
+        private void set(MutablePicoContainer appContainer) {
+            setAppContainer(appContainer);
+        }
+    }
+
+    @After
+    public void clearAppContainer() {
+        new AppContainerHook().set(null);
+    }
+
+    @Test
+    public void testBeansAreAddedToTheAppContainerOnce() throws Exception {
+        MutablePicoContainer app = new DefaultPicoContainer(new Caching());
+        new AppContainerHook().set(app);
+        PicoObjectFactory factory = new PicoObjectFactory();
+        Object bean = factory.buildBean(Bean.class, Collections.emptyMap());
+        assertSame(bean, factory.buildBean(Bean.class, Collections.emptyMap()));
+        assertEquals(1, app.getComponentAdapters().size());
+    }
+
+    @Test
+    public void testBeansAreBuiltFromManyThreadsAtOnce() throws Exception {
+        final MutablePicoContainer app = new DefaultPicoContainer(new Caching());
+        final PicoObjectFactory factory = new PicoObjectFactory();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Object>> beans = new ArrayList<Future<Object>>();
+            for (int i = 0; i < 8; i++) {
+                beans.add(executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        new AppContainerHook().set(app);
+                        Object bean = null;
+                        for (int j = 0; j < 1000; j++) {
+                            bean = factory.buildBean(Bean.class, Collections.emptyMap());
+                        }
+                        return bean;
+                    }
+                }));
+            }
+            Object first = beans.get(0).get();
+            for (Future<Object> bean : beans) {
+                assertSame(first, bean.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, app.getComponentAdapters().size());
+    }
+
 }